@@ -1,18 +1,29 @@
 package net.sourceforge.vrapper.core.tests;
 
+import net.sourceforge.vrapper.core.tests.cases.AutoCmdTests;
 import net.sourceforge.vrapper.core.tests.cases.BlockwiseVisualModeTests;
+import net.sourceforge.vrapper.core.tests.cases.CommandLineHistoryTests;
 import net.sourceforge.vrapper.core.tests.cases.CommandLineTests;
+import net.sourceforge.vrapper.core.tests.cases.ConfigurationTests;
+import net.sourceforge.vrapper.core.tests.cases.ExTextTransformTests;
+import net.sourceforge.vrapper.core.tests.cases.FileGrepTests;
+import net.sourceforge.vrapper.core.tests.cases.HeadlessEditorTests;
 import net.sourceforge.vrapper.core.tests.cases.InsertModeTests;
 import net.sourceforge.vrapper.core.tests.cases.KeyMapTests;
 import net.sourceforge.vrapper.core.tests.cases.MacroTests;
 import net.sourceforge.vrapper.core.tests.cases.MotionTests;
 import net.sourceforge.vrapper.core.tests.cases.NormalModeTests;
+import net.sourceforge.vrapper.core.tests.cases.OffsetTrackerTests;
 import net.sourceforge.vrapper.core.tests.cases.RemappingTests;
+import net.sourceforge.vrapper.core.tests.cases.RegisterContentTests;
+import net.sourceforge.vrapper.core.tests.cases.RegexSearchTests;
 import net.sourceforge.vrapper.core.tests.cases.SearchModeTests;
 import net.sourceforge.vrapper.core.tests.cases.SimpleKeyStrokeTests;
 import net.sourceforge.vrapper.core.tests.cases.SnapshotTests;
 import net.sourceforge.vrapper.core.tests.cases.StateAndTransitionTests;
+import net.sourceforge.vrapper.core.tests.cases.UndoTreeTests;
 import net.sourceforge.vrapper.core.tests.cases.UtilityTests;
+import net.sourceforge.vrapper.core.tests.cases.VimRegexTests;
 import net.sourceforge.vrapper.core.tests.cases.VisualModeTests;
 import net.sourceforge.vrapper.core.tests.cases.VisualModeExclusiveTests;
 import net.sourceforge.vrapper.core.tests.cases.VisualModeInclusiveTests;
@@ -23,6 +34,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	CommandLineTests.class,
+	ConfigurationTests.class,
 	InsertModeTests.class,
 	KeyMapTests.class,
 	MacroTests.class,
@@ -38,6 +50,16 @@ import org.junit.runners.Suite;
 	VisualModeExclusiveTests.class,
 	BlockwiseVisualModeTests.class,
 	UtilityTests.class,
+	UndoTreeTests.class,
+	RegisterContentTests.class,
+	FileGrepTests.class,
+	AutoCmdTests.class,
+	VimRegexTests.class,
+	RegexSearchTests.class,
+	OffsetTrackerTests.class,
+	CommandLineHistoryTests.class,
+	HeadlessEditorTests.class,
+	ExTextTransformTests.class,
 //	VrapperRCTests.class,
 //	TextObjectsUnitTests.class,
 //	CommandUnitTests.class,
@@ -0,0 +1,83 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdParser;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdTable;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdTable.Event;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AutoCmdTests {
+
+    private AutoCmdTable table;
+    private File rc;
+
+    @Before
+    public void setUp() throws Exception {
+        table = new AutoCmdTable();
+        rc = File.createTempFile("vrapper", "rc");
+        Assert.assertTrue(table.beginSource(rc));
+        table.add(Event.FILE_TYPE, "\"Java Editor\"", "setlocal tw=100");
+        table.add(Event.BUF_ENTER, "*.py", "setlocal tw=79");
+        table.add(Event.BUF_ENTER, "src/*.java", "setlocal ts=4");
+        table.endSource();
+        table.add(Event.BUF_ENTER, "*", "nohlsearch");
+        table.add(Event.BUF_ENTER, "*", "nohlsearch");
+    }
+
+    @After
+    public void tearDown() {
+        rc.delete();
+    }
+
+    @Test
+    public void testGetCommands() {
+        Assert.assertEquals(Arrays.asList("setlocal tw=100"),
+                table.getCommands(Event.FILE_TYPE, "Java Editor", null));
+        Assert.assertEquals(Collections.emptyList(),
+                table.getCommands(Event.FILE_TYPE, "C/C++ Editor", null));
+        Assert.assertEquals(Arrays.asList("setlocal tw=79", "nohlsearch"),
+                table.getCommands(Event.BUF_ENTER, "Python Editor", "/project/a/b.py"));
+        Assert.assertEquals(Arrays.asList("setlocal ts=4", "nohlsearch"),
+                table.getCommands(Event.BUF_ENTER, "Java Editor", "/project/src/A.java"));
+        Assert.assertEquals(Arrays.asList("nohlsearch"),
+                table.getCommands(Event.BUF_ENTER, "Java Editor", "/project/test/A.java"));
+        Assert.assertEquals(Collections.emptyList(),
+                table.getCommands(Event.BUF_LEAVE, "Java Editor", "/project/src/A.java"));
+    }
+
+    @Test
+    public void testSourceAgain() {
+        // Sourcing an unchanged file again skips its autocommands, a modified one replaces them.
+        Assert.assertFalse(table.beginSource(rc));
+        table.endSource();
+        Assert.assertEquals(Arrays.asList("setlocal tw=100"),
+                table.getCommands(Event.FILE_TYPE, "Java Editor", null));
+        Assert.assertTrue(rc.setLastModified(rc.lastModified() - 10000));
+        Assert.assertTrue(table.beginSource(rc));
+        table.endSource();
+        Assert.assertEquals(Collections.emptyList(),
+                table.getCommands(Event.FILE_TYPE, "Java Editor", null));
+        Assert.assertEquals(Arrays.asList("nohlsearch"),
+                table.getCommands(Event.BUF_ENTER, "Python Editor", "/project/a/b.py"));
+
+        table.clear();
+        Assert.assertEquals(Collections.emptyList(),
+                table.getCommands(Event.BUF_ENTER, "Python Editor", "/project/a/b.py"));
+    }
+
+    @Test
+    public void testIsAutoCmd() {
+        Assert.assertTrue(AutoCmdParser.isAutoCmd("au BufEnter *.py set tw=79"));
+        Assert.assertTrue(AutoCmdParser.isAutoCmd(":autocmd! "));
+        Assert.assertTrue(AutoCmdParser.isAutoCmd("au \"Java Editor\" set tw=100"));
+        Assert.assertFalse(AutoCmdParser.isAutoCmd("autochdir"));
+        Assert.assertFalse(AutoCmdParser.isAutoCmd("set autochdir"));
+    }
+}
@@ -0,0 +1,95 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.sourceforge.vrapper.vim.modes.commandline.CommandLineHistory;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandLineHistoryTests {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("vrapper", "history");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testBrowse() {
+        CommandLineHistory history = new CommandLineHistory();
+        history.setLimit(3);
+        history.setMode("command mode");
+        history.append("set hls");
+        history.append("s/a\\nb/c");
+        history.append("sort");
+        history.append("set hls");
+        history.append("w");
+
+        // Up and Down only show entries which start with the typed text, newest first.
+        history.setTemp("s");
+        Assert.assertEquals("set hls", history.getPrevious());
+        Assert.assertEquals("sort", history.getPrevious());
+        Assert.assertNull(history.getPrevious());
+        Assert.assertEquals("set hls", history.getNext());
+        Assert.assertEquals("s", history.getNext());
+    }
+
+    @Test
+    public void testStorage() {
+        CommandLineHistory history = new CommandLineHistory();
+        history.setStorageLocation(directory);
+        history.setLimit(3);
+        history.setMode("command mode");
+        history.append("set hls");
+        history.append("sort");
+        history.append("w");
+        history.append("set hls");
+        history.setMode("search mode");
+        history.append("foo\nbar");
+        history.save();
+
+        // Each mode has its own history.
+        history = new CommandLineHistory();
+        history.setStorageLocation(directory);
+        history.setMode("command mode");
+        history.setTemp("");
+        Assert.assertEquals("set hls", history.getPrevious());
+        Assert.assertEquals("w", history.getPrevious());
+        Assert.assertEquals("sort", history.getPrevious());
+        Assert.assertNull(history.getPrevious());
+        history.setMode("search mode");
+        history.setTemp("");
+        Assert.assertEquals("foo\nbar", history.getPrevious());
+
+        // Saving again replaces the stored history.
+        history.append("bar");
+        history.save();
+        history = new CommandLineHistory();
+        history.setStorageLocation(directory);
+        history.setMode("search mode");
+        history.setTemp("");
+        Assert.assertEquals("bar", history.getPrevious());
+        Assert.assertEquals("foo\nbar", history.getPrevious());
+
+        // Only the histories themselves are left, no temporary files.
+        Assert.assertEquals(2, directory.listFiles().length);
+    }
+
+}
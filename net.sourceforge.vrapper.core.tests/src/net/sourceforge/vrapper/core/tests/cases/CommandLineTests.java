@@ -1,27 +1,36 @@
 package net.sourceforge.vrapper.core.tests.cases;
 
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.key;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 
 import net.sourceforge.vrapper.core.tests.utils.DumbPosition;
 import net.sourceforge.vrapper.core.tests.utils.TestSearchService;
 import net.sourceforge.vrapper.core.tests.utils.VimTestCase;
+import net.sourceforge.vrapper.platform.CommandQueueService;
 import net.sourceforge.vrapper.platform.Configuration.Option;
 import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.utils.SubstitutionDefinition;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAttachment;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
@@ -35,10 +44,12 @@ import net.sourceforge.vrapper.vim.commands.TextObject;
 import net.sourceforge.vrapper.vim.commands.TextOperation;
 import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.modes.ConfirmSubstitutionMode;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
 import net.sourceforge.vrapper.vim.modes.commandline.CommandLineMode;
 import net.sourceforge.vrapper.vim.modes.commandline.CommandLineParser;
 import net.sourceforge.vrapper.vim.modes.commandline.ComplexOptionEvaluator;
+import net.sourceforge.vrapper.vim.modes.commandline.MessageMode;
 import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
 import net.sourceforge.vrapper.vim.register.RegisterManager;
 
@@ -124,6 +135,34 @@ public class CommandLineTests extends VimTestCase {
         assertEquals("one  three two", content.getText());
     }
     
+    @Test
+    public void testConfirmSubstitutionReplaceAll() throws CommandExecutionException {
+        registerManager = new DefaultRegisterManager();
+        when(platform.getSearchAndReplaceService()).thenReturn(new TestSearchService(content, configuration));
+        reloadEditorAdaptor();
+
+        // Skip the first match, replace the second one, then all the rest at once.
+        content.setText("foo foo\nfoo bar foo\nbaz foo foo\nfoo");
+        adaptor.changeModeSafely(ConfirmSubstitutionMode.NAME, new ConfirmSubstitutionMode.SubstitutionConfirm(
+                new SubstitutionDefinition("s/foo/xy/gc", registerManager), 0, 2));
+        assertEquals(0, adaptor.getPosition().getModelOffset());
+        adaptor.handleKey(key('n'));
+        adaptor.handleKey(key('y'));
+        assertEquals(7, adaptor.getPosition().getModelOffset());
+        adaptor.handleKey(key('a'));
+        assertEquals("foo xy\nxy bar xy\nbaz xy xy\nfoo", content.getText());
+        assertEquals(24, adaptor.getPosition().getModelOffset());
+        assertEquals(NormalMode.NAME, adaptor.getCurrentModeName());
+
+        // Without 'g' only the first match of every line is replaced.
+        content.setText("foo foo\nfoo foo\nfoo");
+        adaptor.changeModeSafely(ConfirmSubstitutionMode.NAME, new ConfirmSubstitutionMode.SubstitutionConfirm(
+                new SubstitutionDefinition("s/foo/x/c", registerManager), 0, 3));
+        adaptor.handleKey(key('a'));
+        assertEquals("x foo\nx foo\nx", content.getText());
+        assertEquals(12, adaptor.getPosition().getModelOffset());
+    }
+
     private SubstitutionOperation makeSubstitution(String command) {
         SubstitutionDefinition definition = new SubstitutionDefinition(command, registerManager);
         return new SubstitutionOperation(definition);
@@ -481,6 +520,89 @@ public class CommandLineTests extends VimTestCase {
         assertEquals("mine\nm\t\tnew\tline\nm\tABC", content.getText());
     }
     
+    @Test
+    public void testNormalCommandCompiled() throws CommandExecutionException {
+        installSaneRegisterManager();
+        adaptor.changeModeSafely(NormalMode.NAME);
+        content.setText("foo\nbar\nbaz\nqux");
+        runCommand("%normal A;");
+        assertEquals("foo;\nbar;\nbaz;\nqux;", content.getText());
+        assertEquals(NormalMode.NAME, adaptor.getCurrentModeName());
+        // Insert mode ran on the last line, so . repeats the insertion.
+        adaptor.setPosition(new DumbPosition(0), StickyColumnPolicy.NEVER);
+        type(parseKeyStrokes("."));
+        assertEquals("foo;;\nbar;\nbaz;\nqux;", content.getText());
+
+        content.setText("foo\nbar\nbaz");
+        runCommand("%normal I# <Esc>x$");
+        assertEquals("#foo\n#bar\n#baz", content.getText());
+        assertEquals(13, adaptor.getPosition().getModelOffset());
+
+        // Operators which enter insert mode get the remaining keys like typed keys.
+        content.setText("foo bar\nfoo baz");
+        runCommand("%normal cwxy<Esc>w~");
+        assertEquals("xy Bar\nxy Baz", content.getText());
+    }
+
+    @Test
+    public void testNormalCommandRunsCommandQueue() throws CommandExecutionException {
+        final Queue<Runnable> pending = new LinkedList<Runnable>();
+        final List<String> seen = new ArrayList<String>();
+        when(serviceProvider.getService(CommandQueueService.class)).thenReturn(
+                new CommandQueueService() {
+                    public void flush() {
+                        while ( ! pending.isEmpty()) {
+                            pending.poll().run();
+                        }
+                    }
+                });
+        pending.add(new Runnable() {
+            public void run() {
+                seen.add(content.getText());
+            }
+        });
+        content.setText("ab\ncd");
+        runCommand("%normal x");
+        // The queued command ran before the first key.
+        assertEquals(Arrays.asList("ab\ncd"), seen);
+        assertTrue(pending.isEmpty());
+        assertEquals("b\nd", content.getText());
+    }
+
+    private void runCommand(String command) throws CommandExecutionException {
+        CommandLineParser parser = ((CommandLineMode) adaptor.getMode(CommandLineMode.NAME)).createParser();
+        Command parsed = parser.parseAndExecute(null, command);
+        if (parsed != null) {
+            parsed.execute(adaptor);
+        }
+    }
+
+    private static class CountingAttachment implements EditorAttachment {
+        int closed;
+
+        public void editorClosed(EditorAdaptor editorAdaptor) {
+            closed++;
+        }
+    }
+
+    @Test
+    public void testEditorAttachments() throws CommandExecutionException {
+        CountingAttachment attachment = new CountingAttachment();
+        adaptor.setAttachment(CountingAttachment.class, attachment);
+        assertSame(attachment, adaptor.getAttachment(CountingAttachment.class));
+        assertEquals(1, adaptor.getAttachments().size());
+
+        runCommand("debugeditors");
+        assertEquals(MessageMode.NAME, adaptor.getCurrentModeName());
+
+        adaptor.editorClosed();
+        adaptor.editorClosed();
+        assertTrue(adaptor.isClosed());
+        assertEquals(1, attachment.closed);
+        assertNull(adaptor.getAttachment(CountingAttachment.class));
+        assertTrue(adaptor.getAttachments().isEmpty());
+    }
+
     @Test
     public void testLetRegisterContents() throws CommandExecutionException {
         type(parseKeyStrokes(":let @x=foo<CR>"));
@@ -0,0 +1,93 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.vrapper.core.tests.utils.VimTestCase;
+import net.sourceforge.vrapper.platform.Configuration.Option;
+import net.sourceforge.vrapper.platform.SimpleConfiguration;
+import net.sourceforge.vrapper.vim.DefaultConfigProvider;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
+import net.sourceforge.vrapper.vim.SimpleLocalConfiguration;
+import net.sourceforge.vrapper.vim.modes.NormalMode;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigurationTests extends VimTestCase {
+
+    @Before
+    public void activateNormalMode() {
+        adaptor.changeModeSafely(NormalMode.NAME);
+    }
+
+    @Test
+    public void testConfigurationCaching() {
+        final int[] tabStop = { 4 };
+        DefaultConfigProvider provider = new DefaultConfigProvider() {
+            @SuppressWarnings("unchecked")
+            public <T> T getDefault(Option<T> option) {
+                return Options.TAB_STOP.equals(option) ? (T) Integer.valueOf(tabStop[0]) : null;
+            }
+        };
+        List<DefaultConfigProvider> providers = Collections.singletonList(provider);
+        List<DefaultConfigProvider> noProviders = Collections.emptyList();
+        SimpleGlobalConfiguration global = new SimpleGlobalConfiguration(noProviders);
+        SimpleLocalConfiguration local = new SimpleLocalConfiguration(providers, global);
+
+        Assert.assertEquals(Integer.valueOf(4), local.get(Options.TAB_STOP));
+        Assert.assertEquals(Boolean.FALSE, local.get(Options.IGNORE_CASE));
+
+        // Cached value is dropped once providers announce a change.
+        tabStop[0] = 8;
+        SimpleConfiguration.defaultsChanged();
+        Assert.assertEquals(Integer.valueOf(8), local.get(Options.TAB_STOP));
+
+        // Setting a value in the shared configuration is visible through the local one.
+        global.set(Options.IGNORE_CASE, Boolean.TRUE);
+        Assert.assertEquals(Boolean.TRUE, local.get(Options.IGNORE_CASE));
+        Assert.assertFalse(local.isSet(Options.IGNORE_CASE));
+
+        local.setLocal(Options.IGNORE_CASE, Boolean.FALSE);
+        Assert.assertEquals(Boolean.FALSE, local.get(Options.IGNORE_CASE));
+        Assert.assertEquals(Boolean.TRUE, global.get(Options.IGNORE_CASE));
+
+        local.set(Options.TAB_STOP, 2);
+        Assert.assertEquals(Integer.valueOf(2), local.get(Options.TAB_STOP));
+        Assert.assertEquals(Integer.valueOf(2), global.get(Options.TAB_STOP));
+    }
+
+    @Test
+    public void testSetInvalidatesCachedValues() {
+        Assert.assertEquals(Integer.valueOf(8), configuration.get(Options.TAB_STOP));
+        Assert.assertEquals(Integer.valueOf(8), configuration.get(Options.SHIFT_WIDTH));
+
+        type(parseKeyStrokes(":set ts=4<CR>"));
+        Assert.assertEquals(Integer.valueOf(4), configuration.get(Options.TAB_STOP));
+
+        type(parseKeyStrokes(":setlocal ts=2<CR>"));
+        type(parseKeyStrokes(":setlocal sw=3<CR>"));
+        Assert.assertEquals(Integer.valueOf(2), configuration.get(Options.TAB_STOP));
+        Assert.assertEquals(Integer.valueOf(3), configuration.get(Options.SHIFT_WIDTH));
+
+        // Like in Vim, :set changes the local value as well.
+        type(parseKeyStrokes(":set ts=6<CR>"));
+        Assert.assertEquals(Integer.valueOf(6), configuration.get(Options.TAB_STOP));
+        Assert.assertEquals(Integer.valueOf(3), configuration.get(Options.SHIFT_WIDTH));
+        type(parseKeyStrokes(":set tw=40<CR>"));
+        Assert.assertEquals(Integer.valueOf(40), configuration.get(Options.TEXT_WIDTH));
+    }
+
+    @Test
+    public void testStubAfterCachedRead() {
+        Assert.assertEquals(Boolean.FALSE, configuration.get(Options.EXPAND_TAB));
+        when(configuration.get(Options.EXPAND_TAB)).thenReturn(true);
+        Assert.assertEquals(Boolean.TRUE, configuration.get(Options.EXPAND_TAB));
+        Assert.assertEquals(Integer.valueOf(8), configuration.get(Options.TAB_STOP));
+    }
+}
@@ -0,0 +1,46 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import net.sourceforge.vrapper.platform.SearchAndReplaceService;
+import net.sourceforge.vrapper.utils.ExTextTransform;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ExTextTransformTests {
+
+    @Test
+    public void testExTextTransform() {
+        EditorAdaptor vim = Mockito.mock(EditorAdaptor.class);
+        SearchAndReplaceService search = Mockito.mock(SearchAndReplaceService.class);
+        Mockito.when(vim.getSearchAndReplaceService()).thenReturn(search);
+        Mockito.when(search.isCaseSensitive(Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+        Mockito.when(vim.getRegisterManager()).thenReturn(new DefaultRegisterManager());
+
+        String text = "foo bar\r\nkeep Foo\r\nfoo foo";
+        Assert.assertEquals("x bar\r\nkeep Foo\r\nx x",
+                ExTextTransform.parse("%s/foo/x/g", vim).apply(text));
+        Assert.assertEquals("foo\r\nbar\r\nkeep\r\nFoo\r\nfoo\r\nfoo",
+                ExTextTransform.parse(":%s/(\\w+) /$1\\R/g", vim).apply(text));
+        Assert.assertEquals("keep Foo", ExTextTransform.parse("g/^foo/d", vim).apply(text));
+        Assert.assertEquals("foo bar\r\nfoo foo", ExTextTransform.parse("v/foo/d", vim).apply(text));
+        Assert.assertEquals("foo bar\r\nkeep x\r\nfoo foo",
+                ExTextTransform.parse("g!/^foo/s/Foo/x/", vim).apply(text));
+        Assert.assertNull(ExTextTransform.parse("%s/missing/x/", vim).apply(text));
+
+        // Only file-local commands without user interaction are supported.
+        Assert.assertNull(ExTextTransform.parse("s/foo/x/", vim));
+        Assert.assertNull(ExTextTransform.parse("%s/foo/x/c", vim));
+        Assert.assertNull(ExTextTransform.parse("g/foo/normal x", vim));
+        Assert.assertNull(ExTextTransform.parse("set hlsearch", vim));
+        try {
+            ExTextTransform.parse("g/foo", vim);
+            Assert.fail("Missing separator not detected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+}
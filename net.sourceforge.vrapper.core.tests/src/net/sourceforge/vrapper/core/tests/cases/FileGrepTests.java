@@ -0,0 +1,122 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.utils.FileGrep;
+import net.sourceforge.vrapper.utils.QuickfixList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileGrepTests {
+
+    @Test
+    public void testGlobToPattern() {
+        Assert.assertTrue(FileGrep.globToPattern("**/*.java").matcher("A.java").matches());
+        Assert.assertTrue(FileGrep.globToPattern("**/*.java").matcher("src/a/B.java").matches());
+        Assert.assertFalse(FileGrep.globToPattern("src/*.java").matcher("src/a/B.java").matches());
+        Assert.assertTrue(FileGrep.globToPattern("src/?.txt").matcher("src/a.txt").matches());
+        Assert.assertFalse(FileGrep.globToPattern("*.java").matcher("Ajava").matches());
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        File first = createTempFile("foo\nbar foo foo\n");
+        File second = createTempFile("nothing here\r\nfoo");
+        File binary = createTempFile("foo\u0000\n");
+        try {
+            QuickfixList list = new QuickfixList();
+            list.reset("test");
+            FileGrep grep = new FileGrep(Pattern.compile("foo"), true, list, null);
+            list.setSearch(grep);
+            grep.start(Arrays.asList(
+                    new FileGrep.Target("/p/first", first, null),
+                    new FileGrep.Target("/p/second", second, null),
+                    new FileGrep.Target("/p/binary", binary, null)));
+            Assert.assertTrue(grep.awaitCompletion(10000));
+            Assert.assertFalse(list.isSearching());
+            Assert.assertEquals(4, grep.getMatchCount());
+            Assert.assertEquals(2, grep.getMatchingFileCount());
+            Assert.assertEquals(Arrays.asList(
+                    "/p/first|1 col 1| foo",
+                    "/p/first|2 col 5| bar foo foo",
+                    "/p/first|2 col 9| bar foo foo",
+                    "/p/second|2 col 1| foo"), toStrings(list));
+
+            Assert.assertNull(list.move(-1));
+            Assert.assertSame(list.getEntries().get(0), list.move(1));
+            Assert.assertSame(list.getEntries().get(3), list.move(5));
+            Assert.assertNull(list.move(1));
+            Assert.assertSame(list.getEntries().get(2), list.move(-1));
+
+            list.reset("other");
+            Assert.assertEquals(0, list.size());
+            Assert.assertNull(list.getCurrent());
+        } finally {
+            first.delete();
+            second.delete();
+            binary.delete();
+        }
+    }
+
+    @Test
+    public void testMatchesInTargetOrder() throws Exception {
+        // A big first file finishes last, its matches still come first.
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            big.append("no match on this line\n");
+        }
+        big.append("foo\n");
+        List<FileGrep.Target> targets = new ArrayList<FileGrep.Target>();
+        targets.add(new FileGrep.Target("/p/big", big.toString()));
+        List<String> expected = new ArrayList<String>();
+        expected.add("/p/big|20001 col 1| foo");
+        for (int i = 0; i < 20; i++) {
+            targets.add(new FileGrep.Target("/p/small" + i, "x foo"));
+            expected.add("/p/small" + i + "|1 col 3| x foo");
+        }
+        QuickfixList list = new QuickfixList();
+        FileGrep grep = new FileGrep(Pattern.compile("foo"), false, list, null);
+        grep.start(targets);
+        Assert.assertTrue(grep.awaitCompletion(10000));
+        Assert.assertEquals(expected, toStrings(list));
+        Assert.assertEquals(21, grep.getMatchingFileCount());
+    }
+
+    @Test
+    public void testTextTarget() throws Exception {
+        QuickfixList list = new QuickfixList();
+        FileGrep grep = new FileGrep(Pattern.compile("foo"), false, list, null);
+        // Open files are searched in the text of their editor.
+        grep.start(Arrays.asList(new FileGrep.Target("/p/file", "changed\r\nfoo in editor")));
+        Assert.assertTrue(grep.awaitCompletion(10000));
+        Assert.assertEquals(Arrays.asList("/p/file|2 col 1| foo in editor"), toStrings(list));
+    }
+
+    private static List<String> toStrings(QuickfixList list) {
+        List<String> result = new ArrayList<String>();
+        for (QuickfixList.Entry entry : list.getEntries()) {
+            result.add(entry.toString());
+        }
+        return result;
+    }
+
+    private static File createTempFile(String content) throws IOException {
+        File file = File.createTempFile("vrapper-grep", ".txt");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,183 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.vrapper.headless.HeadlessEditor;
+import net.sourceforge.vrapper.headless.HeadlessTextContent;
+import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeadlessEditorTests {
+
+    private boolean readRcFile;
+    private final List<File> files = new ArrayList<File>();
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() {
+        readRcFile = DefaultEditorAdaptor.SHOULD_READ_RC_FILE;
+        DefaultEditorAdaptor.SHOULD_READ_RC_FILE = false;
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() {
+        DefaultEditorAdaptor.SHOULD_READ_RC_FILE = readRcFile;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testHeadlessEditor() {
+        HeadlessEditor editor = new HeadlessEditor("foo bar\r\nbaz\r\nqux");
+        HeadlessTextContent content = editor.getPlatform().getModelContent();
+        Assert.assertEquals(3, content.getNumberOfLines());
+        Assert.assertEquals(9, content.getLineInformation(1).getBeginOffset());
+        Assert.assertEquals(3, content.getLineInformation(1).getLength());
+        Assert.assertEquals(1, content.getLineInformationOfOffset(10).getNumber());
+
+        editor.type("jdd");
+        Assert.assertEquals("foo bar\r\nqux", editor.getText());
+        Assert.assertEquals(2, content.getNumberOfLines());
+        editor.type("ggxAend<Esc>");
+        Assert.assertEquals("oo barend\r\nqux", editor.getText());
+        editor.type("u");
+        Assert.assertEquals("oo bar\r\nqux", editor.getText());
+        editor.type("o1<CR>2<Esc>");
+        Assert.assertEquals("oo bar\r\n1\r\n2\r\nqux", editor.getText());
+        Assert.assertEquals(4, content.getNumberOfLines());
+
+        editor.type(":%s/\\d/n/g<CR>");
+        Assert.assertEquals("oo bar\r\nn\r\nn\r\nqux", editor.getText());
+        editor.type("ggmaGdd'ax");
+        Assert.assertEquals("o bar\r\nn\r\nn", editor.getText());
+        editor.type("/n<CR>r-");
+        Assert.assertEquals("o bar\r\n-\r\nn", editor.getText());
+        editor.type("ggJ");
+        Assert.assertEquals("o bar -\r\nn", editor.getText());
+        Assert.assertEquals(2, content.getNumberOfLines());
+    }
+
+    @Test
+    public void testLineStartsAtEdgesOfEdits() {
+        // Line breaks made or broken up right at the start or end of an edit.
+        assertLineStarts("a\rb", 2, 0, "\n");
+        assertLineStarts("a\r", 2, 0, "\n");
+        assertLineStarts("a\r\nb", 2, 1, "");
+        assertLineStarts("a\r\nb", 1, 1, "");
+        assertLineStarts("a\r\nb", 2, 0, "x");
+        assertLineStarts("ab\nc", 2, 0, "\r");
+        assertLineStarts("a\r\nb\r\nc", 1, 5, "\r");
+        assertLineStarts("a\r\nb\r\nc", 0, 3, "x\r");
+        assertLineStarts("\r\n\r\n", 0, 4, "\n\r\n\r");
+        assertLineStarts("a\r\nb", 3, 1, "\r\n\r\n");
+    }
+
+    @Test
+    public void testMainWithStdin() throws IOException {
+        Assert.assertEquals(0, run("foo\r\nfoo bar", "-c", ":%s/foo/x/g<CR>", "-c", "Gdw"));
+        Assert.assertEquals("x\r\nbar", out.toString("UTF-8"));
+        Assert.assertEquals("", err.toString("UTF-8"));
+
+        // An error makes the exit status non-zero.
+        out.reset();
+        Assert.assertEquals(1, run("foo", "-c", ":s/bar/x/<CR>"));
+        Assert.assertEquals("foo", out.toString("UTF-8"));
+        Assert.assertTrue(err.toString("UTF-8").contains("not found"));
+    }
+
+    @Test
+    public void testMainWithFiles() throws IOException {
+        File script = createFile(":%s/a/b/g\nx");
+        File rc = createFile("nmap Q dd");
+        File first = createFile("a\na\nc");
+        File second = createFile("c");
+        Assert.assertEquals(1, run("", "-u", rc.getPath(), "-s", script.getPath(), "-c", "Q",
+                first.getPath(), second.getPath()));
+        Assert.assertEquals("b\nc", read(first));
+        Assert.assertEquals("", read(second));
+        // With several files the messages tell which one failed.
+        Assert.assertTrue(err.toString("UTF-8").startsWith(second.getPath() + ": "));
+
+        err.reset();
+        Assert.assertEquals(1, run("", "-c", "x", new File(first.getPath() + ".missing").getPath()));
+        Assert.assertTrue(err.toString("UTF-8").length() > 0);
+        Assert.assertFalse(DefaultEditorAdaptor.SHOULD_READ_RC_FILE);
+    }
+
+    @Test
+    public void testMainUsage() throws IOException {
+        Assert.assertEquals(2, run(""));
+        Assert.assertEquals(2, run("", "-c"));
+        Assert.assertEquals(2, run("", "-x", "-c", "x"));
+        Assert.assertTrue(err.toString("UTF-8").startsWith("Usage:"));
+    }
+
+    /** Compares the line starts after an edit with those of the same text set at once. */
+    private static void assertLineStarts(String text, int index, int length, String s) {
+        HeadlessTextContent edited = new HeadlessTextContent();
+        edited.setText(text);
+        edited.replace(index, length, s);
+        HeadlessTextContent expected = new HeadlessTextContent();
+        expected.setText(edited.getText());
+        String message = "replacing " + length + " at " + index + " in " + text.replace("\r", "\\r")
+                .replace("\n", "\\n");
+        Assert.assertEquals(message, expected.getNumberOfLines(), edited.getNumberOfLines());
+        for (int i = 0; i < expected.getNumberOfLines(); i++) {
+            Assert.assertEquals(message, expected.getLineInformation(i).getBeginOffset(),
+                    edited.getLineInformation(i).getBeginOffset());
+            Assert.assertEquals(message, expected.getLineInformation(i).getLength(),
+                    edited.getLineInformation(i).getLength());
+        }
+    }
+
+    private int run(String stdin, String... args) throws IOException {
+        InputStream in = new ByteArrayInputStream(stdin.getBytes("UTF-8"));
+        return HeadlessEditor.run(args, in, new PrintStream(out, true, "UTF-8"),
+                new PrintStream(err, true, "UTF-8"));
+    }
+
+    private File createFile(String text) throws IOException {
+        File file = File.createTempFile("vrapper", ".txt");
+        files.add(file);
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(text.getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+}
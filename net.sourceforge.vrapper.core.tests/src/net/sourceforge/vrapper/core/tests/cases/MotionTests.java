@@ -1,6 +1,13 @@
 package net.sourceforge.vrapper.core.tests.cases;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
 import net.sourceforge.vrapper.core.tests.utils.CommandTestCase;
+import net.sourceforge.vrapper.platform.CodeStructureService;
+import net.sourceforge.vrapper.platform.PartitionService;
+import net.sourceforge.vrapper.utils.CodeStructure;
+import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.vim.commands.motions.FindMotion;
 import net.sourceforge.vrapper.vim.commands.motions.GoToLineMotion;
 import net.sourceforge.vrapper.vim.commands.motions.MethodDeclarationMotion;
@@ -977,6 +984,45 @@ public class MotionTests extends CommandTestCase {
 				"no declar", 'a', "tions");
 	}
 	
+	@Test
+	public void testMethodDeclarationMotionWithCodeStructure() {
+		// the language plugin isn't fooled by the brace in the string
+		final CodeStructure structure = new CodeStructure.Builder()
+				.addMethod(31, 33)
+				.addMethod(6, 15)
+				.build();
+		when(serviceProvider.getService(CodeStructureService.class)).thenReturn(
+				new CodeStructureService() {
+					public CodeStructure getCodeStructure() {
+						return structure;
+					}
+				});
+		checkMotion(MethodDeclarationMotion.NEXT_END,
+				"{ m() { s", ' ', "\"}\"; } class I { n() { } } }",
+				"{ m() { s \"}\"; ", '}', " class I { n() { } } }");
+		checkMotion(MethodDeclarationMotion.NEXT_START,
+				"{ m() { s \"}\"; ", '}', " class I { n() { } } }",
+				"{ m() { s \"}\"; } class I { n() ", '{', " } } }");
+		checkMotion(MethodDeclarationMotion.PREV_START,
+				"{ m() { s \"}\"; } class I { n() { } } ", '}', "",
+				"{ m() { s \"}\"; } class I { n() ", '{', " } } }");
+		checkMotion(MethodDeclarationMotion.PREV_END,
+				"{ m() { s \"}\"; } class I { n() { ", '}', " } }",
+				"{ m() { s \"}\"; ", '}', " class I { n() { } } }");
+
+		content.setText("{ a { { } } b { c { } } }");
+		CodeStructure scanned = CodeStructure.scanBraces(content);
+		assertEquals(4, scanned.nextStart(0));
+		assertEquals(14, scanned.nextStart(4));
+		assertEquals(10, scanned.nextEnd(4));
+		assertEquals(22, scanned.previousEnd(24));
+		assertEquals(-1, scanned.previousStart(4));
+		TextRange method = scanned.enclosingMethod(cursorAndSelection, 17);
+		assertEquals(14, method.getStart().getModelOffset());
+		assertEquals(22, method.getEnd().getModelOffset());
+		assertNull(scanned.enclosingMethod(cursorAndSelection, 12));
+	}
+
 	@Test
 	public void testPercentMatch() {
 		Motion parenthesesMove = ParenthesesMove.INSTANCE;
@@ -1056,6 +1102,46 @@ public class MotionTests extends CommandTestCase {
 			"",'[',"match",
 			"",'[',"match");
 	}
+
+	@Test
+	public void testPercentMatchSkipsCommentsAndStrings() {
+		// f(a, ")", b) // (
+		final int[][] nonCode = { { 5, 8 }, { 13, 17 } };
+		when(serviceProvider.getService(PartitionService.class)).thenReturn(
+				new PartitionService() {
+					private int[] find(int offset) {
+						for (int[] partition : nonCode) {
+							if (offset >= partition[0] && offset < partition[1]) {
+								return partition;
+							}
+						}
+						return null;
+					}
+					public boolean isCode(int offset) {
+						return find(offset) == null;
+					}
+					public int getPartitionStart(int offset) {
+						return isCode(offset) ? offset : find(offset)[0];
+					}
+					public int getPartitionEnd(int offset) {
+						return isCode(offset) ? offset + 1 : find(offset)[1];
+					}
+				});
+		checkMotion(ParenthesesMove.INSTANCE,
+				"f",'(',"a, \")\", b) // (",
+				"f(a, \")\", b",')'," // (");
+		checkMotion(ParenthesesMove.INSTANCE,
+				"f(a, \")\", b",')'," // (",
+				"f",'(',"a, \")\", b) // (");
+		// the comment the cursor is in is searched like code
+		checkMotion(ParenthesesMove.INSTANCE,
+				"f(a, \")\", b) // ",'(',"",
+				"f(a, \")\", b) // ",'(',"");
+		// f finds characters anywhere
+		checkMotion(new FindMotion(')', true, false),
+				"",'f',"(a, \")\", b) // (",
+				"f(a, \"",')',"\", b) // (");
+	}
 	
 	@Test
 	public void testParenthesesMatching() {
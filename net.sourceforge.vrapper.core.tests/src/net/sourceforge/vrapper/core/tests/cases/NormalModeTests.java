@@ -23,6 +23,7 @@ import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 import net.sourceforge.vrapper.vim.commands.DeleteOperation;
 import net.sourceforge.vrapper.vim.commands.MotionTextObject;
 import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
+import net.sourceforge.vrapper.vim.commands.VimCommandSequence;
 import net.sourceforge.vrapper.vim.commands.motions.MoveWordRight;
 import net.sourceforge.vrapper.vim.modes.CommandBasedMode;
 import net.sourceforge.vrapper.vim.modes.InsertMode;
@@ -571,6 +572,20 @@ public class NormalModeTests extends CommandTestCase {
 				"A",'k',"ota i psa");
 	}
 
+	@Test public void test_dotWithCountIsBatched() {
+		Command dw = new TextOperationTextObjectCommand(DeleteOperation.INSTANCE, new MotionTextObject(MoveWordRight.INSTANCE));
+		when(registerManager.getLastEdit()).thenReturn(new VimCommandSequence(dw));
+		checkCommand(forKeySeq("."),
+				"A",'l',"a ma kota i psa",
+				"A",'m',"a kota i psa");
+		verify(viewportService, never()).beginBatchEdit();
+		checkCommand(forKeySeq("2."),
+				"A",'l',"a ma kota i psa",
+				"A",'k',"ota i psa");
+		verify(viewportService).beginBatchEdit();
+		verify(viewportService).endBatchEdit();
+	}
+
 	@Test public void test_r() {
 	    checkCommand(forKeySeq("ry"),
 	            "Ala ma kot",'a',"",
@@ -1467,6 +1482,31 @@ public class NormalModeTests extends CommandTestCase {
         checkCommand(forKeySeq("gqq"),
                 "\t/* this",' ',"line will be split multiple times to fit textwidth */",
                 "", '\t', "/* this line will be\n\t* split multiple times\n\t* to fit textwidth */\n");
+
+        // Paragraphs which don't change keep their line breaks.
+        configuration.set(Options.TEXT_WIDTH, 22);
+        checkCommand(forKeySeq("gqG"),
+                "",'s',"hort line\r\nsecond one\n\nthis one is too long to fit",
+                "",'s',"hort line second one\n\nthis one is too long\nto fit\n");
+        checkCommand(forKeySeq("gqG"),
+                "",'s',"hort\r\n\r\nthis one is too long to fit",
+                "",'s',"hort\r\n\r\nthis one is too long\nto fit\n");
+	}
+
+	@Test
+	public void test_gq_optimal() {
+		configuration.set(Options.TEXT_WIDTH, 6);
+        checkCommand(forKeySeq("gqq"),
+                "",'a',"aa bb cc ddddd",
+                "",'a',"aa bb\ncc\nddddd\n");
+
+        when(configuration.get(Options.OPTIMAL_FORMAT)).thenReturn(true);
+        checkCommand(forKeySeq("gqq"),
+                "",'a',"aa bb cc ddddd",
+                "",'a',"aa\nbb cc\nddddd\n");
+        checkCommand(forKeySeq("gqq"),
+                "# ",'a',"aa bb cc ddddd",
+                "",'#'," aaa\n# bb\n# cc\n# ddddd\n");
 	}
 	
 	@Test
@@ -0,0 +1,77 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import net.sourceforge.vrapper.core.tests.utils.TestTextContent;
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.utils.OffsetHistory;
+import net.sourceforge.vrapper.utils.OffsetTracker;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class OffsetTrackerTests {
+
+    @Test
+    public void testOffsetTracker() {
+        OffsetTracker tracker = new OffsetTracker();
+        OffsetTracker.Entry a = tracker.add(2);
+        OffsetTracker.Entry b = tracker.add(10);
+        OffsetTracker.Entry c = tracker.add(5);
+        OffsetTracker.Entry d = tracker.add(20);
+
+        // Insertion at an entry moves it along, entries before stay.
+        tracker.update(5, 0, 3);
+        Assert.assertEquals(2, tracker.getOffset(a));
+        Assert.assertEquals(8, tracker.getOffset(c));
+        Assert.assertEquals(13, tracker.getOffset(b));
+        Assert.assertEquals(23, tracker.getOffset(d));
+
+        // Entries inside removed text are deleted, the one at its start survives.
+        tracker.update(8, 6, 0);
+        Assert.assertEquals(8, tracker.getOffset(c));
+        Assert.assertTrue(b.isDeleted());
+        Assert.assertEquals(-1, tracker.getOffset(b));
+        Assert.assertEquals(17, tracker.getOffset(d));
+
+        // Changes before the gap and entries added behind it.
+        OffsetTracker.Entry e = tracker.add(18);
+        tracker.update(0, 1, 4);
+        Assert.assertEquals(5, tracker.getOffset(a));
+        Assert.assertEquals(20, tracker.getOffset(d));
+        Assert.assertEquals(21, tracker.getOffset(e));
+        tracker.remove(d);
+        tracker.update(19, 0, 1);
+        Assert.assertEquals(22, tracker.getOffset(e));
+        Assert.assertEquals(3, tracker.size());
+    }
+
+    @Test
+    public void testOffsetHistory() {
+        // The oldest entries are dropped when the history is full.
+        OffsetTracker tracker = new OffsetTracker();
+        TestTextContent content = new TestTextContent(Mockito.mock(CursorService.class));
+        content.setText("a\nb\nc\nd\ne\n");
+        OffsetHistory history = new OffsetHistory(tracker, 3);
+        history.add(0);
+        history.add(2);
+        history.add(4);
+        history.add(6);
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(2, history.get(0));
+        Assert.assertEquals(6, history.getLast());
+        Assert.assertEquals(3, tracker.size());
+
+        // Going back in the jump list remembers where we came from.
+        history.clear();
+        history.addJump(content, 0);
+        history.addJump(content, 4);
+        history.addJump(content, 1);
+        Assert.assertEquals(2, history.size());
+        Assert.assertEquals(1, history.jumpBack(content, 1, 8));
+        Assert.assertEquals(4, history.jumpBack(content, 1, 8));
+        Assert.assertEquals(-1, history.jumpBack(content, 1, 8));
+        Assert.assertEquals(8, history.jumpForward(2));
+        Assert.assertEquals(-1, history.jumpForward(1));
+    }
+
+}
@@ -0,0 +1,112 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.core.tests.utils.TestTextContent;
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.utils.RegexSearch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class RegexSearchTests {
+
+    @Test
+    public void testRegexSearch() {
+        Pattern foo = Pattern.compile("foo");
+        String text = "foo bar foo baz";
+        Assert.assertEquals(8, RegexSearch.findForward(foo, text, 1, text.length()).start());
+        Assert.assertNull(RegexSearch.findForward(foo, text, 9, text.length()));
+        Assert.assertNull(RegexSearch.findForward(foo, text, 1, 10));
+        Assert.assertEquals(0, RegexSearch.findBackward(foo, text, 0, 10).start());
+        Assert.assertEquals(8, RegexSearch.findBackward(foo, text, 0, 11).start());
+        Assert.assertNull(RegexSearch.findBackward(foo, text, 1, 10));
+        // Overlapping matches and empty matches.
+        Assert.assertEquals(1, RegexSearch.findBackward(Pattern.compile("aa"), "aaa", 0, 3).start());
+        Assert.assertEquals(4, RegexSearch.findForward(Pattern.compile("o*"), "aaa oo", 0, 6).start());
+        // Word boundaries see the text outside of the region.
+        Assert.assertNull(RegexSearch.findForward(Pattern.compile("\\bar"), text, 5, text.length()));
+
+        // Backward search over more than one chunk.
+        StringBuilder sb = new StringBuilder("x needle");
+        for (int i = 0; i < 10000; i++) {
+            sb.append(" hay");
+        }
+        MatchResult needle = RegexSearch.findBackward(Pattern.compile("ne+dle"), sb, 0, sb.length());
+        Assert.assertEquals(2, needle.start());
+        Assert.assertEquals(8, needle.end());
+
+        List<String> found = new ArrayList<String>();
+        for (MatchResult match : RegexSearch.matches(Pattern.compile("(\\w)\\w*"), text, 4, 15)) {
+            found.add(match.group(1));
+        }
+        Assert.assertEquals(Arrays.asList("b", "f", "b"), found);
+
+        StringBuilder replaced = new StringBuilder();
+        Matcher m = Pattern.compile("(\\w+) (\\w+)").matcher("foo bar");
+        Assert.assertTrue(m.find());
+        RegexSearch.appendReplacement(replaced, m, "$2\\R\\1\\t\\$", "\r\n");
+        Assert.assertEquals("bar\r\nfoo\t$", replaced.toString());
+    }
+
+    @Test
+    public void testRetainCase() {
+        Pattern foo = Pattern.compile("foo", Pattern.CASE_INSENSITIVE);
+        Assert.assertEquals("BAR", replace(foo, "FOO", "\\Cbar"));
+        Assert.assertEquals("bar", replace(foo, "foo", "\\CBar"));
+        Assert.assertEquals("Bar", replace(foo, "Foo", "\\Cbar"));
+        Assert.assertEquals("bAr", replace(foo, "fOo", "\\CbAr"));
+        // Only what follows \C retains the case, groups included.
+        Assert.assertEquals("x-FOO", replace(Pattern.compile("\\w+"), "FOO", "x-\\C$0"));
+        Assert.assertEquals("x-FOOBAR", replace(Pattern.compile("\\w+"), "FOO", "x-\\C$0bar"));
+    }
+
+    @Test
+    public void testMatchesReadFromText() {
+        // The match keeps offsets only, its groups come from the text as it is now.
+        StringBuilder text = new StringBuilder("foo bar");
+        MatchResult match = RegexSearch.findForward(Pattern.compile("(b)ar"), text, 0, text.length());
+        Assert.assertEquals("bar", match.group());
+        Assert.assertEquals("b", match.group(1));
+        Assert.assertEquals(1, match.groupCount());
+        MatchResult optional = RegexSearch.findForward(Pattern.compile("(x)?bar"), text, 0, text.length());
+        Assert.assertNull(optional.group(1));
+        Assert.assertEquals(-1, optional.start(1));
+    }
+
+    @Test
+    public void testSubstituteAll() {
+        TestTextContent content = Mockito.spy(new TestTextContent(Mockito.mock(CursorService.class)));
+        content.setText("foo foo\r\nfoo bar\r\nfoo");
+        Pattern foo = Pattern.compile("f(o+)");
+        // Every match is replaced on its own, the text in between is left alone.
+        Assert.assertEquals(20, RegexSearch.substituteAll(content, foo, content.getText(), 4, 21,
+                "x$1x", true, "\n"));
+        Assert.assertEquals("foo xoox\r\nxoox bar\r\nxoox", content.getText());
+        Mockito.verify(content).replace(4, 3, "xoox");
+        Mockito.verify(content).replace(10, 3, "xoox");
+        Mockito.verify(content).replace(20, 3, "xoox");
+
+        // Only the first match of each line without the global flag, none ending after the end.
+        content.setText("foo foo\r\nfoo foo\r\nfoo");
+        Assert.assertEquals(7, RegexSearch.substituteAll(content, foo, content.getText(), 0, 20,
+                "x", false, "\n"));
+        Assert.assertEquals("x foo\r\nx foo\r\nfoo", content.getText());
+        Assert.assertEquals(-1, RegexSearch.substituteAll(content, foo, content.getText(), 2, 4,
+                "x", false, "\n"));
+    }
+
+    private static String replace(Pattern pattern, String text, String replace) {
+        StringBuilder sb = new StringBuilder();
+        MatchResult match = RegexSearch.findForward(pattern, text, 0, text.length());
+        RegexSearch.appendReplacement(sb, match, replace, "\n");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,75 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.util.concurrent.Executor;
+
+import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
+import net.sourceforge.vrapper.vim.register.RegisterManager;
+import net.sourceforge.vrapper.vim.register.StringRegisterContent;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegisterContentTests {
+
+    @Before
+    public void compressInPlace() {
+        StringRegisterContent.setCompressionExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void testLargeContent() {
+        StringRegisterContent.setCompressionThreshold(16);
+        try {
+            String text = "first line\r\nsecond line\rthird line\n";
+            StringRegisterContent content = new StringRegisterContent(ContentType.TEXT, text);
+            Assert.assertTrue(content.isCompressed());
+            Assert.assertEquals(text.length(), content.getLength());
+            Assert.assertEquals(text, content.getText());
+            Assert.assertSame(content.getText(), content.getText());
+            Assert.assertEquals(3, content.getLineBreakCount());
+
+            StringRegisterContent small = new StringRegisterContent(ContentType.TEXT, "small");
+            Assert.assertFalse(small.isCompressed());
+            Assert.assertEquals(0, small.getLineBreakCount());
+
+            // Deletes are shifted through the numbered registers without copying.
+            DefaultRegisterManager registers = new DefaultRegisterManager();
+            registers.setLastDelete(content);
+            registers.setLastDelete(small);
+            StringRegisterContent other = new StringRegisterContent(ContentType.LINES, "line\n");
+            registers.setLastDelete(other);
+            Assert.assertSame(other, registers.getRegister("1").getContent());
+            Assert.assertSame(content, registers.getRegister("2").getContent());
+            Assert.assertSame(small, registers.getRegister(RegisterManager.REGISTER_SMALL_DELETE).getContent());
+
+            // A block within one line is a small delete as well.
+            StringRegisterContent block = new StringRegisterContent(ContentType.TEXT_RECTANGLE, "ab");
+            registers.setLastDelete(block);
+            Assert.assertSame(block, registers.getRegister(RegisterManager.REGISTER_SMALL_DELETE).getContent());
+            Assert.assertSame(other, registers.getRegister("1").getContent());
+        } finally {
+            StringRegisterContent.setCompressionThreshold(8 * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void testCompressedNonAsciiContent() {
+        StringRegisterContent.setCompressionThreshold(4);
+        try {
+            String text = "gr\u00fc\u00dfe \u65e5\u672c\u8a9e \ud83d\ude00\n";
+            StringRegisterContent content = new StringRegisterContent(ContentType.LINES, text);
+            Assert.assertTrue(content.isCompressed());
+            Assert.assertEquals(text, content.getText());
+            Assert.assertEquals(1, content.getLineBreakCount());
+        } finally {
+            StringRegisterContent.setCompressionThreshold(8 * 1024 * 1024);
+        }
+    }
+}
@@ -2,10 +2,18 @@ package net.sourceforge.vrapper.core.tests.cases;
 
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
 import static org.mockito.Mockito.times;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import net.sourceforge.vrapper.core.tests.utils.CommandTestCase;
+import net.sourceforge.vrapper.core.tests.utils.DumbPosition;
+import net.sourceforge.vrapper.core.tests.utils.VirtualTimerService;
+import net.sourceforge.vrapper.platform.TimerService;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.VimUtils;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.modes.InsertMode;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
 
 import org.junit.After;
@@ -377,4 +385,47 @@ public class RemappingTests extends CommandTestCase {
                 "    h", 'e', "ey\noldMcDonnaLD had some $\nia\nia\no",
                 "    ", 'e', "e\noldMcDonnaLD had some $\nia\nia\no");
     }
+
+    @Test
+    public void testMappingTimeout() {
+        VirtualTimerService timer = new VirtualTimerService();
+        when(serviceProvider.getService(TimerService.class)).thenReturn(timer);
+        when(configuration.get(Options.TIMEOUT)).thenReturn(true);
+
+        // The shorter mapping wins when the longer one isn't completed in time.
+        type(parseKeyStrokes(":nnoremap Q x<CR>"));
+        type(parseKeyStrokes(":nnoremap Qa dd<CR>"));
+        content.setText("abc\ndef");
+        adaptor.setPosition(new DumbPosition(0), StickyColumnPolicy.NEVER);
+        type(parseKeyStrokes("Q"));
+        assertEquals(1, timer.getWaitingTasks());
+        timer.advance(999);
+        assertEquals("abc\ndef", content.getText());
+        timer.advance(1);
+        assertEquals("bc\ndef", content.getText());
+        assertEquals(0, timer.getWaitingTasks());
+        type(parseKeyStrokes("Qa"));
+        assertEquals("def", content.getText());
+
+        // A typed 'j' stays when 'jk' isn't completed in time.
+        type(parseKeyStrokes(":inoremap jk <LT>ESC<GT><CR>"));
+        content.setText("");
+        adaptor.setPosition(new DumbPosition(0), StickyColumnPolicy.NEVER);
+        type(parseKeyStrokes("ij"));
+        assertEquals(1, timer.getWaitingTasks());
+        timer.advance(1000);
+        type(parseKeyStrokes("k"));
+        assertEquals("jk", content.getText());
+        assertEquals(InsertMode.NAME, adaptor.getCurrentModeName());
+        type(parseKeyStrokes("jk"));
+        assertEquals("jk", content.getText());
+        assertEquals(NormalMode.NAME, adaptor.getCurrentModeName());
+
+        // With 'notimeout' the mapping waits for the next key.
+        when(configuration.get(Options.TIMEOUT)).thenReturn(false);
+        type(parseKeyStrokes("Q"));
+        assertEquals(0, timer.getWaitingTasks());
+        type(parseKeyStrokes("a"));
+        assertEquals("", content.getText());
+    }
 }
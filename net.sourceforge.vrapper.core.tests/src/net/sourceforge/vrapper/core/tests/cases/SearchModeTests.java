@@ -3,14 +3,35 @@ package net.sourceforge.vrapper.core.tests.cases;
 import static org.mockito.Mockito.*;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.sourceforge.vrapper.core.tests.utils.TestSearchService;
 import net.sourceforge.vrapper.core.tests.utils.VisualTestCase;
+import net.sourceforge.vrapper.platform.BufferAndTabService;
+import net.sourceforge.vrapper.platform.SearchAndReplaceService;
+import net.sourceforge.vrapper.platform.ViewportService;
+import net.sourceforge.vrapper.utils.Search;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LocalConfiguration;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
+import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
+import net.sourceforge.vrapper.vim.modes.commandline.HighlightSearch;
 import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
+import net.sourceforge.vrapper.vim.register.RegisterManager;
 
 public class SearchModeTests extends VisualTestCase {
 
@@ -302,4 +323,61 @@ public class SearchModeTests extends VisualTestCase {
                 "I couldn't live without this\nfull-range t", 'h', "ree-linear variable.",
                 "I couldn't live wi", 'o', "ut this\nfull-range three-linear variable.");
     }
+
+    @Test
+    public void testWindowHighlightingSkipsHiddenEditors() throws Exception {
+        final Search search = new Search("live", false, false, true);
+        final EditorAdaptor current = mockEditor(search, true);
+        final EditorAdaptor visible = mockEditor(search, true);
+        final EditorAdaptor hidden = mockEditor(search, false);
+        BufferAndTabService buffers = mock(BufferAndTabService.class);
+        when(current.getBufferAndTabService()).thenReturn(buffers);
+        when(buffers.doInBuffers(anyBoolean(), Mockito.<Queue<String>>any(), any(Evaluator.class)))
+                .thenAnswer(new Answer<List<Object>>() {
+                    @Override
+                    public List<Object> answer(InvocationOnMock invocation) throws Throwable {
+                        @SuppressWarnings("unchecked")
+                        Queue<String> command = (Queue<String>) invocation.getArguments()[1];
+                        Evaluator code = (Evaluator) invocation.getArguments()[2];
+                        List<Object> result = new ArrayList<Object>();
+                        for (EditorAdaptor editor : Arrays.asList(hidden, current, visible)) {
+                            result.add(code.evaluate(editor, command));
+                        }
+                        return result;
+                    }
+                });
+
+        HighlightSearch.HIGHLIGHT.evaluate(current, new LinkedList<String>());
+        verify(current.getSearchAndReplaceService()).highlight(search);
+        verify(visible.getSearchAndReplaceService()).highlight(search);
+        verify(hidden.getSearchAndReplaceService(), never()).highlight(any(Search.class));
+        assertTrue(HighlightSearch.isHighlightingStale(hidden));
+
+        // Still hidden, nothing happens.
+        HighlightSearch.refreshStaleHighlighting(hidden);
+        verify(hidden.getSearchAndReplaceService(), never()).highlight(any(Search.class));
+
+        when(hidden.getViewportService().isVisible()).thenReturn(true);
+        HighlightSearch.refreshStaleHighlighting(hidden);
+        HighlightSearch.refreshStaleHighlighting(hidden);
+        verify(hidden.getSearchAndReplaceService(), times(1)).highlight(search);
+        assertFalse(HighlightSearch.isHighlightingStale(hidden));
+    }
+
+    private EditorAdaptor mockEditor(Search search, boolean visible) {
+        EditorAdaptor editor = mock(EditorAdaptor.class);
+        LocalConfiguration config = mock(LocalConfiguration.class);
+        when(config.get(Options.SEARCH_HL_SCOPE)).thenReturn(HighlightSearch.SEARCH_HL_SCOPE_WINDOW);
+        when(config.get(Options.SEARCH_HIGHLIGHT)).thenReturn(Boolean.TRUE);
+        when(editor.getConfiguration()).thenReturn(config);
+        RegisterManager registers = mock(RegisterManager.class);
+        when(registers.getSearch()).thenReturn(search);
+        when(editor.getRegisterManager()).thenReturn(registers);
+        ViewportService viewport = mock(ViewportService.class);
+        when(viewport.isVisible()).thenReturn(visible);
+        when(editor.getViewportService()).thenReturn(viewport);
+        SearchAndReplaceService searchService = mock(SearchAndReplaceService.class);
+        when(editor.getSearchAndReplaceService()).thenReturn(searchService);
+        return editor;
+    }
 }
@@ -0,0 +1,136 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import net.sourceforge.vrapper.core.tests.utils.TestTextContent;
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.utils.UndoTree;
+import net.sourceforge.vrapper.utils.UndoTree.Delta;
+import net.sourceforge.vrapper.utils.UndoTree.Move;
+import net.sourceforge.vrapper.utils.UndoTree.State;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class UndoTreeTests {
+
+    @Test
+    public void testUndoRedoAndBranches() {
+        TestTextContent content = new TestTextContent(Mockito.mock(CursorService.class));
+        content.setText("hello world");
+        UndoTree tree = new UndoTree();
+
+        // Typing "abc" character by character is merged into one delta.
+        tree.beginChange(5);
+        edit(tree, content, 5, 0, "a");
+        edit(tree, content, 6, 0, "b");
+        edit(tree, content, 7, 0, "c");
+        tree.endChange();
+        tree.beginChange(0);
+        edit(tree, content, 0, 5, "HELLO");
+        tree.endChange();
+        tree.beginChange(14);
+        edit(tree, content, 14, 0, "!");
+        tree.endChange();
+        Assert.assertEquals("HELLOabc world!", content.getText());
+        Assert.assertEquals(3, tree.getCurrent().getSequence());
+
+        // Undoing two changes at once results in a single replacement.
+        Move move = tree.moveTo(tree.undoTarget(2), content);
+        Assert.assertEquals(1, move.getEdits().size());
+        Assert.assertEquals(0, move.getCaretOffset());
+        move.apply(content);
+        Assert.assertEquals("helloabc world", content.getText());
+
+        // A new change starts another branch, g- still reaches the old one.
+        tree.beginChange(0);
+        edit(tree, content, 0, 1, "J");
+        tree.endChange();
+        Assert.assertEquals("Jelloabc world", content.getText());
+        tree.moveTo(tree.chronologicalTarget(-1), content).apply(content);
+        Assert.assertEquals("HELLOabc world!", content.getText());
+        tree.moveTo(tree.undoTarget(3), content).apply(content);
+        Assert.assertEquals("hello world", content.getText());
+        tree.moveTo(tree.redoTarget(3), content).apply(content);
+        Assert.assertEquals("HELLOabc world!", content.getText());
+        tree.moveTo(tree.sequenceTarget(4), content).apply(content);
+        Assert.assertEquals("Jelloabc world", content.getText());
+        Assert.assertNull(tree.sequenceTarget(5));
+
+        // Text which doesn't match the recorded changes is detected.
+        content.setText("something else entirely");
+        Assert.assertNull(tree.moveTo(tree.undoTarget(2), content));
+
+        // Oldest changes are dropped when the limits are exceeded.
+        content.setText("hello world");
+        tree.reset();
+        for (int i = 0; i < 5; i++) {
+            tree.beginChange(0);
+            edit(tree, content, 0, 0, "x");
+            tree.endChange();
+        }
+        tree.setLimits(2, Long.MAX_VALUE);
+        Assert.assertEquals(3, tree.getRoot().getSequence());
+        tree.moveTo(tree.undoTarget(10), content).apply(content);
+        Assert.assertEquals("xxxhello world", content.getText());
+    }
+
+    @Test
+    public void testMoveOnlyWhenApplied() {
+        TestTextContent content = new TestTextContent(Mockito.mock(CursorService.class));
+        content.setText("hello");
+        UndoTree tree = new UndoTree();
+        tree.beginChange(0);
+        edit(tree, content, 0, 1, "J");
+        tree.endChange();
+        State changed = tree.getCurrent();
+
+        Move move = tree.moveTo(tree.undoTarget(1), content);
+        Assert.assertSame(tree.getRoot(), move.getTarget());
+        Assert.assertSame(changed, tree.getCurrent());
+
+        // The text changed behind the tree's back, applying fails and the tree stays.
+        content.setText("Xello");
+        try {
+            move.apply(content);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertSame(changed, tree.getCurrent());
+        Assert.assertEquals("Xello", content.getText());
+    }
+
+    @Test
+    public void testJumpTo() {
+        TestTextContent content = new TestTextContent(Mockito.mock(CursorService.class));
+        content.setText("hello");
+        UndoTree tree = new UndoTree();
+        tree.beginChange(0);
+        edit(tree, content, 0, 1, "J");
+        tree.endChange();
+        State first = tree.getCurrent();
+        content.setText("hello");
+        tree.jumpTo(tree.getRoot());
+        tree.beginChange(0);
+        edit(tree, content, 0, 1, "Y");
+        tree.endChange();
+        State second = tree.getCurrent();
+
+        // Jumping doesn't touch the text, but redo follows the branch which was passed.
+        tree.jumpTo(first);
+        Assert.assertSame(first, tree.getCurrent());
+        Assert.assertEquals("Yello", content.getText());
+        tree.jumpTo(tree.getRoot());
+        Assert.assertSame(first, tree.redoTarget(1));
+        tree.jumpTo(second);
+        tree.jumpTo(tree.getRoot());
+        Assert.assertSame(second, tree.redoTarget(1));
+        Assert.assertTrue(tree.contains(first));
+    }
+
+    private static void edit(UndoTree tree, TestTextContent content, int offset, int length,
+            String text) {
+        tree.record(new Delta(offset, content.getText(offset, length), text));
+        content.replace(offset, length, text);
+    }
+}
@@ -0,0 +1,108 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.vrapper.utils.RegexSearch;
+import net.sourceforge.vrapper.utils.VimRegex;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VimRegexTests {
+
+    @Test
+    public void testTranslate() {
+        // Java patterns keep working as before.
+        Assert.assertEquals("(\\w+) \\d{2}", VimRegex.toJava("(\\w+) \\d{2}"));
+        Assert.assertEquals("\\bfoo\\b", VimRegex.toJava("\\<foo\\>"));
+        // \c is Java's control character escape until a mode switch.
+        Assert.assertEquals("\\cA", VimRegex.toJava("\\cA"));
+
+        assertFirstMatch("foo", "\\<foo\\>", "foobar foo");
+        assertFirstMatch("aa", "a\\{2}", "a aaa");
+        assertFirstMatch("a", "a\\{-1,}", "aaa");
+        assertFirstMatch("bar", "foo\\zsbar", "bar foobar");
+        assertFirstMatch("foo", "foo\\zebar", "foo foobar");
+        assertFirstMatch("abba", "\\v(a|b)+", "cabbac");
+        assertFirstMatch("abab", "\\m\\(ab\\)\\+", "abab");
+        assertFirstMatch("(ab)", "\\m(ab)", "ab (ab)");
+        assertFirstMatch("a.c", "\\Va.c", "abc a.c");
+        assertFirstMatch("x1", "\\l\\d", "X1 x1");
+        assertFirstMatch("b2", "\\v[[:alpha:]][[:digit:]]", "2b b2");
+        assertFirstMatch("FOO", "\\v\\cfoo", "bar FOO");
+        assertFirstMatch("foo", "\\m\\Cfoo", "FOO foo");
+
+        Assert.assertSame(VimRegex.compile("\\<foo", 0), VimRegex.compile("\\<foo", 0));
+        Assert.assertNotSame(VimRegex.compile("\\<foo", 0),
+                VimRegex.compile("\\<foo", Pattern.CASE_INSENSITIVE));
+        try {
+            VimRegex.compile("\\v(a", 0);
+            Assert.fail("Unclosed group not detected");
+        } catch (PatternSyntaxException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLiteralBracesInJavaMode() {
+        // Without a count, escaped braces are literal as in Java.
+        Assert.assertEquals("\\{\\}", VimRegex.toJava("\\{\\}"));
+        Assert.assertEquals("foo\\{}", VimRegex.toJava("foo\\{}"));
+        Assert.assertEquals("a\\{2\\}", VimRegex.toJava("a\\{2\\}"));
+        Assert.assertEquals("a\\{-}", VimRegex.toJava("a\\{-}"));
+        assertFirstMatch("{}", "\\{\\}", "a {} b");
+        assertFirstMatch("foo{}", "foo\\{}", "foo foo{}");
+        assertFirstMatch("a{2}", "a\\{2\\}", "aa a{2}");
+        assertFirstMatch("{x}", "\\{x\\}", "{x}");
+
+        // A count with a number is still a Vim count.
+        Assert.assertEquals("a{2,}", VimRegex.toJava("a\\{2,}"));
+        Assert.assertEquals("a{0,3}?", VimRegex.toJava("a\\{-,3}"));
+    }
+
+    @Test
+    public void testCountsInVimMode() {
+        Assert.assertEquals("a*", VimRegex.toJava("\\ma\\{}"));
+        Assert.assertEquals("a*?", VimRegex.toJava("\\ma\\{-}"));
+        Assert.assertEquals("a{2}", VimRegex.toJava("\\ma\\{2\\}"));
+        assertFirstMatch("{}", "\\v\\{\\}", "a {} b");
+        try {
+            VimRegex.toJava("\\ma\\{x}");
+            Assert.fail("Invalid count not detected");
+        } catch (PatternSyntaxException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMatchStartWithUnboundedPrefix() {
+        assertFirstMatch("foo", "\\v^.*\\zsfoo", "a foo b");
+        assertFirstMatch("b", "a.*\\zsb", "xb a-b");
+        assertFirstMatch("bar", "\\v(foo)\\s+\\zs\\1?bar", "foo   bar");
+
+        // The groups of the match are the ones of the pattern.
+        Pattern pattern = VimRegex.compile("\\v(\\w+)\\=\\zs(\\w+)", Pattern.MULTILINE);
+        MatchResult match = RegexSearch.findForward(pattern, "x key=value", 0, 11);
+        Assert.assertEquals(6, match.start());
+        Assert.assertEquals(2, match.groupCount());
+        Assert.assertEquals("key", match.group(1));
+        Assert.assertEquals("value", match.group(2));
+
+        // The text before \zs may start before the searched region.
+        pattern = VimRegex.compile("\\v^.*\\zsfoo", Pattern.MULTILINE);
+        Assert.assertEquals(6, RegexSearch.findForward(pattern, "a foo foo", 3, 9).start());
+        Assert.assertEquals(6, RegexSearch.findBackward(pattern, "a foo foo", 0, 9).start());
+
+        // Back references move up by one for the group of the text before \\zs.
+        Assert.assertEquals("(?:)((b)a\\2)c", VimRegex.toJava("\\m\\(b\\)a\\1\\zsc"));
+    }
+
+    private static void assertFirstMatch(String expected, String vimPattern, String text) {
+        MatchResult m = RegexSearch.findForward(VimRegex.compile(vimPattern, 0), text, 0,
+                text.length());
+        Assert.assertNotNull(vimPattern + " doesn't match", m);
+        Assert.assertEquals(vimPattern, expected, m.group());
+    }
+}
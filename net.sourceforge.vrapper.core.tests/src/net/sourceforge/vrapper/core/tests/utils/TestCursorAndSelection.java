@@ -187,6 +187,14 @@ public class TestCursorAndSelection implements CursorService, SelectionService {
 		return null;
 	}
 
+	public Position getNextJumpLocation(int count) {
+		return null;
+	}
+
+	public Position getPrevJumpLocation(int count) {
+		return null;
+	}
+
     @Override
     public int getVisualOffset(Position position) {
 	    LineInformation lineInformation = content.getLineInformationOfOffset(position.getModelOffset());
@@ -1,5 +1,6 @@
 package net.sourceforge.vrapper.core.tests.utils;
 
+import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -7,10 +8,9 @@ import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.SearchAndReplaceService;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.RegexSearch;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SearchResult;
-import net.sourceforge.vrapper.utils.StringUtils;
-import net.sourceforge.vrapper.vim.Options;
 
 public class TestSearchService implements SearchAndReplaceService {
     
@@ -34,23 +34,17 @@ public class TestSearchService implements SearchAndReplaceService {
             patternFlags |= Pattern.CASE_INSENSITIVE;
         }
         Pattern pattern = Pattern.compile(needle, patternFlags);
-        Matcher matcher = pattern.matcher(stack);
-        
-        Position resultPosition = null;
-        Position endPosition = null;
+        MatchResult match;
         if (search.isBackward()) {
-            matcher.region(0, start.getModelOffset());
-            // Find last match by looping from the start until no more match can be found
-            while (matcher.find()) {
-                resultPosition =  start.setModelOffset(matcher.start());
-                endPosition =  start.setModelOffset(matcher.end());
-            }
-        } else if (matcher.find(start.getModelOffset())) {
-            resultPosition =  start.setModelOffset(matcher.start());
-            endPosition =  start.setModelOffset(matcher.end());
+            match = RegexSearch.findBackward(pattern, stack, 0, start.getModelOffset());
+        } else {
+            match = RegexSearch.findForward(pattern, stack, start.getModelOffset(), stack.length());
         }
-        SearchResult result = new SearchResult(resultPosition, endPosition);
-        return result;
+        if (match == null) {
+            return new SearchResult(null, null);
+        }
+        return new SearchResult(start.setModelOffset(match.start()),
+                start.setModelOffset(match.end()));
     }
 
     /**
@@ -90,16 +84,9 @@ public class TestSearchService implements SearchAndReplaceService {
         return nMatches;
     }
 
-	public boolean isCaseSensitive(String toFind, String flags) {
-        boolean caseSensitive = !sharedConfiguration.get(Options.IGNORE_CASE)
-            || (sharedConfiguration.get(Options.SMART_CASE)
-                && StringUtils.containsUppercase(toFind));
-        if (flags.contains("i"))
-            caseSensitive = false;
-        if (flags.contains("I"))
-            caseSensitive = true;
-        return caseSensitive;
-	}
+    public boolean isCaseSensitive(String toFind, String flags) {
+        return RegexSearch.isCaseSensitive(sharedConfiguration, toFind, flags);
+    }
 
     /** Does nothing. */
     public void highlight(Search search) {
@@ -117,9 +104,26 @@ public class TestSearchService implements SearchAndReplaceService {
     public void removeIncSearchHighlighting() {
     }
 
+    /** Plain replacement text only. */
     @Override
     public boolean substitute(int start, String toFind, String flags, String toReplace) {
-        throw new UnsupportedOperationException();
+        String text = content.getText();
+        MatchResult match = RegexSearch.findForward(compile(toFind, flags), text, start, text.length());
+        if (match == null) {
+            return false;
+        }
+        content.replace(match.start(), match.end() - match.start(), toReplace);
+        return true;
+    }
+
+    @Override
+    public int substituteAll(int start, int end, String toFind, String flags, String toReplace) {
+        return RegexSearch.substituteAll(content, compile(toFind, flags), content.getText(), start,
+                end, toReplace, flags.contains("g"), "\n");
+    }
+
+    private Pattern compile(String toFind, String flags) {
+        return Pattern.compile(toFind, isCaseSensitive(toFind, flags) ? 0 : Pattern.CASE_INSENSITIVE);
     }
 
 }
@@ -89,7 +89,7 @@ public class VimTestCase {
                 when(globalConfiguration.get(o)).thenReturn(Boolean.FALSE);
             }
         }
-        configuration = spy(new SimpleLocalConfiguration(configProviders, globalConfiguration));
+        configuration = spy(new StubbableLocalConfiguration(configProviders, globalConfiguration));
         when(fileService.isEditable()).thenReturn(true);
         when(fileService.checkModifiable()).thenReturn(true);
         //let UIInterface mock print out error messages
@@ -190,4 +190,23 @@ public class VimTestCase {
         reloadEditorAdaptor();
     }
 
-}
\ No newline at end of file
+    /**
+     * Test cases stub <code>configuration.get()</code> while the real method runs. Mockito stubs
+     * the last mock method called, which would be a nested call on the shared configuration spy,
+     * so end every read with a call on this configuration to get <code>get()</code> stubbed.
+     */
+    static class StubbableLocalConfiguration extends SimpleLocalConfiguration {
+
+        public StubbableLocalConfiguration(List<DefaultConfigProvider> defaultConfigProviders,
+                GlobalConfiguration sharedConfiguration) {
+            super(defaultConfigProviders, sharedConfiguration);
+        }
+
+        @Override
+        public <T> T get(Option<T> key) {
+            T value = super.get(key);
+            isSet(key);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package net.sourceforge.vrapper.core.tests.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.sourceforge.vrapper.platform.TimerService;
+
+/**
+ * Timer on a virtual clock which only moves when the test calls {@link #advance(int)}.
+ */
+public class VirtualTimerService implements TimerService {
+
+    private final Map<Runnable, Long> dueTimes = new LinkedHashMap<Runnable, Long>();
+    private long now;
+
+    public void schedule(Runnable task, int delayMillis) {
+        dueTimes.remove(task);
+        dueTimes.put(task, now + delayMillis);
+    }
+
+    public void cancel(Runnable task) {
+        dueTimes.remove(task);
+    }
+
+    public int getWaitingTasks() {
+        return dueTimes.size();
+    }
+
+    /** Moves the clock forward and runs the tasks which are due, earliest first. */
+    public void advance(int millis) {
+        now += millis;
+        while (true) {
+            Runnable next = null;
+            long nextTime = Long.MAX_VALUE;
+            for (Map.Entry<Runnable, Long> entry : dueTimes.entrySet()) {
+                if (entry.getValue() <= now && entry.getValue() < nextTime) {
+                    next = entry.getKey();
+                    nextTime = entry.getValue();
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            dueTimes.remove(next);
+            next.run();
+        }
+    }
+}
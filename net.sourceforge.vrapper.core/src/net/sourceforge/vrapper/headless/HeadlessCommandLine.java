@@ -0,0 +1,98 @@
+package net.sourceforge.vrapper.headless;
+
+import net.sourceforge.vrapper.platform.CommandLineUI;
+
+/**
+ * Command line of a headless editor. It only keeps the prompt, the contents and the position,
+ * nothing is displayed.
+ */
+class HeadlessCommandLine implements CommandLineUI {
+
+    private String prompt = "";
+    private final StringBuilder contents = new StringBuilder();
+    private int position;
+
+    public void setMode(CommandLineMode mode) {
+    }
+
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void resetContents(String newContents) {
+        contents.setLength(0);
+        contents.append(newContents);
+        setPosition(contents.length());
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int offset) {
+        position = Math.max(0, Math.min(offset, contents.length()));
+    }
+
+    public void addOffsetToPosition(int offset) {
+        setPosition(position + offset);
+    }
+
+    public String getContents() {
+        return contents.toString();
+    }
+
+    public String getFullContents() {
+        return prompt + contents;
+    }
+
+    public void type(String characters) {
+        contents.insert(position, characters);
+        position += characters.length();
+    }
+
+    public void copySelectionToClipboard() {
+        // There is no selection.
+    }
+
+    public void open() {
+    }
+
+    public void close() {
+        prompt = "";
+        contents.setLength(0);
+        position = 0;
+    }
+
+    public void erase() {
+        if (position > 0) {
+            contents.deleteCharAt(--position);
+        }
+    }
+
+    public void delete() {
+        if (position < contents.length()) {
+            contents.deleteCharAt(position);
+        }
+    }
+
+    public int getEndPosition() {
+        return contents.length();
+    }
+
+    public void replace(int start, int end, String string) {
+        contents.replace(start, end, string);
+        setPosition(position);
+    }
+
+    public boolean isLastLineShown() {
+        return true;
+    }
+
+    public void scrollDown(boolean wholeScreen) {
+        // Everything is shown.
+    }
+}
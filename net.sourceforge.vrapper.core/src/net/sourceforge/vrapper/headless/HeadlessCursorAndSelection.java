@@ -0,0 +1,422 @@
+package net.sourceforge.vrapper.headless;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.SelectionService;
+import net.sourceforge.vrapper.platform.VrapperPlatformException;
+import net.sourceforge.vrapper.utils.CaretType;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.OffsetHistory;
+import net.sourceforge.vrapper.utils.OffsetTracker;
+import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.StartEndTextRange;
+import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.commands.Selection;
+import net.sourceforge.vrapper.vim.commands.SimpleSelection;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+
+/**
+ * Cursor, selection and marks of a headless editor.
+ * <p>
+ * Visual columns are counted in characters with tabs expanded to 'tabstop'. There is only one
+ * buffer, so marks <tt>A-Z</tt> and <tt>0-9</tt> are kept like the other marks.
+ */
+public class HeadlessCursorAndSelection implements CursorService, SelectionService {
+
+    private final HeadlessTextContent content;
+    private final Configuration configuration;
+    private int caret;
+    private int stickyColumn;
+    private boolean stickToEOL;
+    private Selection selection;
+    private TextRange nativeSelection;
+    private CaretType caretType;
+    private OffsetTracker markOffsets;
+    private Map<String, OffsetTracker.Entry> marks;
+    private OffsetHistory changeList;
+    private OffsetHistory jumpList;
+
+    public HeadlessCursorAndSelection(HeadlessTextContent content, Configuration configuration) {
+        this.content = content;
+        this.configuration = configuration;
+        textReset();
+    }
+
+    int getCaretOffset() {
+        return caret;
+    }
+
+    /** Moves the caret like typing does, which updates the sticky column. */
+    void moveCaret(int offset) {
+        caret = offset;
+        updateStickyColumn(offset);
+    }
+
+    /** Moves the caret and the marks along with a change of the text. */
+    void textChanged(int offset, int length, int textLength) {
+        markOffsets.update(offset, length, textLength);
+        if (caret <= offset) {
+            return;
+        }
+        if (caret < offset + length) {
+            moveCaret(offset + textLength);
+        } else {
+            moveCaret(caret + textLength - length);
+        }
+    }
+
+    /** Forgets the cursor position, the selection and the marks when the text is replaced. */
+    void textReset() {
+        caret = 0;
+        stickyColumn = 0;
+        stickToEOL = false;
+        selection = null;
+        nativeSelection = null;
+        markOffsets = new OffsetTracker();
+        marks = new HashMap<String, OffsetTracker.Entry>();
+        changeList = new OffsetHistory(markOffsets, 100);
+        jumpList = new OffsetHistory(markOffsets, 100);
+    }
+
+    @Override
+    public Position getPosition() {
+        if (selection != null) {
+            return selection.getTo();
+        }
+        return new HeadlessPosition(caret);
+    }
+
+    @Override
+    public void setPosition(Position position, StickyColumnPolicy columnPolicy) {
+        int offset = Math.max(0, position.getModelOffset());
+        if (offset > content.getTextLength()) {
+            throw new VrapperPlatformException("Cannot set caret position to M " + offset);
+        }
+        int oldOffset = getPosition().getModelOffset();
+        caret = offset;
+        selection = null;
+        nativeSelection = null;
+        switch (columnPolicy) {
+        case NEVER:
+            break;
+        case ON_CHANGE:
+            if (oldOffset != offset) {
+                updateStickyColumn(offset);
+            }
+            break;
+        case RESET_EOL:
+            stickToEOL = false;
+            updateStickyColumn(offset);
+            break;
+        case TO_EOL:
+            stickToEOL = true;
+            break;
+        }
+    }
+
+    @Override
+    public boolean shouldStickToEOL() {
+        return stickToEOL;
+    }
+
+    @Override
+    public Position stickyColumnAtViewLine(int lineNo) {
+        LineInformation line = content.getLineInformation(lineNo);
+        if (stickToEOL) {
+            return new HeadlessPosition(line.getEndOffset());
+        }
+        int offset = line.getBeginOffset();
+        int column = 0;
+        while (offset < line.getEndOffset()) {
+            column = nextColumn(column, content.charAt(offset));
+            if (column > stickyColumn) {
+                break;
+            }
+            offset++;
+        }
+        return new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Position stickyColumnAtModelLine(int lineNo) {
+        if (stickToEOL) {
+            LineInformation line = content.getLineInformation(lineNo);
+            // Don't leave the cursor on the newline.
+            return new HeadlessPosition(Math.max(line.getBeginOffset(), line.getEndOffset() - 1));
+        }
+        return stickyColumnAtViewLine(lineNo);
+    }
+
+    @Override
+    public Position newPositionForViewOffset(int offset) {
+        return new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Position newPositionForModelOffset(int offset) {
+        return new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Position newPositionForModelOffset(int targetModelOffset, Position original,
+            boolean allowPastLastChar) {
+        int modelOffset = original.getModelOffset();
+        return new HeadlessPosition(safeAddModelOffset(modelOffset, targetModelOffset,
+                allowPastLastChar));
+    }
+
+    @Override
+    public Position shiftPositionForModelOffset(int offset, int delta, boolean allowPastLastChar) {
+        return new HeadlessPosition(safeAddModelOffset(offset, offset + delta, allowPastLastChar));
+    }
+
+    @Override
+    public Position shiftPositionForViewOffset(int offset, int delta, boolean allowPastLastChar) {
+        return shiftPositionForModelOffset(offset, delta, allowPastLastChar);
+    }
+
+    @Override
+    public int getVisualOffset(Position position) {
+        int offset = position.getViewOffset();
+        LineInformation line = content.getLineInformationOfOffset(offset);
+        int column = 0;
+        for (int i = line.getBeginOffset(); i < offset; i++) {
+            column = nextColumn(column, content.charAt(i));
+        }
+        return column;
+    }
+
+    @Override
+    public Position getPositionByVisualOffset(int lineNo, int visualOffset) {
+        LineInformation line = content.getLineInformation(lineNo);
+        if (line.getLength() == 0) {
+            // Beginning of an empty line.
+            return visualOffset == 0 ? new HeadlessPosition(line.getBeginOffset()) : null;
+        }
+        int column = 0;
+        for (int offset = line.getBeginOffset(); offset < line.getEndOffset(); offset++) {
+            column = nextColumn(column, content.charAt(offset));
+            if (column > visualOffset) {
+                return new HeadlessPosition(offset);
+            }
+        }
+        // No character at the specified visual offset.
+        return null;
+    }
+
+    @Override
+    public int visualWidthToChars(int visualWidth) {
+        return visualWidth;
+    }
+
+    @Override
+    public void setCaret(CaretType caretType) {
+        this.caretType = caretType;
+    }
+
+    public CaretType getCaret() {
+        return caretType;
+    }
+
+    @Override
+    public Selection getSelection() {
+        if (selection != null) {
+            return selection;
+        }
+        return new SimpleSelection(getNativeSelection());
+    }
+
+    @Override
+    public void setSelection(Selection selection) {
+        if (selection != null) {
+            caret = selection.getEnd().getModelOffset();
+        }
+        this.selection = selection;
+        nativeSelection = null;
+    }
+
+    @Override
+    public TextRange getNativeSelection() {
+        if (selection != null) {
+            return VRAPPER_SELECTION_ACTIVE;
+        }
+        if (nativeSelection != null) {
+            return nativeSelection;
+        }
+        Position position = new HeadlessPosition(caret);
+        return new StartEndTextRange(position, position);
+    }
+
+    @Override
+    public void setNativeSelection(TextRange range) {
+        selection = null;
+        nativeSelection = range;
+        if (range != null) {
+            caret = range.getEnd().getModelOffset();
+        }
+    }
+
+    @Override
+    public void setMark(String id, Position position) {
+        int offset = position.getModelOffset();
+        if (offset < 0 || offset > content.getTextLength()) {
+            throw new VrapperPlatformException("Failed to set mark for " + position);
+        }
+        if (id.equals(LAST_EDIT_MARK)) {
+            // The newest entry of the change list is the '.' mark.
+            changeList.add(offset);
+            return;
+        }
+        OffsetTracker.Entry old = marks.get(id);
+        if (old != null) {
+            markOffsets.remove(old);
+        }
+        marks.put(id, markOffsets.add(offset));
+    }
+
+    @Override
+    public void deleteMark(String id) {
+        if (id.equals(LAST_EDIT_MARK)) {
+            changeList.clear();
+        } else if (marks.containsKey(id)) {
+            markOffsets.remove(marks.remove(id));
+        }
+    }
+
+    @Override
+    public Position getMark(String id) {
+        // `` and '' are the same position.
+        if (id.equals("`")) {
+            id = LAST_JUMP_MARK;
+        }
+        int offset;
+        if (id.equals(LAST_EDIT_MARK)) {
+            offset = changeList.getLast();
+        } else {
+            OffsetTracker.Entry entry = marks.get(id);
+            offset = entry == null ? -1 : markOffsets.getOffset(entry);
+        }
+        if (offset < 0) {
+            if (id.equals(LAST_CHANGE_END)) {
+                // If a change was deleted, '[ and '] are the same position.
+                return getMark(LAST_CHANGE_START);
+            }
+            return null;
+        }
+        return new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Set<String> getAllMarks() {
+        Set<String> allMarks = new HashSet<String>(marks.keySet());
+        if (changeList.size() > 0) {
+            allMarks.add(LAST_EDIT_MARK);
+        }
+        return allMarks;
+    }
+
+    @Override
+    public boolean isGlobalMark(String id) {
+        return false;
+    }
+
+    @Override
+    public Position getNextChangeLocation(int count) {
+        return getChangeLocation(changeList.getIndex() + count);
+    }
+
+    @Override
+    public Position getPrevChangeLocation(int count) {
+        return getChangeLocation(changeList.getIndex() - count);
+    }
+
+    private Position getChangeLocation(int index) {
+        if (changeList.size() == 0) {
+            return null;
+        }
+        index = Math.max(0, Math.min(index, changeList.size() - 1));
+        int offset = changeList.get(index);
+        if (offset < 0) {
+            changeList.remove(index);
+            changeList.setIndex(changeList.size());
+            return null;
+        }
+        changeList.setIndex(index);
+        return new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Position getNextJumpLocation(int count) {
+        int offset = jumpList.jumpForward(count);
+        return offset < 0 ? null : new HeadlessPosition(offset);
+    }
+
+    @Override
+    public Position getPrevJumpLocation(int count) {
+        int offset = jumpList.jumpBack(content, count, getPosition().getModelOffset());
+        return offset < 0 ? null : new HeadlessPosition(offset);
+    }
+
+    @Override
+    public void markCurrentPosition() {
+        // There is no navigation history besides the jump list.
+    }
+
+    @Override
+    public void updateLastPosition() {
+        jumpList.addJump(content, getPosition().getModelOffset());
+    }
+
+    private int nextColumn(int column, char c) {
+        if (c == '\t') {
+            int tabStop = Math.max(1, configuration.get(Options.TAB_STOP));
+            return column + tabStop - column % tabStop;
+        }
+        return column + 1;
+    }
+
+    private void updateStickyColumn(int offset) {
+        stickyColumn = getVisualOffset(new HeadlessPosition(offset));
+        LineInformation line = content.getLineInformationOfOffset(offset);
+        if (stickToEOL && offset < line.getEndOffset()) {
+            stickToEOL = false;
+        }
+    }
+
+    private int safeAddModelOffset(int oldOffset, int targetOffset, boolean allowPastLastChar) {
+        int delta = targetOffset - oldOffset;
+        if (delta == 0) {
+            return oldOffset;
+        } else if (targetOffset <= 0) {
+            return 0;
+        }
+        int contentLength = content.getTextLength();
+        if (targetOffset > contentLength) {
+            // Clip to text end, but 'onNewline' still might need corrections
+            targetOffset = contentLength;
+        }
+        LineInformation line = content.getLineInformationOfOffset(targetOffset);
+        int beginOffset = line.getBeginOffset();
+        int endOffset = line.getEndOffset();
+        if (targetOffset == contentLength) {
+            // Fall through to 'onNewline' check to see if cursor needs to move to the left.
+        } else if (delta > 0 && targetOffset > endOffset) {
+            // Moving to right but we fall just outside the line. Jump to beginning of next line.
+            targetOffset = content.getLineInformation(line.getNumber() + 1).getBeginOffset();
+        } else if (delta < 0 && targetOffset > endOffset) {
+            // Moving to left but we fall just outside the line. Clip to end of line.
+            targetOffset = endOffset;
+        }
+        if ( ! allowPastLastChar && targetOffset == endOffset && targetOffset > beginOffset) {
+            // Past last character and the line isn't empty. Move one back.
+            targetOffset--;
+        }
+        return targetOffset;
+    }
+}
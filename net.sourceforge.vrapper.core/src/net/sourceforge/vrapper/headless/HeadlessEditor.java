@@ -0,0 +1,244 @@
+package net.sourceforge.vrapper.headless;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.keymap.SpecialKey;
+import net.sourceforge.vrapper.keymap.vim.ConstructorWrappers;
+import net.sourceforge.vrapper.platform.GlobalConfiguration;
+import net.sourceforge.vrapper.vim.DefaultConfigProvider;
+import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
+import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
+import net.sourceforge.vrapper.vim.register.RegisterManager;
+
+/**
+ * Vrapper without Eclipse: an editor adaptor on a {@link HeadlessPlatform}, fed with keys.
+ * <p>
+ * Keys which Vrapper doesn't handle itself are typed into the text like a text widget would, so
+ * insert mode works. The {@link #main(String[])} method runs keys over files from the command
+ * line.
+ */
+public class HeadlessEditor {
+
+    private static final String USAGE = "Usage: HeadlessEditor [-u <vrapperrc>|NONE]"
+            + " (-c <keys> | -s <scriptfile>)... [file...]\n"
+            + "Runs the keys in normal mode over each file and writes the changed files.\n"
+            + "Keys use the notation of mappings, e.g. -c ':%s/foo/bar/g<CR>'. Line breaks in\n"
+            + "a script file are typed as <CR>. Without files stdin is written to stdout.";
+
+    private final HeadlessPlatform platform;
+    private final DefaultEditorAdaptor editorAdaptor;
+
+    /** Creates an editor with its own configuration and registers. */
+    public HeadlessEditor(String text) {
+        this(text, null, new SimpleGlobalConfiguration(Collections.<DefaultConfigProvider>emptyList()),
+                new DefaultRegisterManager(), null);
+    }
+
+    /**
+     * Creates an editor in normal mode. The vrapperrc is read unless
+     * {@link DefaultEditorAdaptor#SHOULD_READ_RC_FILE} is cleared.
+     * @param file file of the text for <tt>:w</tt>, <code>null</code> if there is none.
+     * @param errorStream stream for error messages, <code>null</code> to only remember them.
+     */
+    public HeadlessEditor(String text, File file, GlobalConfiguration sharedConfiguration,
+            RegisterManager registerManager, PrintStream errorStream) {
+        platform = new HeadlessPlatform(sharedConfiguration, file, errorStream);
+        // Set before the editor adaptor is created, it takes the newline from the first line.
+        platform.getModelContent().setText(text);
+        editorAdaptor = new DefaultEditorAdaptor(platform, registerManager, true);
+        editorAdaptor.addVrapperEventListener(platform.getHistoryService());
+        platform.setEditorAdaptor(editorAdaptor);
+    }
+
+    public HeadlessPlatform getPlatform() {
+        return platform;
+    }
+
+    public EditorAdaptor getEditorAdaptor() {
+        return editorAdaptor;
+    }
+
+    public String getText() {
+        return platform.getModelContent().getText();
+    }
+
+    /** Types keys given in the notation of mappings, e.g. <tt>"ciwfoo&lt;Esc&gt;"</tt>. */
+    public void type(String keys) {
+        type(ConstructorWrappers.parseKeyStrokes(keys));
+    }
+
+    public void type(Iterable<KeyStroke> keyStrokes) {
+        for (KeyStroke stroke : keyStrokes) {
+            if ( ! editorAdaptor.handleKey(stroke)) {
+                typeInTextWidget(stroke);
+            }
+        }
+    }
+
+    private void typeInTextWidget(KeyStroke stroke) {
+        HeadlessTextContent content = platform.getModelContent();
+        int offset = platform.getCursorService().getCaretOffset();
+        if (stroke.withCtrlKey() || stroke.withAltKey()) {
+            return;
+        }
+        if (stroke.getCharacter() != KeyStroke.SPECIAL_KEY) {
+            content.smartInsert(String.valueOf(stroke.getCharacter()));
+        } else if (stroke.getSpecialKey() == SpecialKey.RETURN) {
+            content.smartInsert(editorAdaptor.getConfiguration().getNewLine());
+        } else if (stroke.getSpecialKey() == SpecialKey.TAB) {
+            content.smartInsert("\t");
+        } else if (stroke.getSpecialKey() == SpecialKey.BACKSPACE && offset > 0) {
+            content.replace(offset - 1, 1, "");
+        } else if (stroke.getSpecialKey() == SpecialKey.DELETE
+                && offset < content.getTextLength()) {
+            content.replace(offset, 1, "");
+        }
+    }
+
+    public static void main(String[] args) {
+        int status = run(args, System.in, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs {@link #main(String[])} on the given streams.
+     * @return the exit status: 0 on success, 1 if a file couldn't be read or written or the keys
+     *  caused an error, 2 for bad arguments.
+     */
+    public static int run(String[] args, InputStream in, PrintStream out, PrintStream err) {
+        String rcFile = null;
+        List<String> keys = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ((arg.equals("-c") || arg.equals("-s") || arg.equals("-u")) && i + 1 == args.length) {
+                return usage(err);
+            } else if (arg.equals("-c")) {
+                keys.add(args[++i]);
+            } else if (arg.equals("-s")) {
+                try {
+                    String script = read(new FileInputStream(args[++i]));
+                    keys.add(script.replace("\r\n", "<CR>").replace("\n", "<CR>"));
+                } catch (IOException e) {
+                    err.println(args[i] + ": " + e.getMessage());
+                    return 1;
+                }
+            } else if (arg.equals("-u")) {
+                rcFile = args[++i];
+            } else if (arg.startsWith("-") && ! arg.equals("-")) {
+                return usage(err);
+            } else {
+                files.add(new File(arg));
+            }
+        }
+        if (keys.isEmpty()) {
+            return usage(err);
+        }
+
+        // Like Eclipse, all editors share the configuration and the registers.
+        GlobalConfiguration sharedConfiguration = new SimpleGlobalConfiguration(
+                Collections.<DefaultConfigProvider>emptyList());
+        RegisterManager registerManager = new DefaultRegisterManager();
+        boolean readRcFile = DefaultEditorAdaptor.SHOULD_READ_RC_FILE;
+        if (rcFile != null) {
+            DefaultEditorAdaptor.SHOULD_READ_RC_FILE = false;
+        }
+        try {
+            if (files.isEmpty()) {
+                String text;
+                try {
+                    text = read(in);
+                } catch (IOException e) {
+                    err.println("stdin: " + e.getMessage());
+                    return 1;
+                }
+                HeadlessEditor editor = edit(text, null, rcFile, keys, sharedConfiguration,
+                        registerManager, err, "");
+                out.print(editor.getText());
+                out.flush();
+                return editor.getPlatform().getUserInterfaceService().getErrorCount() > 0 ? 1 : 0;
+            }
+            int status = 0;
+            for (File file : files) {
+                // With several files the messages tell which one they are about.
+                String prefix = files.size() > 1 ? file.getPath() + ": " : "";
+                try {
+                    String original = read(new FileInputStream(file));
+                    HeadlessEditor editor = edit(original, file, rcFile, keys,
+                            sharedConfiguration, registerManager, err, prefix);
+                    if (editor.getPlatform().getUserInterfaceService().getErrorCount() > 0) {
+                        status = 1;
+                    }
+                    if ( ! editor.getText().equals(original)) {
+                        write(file, editor.getText());
+                    }
+                } catch (IOException e) {
+                    err.println(file.getPath() + ": " + e.getMessage());
+                    status = 1;
+                }
+            }
+            return status;
+        } finally {
+            DefaultEditorAdaptor.SHOULD_READ_RC_FILE = readRcFile;
+        }
+    }
+
+    private static HeadlessEditor edit(String text, File file, String rcFile, List<String> keys,
+            GlobalConfiguration sharedConfiguration, RegisterManager registerManager,
+            PrintStream err, String messagePrefix) {
+        HeadlessEditor editor = new HeadlessEditor(text, file, sharedConfiguration,
+                registerManager, err);
+        editor.getPlatform().getUserInterfaceService().setMessagePrefix(messagePrefix);
+        if (rcFile != null && ! rcFile.equals("NONE")) {
+            editor.getEditorAdaptor().sourceConfigurationFile(new File(rcFile).getAbsolutePath());
+        }
+        for (String sequence : keys) {
+            editor.type(sequence);
+        }
+        return editor;
+    }
+
+    private static int usage(PrintStream err) {
+        err.println(USAGE);
+        return 2;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString(HeadlessFileService.ENCODING);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, String text) throws IOException {
+        PrintStream out = new PrintStream(file, HeadlessFileService.ENCODING);
+        try {
+            out.print(text);
+            if (out.checkError()) {
+                throw new IOException("Failed to write " + file);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
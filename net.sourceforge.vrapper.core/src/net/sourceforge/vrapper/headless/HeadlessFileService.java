@@ -0,0 +1,131 @@
+package net.sourceforge.vrapper.headless;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.FileService;
+
+/**
+ * File service of a headless editor. The text can be saved to its file, if it has one; there
+ * are no other files or editors to open.
+ */
+public class HeadlessFileService implements FileService {
+
+    public static final String ENCODING = "UTF-8";
+
+    private final HeadlessTextContent content;
+    private final File file;
+
+    /** @param file file of the text, <code>null</code> if there is none. */
+    public HeadlessFileService(HeadlessTextContent content, File file) {
+        this.content = content;
+        this.file = file;
+    }
+
+    public boolean openInGvim(String gvimpath, String gvimargs, int row, int col) throws IOException {
+        return false;
+    }
+
+    public boolean isEditable() {
+        return true;
+    }
+
+    public boolean isReadOnly() {
+        return file != null && file.exists() && ! file.canWrite();
+    }
+
+    public boolean checkModifiable() {
+        return true;
+    }
+
+    public boolean refreshFile() {
+        return false;
+    }
+
+    public boolean revertFile() {
+        return false;
+    }
+
+    public boolean close(boolean force) {
+        return false;
+    }
+
+    public boolean closeAll(boolean force) {
+        return false;
+    }
+
+    public boolean closeOthers(boolean force) {
+        return false;
+    }
+
+    public boolean save() {
+        if (file == null) {
+            return false;
+        }
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), ENCODING);
+            writer.write(content.getText());
+            return true;
+        } catch (IOException e) {
+            VrapperLog.error("Failed to save " + file, e);
+            return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    VrapperLog.error("Failed to close " + file, e);
+                }
+            }
+        }
+    }
+
+    public boolean saveAll() {
+        return save();
+    }
+
+    public boolean createFile(String filename) {
+        return false;
+    }
+
+    public String findFileInPath(String filename, String previous, boolean reverse, String[] paths) {
+        return null;
+    }
+
+    public String getFilePathMatch(String prefix, String previous, boolean reverse, String startDir) {
+        return null;
+    }
+
+    public String getDirPathMatch(String prefix, String previous, boolean reverse, String startDir) {
+        return null;
+    }
+
+    public boolean openFile(String filename) {
+        return false;
+    }
+
+    public boolean findAndOpenFile(String filename, String[] paths) {
+        return false;
+    }
+
+    public String getCurrentFilePath() {
+        return file == null ? null : file.getPath();
+    }
+
+    public String getCurrentFileName() {
+        return file == null ? null : file.getName();
+    }
+
+    public String getFileNameOfGlobalMark(String name) {
+        return null;
+    }
+
+    public String getCurrentFileLocation() throws IOException {
+        return file == null ? null : file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,205 @@
+package net.sourceforge.vrapper.headless;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.utils.UndoTree;
+import net.sourceforge.vrapper.utils.UndoTree.Delta;
+import net.sourceforge.vrapper.utils.UndoTree.Move;
+import net.sourceforge.vrapper.utils.UndoTree.State;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.VrapperEventAdapter;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.modes.EditorMode;
+
+/**
+ * History service of a headless editor, keeping Vim's undo tree.
+ * <p>
+ * Changes are grouped like in Eclipse: by compound change, by command, or as adjacent typing.
+ * The service has to be registered as event listener of the editor to know about commands.
+ */
+public class HeadlessHistoryService extends VrapperEventAdapter implements HistoryService {
+
+    /** Number of characters of undo information kept per KB of 'undomemory'. */
+    private static final int CHARS_PER_KB = 512;
+
+    private final HeadlessTextContent content;
+    private final HeadlessCursorAndSelection cursor;
+    private final Configuration configuration;
+    private final UndoTree undoTree = new UndoTree();
+    private boolean locked;
+    private String lockName = "";
+
+    /** Set while we apply edits of the undo tree ourselves. */
+    private boolean applying;
+    /** Whether the open change was started by a command rather than by a compound change. */
+    private boolean commandChange;
+    private boolean inCommand;
+
+    public HeadlessHistoryService(HeadlessTextContent content, HeadlessCursorAndSelection cursor,
+            Configuration configuration) {
+        this.content = content;
+        this.cursor = cursor;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void lock(String name) {
+        if ( ! locked) {
+            locked = true;
+            lockName = name;
+        }
+    }
+
+    @Override
+    public void unlock(String name) {
+        if (locked && lockName.equals(name)) {
+            locked = false;
+            lockName = "";
+        }
+    }
+
+    @Override
+    public void lock() {
+        lock("unnamed");
+    }
+
+    @Override
+    public void unlock() {
+        unlock("unnamed");
+    }
+
+    @Override
+    public void beginCompoundChange() {
+        if ( ! locked) {
+            undoTree.beginChange(cursor.getCaretOffset());
+            commandChange = false;
+        }
+    }
+
+    @Override
+    public void endCompoundChange() {
+        if ( ! locked) {
+            endChange();
+        }
+    }
+
+    @Override
+    public void commandAboutToExecute(EditorMode mode) {
+        inCommand = true;
+    }
+
+    @Override
+    public void commandExecuted(EditorMode mode) {
+        inCommand = false;
+        if (commandChange) {
+            endChange();
+        }
+    }
+
+    @Override
+    public void undo() {
+        undo(1);
+    }
+
+    @Override
+    public void redo() {
+        redo(1);
+    }
+
+    @Override
+    public void undo(int count) {
+        moveTo(undoTree.undoTarget(count));
+    }
+
+    @Override
+    public void redo(int count) {
+        moveTo(undoTree.redoTarget(count));
+    }
+
+    @Override
+    public void travel(int count) {
+        moveTo(undoTree.chronologicalTarget(count));
+    }
+
+    @Override
+    public void travelInTime(long millis) {
+        moveTo(undoTree.timeTarget(millis));
+    }
+
+    @Override
+    public boolean goToChange(int changeNumber) {
+        State target = undoTree.sequenceTarget(changeNumber);
+        if (target == null) {
+            return false;
+        }
+        moveTo(target);
+        return true;
+    }
+
+    @Override
+    public boolean undoable() {
+        return undoTree.getCurrent() != undoTree.getRoot();
+    }
+
+    @Override
+    public boolean redoable() {
+        return undoTree.redoTarget(1) != undoTree.getCurrent();
+    }
+
+    void textReset() {
+        undoTree.reset();
+        commandChange = false;
+    }
+
+    void textChanged(Delta delta, int caretBeforeChange) {
+        if (applying) {
+            return;
+        }
+        if ( ! undoTree.isChangeOpen()) {
+            // Not inside a compound change: group per command, or merge adjacent typing.
+            undoTree.beginChange(caretBeforeChange);
+            commandChange = inCommand;
+        } else if ( ! commandChange && ! inCommand && ! locked
+                && ! undoTree.touchesLastDelta(delta)) {
+            // Typing jumped elsewhere, start a new change.
+            endChange();
+            undoTree.beginChange(caretBeforeChange);
+        }
+        undoTree.record(delta);
+    }
+
+    private void moveTo(State target) {
+        endChange();
+        Move move;
+        try {
+            move = undoTree.moveTo(target, content);
+        } catch (RuntimeException e) {
+            VrapperLog.error("Undo tree out of sync with text", e);
+            undoTree.reset();
+            return;
+        }
+        if (move == null) {
+            return;
+        }
+        applying = true;
+        try {
+            move.apply(content);
+        } finally {
+            applying = false;
+        }
+        int caretOffset = configuration.get(Options.UNDO_MOVES_CURSOR)
+                ? move.getCaretOffset() : move.getChangeOffset();
+        caretOffset = Math.min(caretOffset, content.getTextLength());
+        cursor.setPosition(cursor.newPositionForModelOffset(caretOffset), StickyColumnPolicy.ON_CHANGE);
+    }
+
+    private void endChange() {
+        if (undoTree.isChangeOpen()) {
+            long memory = (long) configuration.get(Options.UNDO_MEMORY) * CHARS_PER_KB;
+            undoTree.setLimits(configuration.get(Options.UNDO_LEVELS), memory);
+        }
+        undoTree.endChange();
+        commandChange = false;
+    }
+}
@@ -0,0 +1,384 @@
+package net.sourceforge.vrapper.headless;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import net.sourceforge.vrapper.keymap.KeyMapInfo;
+import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.platform.Buffer;
+import net.sourceforge.vrapper.platform.BufferAndTabService;
+import net.sourceforge.vrapper.platform.BufferDoException;
+import net.sourceforge.vrapper.platform.GlobalConfiguration;
+import net.sourceforge.vrapper.platform.HighlightingService;
+import net.sourceforge.vrapper.platform.Platform;
+import net.sourceforge.vrapper.platform.PlatformSpecificModeProvider;
+import net.sourceforge.vrapper.platform.PlatformSpecificStateProvider;
+import net.sourceforge.vrapper.platform.PlatformSpecificTextObjectProvider;
+import net.sourceforge.vrapper.platform.ServiceProvider;
+import net.sourceforge.vrapper.platform.Tab;
+import net.sourceforge.vrapper.platform.UnderlyingEditorSettings;
+import net.sourceforge.vrapper.platform.ViewportService;
+import net.sourceforge.vrapper.utils.DefaultKeyMapProvider;
+import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.StartEndTextRange;
+import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.ViewPortInformation;
+import net.sourceforge.vrapper.vim.DefaultConfigProvider;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LocalConfiguration;
+import net.sourceforge.vrapper.vim.SimpleLocalConfiguration;
+import net.sourceforge.vrapper.vim.TextObjectProvider;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.modes.EditorMode;
+import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
+import net.sourceforge.vrapper.vim.modes.commandline.EvaluatorMapping;
+
+/**
+ * Platform which keeps the text in memory instead of an editor, so that Vrapper can run without
+ * Eclipse: for processing files from the command line, for benchmarks and for tests.
+ * <p>
+ * The whole text counts as visible, nothing is highlighted and there are no platform specific
+ * commands, modes or services. See {@link HeadlessEditor} for putting it together with an
+ * editor adaptor.
+ */
+public class HeadlessPlatform implements Platform {
+
+    private final HeadlessTextContent textContent;
+    private final HeadlessCursorAndSelection cursorAndSelection;
+    private final HeadlessHistoryService historyService;
+    private final HeadlessSearchAndReplaceService searchAndReplaceService;
+    private final HeadlessUserInterfaceService userInterfaceService;
+    private final HeadlessFileService fileService;
+    private final LocalConfiguration localConfiguration;
+    private final DefaultKeyMapProvider keyMapProvider = new DefaultKeyMapProvider();
+    private final HeadlessViewportService viewportService = new HeadlessViewportService();
+    private final HeadlessBufferAndTabService bufferAndTabService;
+
+    /**
+     * @param file file of the text, <code>null</code> if there is none.
+     * @param errorStream stream for error messages, <code>null</code> to only remember them.
+     */
+    public HeadlessPlatform(GlobalConfiguration sharedConfiguration, File file,
+            PrintStream errorStream) {
+        List<DefaultConfigProvider> configProviders = Collections.emptyList();
+        localConfiguration = new SimpleLocalConfiguration(configProviders, sharedConfiguration);
+        textContent = new HeadlessTextContent();
+        cursorAndSelection = new HeadlessCursorAndSelection(textContent, localConfiguration);
+        historyService = new HeadlessHistoryService(textContent, cursorAndSelection,
+                localConfiguration);
+        textContent.connect(cursorAndSelection, historyService);
+        searchAndReplaceService = new HeadlessSearchAndReplaceService(textContent,
+                localConfiguration);
+        userInterfaceService = new HeadlessUserInterfaceService(errorStream);
+        fileService = new HeadlessFileService(textContent, file);
+        bufferAndTabService = new HeadlessBufferAndTabService(file);
+    }
+
+    /** Sets the editor adaptor for commands which run in every buffer. */
+    void setEditorAdaptor(EditorAdaptor editorAdaptor) {
+        bufferAndTabService.editorAdaptor = editorAdaptor;
+    }
+
+    @Override
+    public HeadlessTextContent getModelContent() {
+        return textContent;
+    }
+
+    @Override
+    public HeadlessTextContent getViewContent() {
+        return textContent;
+    }
+
+    @Override
+    public HeadlessCursorAndSelection getCursorService() {
+        return cursorAndSelection;
+    }
+
+    @Override
+    public HeadlessCursorAndSelection getSelectionService() {
+        return cursorAndSelection;
+    }
+
+    @Override
+    public HeadlessFileService getFileService() {
+        return fileService;
+    }
+
+    @Override
+    public ViewportService getViewportService() {
+        return viewportService;
+    }
+
+    @Override
+    public HeadlessHistoryService getHistoryService() {
+        return historyService;
+    }
+
+    @Override
+    public HeadlessUserInterfaceService getUserInterfaceService() {
+        return userInterfaceService;
+    }
+
+    @Override
+    public ServiceProvider getServiceProvider() {
+        return NO_SERVICES;
+    }
+
+    @Override
+    public DefaultKeyMapProvider getKeyMapProvider() {
+        return keyMapProvider;
+    }
+
+    @Override
+    public UnderlyingEditorSettings getUnderlyingEditorSettings() {
+        return NO_EDITOR_SETTINGS;
+    }
+
+    @Override
+    public LocalConfiguration getConfiguration() {
+        return localConfiguration;
+    }
+
+    @Override
+    public PlatformSpecificStateProvider getPlatformSpecificStateProvider(
+            TextObjectProvider textObjectProvider) {
+        return new NoStateProvider();
+    }
+
+    @Override
+    public PlatformSpecificModeProvider getPlatformSpecificModeProvider() {
+        return NO_MODES;
+    }
+
+    @Override
+    public PlatformSpecificTextObjectProvider getPlatformSpecificTextObjectProvider() {
+        return null;
+    }
+
+    @Override
+    public HeadlessSearchAndReplaceService getSearchAndReplaceService() {
+        return searchAndReplaceService;
+    }
+
+    @Override
+    public HighlightingService getHighlightingService() {
+        return NO_HIGHLIGHTING;
+    }
+
+    @Override
+    public String getEditorType() {
+        return "headless";
+    }
+
+    @Override
+    public BufferAndTabService getBufferAndTabService() {
+        return bufferAndTabService;
+    }
+
+    private static final ServiceProvider NO_SERVICES = new ServiceProvider() {
+        public <T> T getService(Class<T> serviceClass) {
+            return null;
+        }
+    };
+
+    private static final UnderlyingEditorSettings NO_EDITOR_SETTINGS = new UnderlyingEditorSettings() {
+        public void setReplaceMode(boolean replace) {
+        }
+
+        public void disableInputMethod() {
+        }
+    };
+
+    private static final PlatformSpecificModeProvider NO_MODES = new PlatformSpecificModeProvider() {
+        public List<EditorMode> getModes(EditorAdaptor editorAdaptor) {
+            return Collections.emptyList();
+        }
+
+        public String getName() {
+            return "headless";
+        }
+    };
+
+    private static final HighlightingService NO_HIGHLIGHTING = new HighlightingService() {
+        public Object highlightRegion(String type, String name, TextRange region) {
+            return region;
+        }
+
+        public Object highlightRegion(String type, String name, int offset, int length) {
+            return new StartEndTextRange(new HeadlessPosition(offset),
+                    new HeadlessPosition(offset + length));
+        }
+
+        public TextRange getHighlightedRegion(Object annotationHandle) {
+            return annotationHandle instanceof TextRange ? (TextRange) annotationHandle : null;
+        }
+
+        public void removeHighlighting(Object annotationHandle) {
+        }
+
+        public List<Object> highlightRegions(String type, String name, List<TextRange> regions) {
+            return new ArrayList<Object>(regions);
+        }
+
+        public void removeHighlights(List<Object> annotationHandles) {
+        }
+    };
+
+    /** Platform specific commands, user commands defined by <tt>:command</tt> are added here. */
+    private static class NoStateProvider implements PlatformSpecificStateProvider {
+
+        private final EvaluatorMapping commands = new EvaluatorMapping();
+
+        public void initializeProvider(TextObjectProvider textObjProvider) {
+        }
+
+        public State<Command> getState(String modeName) {
+            return null;
+        }
+
+        public State<KeyMapInfo> getKeyMaps(String name) {
+            return null;
+        }
+
+        public EvaluatorMapping getCommands() {
+            return commands;
+        }
+
+        public String getName() {
+            return "headless";
+        }
+    }
+
+    /** The whole text is visible at once. */
+    private class HeadlessViewportService implements ViewportService {
+
+        private int batchEdits;
+
+        public void setRepaint(boolean b) {
+        }
+
+        public void lockRepaint(Object lock) {
+        }
+
+        public void unlockRepaint(Object lock) {
+        }
+
+        public void beginBatchEdit() {
+            batchEdits++;
+        }
+
+        public void endBatchEdit() {
+            batchEdits = Math.max(0, batchEdits - 1);
+        }
+
+        public boolean isBatchEditing() {
+            return batchEdits > 0;
+        }
+
+        public boolean isVisible() {
+            return true;
+        }
+
+        public void exposeModelPosition(Position position) {
+        }
+
+        public ViewPortInformation getViewPortInformation() {
+            return new ViewPortInformation(0, textContent.getNumberOfLines() - 1);
+        }
+
+        public void setTopLine(int line) {
+        }
+
+        public int viewLine2ModelLine(int line) {
+            return line;
+        }
+
+        public int modelLine2ViewLine(int line) {
+            return line;
+        }
+    }
+
+    /** There is one buffer in one tab. */
+    private static class HeadlessBufferAndTabService implements BufferAndTabService {
+
+        private final Buffer buffer;
+        private final Tab tab;
+        private EditorAdaptor editorAdaptor;
+
+        public HeadlessBufferAndTabService(File file) {
+            final String name = file == null ? "[No Name]" : file.getName();
+            buffer = new Buffer() {
+                public int getId() {
+                    return 1;
+                }
+
+                public String getDisplayName() {
+                    return name;
+                }
+
+                public boolean isActive() {
+                    return true;
+                }
+
+                public boolean isAlternate() {
+                    return false;
+                }
+            };
+            tab = new Tab() {
+                public int getNumber() {
+                    return 1;
+                }
+
+                public String getDisplayName() {
+                    return name;
+                }
+
+                public boolean isActive() {
+                    return true;
+                }
+            };
+        }
+
+        public Buffer getPreviousBuffer() {
+            return null;
+        }
+
+        public Buffer getActiveBuffer() {
+            return buffer;
+        }
+
+        public void switchBuffer(Buffer buffer) {
+        }
+
+        public List<Buffer> getBuffers() {
+            return Collections.singletonList(buffer);
+        }
+
+        public List<Object> doInBuffers(boolean initialize, Queue<String> command,
+                Evaluator code) throws BufferDoException {
+            List<Object> result = new ArrayList<Object>();
+            try {
+                result.add(code.evaluate(editorAdaptor, command));
+            } catch (CommandExecutionException e) {
+                throw new BufferDoException(result, editorAdaptor, e);
+            }
+            return result;
+        }
+
+        public Tab getActiveTab() {
+            return tab;
+        }
+
+        public List<Tab> getTabs() {
+            return Collections.singletonList(tab);
+        }
+
+        public void switchTab(Tab tab) {
+        }
+    }
+}
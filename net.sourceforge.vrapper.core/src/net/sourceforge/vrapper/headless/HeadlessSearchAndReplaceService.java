@@ -0,0 +1,91 @@
+package net.sourceforge.vrapper.headless;
+
+import java.util.regex.MatchResult;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.SearchAndReplaceService;
+import net.sourceforge.vrapper.platform.VrapperPlatformException;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.RegexSearch;
+import net.sourceforge.vrapper.utils.Search;
+import net.sourceforge.vrapper.utils.SearchResult;
+
+/**
+ * Search and replace of a headless editor, working like the one in Eclipse through
+ * {@link RegexSearch}. There is nothing to highlight.
+ */
+public class HeadlessSearchAndReplaceService implements SearchAndReplaceService {
+
+    private final HeadlessTextContent content;
+    private final Configuration configuration;
+    private long snapshotStamp = -1;
+    private String snapshot;
+
+    public HeadlessSearchAndReplaceService(HeadlessTextContent content, Configuration configuration) {
+        this.content = content;
+        this.configuration = configuration;
+    }
+
+    public SearchResult find(Search search, Position start) {
+        try {
+            MatchResult result = RegexSearch.find(search, getText(), start.getModelOffset());
+            Position resultPosition = result != null ? start.setModelOffset(result.start()) : null;
+            Position endPosition = result != null ? start.setModelOffset(result.end()) : null;
+            return new SearchResult(resultPosition, endPosition);
+        } catch (PatternSyntaxException e) {
+            throw new VrapperPlatformException("Regex uses bad format: " + e.getMessage(), e);
+        }
+    }
+
+    public int replace(LineInformation line, String toFind, String replace, String flags) {
+        return RegexSearch.replaceInLine(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), line,
+                replace, flags.contains("g"), flags.contains("n"), configuration.getNewLine());
+    }
+
+    public boolean isCaseSensitive(String toFind, String flags) {
+        return RegexSearch.isCaseSensitive(configuration, toFind, flags);
+    }
+
+    public boolean substitute(int start, String toFind, String flags, String toReplace) {
+        return RegexSearch.substitute(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), start,
+                toReplace, configuration.getNewLine());
+    }
+
+    public int substituteAll(int start, int end, String toFind, String flags, String toReplace) {
+        return RegexSearch.substituteAll(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), start, end,
+                toReplace, flags.contains("g"), configuration.getNewLine());
+    }
+
+    /**
+     * @return the text. It is copied only once per modification, so consecutive searches share
+     *  the same copy.
+     */
+    private CharSequence getText() {
+        if (snapshot == null || snapshotStamp != content.getModificationStamp()) {
+            snapshot = content.getText();
+            snapshotStamp = content.getModificationStamp();
+        }
+        return snapshot;
+    }
+
+    public void highlight(Search search) {
+        // Nothing is displayed.
+    }
+
+    public void removeHighlighting() {
+        // Nothing is displayed.
+    }
+
+    public void incSearchhighlight(Position start, int length) {
+        // Nothing is displayed.
+    }
+
+    public void removeIncSearchHighlighting() {
+        // Nothing is displayed.
+    }
+}
@@ -0,0 +1,223 @@
+package net.sourceforge.vrapper.headless;
+
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.platform.VrapperPlatformException;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.Space;
+import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.UndoTree.Delta;
+
+/**
+ * Text of a headless editor. There are no folds, so the same instance serves as model and view
+ * content.
+ * <p>
+ * The offsets of the line starts are kept in an array. A change only scans the lines it touches
+ * again and moves the starts after it, so line lookups are a binary search even on big files.
+ * Like a text widget, the content tells the cursor and the history about every change.
+ */
+public class HeadlessTextContent implements TextContent {
+
+    private final StringBuilder buffer = new StringBuilder();
+    /** Offsets of the first {@link #lineCount} line starts, the first one is always 0. */
+    private int[] lineStarts = new int[16];
+    private int lineCount = 1;
+    private long modificationStamp;
+    private HeadlessCursorAndSelection cursor;
+    private HeadlessHistoryService history;
+
+    void connect(HeadlessCursorAndSelection cursor, HeadlessHistoryService history) {
+        this.cursor = cursor;
+        this.history = history;
+    }
+
+    /**
+     * Replaces the whole text. The cursor moves to the start, marks and undo history are
+     * forgotten.
+     */
+    public void setText(String text) {
+        buffer.setLength(0);
+        buffer.append(text);
+        modificationStamp++;
+        lineCount = 1;
+        int[] starts = scanLineStarts(0, buffer.length());
+        insertLineStarts(1, starts);
+        if (cursor != null) {
+            cursor.textReset();
+        }
+        if (history != null) {
+            history.textReset();
+        }
+    }
+
+    public String getText() {
+        return buffer.toString();
+    }
+
+    public LineInformation getLineInformation(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new VrapperPlatformException("Failed to get line info for ML" + line);
+        }
+        int begin = lineStarts[line];
+        int end;
+        if (line + 1 < lineCount) {
+            end = lineStarts[line + 1] - 1;
+            if (end > begin && buffer.charAt(end) == '\n' && buffer.charAt(end - 1) == '\r') {
+                end--;
+            }
+        } else {
+            end = buffer.length();
+        }
+        return new LineInformation(line, begin, end - begin);
+    }
+
+    public LineInformation getLineInformationOfOffset(int offset) {
+        if (offset < 0 || offset > buffer.length()) {
+            throw new VrapperPlatformException("Failed to get line info for M" + offset);
+        }
+        return getLineInformation(getLineOfOffset(offset));
+    }
+
+    public int getNumberOfLines() {
+        return lineCount;
+    }
+
+    public String getText(int index, int length) {
+        if (index < 0 || length < 0 || index + length > buffer.length()) {
+            throw new VrapperPlatformException("Failed to get text for M" + index
+                    + " (" + length + " chars)");
+        }
+        return buffer.substring(index, index + length);
+    }
+
+    public String getText(TextRange range) {
+        return getText(range.getLeftBound().getModelOffset(), range.getModelLength());
+    }
+
+    char charAt(int offset) {
+        return buffer.charAt(offset);
+    }
+
+    /** @return a number which changes whenever the text changes. */
+    long getModificationStamp() {
+        return modificationStamp;
+    }
+
+    public int getTextLength() {
+        return buffer.length();
+    }
+
+    public Space getSpace() {
+        return Space.MODEL;
+    }
+
+    /**
+     * Replaces text like a text widget does: the cursor stays in front of text inserted at its
+     * offset, and moves behind the new text when the text around it is replaced.
+     */
+    public void replace(int index, int length, String s) {
+        if (index > buffer.length()) {
+            index = buffer.length();
+        }
+        if (index < 0 || length < 0 || index + length > buffer.length()) {
+            throw new VrapperPlatformException("Failed to replace for M" + index
+                    + " (" + length + " chars)");
+        }
+        int caretBeforeChange = cursor == null ? index : cursor.getCaretOffset();
+        String removed = buffer.substring(index, index + length);
+        buffer.replace(index, index + length, s);
+        modificationStamp++;
+        updateLineStarts(index, length, s.length());
+        if (cursor != null) {
+            cursor.textChanged(index, length, s.length());
+        }
+        if (history != null) {
+            history.textChanged(new Delta(index, removed, s), caretBeforeChange);
+        }
+    }
+
+    /** Inserts text like typing it: if the cursor is at <tt>index</tt>, it moves behind it. */
+    public void smartInsert(int index, String s) {
+        boolean atCaret = cursor != null && cursor.getCaretOffset() == index;
+        replace(index, 0, s);
+        if (atCaret) {
+            cursor.moveCaret(index + s.length());
+        }
+    }
+
+    public void smartInsert(String s) {
+        smartInsert(cursor.getCaretOffset(), s);
+    }
+
+    private int getLineOfOffset(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adapts the line starts to <tt>length</tt> characters at <tt>index</tt> being replaced with
+     * <tt>textLength</tt> characters. Starts after the old text stay valid and only move. The
+     * scan begins one character early, as a <tt>\r</tt> there might now be followed by
+     * <tt>\n</tt>.
+     */
+    private void updateLineStarts(int index, int length, int textLength) {
+        int first = index == 0 ? 0 : getLineOfOffset(index - 1);
+        int oldEnd = index + length;
+        int keep = first + 1;
+        while (keep < lineCount && lineStarts[keep] <= oldEnd) {
+            keep++;
+        }
+        int delta = textLength - length;
+        for (int i = keep; i < lineCount; i++) {
+            lineStarts[i] += delta;
+        }
+        int[] starts = scanLineStarts(lineStarts[first], index + textLength);
+        System.arraycopy(lineStarts, keep, lineStarts, first + 1, lineCount - keep);
+        lineCount -= keep - first - 1;
+        insertLineStarts(first + 1, starts);
+    }
+
+    /** @return the line starts in the range (<tt>from</tt>, <tt>to</tt>] of the current text. */
+    private int[] scanLineStarts(int from, int to) {
+        int[] starts = new int[8];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            char c = buffer.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == buffer.length() || buffer.charAt(i + 1) != '\n'))) {
+                if (count == starts.length) {
+                    int[] grown = new int[count * 2];
+                    System.arraycopy(starts, 0, grown, 0, count);
+                    starts = grown;
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(starts, 0, result, 0, count);
+        return result;
+    }
+
+    private void insertLineStarts(int line, int[] starts) {
+        if (lineCount + starts.length > lineStarts.length) {
+            int[] grown = new int[Math.max(lineStarts.length * 2, lineCount + starts.length)];
+            System.arraycopy(lineStarts, 0, grown, 0, lineCount);
+            lineStarts = grown;
+        }
+        System.arraycopy(lineStarts, line, lineStarts, line + starts.length, lineCount - line);
+        System.arraycopy(starts, 0, lineStarts, line, starts.length);
+        lineCount += starts.length;
+    }
+
+    @Override
+    public String toString() {
+        return "HeadlessTextContent(" + lineCount + " lines, " + buffer.length() + " chars)";
+    }
+}
@@ -0,0 +1,110 @@
+package net.sourceforge.vrapper.headless;
+
+import java.io.PrintStream;
+
+import net.sourceforge.vrapper.platform.CommandLineUI;
+import net.sourceforge.vrapper.platform.UserInterfaceService;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+
+/**
+ * User interface of a headless editor. The messages are only remembered, error messages can also
+ * be printed to a stream. The errors are counted, so a script can tell whether its keys failed.
+ */
+public class HeadlessUserInterfaceService implements UserInterfaceService {
+
+    private final PrintStream errorStream;
+    private final CommandLineUI commandLine = new HeadlessCommandLine();
+    private String editorMode = "";
+    private String lastCommandResultValue = "";
+    private String lastInfoValue = "";
+    private String lastErrorValue = "";
+    private boolean infoSet;
+    private String messagePrefix = "";
+    private int errorCount;
+
+    /** @param errorStream stream for error messages, <code>null</code> to only remember them. */
+    public HeadlessUserInterfaceService(PrintStream errorStream) {
+        this.errorStream = errorStream;
+    }
+
+    /** Sets the text printed before each error message, e.g. the name of the file. */
+    public void setMessagePrefix(String messagePrefix) {
+        this.messagePrefix = messagePrefix;
+    }
+
+    /** @return the number of error messages set so far. */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    public String getEditorMode() {
+        return editorMode;
+    }
+
+    @Override
+    public void setEditorMode(String modeName) {
+        editorMode = modeName;
+    }
+
+    @Override
+    public void setAsciiValues(String asciiValue, int decValue, String hexValue, String octalValue) {
+        lastCommandResultValue = "<" + asciiValue + ">  " + decValue + ",  "
+                + "Hex " + hexValue + ",  " + "Octal " + octalValue;
+        setInfoMessage(lastCommandResultValue);
+    }
+
+    @Override
+    public String getLastCommandResultValue() {
+        return lastCommandResultValue;
+    }
+
+    @Override
+    public void setLastCommandResultValue(String lastCommandResultValue) {
+        this.lastCommandResultValue = lastCommandResultValue;
+    }
+
+    @Override
+    public void setInfoMessage(String content) {
+        lastInfoValue = content;
+    }
+
+    @Override
+    public String getLastInfoValue() {
+        return lastInfoValue;
+    }
+
+    @Override
+    public void setErrorMessage(String content) {
+        lastErrorValue = content;
+        if (content != null && content.length() > 0) {
+            errorCount++;
+            if (errorStream != null) {
+                errorStream.println(messagePrefix + content);
+            }
+        }
+    }
+
+    @Override
+    public String getLastErrorValue() {
+        return lastErrorValue;
+    }
+
+    @Override
+    public void setRecording(boolean recording, String macroName) {
+    }
+
+    @Override
+    public void setInfoSet(boolean infoSet) {
+        this.infoSet = infoSet;
+    }
+
+    @Override
+    public boolean isInfoSet() {
+        return infoSet;
+    }
+
+    @Override
+    public CommandLineUI getCommandLineUI(EditorAdaptor editorAdaptor) {
+        return commandLine;
+    }
+}
@@ -0,0 +1,17 @@
+package net.sourceforge.vrapper.platform;
+
+import net.sourceforge.vrapper.utils.CodeStructure;
+
+/**
+ * Structure of the source code in an editor as the language tooling of the platform sees it.
+ * Available through {@link ServiceProvider#getService(Class)}.
+ */
+public interface CodeStructureService {
+
+    /**
+     * @return the method bodies of the current text, <code>null</code> if they are not known.
+     *  Callers then fall back to {@link CodeStructure#scanBraces(TextContent)}.
+     */
+    CodeStructure getCodeStructure();
+
+}
@@ -0,0 +1,14 @@
+package net.sourceforge.vrapper.platform;
+
+/**
+ * Commands of the platform which can't run right away and were queued to run after the keys
+ * which invoked them. Macros and <tt>:normal</tt> run the queue before they go on with the next
+ * key, so that the commands and the keys take effect in the order they were given.
+ * Available through {@link ServiceProvider#getService(Class)}.
+ */
+public interface CommandQueueService {
+
+    /** Runs the queued commands now, in the order they were queued. */
+    void flush();
+
+}
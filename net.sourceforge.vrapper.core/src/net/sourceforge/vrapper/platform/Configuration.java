@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sourceforge.vrapper.platform.SimpleConfiguration.NewLine;
 
@@ -50,6 +51,10 @@ public interface Configuration {
     public final static String SET_DELIMITER = ",";
     public final static String SET_VALUE_ITEM = ":";
 
+        /** Source of the dense ordinals handed out to every option as it is created. */
+        private static final AtomicInteger ORDINALS = new AtomicInteger();
+
+        private final int ordinal;
         private final String id;
         private final String[] alias;
         private final T defaultValue;
@@ -71,6 +76,7 @@ public interface Configuration {
             allNames.add(id);
             allNames.addAll(Arrays.asList(alias));
             this.scope = scope;
+            this.ordinal = ORDINALS.getAndIncrement();
         }
 
         public static final Option<Boolean> bool(String id, boolean defaultValue, String... alias) {
@@ -134,10 +140,27 @@ public interface Configuration {
             return new Option<Integer>(id, defaultValue, null, alias);
         }
 
+        public static final Option<Integer> globalInteger(String id, int defaultValue, String... alias) {
+            return new Option<Integer>(id, OptionScope.GLOBAL, defaultValue, null, alias);
+        }
+
         public String getId() {
             return id;
         }
 
+        /**
+         * Dense, zero-based index of this option, unique among all options created so far.
+         * Configurations use it to store values in plain arrays instead of maps.
+         */
+        public int getOrdinal() {
+            return ordinal;
+        }
+
+        /** @return the number of options created so far, an upper bound for {@link #getOrdinal()}. */
+        public static int count() {
+            return ORDINALS.get();
+        }
+
         public T getDefaultValue() {
             return defaultValue;
         }
@@ -168,6 +168,12 @@ public interface CursorService {
     Position getNextChangeLocation(int count);
     Position getPrevChangeLocation(int count);
 
+    /**
+     * Access the jump list, '&lt;C-i&gt;' and '&lt;C-o&gt;'.
+     */
+    Position getNextJumpLocation(int count);
+    Position getPrevJumpLocation(int count);
+
     /**
      * Registers the current location in the jump list.
      */
@@ -3,6 +3,22 @@ package net.sourceforge.vrapper.platform;
 public interface HistoryService {
 	void undo();
 	void redo();
+	/** Undoes <tt>count</tt> changes as a single edit. */
+	void undo(int count);
+	/** Redoes <tt>count</tt> changes as a single edit. */
+	void redo(int count);
+	/**
+	 * Moves <tt>count</tt> text states in chronological order, across undo branches
+	 * (like Vim's <tt>g-</tt> and <tt>g+</tt>). Negative counts go back in time.
+	 */
+	void travel(int count);
+	/** Moves to the text state as it was <tt>millis</tt> milliseconds later (or earlier if negative). */
+	void travelInTime(long millis);
+	/**
+	 * Moves to the text state after change number <tt>changeNumber</tt>, 0 being the original text.
+	 * @return <code>false</code> if there is no such change.
+	 */
+	boolean goToChange(int changeNumber);
 	boolean undoable();
 	boolean redoable();
 	void beginCompoundChange();
@@ -0,0 +1,18 @@
+package net.sourceforge.vrapper.platform;
+
+/**
+ * Tells apart code from comments and literals, as the partitioning of the editor's document
+ * does. Available through {@link ServiceProvider#getService(Class)}.
+ */
+public interface PartitionService {
+
+    /** @return whether the character at the offset is code, not part of a comment or literal. */
+    boolean isCode(int offset);
+
+    /** @return the first offset of the partition which contains the offset. */
+    int getPartitionStart(int offset);
+
+    /** @return the offset after the last character of the partition which contains the offset. */
+    int getPartitionEnd(int offset);
+
+}
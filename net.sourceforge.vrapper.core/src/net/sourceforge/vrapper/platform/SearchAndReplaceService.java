@@ -38,6 +38,19 @@ public interface SearchAndReplaceService {
      */
     boolean substitute(int start, String toFind, String flags, String toReplace);
 
+    /**
+     * Perform all substitutions from a match on. Without the 'g' flag only the first match of
+     * each line is replaced, as when confirming every match of <code>:s///c</code> one by one.
+     * Every match is replaced on its own, so marks and the like between them are kept.
+     * @param start - model index of the first match
+     * @param end - model index which the matches must end before
+     * @param toFind - String to search for
+     * @param flags - Regex flags like 'g' for global and 'i' for insensitive case
+     * @param toReplace - String to replace 'toFind' with
+     * @return model index of the last substitution in the changed text, -1 if none was performed
+     */
+    int substituteAll(int start, int end, String toFind, String flags, String toReplace);
+
     /**
      * Parse find string and flags (and use local config)
      * to determine whether the search should be case-sensitive.
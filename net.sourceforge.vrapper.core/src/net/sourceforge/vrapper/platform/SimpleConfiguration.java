@@ -1,26 +1,68 @@
 package net.sourceforge.vrapper.platform;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sourceforge.vrapper.vim.DefaultConfigProvider;
 
+/**
+ * Configuration storing its values in arrays indexed by {@link Option#getOrdinal()}.
+ * <p>
+ * Effective values (explicit value, provider default or built-in default) are cached per option.
+ * The cache is tagged with a version number which is shared by all configurations: any
+ * {@link #set(Option, Object)} or {@link #defaultsChanged()} call bumps it, which makes every
+ * configuration recompute its effective values lazily. This matters because local configurations
+ * fall back on the shared configuration through their default providers.
+ */
 public class SimpleConfiguration implements Configuration {
 
+    /** Incremented whenever a value or a default of any configuration might have changed. */
+    private static final AtomicInteger VERSION = new AtomicInteger();
+
     private String newLine = NewLine.SYSTEM.nl;
-    private final Map<Option<?>, Object> vars = new HashMap<Option<?>, Object>();
+    private Object[] vars = new Object[Option.count()];
+    private Object[] effectiveValues = new Object[Option.count()];
+    private int effectiveVersion = VERSION.get();
     private final List<DefaultConfigProvider> defaultConfigProviders;
 
     public SimpleConfiguration(List<DefaultConfigProvider> defaultConfigProviders) {
         this.defaultConfigProviders = defaultConfigProviders;
     }
 
+    /**
+     * Signals that one of the {@link DefaultConfigProvider}s might return a different value now,
+     * for example because an underlying preference was changed. Cached values of all
+     * configurations are discarded.
+     */
+    public static void defaultsChanged() {
+        VERSION.incrementAndGet();
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T get(Option<T> key) {
+        int ordinal = key.getOrdinal();
+        int currentVersion = VERSION.get();
+        if (effectiveVersion != currentVersion) {
+            Arrays.fill(effectiveValues, null);
+            effectiveVersion = currentVersion;
+        }
+        if (ordinal < effectiveValues.length && effectiveValues[ordinal] != null) {
+            return (T) effectiveValues[ordinal];
+        }
+        T value = computeValue(key);
+        if (ordinal >= effectiveValues.length) {
+            effectiveValues = Arrays.copyOf(effectiveValues, Option.count());
+        }
+        effectiveValues[ordinal] = value;
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T computeValue(Option<T> key) {
         if (isSet(key)) {
-            return (T) vars.get(key);
+            return (T) vars[key.getOrdinal()];
         }
         T value = null;
         Iterator<DefaultConfigProvider> it = defaultConfigProviders.iterator();
@@ -37,14 +79,20 @@ public class SimpleConfiguration implements Configuration {
     }
 
     public <T> boolean isSet(Option<T> key) {
-        return vars.containsKey(key);
+        int ordinal = key.getOrdinal();
+        return ordinal < vars.length && vars[ordinal] != null;
     }
 
     public <T> void set(Option<T> key, T value) {
         if (value == null) {
             throw new NullPointerException("value must not be null");
         }
-        vars.put(key, value);
+        int ordinal = key.getOrdinal();
+        if (ordinal >= vars.length) {
+            vars = Arrays.copyOf(vars, Option.count());
+        }
+        vars[ordinal] = value;
+        VERSION.incrementAndGet();
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,18 @@
+package net.sourceforge.vrapper.platform;
+
+/**
+ * Runs tasks after a delay on the thread which handles the keys.
+ * Available through {@link ServiceProvider#getService(Class)}.
+ */
+public interface TimerService {
+
+    /**
+     * Runs the task after the delay. If the task is already waiting, it waits the full delay
+     * again from now.
+     */
+    void schedule(Runnable task, int delayMillis);
+
+    /** Drops the task if it is waiting. */
+    void cancel(Runnable task);
+
+}
@@ -26,6 +26,29 @@ public interface ViewportService {
 	 */
 	void unlockRepaint(Object lock);
 
+	/**
+	 * Starts a batch of edits done by a single command. Until the matching
+	 * {@link #endBatchEdit()}, the view isn't repainted and caret and selection
+	 * listeners aren't notified. Batches may be nested.
+	 */
+	void beginBatchEdit();
+
+	/**
+	 * Ends a batch of edits. Closing the outermost batch refreshes the view once
+	 * and scrolls to the cursor if it ended up outside the visible area.
+	 */
+	void endBatchEdit();
+
+	/**
+	 * @return whether a batch of edits is in progress.
+	 */
+	boolean isBatchEditing();
+
+	/**
+	 * @return whether the editor is currently shown, i.e. not hidden behind another tab.
+	 */
+	boolean isVisible();
+
 	/**
 	 * Exposes the given model offset if it is in a folded area.
 	 *
@@ -0,0 +1,168 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * Where the bodies of the methods in a document start and end. Used by <tt>[m</tt>, <tt>]m</tt>
+ * and the method text objects.
+ * <p>
+ * A body is given by the offsets of its first and last character, which are <tt>{</tt> and
+ * <tt>}</tt> for languages with braces. Either offset may be <code>-1</code> if the body isn't
+ * complete.
+ */
+public class CodeStructure {
+
+    /** First and last offsets of the bodies, sorted by the first offset. */
+    private final int[] starts;
+    private final int[] ends;
+    /** The last offsets alone, sorted. */
+    private final int[] sortedEnds;
+
+    private CodeStructure(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+        int count = 0;
+        for (int end : ends) {
+            if (end >= 0) {
+                count++;
+            }
+        }
+        sortedEnds = new int[count];
+        count = 0;
+        for (int end : ends) {
+            if (end >= 0) {
+                sortedEnds[count++] = end;
+            }
+        }
+        Arrays.sort(sortedEnds);
+    }
+
+    /**
+     * Finds the methods the way Vim does: a <tt>{</tt> which is nested in exactly one other pair
+     * of braces starts a method body. Braces in strings and comments are counted, too.
+     */
+    public static CodeStructure scanBraces(TextContent content) {
+        String text = content.getText(0, content.getTextLength());
+        Builder builder = new Builder();
+        int depth = 0;
+        int open = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                if (depth == 1) {
+                    if (open >= 0) {
+                        builder.addMethod(open, -1);
+                    }
+                    open = i;
+                }
+                depth++;
+            } else if (c == '}') {
+                if (depth == 2) {
+                    builder.addMethod(open, i);
+                    open = -1;
+                }
+                depth--;
+            }
+        }
+        if (open >= 0) {
+            builder.addMethod(open, -1);
+        }
+        return builder.build();
+    }
+
+    /** @return the first start after the offset, <code>-1</code> if there is none. */
+    public int nextStart(int offset) {
+        int index = firstAfter(starts, offset);
+        return index < starts.length ? starts[index] : -1;
+    }
+
+    /** @return the last start before the offset, <code>-1</code> if there is none. */
+    public int previousStart(int offset) {
+        int index = firstAfter(starts, offset - 1) - 1;
+        return index >= 0 ? starts[index] : -1;
+    }
+
+    /** @return the first end after the offset, <code>-1</code> if there is none. */
+    public int nextEnd(int offset) {
+        int index = firstAfter(sortedEnds, offset);
+        return index < sortedEnds.length ? sortedEnds[index] : -1;
+    }
+
+    /** @return the last end before the offset, <code>-1</code> if there is none. */
+    public int previousEnd(int offset) {
+        int index = firstAfter(sortedEnds, offset - 1) - 1;
+        return index >= 0 ? sortedEnds[index] : -1;
+    }
+
+    /**
+     * @return the innermost complete method body which contains the offset, including its first
+     *  and last character, <code>null</code> if there is none.
+     */
+    public TextRange enclosingMethod(CursorService cursorService, int offset) {
+        for (int i = firstAfter(starts, offset) - 1; i >= 0; i--) {
+            if (starts[i] >= 0 && ends[i] >= offset) {
+                return new StartEndTextRange(cursorService.newPositionForModelOffset(starts[i]),
+                        cursorService.newPositionForModelOffset(ends[i]));
+            }
+        }
+        return null;
+    }
+
+    /** @return index of the first value greater than the offset. */
+    private static int firstAfter(int[] values, int offset) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Collects method bodies in any order.
+     */
+    public static class Builder {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int size;
+
+        public Builder addMethod(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+            return this;
+        }
+
+        public CodeStructure build() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return starts[a] < starts[b] ? -1 : starts[a] == starts[b] ? 0 : 1;
+                }
+            });
+            int[] sortedStarts = new int[size];
+            int[] matchingEnds = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedStarts[i] = starts[order[i]];
+                matchingEnds[i] = ends[order[i]];
+            }
+            return new CodeStructure(sortedStarts, matchingEnds);
+        }
+    }
+}
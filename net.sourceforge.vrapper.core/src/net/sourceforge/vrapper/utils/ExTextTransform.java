@@ -0,0 +1,209 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+
+/**
+ * The file-local subset of ex commands, applied to plain text instead of an editor:
+ * <pre>
+ * :%s/foo/bar/g
+ * :g/pattern/d
+ * :v/pattern/s/foo/bar/
+ * </pre>
+ * These commands only depend on the text they are applied to, so files which aren't open in an
+ * editor can be processed without one (see <tt>:argdo</tt> and <tt>:bufdo</tt>). Instances are
+ * immutable and can be applied from several threads at once.
+ * <p>
+ * The replacement string follows the same rules as in the editor (Eclipse's find/replace):
+ * <tt>$1</tt> or <tt>\1</tt> for groups, <tt>\R</tt> for a newline.
+ */
+public class ExTextTransform {
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\r|\n");
+
+    /** Pattern of a :g or :v command, <code>null</code> if the command applies to every line. */
+    private final Pattern linePattern;
+    private final boolean lineMatches;
+    private final boolean deleteLines;
+    private final Pattern find;
+    private final String replace;
+    private final boolean replaceAll;
+
+    private ExTextTransform(Pattern linePattern, boolean lineMatches, boolean deleteLines,
+            Pattern find, String replace, boolean replaceAll) {
+        this.linePattern = linePattern;
+        this.lineMatches = lineMatches;
+        this.deleteLines = deleteLines;
+        this.find = find;
+        this.replace = replace;
+        this.replaceAll = replaceAll;
+    }
+
+    /**
+     * Parses an ex command.
+     * @param vim used for the last search pattern, register contents and case sensitivity.
+     * @return <code>null</code> if the command isn't one of the supported file-local commands.
+     * @throws IllegalArgumentException if the command is supported but malformed.
+     */
+    public static ExTextTransform parse(String command, EditorAdaptor vim) {
+        command = command.trim();
+        while (command.startsWith(":")) {
+            command = command.substring(1);
+        }
+        boolean wholeFile = command.startsWith("%");
+        if (wholeFile) {
+            command = command.substring(1);
+        }
+        boolean lineMatches;
+        if (command.startsWith("g!")) {
+            lineMatches = false;
+            command = command.substring(2);
+        } else if (command.startsWith("g") || command.startsWith("v")) {
+            lineMatches = command.startsWith("g");
+            command = command.substring(1);
+        } else if (wholeFile && isSubstitution(command)) {
+            return substitution(null, true, command, vim);
+        } else {
+            // Without a range, :s would only apply to the cursor line.
+            return null;
+        }
+        if (command.length() < 2 || Character.isLetterOrDigit(command.charAt(0))) {
+            return null;
+        }
+        char delimiter = command.charAt(0);
+        int patternEnd = command.indexOf(delimiter, 1);
+        if (patternEnd < 0) {
+            throw new IllegalArgumentException("Missing separator!");
+        }
+        String pattern = command.substring(1, patternEnd);
+        if (pattern.length() == 0) {
+            pattern = vim.getRegisterManager().getRegister("/").getContent().getText();
+        }
+        Pattern linePattern = compile(pattern, "", vim);
+        String subCommand = command.substring(patternEnd + 1).trim();
+        if (subCommand.equals("d") || subCommand.equals("delete")) {
+            return new ExTextTransform(linePattern, lineMatches, true, null, null, false);
+        } else if (isSubstitution(subCommand)) {
+            return substitution(linePattern, lineMatches, subCommand, vim);
+        }
+        return null;
+    }
+
+    private static boolean isSubstitution(String command) {
+        return command.length() > 1 && command.charAt(0) == 's'
+                && ! Character.isLetterOrDigit(command.charAt(1))
+                && ! Character.isWhitespace(command.charAt(1));
+    }
+
+    private static ExTextTransform substitution(Pattern linePattern, boolean lineMatches,
+            String command, EditorAdaptor vim) {
+        SubstitutionDefinition definition =
+                new SubstitutionDefinition(command, vim.getRegisterManager());
+        if (definition.hasFlag('c') || definition.hasFlag('n')) {
+            // Needs user interaction or only reports counts.
+            return null;
+        }
+        Pattern find = compile(definition.find, definition.flags, vim);
+        return new ExTextTransform(linePattern, lineMatches, false, find, definition.replace,
+                definition.hasFlag('g'));
+    }
+
+    private static Pattern compile(String pattern, String flags, EditorAdaptor vim) {
+        int patternFlags = 0;
+        if ( ! vim.getSearchAndReplaceService().isCaseSensitive(pattern, flags)) {
+            patternFlags = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        try {
+            return VimRegex.compile(pattern, patternFlags);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException(e.getDescription());
+        }
+    }
+
+    /**
+     * Applies the command to the given text.
+     * @return the new text, or <code>null</code> if nothing changed.
+     */
+    public String apply(String text) {
+        Matcher lineBreaks = LINE_BREAK.matcher(text);
+        String newLine = lineBreaks.find() ? lineBreaks.group() : "\n";
+        lineBreaks.reset();
+
+        StringBuilder result = new StringBuilder(text.length());
+        boolean changed = false;
+        int lineStart = 0;
+        Matcher lineMatcher = linePattern == null ? null : linePattern.matcher("");
+        boolean lastLineDeleted = false;
+        while (lineStart <= text.length()) {
+            int lineEnd;
+            int nextLine;
+            if (lineBreaks.find()) {
+                lineEnd = lineBreaks.start();
+                nextLine = lineBreaks.end();
+            } else {
+                lineEnd = text.length();
+                nextLine = text.length() + 1;
+                if (lineStart == lineEnd && lineStart > 0) {
+                    // No line after the final line break.
+                    break;
+                }
+            }
+            String line = text.substring(lineStart, lineEnd);
+            String lineBreak = text.substring(lineEnd, Math.min(nextLine, text.length()));
+            lineStart = nextLine;
+            lastLineDeleted = false;
+
+            if (lineMatcher != null && lineMatcher.reset(line).find() != lineMatches) {
+                result.append(line).append(lineBreak);
+                continue;
+            }
+            if (deleteLines) {
+                changed = true;
+                lastLineDeleted = lineBreak.length() == 0;
+                continue;
+            }
+            String substituted = substitute(line, newLine);
+            if (substituted != null) {
+                changed = true;
+                line = substituted;
+            }
+            result.append(line).append(lineBreak);
+        }
+        if ( ! changed) {
+            return null;
+        }
+        if (lastLineDeleted) {
+            // The final line had no line break; drop the one of the line which is now the last.
+            Matcher trailing = Pattern.compile("(?:\r\n|\r|\n)$").matcher(result);
+            if (trailing.find()) {
+                result.setLength(trailing.start());
+            }
+        }
+        return result.toString();
+    }
+
+    private String substitute(String line, String newLine) {
+        StringBuilder sb = null;
+        int copied = 0;
+        for (MatchResult match : RegexSearch.matches(find, line, 0, line.length())) {
+            if (sb == null) {
+                sb = new StringBuilder(line.length() + 16);
+            }
+            sb.append(line, copied, match.start());
+            RegexSearch.appendReplacement(sb, match, replace, newLine);
+            copied = match.end();
+            if ( ! replaceAll) {
+                break;
+            }
+        }
+        if (sb == null) {
+            return null;
+        }
+        sb.append(line, copied, line.length());
+        return sb.toString();
+    }
+}
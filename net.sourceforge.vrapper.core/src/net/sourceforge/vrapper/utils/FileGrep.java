@@ -0,0 +1,296 @@
+package net.sourceforge.vrapper.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+
+/**
+ * Searches files on disk for a pattern, like Vim's <tt>:vimgrep</tt>, without opening them in an
+ * editor.
+ * <p>
+ * Files are read with buffered streaming reads on a small pool of daemon threads; files open in
+ * an editor are searched in the text of the editor instead. The matches are appended to a
+ * {@link QuickfixList} in the order of the targets, each file as soon as it and all files
+ * before it are done, so the list can be used while the search is still running. Files
+ * containing NUL characters are considered binary and skipped.
+ */
+public class FileGrep {
+
+    /** A file to search. */
+    public static class Target {
+        private final String path;
+        private final File file;
+        private final Charset charset;
+        private final String text;
+
+        /**
+         * @param path name of the file as shown in the quickfix list.
+         * @param file location of the file on disk.
+         * @param charset encoding of the file, <code>null</code> for the platform default.
+         */
+        public Target(String path, File file, Charset charset) {
+            this.path = path;
+            this.file = file;
+            this.charset = charset == null ? Charset.defaultCharset() : charset;
+            this.text = null;
+        }
+
+        /**
+         * @param path name of the file as shown in the quickfix list.
+         * @param text contents of the file, e.g. of the editor it is open in.
+         */
+        public Target(String path, String text) {
+            this.path = path;
+            this.file = null;
+            this.charset = null;
+            this.text = text;
+        }
+
+        private Reader open() throws IOException {
+            if (text != null) {
+                return new StringReader(text);
+            }
+            return new InputStreamReader(new FileInputStream(file), charset);
+        }
+    }
+
+    /** Notified from worker threads. */
+    public interface Listener {
+        /** Called after a file with matches was added to the list. */
+        void matchesAdded(FileGrep search);
+        /** Called once all files were searched or the search was cancelled. */
+        void finished(FileGrep search);
+    }
+
+    private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+    private final Pattern pattern;
+    private final boolean allMatches;
+    private final QuickfixList results;
+    private final Listener listener;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicInteger matchingFiles = new AtomicInteger();
+    private final AtomicInteger matches = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    /** Matches of each target, <code>null</code> while it is being searched. */
+    private List<List<QuickfixList.Entry>> found;
+    /** Index of the first target whose matches weren't added to the list yet. */
+    private int published;
+    /** Counts the targets not searched yet, one until the search is started. */
+    private volatile CountDownLatch remaining = new CountDownLatch(1);
+
+    /**
+     * @param allMatches add every match instead of only the first one of each line (the 'g'
+     *  flag of <tt>:vimgrep</tt>).
+     * @param listener may be <code>null</code>.
+     */
+    public FileGrep(Pattern pattern, boolean allMatches, QuickfixList results, Listener listener) {
+        this.pattern = pattern;
+        this.allMatches = allMatches;
+        this.results = results;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts searching the given files in the background. Until then the search counts as
+     * running, so it can be cancelled while the files are still being collected.
+     */
+    public void start(final List<Target> targets) {
+        pending.set(targets.size());
+        synchronized (this) {
+            found = new ArrayList<List<QuickfixList.Entry>>(
+                    Collections.<List<QuickfixList.Entry>>nCopies(targets.size(), null));
+            published = 0;
+        }
+        CountDownLatch notStarted = remaining;
+        remaining = new CountDownLatch(targets.size());
+        notStarted.countDown();
+        if (targets.isEmpty()) {
+            fireFinished();
+            return;
+        }
+        int threads = Math.max(1, Math.min(targets.size(),
+                Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Vrapper vimgrep " + THREAD_ID.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        for (int i = 0; i < targets.size(); i++) {
+            final int index = i;
+            final Target target = targets.get(i);
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<QuickfixList.Entry> matches = Collections.emptyList();
+                    try {
+                        if ( ! cancelled.get()) {
+                            matches = search(target);
+                        }
+                    } catch (RuntimeException e) {
+                        VrapperLog.error("vimgrep failed for " + target.path, e);
+                    } finally {
+                        publish(index, matches);
+                        if (pending.decrementAndGet() == 0) {
+                            fireFinished();
+                        }
+                        remaining.countDown();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+    }
+
+    /** Stops the search, matches found so far stay in the list. */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /** @return whether the search was started and all files were searched. */
+    public boolean isDone() {
+        return remaining.getCount() == 0;
+    }
+
+    /** @return whether the search finished within the given time. */
+    public boolean awaitCompletion(long millis) throws InterruptedException {
+        return remaining.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public int getMatchCount() {
+        return matches.get();
+    }
+
+    public int getMatchingFileCount() {
+        return matchingFiles.get();
+    }
+
+    /** @return matches in the given file, empty if it is binary or the search was cancelled. */
+    private List<QuickfixList.Entry> search(Target target) {
+        List<QuickfixList.Entry> found = new ArrayList<QuickfixList.Entry>();
+        List<QuickfixList.Entry> none = Collections.emptyList();
+        try {
+            BufferedReader reader = new BufferedReader(target.open(), 64 * 1024);
+            try {
+                Matcher matcher = pattern.matcher("");
+                String line;
+                int lineNo = 0;
+                while ((line = reader.readLine()) != null) {
+                    if (cancelled.get() || line.indexOf('\0') >= 0) {
+                        return none;
+                    }
+                    lineNo++;
+                    matcher.reset(line);
+                    int from = 0;
+                    while (from <= line.length() && matcher.find(from)) {
+                        int start = RegexSearch.start(matcher);
+                        found.add(new QuickfixList.Entry(target.path, lineNo, start, line));
+                        if ( ! allMatches) {
+                            break;
+                        }
+                        from = matcher.end() > start ? matcher.end() : matcher.end() + 1;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            VrapperLog.info("vimgrep: cannot read " + target.path + ": " + e.getMessage());
+            return none;
+        }
+        return found;
+    }
+
+    /**
+     * Stores the matches of a target, and adds those of all targets which are done in order to
+     * the list.
+     */
+    private void publish(int index, List<QuickfixList.Entry> matches) {
+        boolean added = false;
+        synchronized (this) {
+            found.set(index, matches);
+            while (published < found.size() && found.get(published) != null) {
+                List<QuickfixList.Entry> next = found.get(published);
+                found.set(published, Collections.<QuickfixList.Entry>emptyList());
+                published++;
+                if ( ! next.isEmpty() && ! cancelled.get()) {
+                    // Under the lock, so that another worker doesn't add its matches in between.
+                    results.addAll(next);
+                    matchingFiles.incrementAndGet();
+                    this.matches.addAndGet(next.size());
+                    added = true;
+                }
+            }
+        }
+        if (added && listener != null) {
+            listener.matchesAdded(this);
+        }
+    }
+
+    private void fireFinished() {
+        if (listener != null) {
+            listener.finished(this);
+        }
+    }
+
+    /**
+     * Converts a file glob to a regular expression for slash-separated paths: <tt>**</tt>
+     * matches any number of directories, <tt>*</tt> and <tt>?</tt> don't cross a slash.
+     */
+    public static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                i += 2;
+                if (i < glob.length() && glob.charAt(i) == '/') {
+                    // "**/" also matches no directory at all
+                    regex.append("(?:.*/)?");
+                    i++;
+                } else {
+                    regex.append(".*");
+                }
+                continue;
+            }
+            if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (Character.isLetterOrDigit(c) || c == '/') {
+                regex.append(c);
+            } else {
+                regex.append('\\').append(c);
+            }
+            i++;
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -20,9 +20,9 @@ public class NumericStringComparator implements Comparator<String>{
 	private boolean usePatternR = false;
 	private String newLine;
 
-	private String pattern = null;
+	private Pattern pattern = null;
 	
-	public NumericStringComparator(String newLine, boolean binary, boolean octal, boolean hex, String pattern, boolean patternR) throws Exception {
+	public NumericStringComparator(String newLine, boolean binary, boolean octal, boolean hex, Pattern pattern, boolean patternR) throws Exception {
 		super();
 
 		this.newLine = newLine;
@@ -106,8 +106,8 @@ public class NumericStringComparator implements Comparator<String>{
 	public int compare(String str1, String str2) {
 
 		if(usePattern) {
-			str1 = str1.substring(usePatternR ? str1.indexOf(pattern) : str1.indexOf(pattern) + pattern.length());
-			str2 = str2.substring(usePatternR ? str2.indexOf(pattern) : str2.indexOf(pattern) + pattern.length());
+			str1 = str1.substring(Math.max(0, PatternSortComparator.keyOffset(pattern, str1, usePatternR)));
+			str2 = str2.substring(Math.max(0, PatternSortComparator.keyOffset(pattern, str2, usePatternR)));
 		}
 		
 		double dub1 = getFirstNumber(str1);
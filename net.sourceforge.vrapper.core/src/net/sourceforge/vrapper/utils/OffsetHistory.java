@@ -0,0 +1,139 @@
+package net.sourceforge.vrapper.utils;
+
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * A list of tracked offsets with a current index, used for the change list (<tt>g;</tt>,
+ * <tt>g,</tt>) and the jump list (<tt>&lt;C-o&gt;</tt>, <tt>&lt;C-i&gt;</tt>).
+ * <p>
+ * The entries are kept in a ring buffer, so once the list is full adding an entry drops the
+ * oldest one without moving the others.
+ */
+public class OffsetHistory {
+
+    private final OffsetTracker tracker;
+    private final OffsetTracker.Entry[] ring;
+    /** Index of the oldest entry in {@link #ring}. */
+    private int head;
+    private int size;
+    /** Current index, equal to {@link #size} when not browsing the list. */
+    private int index;
+
+    public OffsetHistory(OffsetTracker tracker, int capacity) {
+        this.tracker = tracker;
+        this.ring = new OffsetTracker.Entry[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    /** @return the offset of the entry, <code>-1</code> if its text was deleted. */
+    public int get(int i) {
+        return tracker.getOffset(ring[(head + i) % ring.length]);
+    }
+
+    /** @return the offset of the newest entry, <code>-1</code> if there is none. */
+    public int getLast() {
+        return size == 0 ? -1 : get(size - 1);
+    }
+
+    /** Adds an entry after the newest one and stops browsing the list. */
+    public void add(int offset) {
+        if (size == ring.length) {
+            tracker.remove(ring[head]);
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+        }
+        ring[(head + size) % ring.length] = tracker.add(offset);
+        size++;
+        index = size;
+    }
+
+    /** Removes an entry, moving the current index along with the entries after it. */
+    public void remove(int i) {
+        tracker.remove(ring[(head + i) % ring.length]);
+        for (int j = i; j < size - 1; j++) {
+            ring[(head + j) % ring.length] = ring[(head + j + 1) % ring.length];
+        }
+        size--;
+        ring[(head + size) % ring.length] = null;
+        if (index > i) {
+            index--;
+        }
+    }
+
+    public void clear() {
+        while (size > 0) {
+            remove(size - 1);
+        }
+        index = 0;
+    }
+
+    /**
+     * Adds a jump from <tt>offset</tt>. Like in Vim an older entry on the same line is removed, so
+     * that each line is in the jump list at most once.
+     */
+    public void addJump(TextContent content, int offset) {
+        removeLine(content, content.getLineInformationOfOffset(offset).getNumber());
+        add(offset);
+    }
+
+    /**
+     * Moves <tt>count</tt> entries back in the jump list. When not browsing the list yet, the
+     * current position is added first so that {@link #jumpForward(int)} can return to it.
+     * @return offset of the entry, <code>-1</code> if there are not enough entries.
+     */
+    public int jumpBack(TextContent content, int count, int currentOffset) {
+        removeDeleted();
+        if (index >= size) {
+            addJump(content, currentOffset);
+            index = size - 1;
+        }
+        if (index - count < 0) {
+            return -1;
+        }
+        index -= count;
+        return get(index);
+    }
+
+    /**
+     * Moves <tt>count</tt> entries forward in the jump list.
+     * @return offset of the entry, <code>-1</code> if there are not enough entries.
+     */
+    public int jumpForward(int count) {
+        removeDeleted();
+        if (index + count >= size) {
+            return -1;
+        }
+        index += count;
+        return get(index);
+    }
+
+    private void removeLine(TextContent content, int line) {
+        for (int i = size - 1; i >= 0; i--) {
+            int offset = get(i);
+            if (offset < 0 || offset > content.getTextLength()
+                    || content.getLineInformationOfOffset(offset).getNumber() == line) {
+                remove(i);
+            }
+        }
+    }
+
+    private void removeDeleted() {
+        for (int i = size - 1; i >= 0; i--) {
+            if (get(i) < 0) {
+                remove(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps offsets of marks, the change list and the jump list up to date while the text changes.
+ * <p>
+ * The entries are kept sorted by offset. Entries after a "gap" index store their offset relative
+ * to a shared delta, so a change only has to find its place with a binary search, move the gap
+ * there and adjust the delta. Moving the gap touches the entries it passes, which are few because
+ * consecutive changes tend to be close to each other.
+ * <p>
+ * The tracker doesn't listen to the document itself; the platform has to report changes through
+ * {@link #update(int, int, int)}.
+ */
+public class OffsetTracker {
+
+    /** A tracked offset. It is deleted when the text around it is removed. */
+    public static class Entry {
+        /** Offset, relative to {@link OffsetTracker#gapDelta} if {@link #afterGap} is set. */
+        private int value;
+        private boolean afterGap;
+        private boolean deleted;
+
+        private Entry(int value) {
+            this.value = value;
+        }
+
+        public boolean isDeleted() {
+            return deleted;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    /** Index of the first entry which is relative to {@link #gapDelta}. */
+    private int gap;
+    private int gapDelta;
+
+    public Entry add(int offset) {
+        int index = firstAfter(offset);
+        Entry entry;
+        if (index <= gap) {
+            entry = new Entry(offset);
+            gap++;
+        } else {
+            entry = new Entry(offset - gapDelta);
+            entry.afterGap = true;
+        }
+        entries.add(index, entry);
+        return entry;
+    }
+
+    /** Stops tracking the entry. Does nothing if it is deleted already. */
+    public void remove(Entry entry) {
+        if (entry.deleted) {
+            return;
+        }
+        int index = firstAfter(getOffset(entry) - 1);
+        while (entries.get(index) != entry) {
+            index++;
+        }
+        entries.remove(index);
+        if (index < gap) {
+            gap--;
+        }
+        entry.deleted = true;
+    }
+
+    /** @return the current offset of the entry, <code>-1</code> if it was deleted. */
+    public int getOffset(Entry entry) {
+        if (entry.deleted) {
+            return -1;
+        }
+        return entry.afterGap ? entry.value + gapDelta : entry.value;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Adapts the offsets to <tt>length</tt> characters at <tt>offset</tt> being replaced with
+     * <tt>textLength</tt> characters. Entries inside the replaced text are deleted, entries at its
+     * start only move when nothing was replaced.
+     */
+    public void update(int offset, int length, int textLength) {
+        int start = length == 0 ? firstAfter(offset - 1) : firstAfter(offset);
+        int end = length == 0 ? start : firstAfter(offset + length - 1);
+        moveGap(start);
+        for (int i = start; i < end; i++) {
+            entries.get(i).deleted = true;
+        }
+        entries.subList(start, end).clear();
+        gapDelta += textLength - length;
+    }
+
+    private void moveGap(int index) {
+        for (; gap < index; gap++) {
+            Entry entry = entries.get(gap);
+            entry.value += gapDelta;
+            entry.afterGap = false;
+        }
+        for (; gap > index; gap--) {
+            Entry entry = entries.get(gap - 1);
+            entry.value -= gapDelta;
+            entry.afterGap = true;
+        }
+    }
+
+    /** @return index of the first entry whose offset is greater than the given one. */
+    private int firstAfter(int offset) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getOffset(entries.get(mid)) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,46 @@
+package net.sourceforge.vrapper.utils;
+
+import net.sourceforge.vrapper.platform.PartitionService;
+
+/**
+ * Lets a scan for brackets or quotes step over comments and literals in one go, so that
+ * characters in them don't match. The comment or literal the scan starts in is scanned like code.
+ */
+public class PartitionSkipper {
+
+    private final PartitionService partitions;
+    private final int startPartitionStart;
+    private final int startPartitionEnd;
+
+    /**
+     * @param partitions partitions of the document, may be <code>null</code> to skip nothing.
+     * @param startOffset where the scan starts.
+     */
+    public PartitionSkipper(PartitionService partitions, int startOffset) {
+        this.partitions = partitions;
+        if (partitions != null && ! partitions.isCode(startOffset)) {
+            startPartitionStart = partitions.getPartitionStart(startOffset);
+            startPartitionEnd = partitions.getPartitionEnd(startOffset);
+        } else {
+            startPartitionStart = startPartitionEnd = -1;
+        }
+    }
+
+    /** @return whether the character at the offset should be ignored. */
+    public boolean isSkipped(int offset) {
+        return partitions != null
+                && (offset < startPartitionStart || offset >= startPartitionEnd)
+                && ! partitions.isCode(offset);
+    }
+
+    /** @return the last offset of the skipped region at the offset, or the offset itself. */
+    public int skipForward(int offset) {
+        return isSkipped(offset) ? partitions.getPartitionEnd(offset) - 1 : offset;
+    }
+
+    /** @return the first offset of the skipped region at the offset, or the offset itself. */
+    public int skipBackward(int offset) {
+        return isSkipped(offset) ? partitions.getPartitionStart(offset) : offset;
+    }
+
+}
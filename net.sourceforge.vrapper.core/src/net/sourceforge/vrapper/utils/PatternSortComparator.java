@@ -1,6 +1,8 @@
 package net.sourceforge.vrapper.utils;
 
 import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Comparator for the :sort command when /pattern/ is in use.
@@ -8,19 +10,31 @@ import java.util.Comparator;
  */
 public class PatternSortComparator implements Comparator<String> {
 	
-	private String pattern = null;
+	private Pattern pattern = null;
 	private boolean usePatternR;
 	
-	public PatternSortComparator(String pattern, boolean usePatternR) {
+	public PatternSortComparator(Pattern pattern, boolean usePatternR) {
 		this.pattern = pattern;
 		this.usePatternR = usePatternR;
 	}
 
 	public int compare(String str1, String str2) {
-		str1 = str1.substring(usePatternR ? str1.indexOf(pattern) : str1.indexOf(pattern) + pattern.length());
-		str2 = str2.substring(usePatternR ? str2.indexOf(pattern) : str2.indexOf(pattern) + pattern.length());
+		str1 = str1.substring(Math.max(0, keyOffset(pattern, str1, usePatternR)));
+		str2 = str2.substring(Math.max(0, keyOffset(pattern, str2, usePatternR)));
 		
 		return str1.compareTo(str2);
 	}
 
+	/**
+	 * @return offset in the line where the sort key starts: the start of the first match with
+	 *  [r], the end of it otherwise. -1 if the pattern doesn't match.
+	 */
+	public static int keyOffset(Pattern pattern, String line, boolean usePatternR) {
+		Matcher m = pattern.matcher(line);
+		if ( ! m.find()) {
+			return -1;
+		}
+		return usePatternR ? RegexSearch.start(m) : m.end();
+	}
+
 }
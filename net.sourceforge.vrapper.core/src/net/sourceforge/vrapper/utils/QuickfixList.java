@@ -0,0 +1,144 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * List of positions in (possibly unopened) files, filled by <tt>:vimgrep</tt>.
+ * <p>
+ * Entries may be added from worker threads while the user is already navigating the list, so
+ * all access is synchronized. Entries are only ever appended; the index of the current entry
+ * stays valid until the list is {@link #reset(String) reset}.
+ */
+public class QuickfixList {
+
+    /** A single match. Lines are 1-based, columns 0-based (like in <tt>:marks</tt>). */
+    public static class Entry {
+        private final String path;
+        private final int line;
+        private final int column;
+        private final String text;
+
+        public Entry(String path, int line, int column, String text) {
+            this.path = path;
+            this.line = line;
+            this.column = column;
+            this.text = text;
+        }
+
+        /** @return workspace path of the file. */
+        public String getPath() {
+            return path;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        /** @return text of the matching line. */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return path + "|" + line + " col " + (column + 1) + "| " + text;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private int current = -1;
+    private String title = "";
+    private FileGrep search;
+
+    /** Empties the list, cancelling a search which still adds to it. */
+    public synchronized void reset(String title) {
+        cancelSearch();
+        entries.clear();
+        current = -1;
+        this.title = title;
+    }
+
+    /** Sets the search filling this list, so that it can be cancelled. */
+    public synchronized void setSearch(FileGrep search) {
+        this.search = search;
+    }
+
+    /** @return <code>true</code> if a running search was cancelled. */
+    public boolean cancelSearch() {
+        FileGrep running;
+        synchronized (this) {
+            running = search;
+            search = null;
+        }
+        if (running != null && ! running.isDone()) {
+            running.cancel();
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean isSearching() {
+        return search != null && ! search.isDone();
+    }
+
+    public synchronized void addAll(List<Entry> newEntries) {
+        entries.addAll(newEntries);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String getTitle() {
+        return title;
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<Entry>(entries));
+    }
+
+    /** @return index of the current entry, -1 if none was selected yet. */
+    public synchronized int getCurrentIndex() {
+        return current;
+    }
+
+    /** @return the current entry, <code>null</code> if none was selected yet. */
+    public synchronized Entry getCurrent() {
+        return current < 0 ? null : entries.get(current);
+    }
+
+    /**
+     * Selects the entry with the given index.
+     * @return the entry, or <code>null</code> if there is no such entry.
+     */
+    public synchronized Entry select(int index) {
+        if (index < 0 || index >= entries.size()) {
+            return null;
+        }
+        current = index;
+        return entries.get(index);
+    }
+
+    /**
+     * Moves <tt>count</tt> entries ahead (or back if negative), stopping at the first or last
+     * entry.
+     * @return the new current entry, or <code>null</code> if there are no more entries in that
+     *  direction.
+     */
+    public synchronized Entry move(int count) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        if ((count > 0 && current >= entries.size() - 1) || (count < 0 && current <= 0)) {
+            return null;
+        }
+        int target = Math.max(0, Math.min(entries.size() - 1, current + count));
+        return select(target);
+    }
+}
@@ -0,0 +1,463 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.vim.Options;
+
+/**
+ * Runs compiled patterns directly over the text of a buffer, given as a {@link CharSequence}.
+ * <p>
+ * All methods search within a region of the text but let look-arounds and word boundaries see
+ * the text around it, so <tt>\&lt;foo</tt> doesn't match in the middle of a word just because
+ * the region starts there. {@link #findForward} and {@link #findBackward} skip empty matches,
+ * the cursor would never move when searching for them.
+ * <p>
+ * A pattern with <tt>\zs</tt> matches the text before it as its first group (see
+ * {@link VimRegex#hasMatchStartGroup}). Its matches start where that group ends, and the groups
+ * of the matches returned are the ones of the pattern. The text before the match is searched
+ * from up to {@link #BACKWARD_CHUNK} characters before the region, rounded to a line start.
+ * <p>
+ * The text doesn't have to be a String, e.g. it can read from a document directly. The matches
+ * returned keep the offsets only and read their groups from the text, so they are valid until
+ * the text changes.
+ * <p>
+ * The searching and replacing of the search and replace services is here as well, the services
+ * only provide the text, the content to change and the highlighting.
+ */
+public class RegexSearch {
+
+    /** Size of the first region scanned by a backward search, it doubles for every retry. */
+    private static final int BACKWARD_CHUNK = 4096;
+
+    private RegexSearch() {
+    }
+
+    /**
+     * @return the first match which starts at or after <code>from</code> and ends at or before
+     *  <code>to</code>, <code>null</code> if there is none.
+     */
+    public static MatchResult findForward(Pattern pattern, CharSequence text, int from, int to) {
+        to = Math.min(to, text.length());
+        if (from < 0 || from > to) {
+            return null;
+        }
+        Matcher matcher = matcher(pattern, text, from, to);
+        while (matcher.find()) {
+            int start = start(matcher);
+            if (start < from) {
+                matcher.region(matcher.start() + 1, to);
+            } else if (matcher.end() > start) {
+                return new Match(matcher, text);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the match with the highest start offset which lies completely within
+     * <code>from</code> and <code>to</code>. Matches may overlap, for "aa" in "aaa" the one at
+     * offset 1 is found.
+     * <p>
+     * Instead of running the pattern from <code>from</code>, which would find every match
+     * between there and <code>to</code>, only a chunk before <code>to</code> is searched. The
+     * chunk grows until a match is found or <code>from</code> is reached.
+     *
+     * @return the match, <code>null</code> if there is none.
+     */
+    public static MatchResult findBackward(Pattern pattern, CharSequence text, int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(to, text.length());
+        if (from > to) {
+            return null;
+        }
+        int chunk = BACKWARD_CHUNK;
+        int chunkStart = to;
+        do {
+            chunkStart = Math.max(from, chunkStart - chunk);
+            chunk *= 2;
+            MatchResult last = null;
+            Matcher matcher = matcher(pattern, text, chunkStart, to);
+            while (matcher.find()) {
+                int start = start(matcher);
+                if (start >= from && matcher.end() > start) {
+                    last = new Match(matcher, text);
+                }
+                if (matcher.start() >= to) {
+                    break;
+                }
+                matcher.region(matcher.start() + 1, to);
+            }
+            if (last != null) {
+                return last;
+            }
+        } while (chunkStart > from);
+        return null;
+    }
+
+    /**
+     * @return the matches between <code>from</code> and <code>to</code> in order, without
+     *  overlaps. Empty matches are included, the next match starts after them.
+     */
+    public static Iterable<MatchResult> matches(final Pattern pattern, final CharSequence text,
+            final int from, final int to) {
+        return new Iterable<MatchResult>() {
+            public Iterator<MatchResult> iterator() {
+                int start = Math.max(0, from);
+                int end = Math.min(to, text.length());
+                return new MatchIterator(matcher(pattern, text, start, end), text, start, end);
+            }
+        };
+    }
+
+    /**
+     * Compiles the pattern of a search. The keyword is quoted unless it is a regular expression,
+     * and a whole word search only matches whole words.
+     */
+    public static Pattern compile(Search search) {
+        String regex = search.isRegExSearch() ? search.getKeyword()
+                : Pattern.quote(search.getKeyword());
+        if (search.isWholeWord()) {
+            regex = "\\b(?:" + regex + ")\\b";
+        }
+        return compile(regex, search.isCaseSensitive());
+    }
+
+    /**
+     * Compiles a pattern with Vim syntax (see {@link VimRegex}). Like Eclipse's find/replace,
+     * <tt>^</tt> and <tt>$</tt> match at every line.
+     */
+    public static Pattern compile(String vimPattern, boolean caseSensitive) {
+        int flags = Pattern.MULTILINE;
+        if ( ! caseSensitive) {
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        return VimRegex.compile(vimPattern, flags);
+    }
+
+    /**
+     * Whether a substitution is case sensitive: 'ignorecase' and 'smartcase' decide unless the
+     * flags contain 'i' or 'I'.
+     */
+    public static boolean isCaseSensitive(Configuration configuration, String toFind, String flags) {
+        boolean caseSensitive = !configuration.get(Options.IGNORE_CASE)
+            || (configuration.get(Options.SMART_CASE)
+                && StringUtils.containsUppercase(toFind));
+        if (flags.contains("i"))
+            caseSensitive = false;
+        if (flags.contains("I"))
+            caseSensitive = true;
+        return caseSensitive;
+    }
+
+    /**
+     * Forward searches find the first match starting at or after <code>begin</code>. Backward
+     * searches find the last one which ends at or before <code>begin + 1</code>, so that a match
+     * ending on the cursor is found.
+     *
+     * @return the match, <code>null</code> if there is none.
+     */
+    public static MatchResult find(Search search, CharSequence text, int begin) {
+        Pattern pattern = compile(search);
+        if (search.isBackward()) {
+            return findBackward(pattern, text, 0, begin + 1);
+        }
+        return findForward(pattern, text, begin, text.length());
+    }
+
+    /**
+     * Replaces the first match or, with <code>global</code>, all matches which start in a line.
+     * A match may go on past the end of the line, e.g. to join lines. The matches are replaced
+     * with a single edit.
+     *
+     * @param content - the content to change, <code>text</code> must be its text
+     * @param countOnly - only count the matches, like the 'n' flag
+     * @return the number of matches
+     */
+    public static int replaceInLine(TextContent content, Pattern pattern, CharSequence text,
+            LineInformation line, String replace, boolean global, boolean countOnly,
+            String newLine) {
+        int start = line.getBeginOffset();
+        int end = line.getEndOffset();
+        int numReplaces = 0;
+        int replaceEnd = start;
+        StringBuilder sb = new StringBuilder();
+        for (MatchResult match : matches(pattern, text, start, text.length())) {
+            if (match.start() >= end) {
+                break;
+            }
+            if (match.end() == match.start()) {
+                continue;
+            }
+            numReplaces++;
+            sb.append(text, replaceEnd, match.start());
+            appendReplacement(sb, match, replace, newLine);
+            replaceEnd = match.end();
+            if ( ! global) {
+                break;
+            }
+        }
+        if (numReplaces > 0 && ! countOnly) {
+            content.replace(start, replaceEnd - start, sb.toString());
+        }
+        return numReplaces;
+    }
+
+    /**
+     * Replaces the first match starting at or after <code>start</code>.
+     *
+     * @param content - the content to change, <code>text</code> must be its text
+     * @return whether there was a match
+     */
+    public static boolean substitute(TextContent content, Pattern pattern, CharSequence text,
+            int start, String replace, String newLine) {
+        MatchResult match = findForward(pattern, text, start, text.length());
+        if (match == null) {
+            return false;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendReplacement(sb, match, replace, newLine);
+        content.replace(match.start(), match.end() - match.start(), sb.toString());
+        return true;
+    }
+
+    /**
+     * Substitutes the matches from <code>start</code> on which end at or before <code>end</code>.
+     * Without <code>global</code> only the first match of each line is substituted. The matches
+     * are found on the unchanged text first, then each one is replaced on its own, so marks and
+     * annotations in the text between them stay where they are.
+     *
+     * @param content - the content to change, <code>text</code> must be its text
+     * @return offset of the last substitution in the changed text, -1 if there was none
+     */
+    public static int substituteAll(TextContent content, Pattern pattern, CharSequence text,
+            int start, int end, String replace, boolean global, String newLine) {
+        List<MatchResult> found = new ArrayList<MatchResult>();
+        List<String> replacements = new ArrayList<String>();
+        int from = start;
+        MatchResult match;
+        while (from <= text.length()
+                && (match = findForward(pattern, text, from, text.length())) != null
+                && match.end() <= end) {
+            StringBuilder sb = new StringBuilder();
+            appendReplacement(sb, match, replace, newLine);
+            found.add(match);
+            replacements.add(sb.toString());
+            from = global ? match.end() : nextLineStart(text, match.end());
+            if (from < 0) {
+                break;
+            }
+        }
+        int delta = 0;
+        int lastSubstitution = -1;
+        for (int i = 0; i < found.size(); i++) {
+            match = found.get(i);
+            String replacement = replacements.get(i);
+            lastSubstitution = match.start() + delta;
+            content.replace(lastSubstitution, match.end() - match.start(), replacement);
+            delta += replacement.length() - (match.end() - match.start());
+        }
+        return lastSubstitution;
+    }
+
+    /** @return start of the line after the one containing <code>offset</code>, -1 if none. */
+    private static int nextLineStart(CharSequence text, int offset) {
+        for (int i = offset; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            } else if (c == '\r') {
+                return i + 1 < text.length() && text.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends the replacement for a match: <tt>$1</tt> or <tt>\1</tt> for groups, <tt>\R</tt>
+     * for a line break, <tt>\n</tt>, <tt>\r</tt> and <tt>\t</tt> for those characters. Like in
+     * Eclipse's Find/Replace, <tt>\C</tt> makes the rest of the replacement retain the case of the
+     * match (all upper case, all lower case or capitalized). Any other character after a
+     * backslash is copied.
+     */
+    public static void appendReplacement(StringBuilder sb, MatchResult match, String replace,
+            String newLine) {
+        int retainCaseFrom = -1;
+        for (int i = 0; i < replace.length(); i++) {
+            char c = replace.charAt(i);
+            if (c == '$' && i + 1 < replace.length() && Character.isDigit(replace.charAt(i + 1))) {
+                appendGroup(sb, match, replace.charAt(++i) - '0');
+            } else if (c == '\\' && i + 1 < replace.length()) {
+                char next = replace.charAt(++i);
+                if (Character.isDigit(next)) {
+                    appendGroup(sb, match, next - '0');
+                } else if (next == 'R') {
+                    sb.append(newLine);
+                } else if (next == 'n') {
+                    sb.append('\n');
+                } else if (next == 'r') {
+                    sb.append('\r');
+                } else if (next == 't') {
+                    sb.append('\t');
+                } else if (next == 'C') {
+                    if (retainCaseFrom < 0) {
+                        retainCaseFrom = sb.length();
+                    }
+                } else {
+                    sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        if (retainCaseFrom >= 0) {
+            retainCase(sb, retainCaseFrom, match.group());
+        }
+    }
+
+    /** Adapts the case of the text appended after <code>from</code> to the matched text. */
+    private static void retainCase(StringBuilder sb, int from, String found) {
+        if (from >= sb.length() || found.length() == 0) {
+            return;
+        }
+        String replaced = sb.substring(from);
+        if (found.toUpperCase().equals(found)) {
+            replaced = replaced.toUpperCase();
+        } else if (found.toLowerCase().equals(found)) {
+            replaced = replaced.toLowerCase();
+        } else if (Character.isUpperCase(found.charAt(0))) {
+            replaced = Character.toUpperCase(replaced.charAt(0)) + replaced.substring(1);
+        }
+        sb.replace(from, sb.length(), replaced);
+    }
+
+    private static void appendGroup(StringBuilder sb, MatchResult match, int group) {
+        if (group <= match.groupCount() && match.group(group) != null) {
+            sb.append(match.group(group));
+        }
+    }
+
+    /**
+     * @return start of the match, which is the end of the text before <tt>\zs</tt> if the pattern
+     *  has one.
+     */
+    public static int start(Matcher matcher) {
+        return VimRegex.hasMatchStartGroup(matcher.pattern()) ? matcher.end(1) : matcher.start();
+    }
+
+    private static Matcher matcher(Pattern pattern, CharSequence text, int from, int to) {
+        Matcher matcher = pattern.matcher(text);
+        if (VimRegex.hasMatchStartGroup(pattern) && from > 0) {
+            // Let the text before \zs start before the region.
+            int lineStart = Math.max(0, from - BACKWARD_CHUNK);
+            while (lineStart > 0 && "\r\n".indexOf(text.charAt(lineStart - 1)) < 0) {
+                lineStart--;
+            }
+            from = lineStart;
+        }
+        matcher.region(from, to);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        return matcher;
+    }
+
+    /**
+     * Offsets of a match. Unlike {@link Matcher#toMatchResult()}, which copies the whole text
+     * unless it is a String, the groups are read from the text when asked for.
+     */
+    private static class Match implements MatchResult {
+        private final CharSequence text;
+        private final int[] starts;
+        private final int[] ends;
+
+        public Match(Matcher matcher, CharSequence text) {
+            this.text = text;
+            int shift = VimRegex.hasMatchStartGroup(matcher.pattern()) ? 1 : 0;
+            starts = new int[matcher.groupCount() + 1 - shift];
+            ends = new int[starts.length];
+            starts[0] = RegexSearch.start(matcher);
+            ends[0] = matcher.end();
+            for (int i = 1; i < starts.length; i++) {
+                starts[i] = matcher.start(i + shift);
+                ends[i] = matcher.end(i + shift);
+            }
+        }
+
+        public int start() {
+            return starts[0];
+        }
+
+        public int start(int group) {
+            return starts[group];
+        }
+
+        public int end() {
+            return ends[0];
+        }
+
+        public int end(int group) {
+            return ends[group];
+        }
+
+        public String group() {
+            return group(0);
+        }
+
+        public String group(int group) {
+            return starts[group] < 0 ? null : text.subSequence(starts[group], ends[group]).toString();
+        }
+
+        public int groupCount() {
+            return starts.length - 1;
+        }
+    }
+
+    private static class MatchIterator implements Iterator<MatchResult> {
+        private final Matcher matcher;
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+        private MatchResult next;
+        private boolean done;
+
+        public MatchIterator(Matcher matcher, CharSequence text, int from, int to) {
+            this.matcher = matcher;
+            this.text = text;
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean hasNext() {
+            while (next == null && ! done) {
+                if ( ! matcher.find()) {
+                    done = true;
+                } else if (RegexSearch.start(matcher) < from) {
+                    matcher.region(matcher.start() + 1, to);
+                } else {
+                    next = new Match(matcher, text);
+                }
+            }
+            return next != null;
+        }
+
+        public MatchResult next() {
+            if ( ! hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MatchResult result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package net.sourceforge.vrapper.utils;
 
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import net.sourceforge.vrapper.vim.register.RegisterManager;
@@ -73,7 +72,7 @@ public class SubstitutionDefinition {
 		
 		//before attempting substitution, is this regex even valid?
 		try {
-		    Pattern.compile(find);
+		    VimRegex.compile(find, 0);
 		}
 		catch(PatternSyntaxException e) {
 		    throw new IllegalArgumentException(e.getDescription());
@@ -0,0 +1,505 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * Tree of text states connected by changes, used to implement Vim's undo branches.
+ * <p>
+ * Every change is stored as a list of compact {@link Delta}s: only the removed and inserted text
+ * is kept, and deltas which touch each other are merged while the change is being recorded.
+ * Moving between any two states (undo, redo, <tt>g-</tt>, <tt>:earlier</tt>, ...) produces a
+ * single {@link Move} which can be applied to the document in one go.
+ * <p>
+ * The tree doesn't listen to the document itself; the platform has to report changes through
+ * {@link #beginChange(int)}, {@link #record(Delta)} and {@link #endChange()}.
+ */
+public class UndoTree {
+
+    /** Maximum size of text in between deltas which is copied in order to apply them at once. */
+    private static final int MAX_COMBINE_OVERHEAD = 4096;
+
+    /** A single replacement: <tt>removed</tt> at <tt>offset</tt> was replaced by <tt>inserted</tt>. */
+    public static class Delta {
+        private final int offset;
+        private final String removed;
+        private final String inserted;
+
+        public Delta(int offset, String removed, String inserted) {
+            this.offset = offset;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public String getRemoved() {
+            return removed;
+        }
+
+        public String getInserted() {
+            return inserted;
+        }
+
+        /** @return the delta reverting this one. */
+        public Delta inverse() {
+            return new Delta(offset, inserted, removed);
+        }
+
+        int size() {
+            return removed.length() + inserted.length();
+        }
+
+        /** Whether <tt>next</tt>, applied right after this delta, touches the text it inserted. */
+        boolean touches(Delta next) {
+            return next.offset <= offset + inserted.length()
+                    && next.offset + next.removed.length() >= offset;
+        }
+
+        /** Merges a {@link #touches(Delta) touching} delta applied right after this one. */
+        Delta merge(Delta next) {
+            int start = Math.min(offset, next.offset);
+            int insertedEnd = offset + inserted.length();
+            int nextRemovedEnd = next.offset + next.removed.length();
+            // Text around our insertion which the next delta removed was there before us too.
+            String before = next.removed.substring(0, offset - start);
+            String after = "";
+            if (nextRemovedEnd > insertedEnd) {
+                after = next.removed.substring(next.removed.length() - (nextRemovedEnd - insertedEnd));
+            }
+            StringBuilder result = new StringBuilder(before.length() + inserted.length() + after.length());
+            result.append(before).append(inserted).append(after);
+            int nextStart = next.offset - start;
+            result.replace(nextStart, nextStart + next.removed.length(), next.inserted);
+            return new Delta(start, before + removed + after, result.toString());
+        }
+
+        @Override
+        public String toString() {
+            return "Delta(" + offset + ", -" + removed.length() + ", +" + inserted.length() + ")";
+        }
+    }
+
+    /** A text state, reached by applying the deltas of all states up to the root. */
+    public static class State {
+        private final int sequence;
+        private final long time;
+        private final int caretBefore;
+        private State parent;
+        private List<Delta> deltas;
+        private final List<State> children = new ArrayList<State>(1);
+        /** Child followed by redo, the branch we most recently came from. */
+        private State redoChild;
+
+        State(int sequence, long time, int caretBefore, State parent, List<Delta> deltas) {
+            this.sequence = sequence;
+            this.time = time;
+            this.caretBefore = caretBefore;
+            this.parent = parent;
+            this.deltas = deltas;
+        }
+
+        /** @return number of the change which led to this state, 0 for the original text. */
+        public int getSequence() {
+            return sequence;
+        }
+
+        /** @return time in milliseconds at which the change leading to this state was done. */
+        public long getTime() {
+            return time;
+        }
+
+        public State getParent() {
+            return parent;
+        }
+
+        int size() {
+            int size = 0;
+            for (Delta delta : deltas) {
+                size += delta.size();
+            }
+            return size;
+        }
+    }
+
+    /** Edits between the current state and a target state, see {@link UndoTree#moveTo}. */
+    public class Move {
+        private final State target;
+        private final List<Delta> edits;
+        private final int changeOffset;
+        private final int caretOffset;
+
+        Move(State target, List<Delta> edits, int changeOffset, int caretOffset) {
+            this.target = target;
+            this.edits = edits;
+            this.changeOffset = changeOffset;
+            this.caretOffset = caretOffset;
+        }
+
+        public State getTarget() {
+            return target;
+        }
+
+        /** @return deltas to apply to the document in order, usually just one. */
+        public List<Delta> getEdits() {
+            return edits;
+        }
+
+        /** @return model offset of the first changed character. */
+        public int getChangeOffset() {
+            return changeOffset;
+        }
+
+        /**
+         * @return model offset where Vim puts the cursor: where it was before the oldest undone
+         *     change, or the start of the change when moving forward.
+         */
+        public int getCaretOffset() {
+            return caretOffset;
+        }
+
+        /**
+         * Applies the edits to the given content and makes the target the current state.
+         * @throws IllegalStateException if the content doesn't match the text the tree expects.
+         *     The current state doesn't change then, though earlier edits may have been applied.
+         */
+        public void apply(TextContent content) {
+            for (Delta edit : edits) {
+                String removed = content.getText(edit.offset, edit.removed.length());
+                if ( ! removed.equals(edit.removed)) {
+                    throw new IllegalStateException("Text at " + edit.offset
+                            + " doesn't match recorded undo information");
+                }
+                content.replace(edit.offset, edit.removed.length(), edit.inserted);
+            }
+            jumpTo(target);
+        }
+    }
+
+    private final NavigableMap<Integer, State> states = new TreeMap<Integer, State>();
+    private State root;
+    private State current;
+    private int nextSequence;
+    private long size;
+    private int maxStates = Integer.MAX_VALUE;
+    private long maxSize = Long.MAX_VALUE;
+
+    private List<Delta> pending;
+    private int pendingCaret;
+
+    public UndoTree() {
+        reset();
+    }
+
+    /** Forgets all changes, the current text becomes the original one. */
+    public void reset() {
+        states.clear();
+        root = new State(0, now(), 0, null, Collections.<Delta>emptyList());
+        states.put(0, root);
+        current = root;
+        nextSequence = 1;
+        size = 0;
+        pending = null;
+    }
+
+    /**
+     * Limits the number of changes and the amount of text (in characters) kept by the tree.
+     * Oldest changes are dropped first.
+     */
+    public void setLimits(int maxStates, long maxSize) {
+        this.maxStates = Math.max(1, maxStates);
+        this.maxSize = maxSize;
+        prune();
+    }
+
+    /** Time source for the states, in milliseconds. */
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    public State getCurrent() {
+        return current;
+    }
+
+    public State getRoot() {
+        return root;
+    }
+
+    /** @return number of characters kept in all recorded deltas. */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isChangeOpen() {
+        return pending != null;
+    }
+
+    /**
+     * Starts recording a new change. A change which is still open is ended first.
+     * @param caretOffset model offset of the cursor before the change, restored on undo.
+     */
+    public void beginChange(int caretOffset) {
+        endChange();
+        pending = new ArrayList<Delta>();
+        pendingCaret = caretOffset;
+    }
+
+    /** Adds a delta to the open change. */
+    public void record(Delta delta) {
+        if (pending == null) {
+            throw new IllegalStateException("No change open");
+        }
+        int last = pending.size() - 1;
+        if (last >= 0 && pending.get(last).touches(delta)) {
+            pending.set(last, pending.get(last).merge(delta));
+        } else {
+            pending.add(delta);
+        }
+    }
+
+    /** Whether the given delta would be merged with the last delta of the open change. */
+    public boolean touchesLastDelta(Delta delta) {
+        return pending != null && ! pending.isEmpty()
+                && pending.get(pending.size() - 1).touches(delta);
+    }
+
+    /** Ends the open change, adding it as a new state after the current one. */
+    public void endChange() {
+        if (pending == null) {
+            return;
+        }
+        List<Delta> deltas = pending;
+        pending = null;
+        if (deltas.isEmpty()) {
+            return;
+        }
+        State state = new State(nextSequence++, now(), pendingCaret, current, deltas);
+        current.children.add(state);
+        current.redoChild = state;
+        current = state;
+        states.put(state.sequence, state);
+        size += state.size();
+        prune();
+    }
+
+    /** @return the state <tt>count</tt> changes before the current one on the current branch. */
+    public State undoTarget(int count) {
+        State target = current;
+        for (int i = 0; i < count && target.parent != null; i++) {
+            target = target.parent;
+        }
+        return target;
+    }
+
+    /** @return the state <tt>count</tt> changes after the current one, following the last branch. */
+    public State redoTarget(int count) {
+        State target = current;
+        for (int i = 0; i < count; i++) {
+            State next = target.redoChild;
+            if (next == null && ! target.children.isEmpty()) {
+                next = target.children.get(target.children.size() - 1);
+            }
+            if (next == null) {
+                break;
+            }
+            target = next;
+        }
+        return target;
+    }
+
+    /** @return the state <tt>steps</tt> changes away in chronological order, across branches. */
+    public State chronologicalTarget(int steps) {
+        int sequence = current.sequence + steps;
+        Entry<Integer, State> entry = steps < 0 ? states.floorEntry(sequence)
+                : states.ceilingEntry(sequence);
+        if (entry == null) {
+            entry = steps < 0 ? states.firstEntry() : states.lastEntry();
+        }
+        return entry.getValue();
+    }
+
+    /** @return the last state which existed <tt>millis</tt> milliseconds after the current one. */
+    public State timeTarget(long millis) {
+        long time = current.time + millis;
+        for (State state : states.descendingMap().values()) {
+            if (state.time <= time) {
+                return state;
+            }
+        }
+        return root;
+    }
+
+    /** Whether the state is still kept, states are dropped when the tree exceeds its limits. */
+    public boolean contains(State state) {
+        return states.get(state.sequence) == state;
+    }
+
+    /** @return the state after the given change, or <code>null</code> if it isn't kept. */
+    public State sequenceTarget(int sequence) {
+        return states.get(sequence);
+    }
+
+    /**
+     * Computes the edits leading from the current state to <tt>target</tt>. The tree only moves
+     * once the edits are {@link Move#apply(TextContent) applied}, or when told about it through
+     * {@link #jumpTo(State)}.
+     * @return the move, or <code>null</code> if the target is the current state or if the text
+     *     doesn't match the recorded deltas.
+     */
+    public Move moveTo(State target, TextContent content) {
+        endChange();
+        if (target == current) {
+            return null;
+        }
+        List<State> down = new ArrayList<State>();
+        State common = target;
+        while ( ! isAncestor(common, current)) {
+            down.add(common);
+            common = common.parent;
+        }
+        Collections.reverse(down);
+
+        List<Delta> deltas = new ArrayList<Delta>();
+        int caretOffset = -1;
+        for (State state = current; state != common; state = state.parent) {
+            for (int i = state.deltas.size() - 1; i >= 0; i--) {
+                deltas.add(state.deltas.get(i).inverse());
+            }
+            caretOffset = state.caretBefore;
+        }
+        for (State state : down) {
+            deltas.addAll(state.deltas);
+        }
+        List<Delta> edits = combine(deltas, content);
+        if (edits == null) {
+            return null;
+        }
+        int changeOffset = edits.get(0).offset;
+        for (Delta edit : edits) {
+            changeOffset = Math.min(changeOffset, edit.offset);
+        }
+        if ( ! down.isEmpty() || caretOffset < 0) {
+            caretOffset = changeOffset;
+        }
+        return new Move(target, edits, changeOffset, caretOffset);
+    }
+
+    /**
+     * Makes <tt>target</tt> the current state without touching the text, for when the text was
+     * brought there by other means (e.g. the editor's own undo manager). Redo follows the
+     * branches which were passed.
+     */
+    public void jumpTo(State target) {
+        endChange();
+        State common = target;
+        while ( ! isAncestor(common, current)) {
+            common.parent.redoChild = common;
+            common = common.parent;
+        }
+        for (State state = current; state != common; state = state.parent) {
+            state.parent.redoChild = state;
+        }
+        current = target;
+    }
+
+    private static boolean isAncestor(State ancestor, State state) {
+        while (state != null && state != ancestor) {
+            state = state.parent;
+        }
+        return state == ancestor;
+    }
+
+    /**
+     * Turns a sequence of deltas into one replacement of the region they touch. If the deltas are
+     * far apart the text in between would have to be copied, so they are returned as is.
+     * @return the edits, or <code>null</code> if the content doesn't match the deltas.
+     */
+    static List<Delta> combine(List<Delta> deltas, TextContent content) {
+        if (deltas.size() <= 1) {
+            return deltas;
+        }
+        // Region [start, end) in current coordinates corresponds to [start, originalEnd) in the
+        // text before the first delta; nothing outside of it is changed.
+        int start = -1;
+        int end = 0;
+        int originalEnd = 0;
+        long total = 0;
+        for (Delta delta : deltas) {
+            int removedEnd = delta.offset + delta.removed.length();
+            if (start == -1) {
+                start = delta.offset;
+                end = removedEnd;
+                originalEnd = removedEnd;
+            }
+            start = Math.min(start, delta.offset);
+            if (removedEnd > end) {
+                originalEnd += removedEnd - end;
+                end = removedEnd;
+            }
+            end += delta.inserted.length() - delta.removed.length();
+            total += delta.size();
+        }
+        if ((long) (originalEnd - start) + (end - start) > total + MAX_COMBINE_OVERHEAD) {
+            return deltas;
+        }
+        String original = content.getText(start, originalEnd - start);
+        StringBuilder result = new StringBuilder(original);
+        for (Delta delta : deltas) {
+            int relative = delta.offset - start;
+            int relativeEnd = relative + delta.removed.length();
+            if ( ! result.substring(relative, relativeEnd).equals(delta.removed)) {
+                return null;
+            }
+            result.replace(relative, relativeEnd, delta.inserted);
+        }
+        return Collections.singletonList(new Delta(start, original, result.toString()));
+    }
+
+    /** Drops the oldest changes and branches until the tree fits the limits. */
+    private void prune() {
+        while (states.size() - 1 > maxStates || size > maxSize) {
+            if (root.children.isEmpty()) {
+                return;
+            }
+            State keep = null;
+            for (State child : root.children) {
+                if (isAncestor(child, current)) {
+                    keep = child;
+                }
+            }
+            if (root.children.size() > 1 || keep == null) {
+                // Drop the oldest branch which doesn't lead to the current state.
+                State drop = root.children.get(0) != keep ? root.children.get(0)
+                        : root.children.get(1);
+                root.children.remove(drop);
+                if (root.redoChild == drop) {
+                    root.redoChild = null;
+                }
+                forget(drop);
+            } else {
+                // Only one branch: its first state becomes the original text.
+                states.remove(root.sequence);
+                size -= keep.size();
+                keep.deltas = Collections.emptyList();
+                keep.parent = null;
+                root = keep;
+            }
+        }
+    }
+
+    private void forget(State state) {
+        states.remove(state.sequence);
+        size -= state.size();
+        for (State child : state.children) {
+            forget(child);
+        }
+    }
+}
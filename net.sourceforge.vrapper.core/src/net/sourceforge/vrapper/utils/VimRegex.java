@@ -0,0 +1,708 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Translates Vim regular expressions to Java ones, with a cache of the translations and of the
+ * compiled {@link Pattern}s so that repeated searches, substitutions and highlighting don't
+ * parse the same pattern over and over.
+ * <p>
+ * For compatibility with earlier versions, a pattern is read as a Java regex until it contains
+ * one of Vim's mode switches <tt>\v</tt> (very magic), <tt>\m</tt> (magic), <tt>\M</tt>
+ * (nomagic) or <tt>\V</tt> (very nomagic); after that Vim's rules apply. Vim-only atoms which
+ * mean nothing in Java are translated in both cases:
+ * <ul>
+ * <li><tt>\&lt;</tt> and <tt>\&gt;</tt> become word boundaries,</li>
+ * <li><tt>\{n,m}</tt>, <tt>\{-n,m}</tt> and <tt>\{-}</tt> become (lazy) counted repeats; without a
+ * mode switch only a count with a number is translated, otherwise <tt>\{</tt> is a literal
+ * brace as in Java,</li>
+ * <li><tt>\zs</tt> puts the text before it into a group which {@link RegexSearch} leaves out of
+ * the match (see {@link #hasMatchStartGroup}), <tt>\ze</tt> becomes a look-ahead,</li>
+ * <li>character classes such as <tt>\l</tt>, <tt>\o</tt> or <tt>\_s</tt>,</li>
+ * <li><tt>\%V</tt> is accepted but matches anywhere; the range of the command (e.g.
+ * <tt>:'&lt;,'&gt;s</tt>) limits the lines.</li>
+ * </ul>
+ * With a mode switch, Vim's groups, alternation, multis (<tt>\+</tt>, <tt>\=</tt>,
+ * <tt>\@=</tt>, ...), <tt>\%(</tt>, <tt>[[:alpha:]]</tt> style collections and the case flags
+ * <tt>\c</tt> and <tt>\C</tt> are supported too.
+ */
+public class VimRegex {
+
+    private static final int CACHE_SIZE = 100;
+
+    /**
+     * Starts the translation of a pattern whose first group is the text before <tt>\zs</tt>. The
+     * group follows after the case flag, if any.
+     */
+    private static final String MATCH_START_MARKER = "(?:)";
+
+    private static final Map<String, String> TRANSLATIONS = new LruCache<String, String>();
+    private static final Map<String, Pattern> PATTERNS = new LruCache<String, Pattern>();
+
+    /** Characters which must be escaped to match literally in a Java regex. */
+    private static final String JAVA_META = "\\^$.|?*+()[]{}";
+
+    /** Bodies of the Vim character classes, negated classes use the body of the lower case one. */
+    private static final Map<Character, String> CLASS_BODIES = new HashMap<Character, String>();
+    private static final Map<String, String> POSIX_CLASSES = new HashMap<String, String>();
+
+    static {
+        CLASS_BODIES.put('s', " \\t");
+        CLASS_BODIES.put('d', "0-9");
+        CLASS_BODIES.put('w', "0-9A-Za-z_");
+        CLASS_BODIES.put('a', "A-Za-z");
+        CLASS_BODIES.put('l', "a-z");
+        CLASS_BODIES.put('u', "A-Z");
+        CLASS_BODIES.put('x', "0-9A-Fa-f");
+        CLASS_BODIES.put('o', "0-7");
+        CLASS_BODIES.put('h', "A-Za-z_");
+        CLASS_BODIES.put('i', "0-9A-Za-z_");
+        CLASS_BODIES.put('I', "A-Za-z_");
+        CLASS_BODIES.put('k', "0-9A-Za-z_");
+        CLASS_BODIES.put('K', "A-Za-z_");
+        CLASS_BODIES.put('f', "0-9A-Za-z_./\\\\~:+#$%,-");
+        CLASS_BODIES.put('F', "A-Za-z_./\\\\~:+#$%,-");
+        CLASS_BODIES.put('p', "\\P{Cntrl}");
+        CLASS_BODIES.put('P', "\\P{Cntrl}&&[^0-9]");
+
+        POSIX_CLASSES.put("alnum", "\\p{Alnum}");
+        POSIX_CLASSES.put("alpha", "\\p{Alpha}");
+        POSIX_CLASSES.put("blank", " \\t");
+        POSIX_CLASSES.put("cntrl", "\\p{Cntrl}");
+        POSIX_CLASSES.put("digit", "0-9");
+        POSIX_CLASSES.put("graph", "\\p{Graph}");
+        POSIX_CLASSES.put("lower", "\\p{Lower}");
+        POSIX_CLASSES.put("print", "\\p{Print}");
+        POSIX_CLASSES.put("punct", "\\p{Punct}");
+        POSIX_CLASSES.put("space", "\\s");
+        POSIX_CLASSES.put("upper", "\\p{Upper}");
+        POSIX_CLASSES.put("xdigit", "0-9A-Fa-f");
+        POSIX_CLASSES.put("return", "\\r");
+        POSIX_CLASSES.put("tab", "\\t");
+        POSIX_CLASSES.put("escape", "\\x1b");
+        POSIX_CLASSES.put("backspace", "\\x08");
+    }
+
+    private enum Mode { JAVA, VERY_MAGIC, MAGIC, NOMAGIC, VERY_NOMAGIC }
+
+    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        public LruCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    }
+
+    /**
+     * @return the Java regex for the given Vim pattern.
+     * @throws PatternSyntaxException if the pattern uses something which can't be translated.
+     */
+    public static String toJava(String vimPattern) {
+        synchronized (TRANSLATIONS) {
+            String cached = TRANSLATIONS.get(vimPattern);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String translated = new VimRegex(vimPattern).translate();
+        synchronized (TRANSLATIONS) {
+            TRANSLATIONS.put(vimPattern, translated);
+        }
+        return translated;
+    }
+
+    /**
+     * Translates and compiles the Vim pattern, reusing the compiled pattern of an earlier call.
+     * @param flags flags for {@link Pattern#compile(String, int)}.
+     */
+    public static Pattern compile(String vimPattern, int flags) {
+        String key = flags + "/" + vimPattern;
+        synchronized (PATTERNS) {
+            Pattern cached = PATTERNS.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Pattern pattern = Pattern.compile(toJava(vimPattern), flags);
+        synchronized (PATTERNS) {
+            PATTERNS.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    private final String in;
+    private int pos;
+    private Mode mode = Mode.JAVA;
+    private final StringBuilder out = new StringBuilder();
+    private String caseFlag = "";
+    /** Output offsets of the open groups. */
+    private final List<Integer> groups = new ArrayList<Integer>();
+    /** Output offset of the last atom, for multis which wrap it. -1 if there is none. */
+    private int lastAtom = -1;
+    /** Whether the next atom starts a branch, where <tt>^</tt> is an anchor. */
+    private boolean branchStart = true;
+    private int matchStart = -1;
+    private int matchEnd = -1;
+    /** Output offsets of the digits of back references, they change if \zs adds a group. */
+    private final List<Integer> backReferences = new ArrayList<Integer>();
+
+    private VimRegex(String in) {
+        this.in = in;
+    }
+
+    /**
+     * Whether the first group of the pattern is the text before <tt>\zs</tt>, the match then
+     * starts where that group ends. Java has no look-behind of unbounded length, so the text is
+     * matched as part of the pattern instead.
+     */
+    public static boolean hasMatchStartGroup(Pattern pattern) {
+        return pattern.pattern().startsWith(MATCH_START_MARKER);
+    }
+
+    private String translate() {
+        while (pos < in.length()) {
+            char c = in.charAt(pos++);
+            if (c != '\\') {
+                if (mode == Mode.JAVA) {
+                    java(c);
+                } else {
+                    token(c, false);
+                }
+            } else if (pos == in.length()) {
+                literal('\\');
+            } else {
+                escaped(in.charAt(pos++));
+            }
+        }
+        if ( ! groups.isEmpty()) {
+            throw error("Unmatched (");
+        }
+        String result = out.toString();
+        if (matchStart >= 0 || matchEnd >= 0) {
+            int start = matchStart < 0 ? 0 : matchStart;
+            int end = matchEnd < 0 ? result.length() : matchEnd;
+            if (end < start) {
+                throw error("\\ze before \\zs");
+            }
+            if (start > 0) {
+                // The text before \zs becomes group 1, the groups of the pattern move up by one.
+                StringBuilder sb = new StringBuilder(result);
+                for (int i = backReferences.size() - 1; i >= 0; i--) {
+                    int offset = backReferences.get(i);
+                    String group = String.valueOf(sb.charAt(offset) - '0' + 1);
+                    sb.replace(offset, offset + 1, group);
+                    if (group.length() > 1) {
+                        start += offset < start ? 1 : 0;
+                        end += offset < end ? 1 : 0;
+                    }
+                }
+                result = sb.toString();
+            }
+            String before = result.substring(0, start);
+            String after = result.substring(end);
+            String middle = result.substring(start, end)
+                    + (after.length() == 0 ? "" : "(?=" + after + ")");
+            if (before.length() > 0) {
+                return MATCH_START_MARKER + caseFlag + "(" + before + ")" + middle;
+            }
+            result = middle;
+        }
+        return caseFlag + result;
+    }
+
+    /** Copies Java syntax, only keeping track of groups. */
+    private void java(char c) {
+        if (c == '[') {
+            int end = javaClassEnd(pos - 1);
+            out.append(in, pos - 1, end);
+            pos = end;
+        } else if (c == '(') {
+            groups.add(out.length());
+            out.append(c);
+        } else if (c == ')' && ! groups.isEmpty()) {
+            groups.remove(groups.size() - 1);
+            out.append(c);
+        } else {
+            out.append(c);
+        }
+    }
+
+    private int javaClassEnd(int start) {
+        int depth = 0;
+        int i = start;
+        while (i < in.length()) {
+            char c = in.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // A ] right after the opening bracket is a literal.
+                if (i + 1 < in.length() && in.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < in.length() && in.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return in.length();
+    }
+
+    private void escaped(char c) {
+        switch (c) {
+        case 'v': mode = Mode.VERY_MAGIC; return;
+        case 'm': mode = Mode.MAGIC; return;
+        case 'M': mode = Mode.NOMAGIC; return;
+        case 'V': mode = Mode.VERY_NOMAGIC; return;
+        case 'c':
+        case 'C':
+            // In Java mode these are Java's control character escape and an error.
+            if (mode != Mode.JAVA) {
+                caseFlag = c == 'c' ? "(?i)" : "(?-i)";
+                return;
+            }
+            break;
+        case 'z':
+            if (pos < in.length() && (in.charAt(pos) == 's' || in.charAt(pos) == 'e')) {
+                if ( ! groups.isEmpty()) {
+                    throw error("\\zs and \\ze are not supported inside a group");
+                }
+                if (in.charAt(pos++) == 's') {
+                    matchStart = out.length();
+                } else {
+                    matchEnd = out.length();
+                }
+                return;
+            }
+            break;
+        case '_':
+            if (pos < in.length()) {
+                newlineClass(in.charAt(pos++));
+                return;
+            }
+            break;
+        case '<':
+        case '>':
+            if (mode != Mode.VERY_MAGIC) {
+                atom("\\b");
+                return;
+            }
+            break;
+        case '%':
+            if (mode == Mode.JAVA && pos < in.length() && in.charAt(pos) == 'V') {
+                pos++;
+                return;
+            }
+            break;
+        case '{':
+            if (mode == Mode.JAVA && count(true)) {
+                return;
+            }
+            break;
+        default:
+            break;
+        }
+        if (mode == Mode.JAVA) {
+            javaEscape(c);
+        } else if (Character.isLetterOrDigit(c)) {
+            vimEscape(c);
+        } else {
+            token(c, true);
+        }
+    }
+
+    /** Escapes in Java mode: Java's meaning wins, except where Java has none. */
+    private void javaEscape(char c) {
+        boolean vimClass;
+        switch (c) {
+        case 'l': case 'L': case 'o': case 'O': case 'i': case 'I': case 'f': case 'F':
+        case 'K': case 'U':
+            vimClass = true;
+            break;
+        case 'k':
+            vimClass = ! in.startsWith("<", pos);
+            break;
+        case 'u':
+            vimClass = ! in.substring(pos).matches("(?s)[0-9A-Fa-f]{4}.*");
+            break;
+        case 'x':
+            vimClass = ! in.substring(pos).matches("(?s)(\\{|[0-9A-Fa-f]{2}).*");
+            break;
+        case 'Q':
+            int end = in.indexOf("\\E", pos);
+            end = end < 0 ? in.length() : end + 2;
+            out.append('\\').append(c).append(in, pos, end);
+            pos = end;
+            return;
+        default:
+            vimClass = false;
+        }
+        if (vimClass) {
+            vimEscape(c);
+        } else {
+            if (c >= '1' && c <= '9') {
+                backReferences.add(out.length() + 1);
+            }
+            out.append('\\').append(c);
+        }
+    }
+
+    /** Escaped letters and digits in Vim mode. */
+    private void vimEscape(char c) {
+        switch (c) {
+        case 'n': atom("\\n"); return;
+        case 't': atom("\\t"); return;
+        case 'r': atom("\\r"); return;
+        case 'e': atom("\\x1b"); return;
+        case 'b': atom("\\x08"); return;
+        case 'd': atom("\\d"); return;
+        case 'D': atom("\\D"); return;
+        case 'w': atom("\\w"); return;
+        case 'W': atom("\\W"); return;
+        default:
+            break;
+        }
+        if (c >= '1' && c <= '9') {
+            backReferences.add(out.length() + 1);
+            atom("\\" + c);
+            return;
+        }
+        String body = CLASS_BODIES.get(c);
+        if (body != null) {
+            atom("[" + body + "]");
+            return;
+        }
+        body = CLASS_BODIES.get(Character.toLowerCase(c));
+        if (Character.isUpperCase(c) && body != null) {
+            atom("[^" + body + "]");
+            return;
+        }
+        throw error("Unsupported \\" + c);
+    }
+
+    /** <tt>\_x</tt>: the class x or a line break. */
+    private void newlineClass(char c) {
+        if (c == '.') {
+            atom("(?s:.)");
+        } else if (c == '^') {
+            atom("^");
+        } else if (c == '$') {
+            atom("$");
+        } else if (c == '[') {
+            if ( ! collection(true)) {
+                throw error("Missing ] after \\_[");
+            }
+        } else if (CLASS_BODIES.containsKey(c)) {
+            atom("[" + CLASS_BODIES.get(c) + "\\n]");
+        } else if (Character.isUpperCase(c) && CLASS_BODIES.containsKey(Character.toLowerCase(c))) {
+            // The negated class matches a line break already.
+            atom("[^" + CLASS_BODIES.get(Character.toLowerCase(c)) + "]");
+        } else {
+            throw error("Unsupported \\_" + c);
+        }
+    }
+
+    /** A character which is not a letter or digit in one of Vim's modes. */
+    private void token(char c, boolean escaped) {
+        boolean magic;
+        switch (mode) {
+        case VERY_MAGIC:
+            magic = ! escaped;
+            break;
+        case MAGIC:
+            magic = escaped != ("^$.*[~".indexOf(c) >= 0);
+            break;
+        case NOMAGIC:
+            magic = escaped != ("^$".indexOf(c) >= 0);
+            break;
+        default:
+            magic = escaped || (c == '^' && branchStart) || (c == '$' && pos == in.length());
+        }
+        if ( ! magic) {
+            literal(c);
+            return;
+        }
+        switch (c) {
+        case '^':
+            if (branchStart) {
+                out.append('^');
+            } else {
+                literal(c);
+            }
+            return;
+        case '$':
+            if (pos == in.length() || in.startsWith(mode == Mode.VERY_MAGIC ? "|" : "\\|", pos)
+                    || in.startsWith(mode == Mode.VERY_MAGIC ? ")" : "\\)", pos)) {
+                out.append('$');
+            } else {
+                literal(c);
+            }
+            return;
+        case '.':
+            atom(".");
+            return;
+        case '[':
+            if ( ! collection(false)) {
+                literal(c);
+            }
+            return;
+        case '(':
+            groups.add(out.length());
+            out.append('(');
+            lastAtom = -1;
+            branchStart = true;
+            return;
+        case ')':
+            if (groups.isEmpty()) {
+                throw error("Unmatched )");
+            }
+            out.append(')');
+            lastAtom = groups.remove(groups.size() - 1);
+            branchStart = false;
+            return;
+        case '|':
+            out.append('|');
+            lastAtom = -1;
+            branchStart = true;
+            return;
+        case '*':
+        case '+':
+        case '?':
+            out.append(c);
+            return;
+        case '=':
+            out.append('?');
+            return;
+        case '{':
+            if ( ! count(false)) {
+                throw error("Invalid count \\{");
+            }
+            return;
+        case '@':
+            lookAround();
+            return;
+        case '%':
+            percent();
+            return;
+        case '<':
+        case '>':
+            atom("\\b");
+            return;
+        case '&':
+            throw error("\\& is not supported");
+        default:
+            // '~' (the last substitute string) and characters without a meaning in very magic.
+            literal(c);
+        }
+    }
+
+    /**
+     * Parses the rest of <tt>\{n,m}</tt>.
+     * @param javaMode whether <tt>\{</tt> is a literal brace unless a count with at least one
+     *     number and a plain <tt>}</tt> follows, e.g. <tt>\{2,}</tt> but not <tt>\{}</tt> or
+     *     <tt>\{2\}</tt>.
+     * @return <code>false</code> if no count follows, nothing is consumed then.
+     */
+    private boolean count(boolean javaMode) {
+        int close = in.indexOf('}', pos);
+        if (close < 0) {
+            return false;
+        }
+        String spec = in.substring(pos, close);
+        if (spec.endsWith("\\")) {
+            if (javaMode) {
+                return false;
+            }
+            spec = spec.substring(0, spec.length() - 1);
+        }
+        if ( ! spec.matches(javaMode ? "-?(\\d+(,\\d*)?|,\\d+)" : "-?\\d*(,\\d*)?")) {
+            return false;
+        }
+        pos = close + 1;
+        boolean lazy = spec.startsWith("-");
+        if (lazy) {
+            spec = spec.substring(1);
+        }
+        String quantifier;
+        if (spec.length() == 0 || spec.equals(",")) {
+            quantifier = "*";
+        } else if (spec.startsWith(",")) {
+            quantifier = "{0" + spec + "}";
+        } else {
+            quantifier = "{" + spec + "}";
+        }
+        out.append(quantifier);
+        if (lazy) {
+            out.append('?');
+        }
+        return true;
+    }
+
+    /** <tt>\@=</tt>, <tt>\@!</tt>, <tt>\@&lt;=</tt>, <tt>\@&lt;!</tt> and <tt>\@&gt;</tt>. */
+    private void lookAround() {
+        if (lastAtom < 0) {
+            throw error("\\@ follows nothing");
+        }
+        while (pos < in.length() && Character.isDigit(in.charAt(pos))) {
+            pos++;
+        }
+        String open;
+        if (in.startsWith("=", pos)) {
+            open = "(?=";
+        } else if (in.startsWith("!", pos)) {
+            open = "(?!";
+        } else if (in.startsWith("<=", pos)) {
+            open = "(?<=";
+        } else if (in.startsWith("<!", pos)) {
+            open = "(?<!";
+        } else if (in.startsWith(">", pos)) {
+            open = "(?>";
+        } else {
+            throw error("Invalid \\@");
+        }
+        pos += open.length() - 2;
+        String atom = out.substring(lastAtom);
+        out.setLength(lastAtom);
+        out.append(open).append(atom).append(')');
+        for (int i = 0; i < backReferences.size(); i++) {
+            if (backReferences.get(i) > lastAtom) {
+                backReferences.set(i, backReferences.get(i) + open.length());
+            }
+        }
+    }
+
+    private void percent() {
+        if (pos >= in.length()) {
+            throw error("Invalid \\%");
+        }
+        char c = in.charAt(pos++);
+        switch (c) {
+        case '(':
+            groups.add(out.length());
+            out.append("(?:");
+            lastAtom = -1;
+            branchStart = true;
+            return;
+        case 'V':
+            return;
+        case '^':
+            out.append("\\A");
+            return;
+        case '$':
+            out.append("\\z");
+            return;
+        case 'd':
+            atom(String.format("\\x{%x}", Integer.parseInt(number("0123456789"))));
+            return;
+        case 'x':
+        case 'u':
+        case 'U':
+            atom("\\x{" + number("0123456789abcdefABCDEF") + "}");
+            return;
+        case 'o':
+            atom(String.format("\\x{%x}", Integer.parseInt(number("01234567"), 8)));
+            return;
+        default:
+            throw error("Unsupported \\%" + c);
+        }
+    }
+
+    private String number(String digits) {
+        int start = pos;
+        while (pos < in.length() && digits.indexOf(in.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Number expected");
+        }
+        return in.substring(start, pos);
+    }
+
+    /**
+     * Translates a <tt>[...]</tt> collection starting at {@link #pos}.
+     * @return <code>false</code> if there is no closing bracket, nothing is consumed then.
+     */
+    private boolean collection(boolean withNewline) {
+        int i = pos;
+        StringBuilder sb = new StringBuilder("[");
+        if (i < in.length() && in.charAt(i) == '^') {
+            sb.append('^');
+            i++;
+        }
+        if (i < in.length() && in.charAt(i) == ']') {
+            sb.append("\\]");
+            i++;
+        }
+        while (i < in.length() && in.charAt(i) != ']') {
+            char c = in.charAt(i);
+            if (c == '[' && in.startsWith("[:", i) && in.indexOf(":]", i + 2) > 0) {
+                int end = in.indexOf(":]", i + 2);
+                String body = POSIX_CLASSES.get(in.substring(i + 2, end));
+                if (body == null) {
+                    throw error("Unknown class " + in.substring(i, end + 2));
+                }
+                sb.append(body);
+                i = end + 2;
+            } else if (c == '\\' && i + 1 < in.length()
+                    && "etrnb\\]^-".indexOf(in.charAt(i + 1)) >= 0) {
+                char e = in.charAt(i + 1);
+                switch (e) {
+                case 'e': sb.append("\\x1b"); break;
+                case 'b': sb.append("\\x08"); break;
+                default: sb.append('\\').append(e);
+                }
+                i += 2;
+            } else if (c == '\\' || c == '[' || c == '&') {
+                sb.append('\\').append(c);
+                i++;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        if (i >= in.length()) {
+            return false;
+        }
+        if (withNewline) {
+            sb.append("\\n");
+        }
+        sb.append(']');
+        pos = i + 1;
+        atom(sb.toString());
+        return true;
+    }
+
+    private void literal(char c) {
+        if (JAVA_META.indexOf(c) >= 0) {
+            atom("\\" + c);
+        } else {
+            atom(String.valueOf(c));
+        }
+    }
+
+    private void atom(String regex) {
+        lastAtom = out.length();
+        out.append(regex);
+        branchStart = false;
+    }
+
+    private PatternSyntaxException error(String description) {
+        return new PatternSyntaxException(description, in, pos - 1);
+    }
+}
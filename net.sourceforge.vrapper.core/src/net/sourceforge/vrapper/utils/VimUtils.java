@@ -230,6 +230,15 @@ public class VimUtils {
         return sb.toString();
     }
 
+    /**
+     * We're using Java's regex engine (directly or through Eclipse) for search/replace. However,
+     * a lot of people are used to Vim's syntax for regex, so map Vim regex syntax to Java's where
+     * possible, see {@link VimRegex}. The translation is cached.
+     */
+    public static String convertVimRegex(final String keyword) {
+        return VimRegex.toJava(keyword);
+    }
+
     public static boolean isPatternDelimiter(final String s) {
         return VimUtils.COMPILED_PATTERN_DELIM_PATTERN.matcher(s).find();
     }
@@ -7,13 +7,18 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import net.sourceforge.vrapper.keymap.KeyMap;
 import net.sourceforge.vrapper.keymap.KeyStroke;
@@ -36,6 +41,7 @@ import net.sourceforge.vrapper.platform.SearchAndReplaceService;
 import net.sourceforge.vrapper.platform.SelectionService;
 import net.sourceforge.vrapper.platform.ServiceProvider;
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.platform.TimerService;
 import net.sourceforge.vrapper.platform.UnderlyingEditorSettings;
 import net.sourceforge.vrapper.platform.UserInterfaceService;
 import net.sourceforge.vrapper.platform.ViewportService;
@@ -69,6 +75,8 @@ import net.sourceforge.vrapper.vim.modes.TempLinewiseVisualMode;
 import net.sourceforge.vrapper.vim.modes.TempNormalMode;
 import net.sourceforge.vrapper.vim.modes.TempVisualMode;
 import net.sourceforge.vrapper.vim.modes.VisualMode;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdParser;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdTable;
 import net.sourceforge.vrapper.vim.modes.commandline.CommandLineMode;
 import net.sourceforge.vrapper.vim.modes.commandline.CommandLineParser;
 import net.sourceforge.vrapper.vim.modes.commandline.HighlightSearch;
@@ -85,6 +93,10 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     // in order to be .vrapperrc-agnostic
     public static boolean SHOULD_READ_RC_FILE = true;
 
+    /** Adaptors which weren't garbage collected yet, including closed ones. */
+    private static final Set<DefaultEditorAdaptor> LIVE_ADAPTORS = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<DefaultEditorAdaptor, Boolean>()));
+
     private static final String CONFIG_FILE_NAME = ".vrapperrc";
     private static final String WINDOWS_CONFIG_FILE_NAME = "_vrapperrc";
     protected EditorMode currentMode;
@@ -102,6 +114,10 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     private final UserInterfaceService userInterfaceService;
     private final ServiceProvider serviceProvider;
     private final KeyStrokeTranslator keyStrokeTranslator;
+    /** Keymap of the mapping which the {@link #keyStrokeTranslator} is waiting to complete. */
+    private KeyMap pendingMappingMap;
+    /** Task waiting in the {@link TimerService} to give up the pending mapping, if any. */
+    private Runnable mappingTimeout;
     private final KeyMapProvider keyMapProvider;
     private final DefaultTextObjectProvider textObjectProvider;
     private final UnderlyingEditorSettings editorSettings;
@@ -123,6 +139,9 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     private Selection lastSelection;
     private SearchResult searchResult;
     private int cursorBeforeMapping = -1;
+    private final Map<Class<?>, EditorAttachment> attachments =
+            new LinkedHashMap<Class<?>, EditorAttachment>();
+    private boolean closed;
 
 
     public DefaultEditorAdaptor(final Platform editor, final RegisterManager registerManager, final boolean isActive) {
@@ -161,6 +180,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         listeners = new VrapperEventListeners(this);
         fileService = editor.getFileService();
         bufferAndTabService = editor.getBufferAndTabService();
+        LIVE_ADAPTORS.add(this);
 
         __set_modes(this);
         setNewLineFromFirstLine();
@@ -262,6 +282,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
             if (config.exists()) {
                 sourceConfigurationFile(filename);
             }
+            AutoCmdTable.INSTANCE.fireFileType(this);
         } finally {
             configuration.setListenersEnabled(true);
         }
@@ -283,6 +304,8 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         int lineNr = 0;
         if(config.exists()) {
         	BufferedReader reader = null;
+        	// Autocommands are kept in a shared table, only load them when the file changed.
+        	boolean loadAutoCmds = AutoCmdTable.INSTANCE.beginSource(config);
         	try {
         		reader = new BufferedReader(new InputStreamReader(
         					new FileInputStream(config), "UTF-8"));
@@ -326,6 +349,14 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         				}
         				continue; //skip "endtry" line
         			}
+        			if( ! loadAutoCmds && AutoCmdParser.isAutoCmd(trimmed)) {
+        				// Loaded already, only run a FileType autocommand in place.
+        				Command c = AutoCmdParser.INSTANCE.parse(this, line, false);
+        				if (c != null) {
+        					c.execute(this);
+        				}
+        				continue;
+        			}
         			if(trimmed.startsWith(":")) {
         			    //leading ':' is optional, skip it if it exists
         			    line = line.substring(line.indexOf(':') +1);
@@ -343,6 +374,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         		VrapperLog.error("Failed to execute command on line " + lineNr
         				+ " of .vrapperrc", e);
             } finally {
+                AutoCmdTable.INSTANCE.endSource();
         		if(reader != null) {
         			try {
         				reader.close();
@@ -434,29 +466,64 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
             return handleKeyOffRecord(key);
 
         } catch (MacroAbortedException e) {
-            // Clean up after aborted macro
-            changeModeSafely(NormalMode.NAME);
-            // Print exception message when recursion error message is not set.
-            if (recursionErrorMessage == null) {
-                getUserInterfaceService().setErrorMessage(e.getMessage());
-            }
+            macroAborted(e);
             return true;
 
         } finally {
-            macroStack.clear();
-            mappingStack.clear();
-            macroPlayer = null;
-            abortRecursion = false;
-            if (recursionErrorMessage != null) {
-                userInterfaceService.setErrorMessage(recursionErrorMessage);
+            resetKeyHandling();
+        }
+    }
+
+    /**
+     * Called by the {@link TimerService} when no key followed the start of a mapping in time.
+     * The keys were recorded for macros when they were typed.
+     */
+    private void handleMappingTimeout() {
+        if (isClosed()) {
+            return;
+        }
+        try {
+            if (keyStrokeTranslator.processTimeout()) {
+                handleTranslatedKeyStrokes(pendingMappingMap, null);
+                playPendingMacro();
             }
-            recursionErrorMessage = null;
+
+        } catch (MacroAbortedException e) {
+            macroAborted(e);
+
+        } finally {
+            resetKeyHandling();
+        }
+    }
+
+    private void macroAborted(MacroAbortedException e) {
+        // Clean up after aborted macro
+        changeModeSafely(NormalMode.NAME);
+        // Print exception message when recursion error message is not set.
+        if (recursionErrorMessage == null) {
+            getUserInterfaceService().setErrorMessage(e.getMessage());
         }
     }
 
+    private void resetKeyHandling() {
+        macroStack.clear();
+        mappingStack.clear();
+        macroPlayer = null;
+        abortRecursion = false;
+        if (recursionErrorMessage != null) {
+            userInterfaceService.setErrorMessage(recursionErrorMessage);
+        }
+        recursionErrorMessage = null;
+    }
+
     @Override
     public boolean handleKeyOffRecord(final KeyStroke key) {
         final boolean result = handleKey0(key);
+        playPendingMacro();
+        return result;
+    }
+
+    private void playPendingMacro() {
         if (macroPlayer != null) {
             // while playing back one macro, another macro might be called
             // recursively. we need a fresh macro player for that.
@@ -465,7 +532,6 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
             player.play(macroStack);
             macroStack.pop();
         }
-        return result;
     }
 
     @Override
@@ -686,106 +752,9 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
             }
             if (map != null) {
                 final boolean inMapping = keyStrokeTranslator.processKeyStroke(map, key);
+                updateMappingTimeout(map);
                 if (inMapping) {
-                    final Queue<RemappedKeyStroke> resultingKeyStrokes =
-                        keyStrokeTranslator.resultingKeyStrokes();
-                    // Check if we should do backtracking: a multi-character mapping failed after
-                    // the user entered two or more characters. The first few characters can be
-                    // passed to the current mode whereas the later ones might be another mapping.
-                    boolean doBackTrack = ! keyStrokeTranslator.didMappingSucceed()
-                            && resultingKeyStrokes.size() > 1 && currentMode.isRemapBacktracking();
-                    // Insert mode uses no map buffer, pending characters are inserted by Eclipse.
-                    if (currentMode instanceof InsertMode) {
-                        if (cursorBeforeMapping == -1) {
-                            //keep track of where the cursor is at the start of a mapping
-                            //so we can delete the pending characters if the mapping completes
-                            cursorBeforeMapping = cursorService.getPosition().getModelOffset();
-                        }
-                        // Display pending characters - most keys will make us return false in which
-                        // case Eclipse's default insert logic becomes active (e.g. for auto-closing
-                        // parentheses). Some automatic stuff can't be triggered any other way.
-                        if (resultingKeyStrokes.isEmpty()) {
-                            return currentMode.handleKey(key);
-                        }
-                        // Else there are resulting key strokes, mapping exited either successfully
-                        // or unsuccessfully. Are there previous characters to delete?
-                        else if (cursorService.getPosition().getModelOffset() - cursorBeforeMapping > 0) {
-
-                            try {
-                                if (keyStrokeTranslator.didMappingSucceed() || doBackTrack) {
-                                    int pendingChars = cursorService.getPosition().getModelOffset() - cursorBeforeMapping;
-                                    //delete all the pending characters we had displayed
-                                    for (int i=0; i < pendingChars; i++) {
-                                        currentMode.handleKey(new RemappedKeyStroke(new SimpleKeyStroke(SpecialKey.BACKSPACE), false));
-                                    }
-                                }
-                                else {
-                                    // Mapping failed. We inserted all other characters so only the
-                                    // last key should be dealt with.
-
-                                    // check if key is in global map.
-                                    if (KeyMap.GLOBAL_MAP.containsKey(key)) {
-                                        key = new RemappedKeyStroke(KeyMap.GLOBAL_MAP.get(key), false);
-                                    }
-                                    return currentMode.handleKey(key);
-                                }
-                            } finally {
-                                //prepare for next insert mapping
-                                cursorBeforeMapping = -1;
-                            }
-                        } else {
-                            //mapping is only one character long (no pending characters to remove)
-                            //prepare for next insert mapping
-                            cursorBeforeMapping = -1;
-                        }
-
-                    // ### End of Insert mode "previously entered keys" printing code ###
-
-                    } else if (resultingKeyStrokes.isEmpty()) {
-                        currentMode.addKeyToMapBuffer(key);
-                    } else {
-                        currentMode.cleanMapBuffer(keyStrokeTranslator.didMappingSucceed());
-                    }
-                    // Backtrack remap
-                    if (doBackTrack) {
-                        // First key needs to be removed and handled or it would trigger same remap.
-                        currentMode.handleKey(resultingKeyStrokes.poll());
-                        // Backtrack by recursion. Don't call handleKey as it records macros.
-                        while ( ! resultingKeyStrokes.isEmpty()) {
-                            final RemappedKeyStroke next = resultingKeyStrokes.poll();
-                            handleKeyOffRecord(next);
-                        }
-                    } else {
-                        // play all key strokes, either the pending characters or the successful map
-                        if (keyStrokeTranslator.didMappingSucceed()) {
-                            String mappingId = '[' + map.getMapId() + "] "
-                                    + ConstructorWrappers.keyStrokesToString(
-                                            keyStrokeTranslator.originalKeyStrokes());
-                            // Check for infinite recursion - throw away state and return
-                            if (mappingStack.contains(mappingId)) {
-                                recursionErrorMessage = "Mapping " + mappingId + " is called "
-                                        + "recursively, mapping execution aborted.";
-                                abortRecursion = true;
-                                return true;
-                            }
-                            mappingStack.push(mappingId);
-                        }
-                        try {
-                            while (!resultingKeyStrokes.isEmpty() && ! abortRecursion) {
-                                final RemappedKeyStroke next = resultingKeyStrokes.poll();
-                                if (next.isRecursive()) {
-                                    handleKeyOffRecord(next);
-                                } else {
-                                    currentMode.handleKey(next);
-                                }
-                            } 
-                        } finally {
-                            if (keyStrokeTranslator.didMappingSucceed()) {
-                                mappingStack.pop();
-                            }
-                        }
-                    }
-                    return true;
+                    return handleTranslatedKeyStrokes(map, key);
                 } // else the character matches no mapping.
             } // else mode does not allow remapping at this point.
             if (KeyMap.GLOBAL_MAP.containsKey(key)) {
@@ -796,6 +765,138 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         return false;
     }
 
+    /**
+     * Passes the keys which result from the mapping to the current mode.
+     * @param key the last key typed, <code>null</code> if the mapping timed out.
+     */
+    private boolean handleTranslatedKeyStrokes(KeyMap map, KeyStroke key) {
+        final Queue<RemappedKeyStroke> resultingKeyStrokes =
+            keyStrokeTranslator.resultingKeyStrokes();
+        // Check if we should do backtracking: a multi-character mapping failed after
+        // the user entered two or more characters. The first few characters can be
+        // passed to the current mode whereas the later ones might be another mapping.
+        boolean doBackTrack = ! keyStrokeTranslator.didMappingSucceed()
+                && resultingKeyStrokes.size() > 1 && currentMode.isRemapBacktracking();
+        // Insert mode uses no map buffer, pending characters are inserted by Eclipse.
+        if (currentMode instanceof InsertMode) {
+            if (cursorBeforeMapping == -1) {
+                //keep track of where the cursor is at the start of a mapping
+                //so we can delete the pending characters if the mapping completes
+                cursorBeforeMapping = cursorService.getPosition().getModelOffset();
+            }
+            // Display pending characters - most keys will make us return false in which
+            // case Eclipse's default insert logic becomes active (e.g. for auto-closing
+            // parentheses). Some automatic stuff can't be triggered any other way.
+            if (resultingKeyStrokes.isEmpty()) {
+                return currentMode.handleKey(key);
+            }
+            // Else there are resulting key strokes, mapping exited either successfully
+            // or unsuccessfully. Are there previous characters to delete?
+            else if (cursorService.getPosition().getModelOffset() - cursorBeforeMapping > 0) {
+
+                try {
+                    if (keyStrokeTranslator.didMappingSucceed() || doBackTrack) {
+                        int pendingChars = cursorService.getPosition().getModelOffset() - cursorBeforeMapping;
+                        //delete all the pending characters we had displayed
+                        for (int i=0; i < pendingChars; i++) {
+                            currentMode.handleKey(new RemappedKeyStroke(new SimpleKeyStroke(SpecialKey.BACKSPACE), false));
+                        }
+                    }
+                    else if (key == null) {
+                        // Mapping timed out, all its characters were inserted already.
+                        return true;
+                    }
+                    else {
+                        // Mapping failed. We inserted all other characters so only the
+                        // last key should be dealt with.
+
+                        // check if key is in global map.
+                        if (KeyMap.GLOBAL_MAP.containsKey(key)) {
+                            key = new RemappedKeyStroke(KeyMap.GLOBAL_MAP.get(key), false);
+                        }
+                        return currentMode.handleKey(key);
+                    }
+                } finally {
+                    //prepare for next insert mapping
+                    cursorBeforeMapping = -1;
+                }
+            } else {
+                //mapping is only one character long (no pending characters to remove)
+                //prepare for next insert mapping
+                cursorBeforeMapping = -1;
+            }
+
+        // ### End of Insert mode "previously entered keys" printing code ###
+
+        } else if (resultingKeyStrokes.isEmpty()) {
+            currentMode.addKeyToMapBuffer(key);
+        } else {
+            currentMode.cleanMapBuffer(keyStrokeTranslator.didMappingSucceed());
+        }
+        // Backtrack remap
+        if (doBackTrack) {
+            // First key needs to be removed and handled or it would trigger same remap.
+            currentMode.handleKey(resultingKeyStrokes.poll());
+            // Backtrack by recursion. Don't call handleKey as it records macros.
+            while ( ! resultingKeyStrokes.isEmpty()) {
+                final RemappedKeyStroke next = resultingKeyStrokes.poll();
+                handleKeyOffRecord(next);
+            }
+        } else {
+            // play all key strokes, either the pending characters or the successful map
+            if (keyStrokeTranslator.didMappingSucceed()) {
+                String mappingId = '[' + map.getMapId() + "] "
+                        + ConstructorWrappers.keyStrokesToString(
+                                keyStrokeTranslator.originalKeyStrokes());
+                // Check for infinite recursion - throw away state and return
+                if (mappingStack.contains(mappingId)) {
+                    recursionErrorMessage = "Mapping " + mappingId + " is called "
+                            + "recursively, mapping execution aborted.";
+                    abortRecursion = true;
+                    return true;
+                }
+                mappingStack.push(mappingId);
+            }
+            try {
+                while (!resultingKeyStrokes.isEmpty() && ! abortRecursion) {
+                    final RemappedKeyStroke next = resultingKeyStrokes.poll();
+                    if (next.isRecursive()) {
+                        handleKeyOffRecord(next);
+                    } else {
+                        currentMode.handleKey(next);
+                    }
+                } 
+            } finally {
+                if (keyStrokeTranslator.didMappingSucceed()) {
+                    mappingStack.pop();
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Waits for the next key of a pending mapping only up to 'timeoutlen'. */
+    private void updateMappingTimeout(KeyMap map) {
+        final TimerService timerService = serviceProvider.getService(TimerService.class);
+        if (timerService == null) {
+            return;
+        }
+        if (mappingTimeout != null) {
+            timerService.cancel(mappingTimeout);
+            mappingTimeout = null;
+        }
+        if (keyStrokeTranslator.isPending() && configuration.get(Options.TIMEOUT)) {
+            pendingMappingMap = map;
+            mappingTimeout = new Runnable() {
+                public void run() {
+                    mappingTimeout = null;
+                    handleMappingTimeout();
+                }
+            };
+            timerService.schedule(mappingTimeout, configuration.get(Options.TIMEOUT_LEN));
+        }
+    }
+
     @Override
     public void onChangeEnabled(final boolean enabled) {
         // switch mode for set-up/tear-down
@@ -885,4 +986,54 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         return userInterfaceService.getCommandLineUI(this);
     }
 
+    @Override
+    public <T extends EditorAttachment> T getAttachment(Class<T> type) {
+        return type.cast(attachments.get(type));
+    }
+
+    @Override
+    public <T extends EditorAttachment> void setAttachment(Class<T> type, T attachment) {
+        if (attachment == null) {
+            attachments.remove(type);
+        } else {
+            attachments.put(type, attachment);
+        }
+    }
+
+    @Override
+    public Collection<EditorAttachment> getAttachments() {
+        return Collections.unmodifiableCollection(attachments.values());
+    }
+
+    @Override
+    public void editorClosed() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (EditorAttachment attachment : new ArrayList<EditorAttachment>(attachments.values())) {
+            try {
+                attachment.editorClosed(this);
+            } catch (RuntimeException e) {
+                VrapperLog.error("Failed to release " + attachment, e);
+            }
+        }
+        attachments.clear();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the adaptors which are still in memory. Closed ones should disappear after the
+     *  next garbage collection, unless something still refers to them.
+     */
+    public static List<DefaultEditorAdaptor> getLiveAdaptors() {
+        synchronized (LIVE_ADAPTORS) {
+            return new ArrayList<DefaultEditorAdaptor>(LIVE_ADAPTORS);
+        }
+    }
+
 }
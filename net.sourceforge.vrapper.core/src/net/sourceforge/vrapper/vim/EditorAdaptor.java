@@ -1,5 +1,7 @@
 package net.sourceforge.vrapper.vim;
 
+import java.util.Collection;
+
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.CommandLineUI;
@@ -106,5 +108,24 @@ public interface EditorAdaptor {
     void addVrapperEventListener(VrapperEventListener listener);
     void removeVrapperEventListener(VrapperEventListener listener);
     VrapperEventListeners getListeners();
+
+    /**
+     * @return the state a plugin stored for this editor under the given type, <code>null</code>
+     *  if there is none.
+     */
+    <T extends EditorAttachment> T getAttachment(Class<T> type);
+    /**
+     * Stores plugin state for this editor, replacing the attachment of the same type.
+     * <code>null</code> removes it without calling {@link EditorAttachment#editorClosed}.
+     */
+    <T extends EditorAttachment> void setAttachment(Class<T> type, T attachment);
+    /** @return the attachments of this editor, for diagnostics. */
+    Collection<EditorAttachment> getAttachments();
+
+    /**
+     * Called by the platform when the editor was closed. Notifies and drops all attachments.
+     */
+    void editorClosed();
+    boolean isClosed();
 }
 
@@ -0,0 +1,17 @@
+package net.sourceforge.vrapper.vim;
+
+/**
+ * State which a plugin keeps for one editor, stored with
+ * {@link EditorAdaptor#setAttachment(Class, EditorAttachment)}. Attachments are dropped when the
+ * editor is closed, so plugins don't need maps keyed by {@link EditorAdaptor} which would keep
+ * closed editors and their documents reachable.
+ */
+public interface EditorAttachment {
+
+    /**
+     * Called once when the editor is closed, just before the attachment is dropped. Release
+     * anything which is not owned by the editor itself here.
+     */
+    void editorClosed(EditorAdaptor editorAdaptor);
+
+}
@@ -66,6 +66,8 @@ public class KeyStrokeTranslator {
 
     private State<Remapping> currentState;
     private Remapping lastValue;
+    /** Number of keys of {@link #lastValue}'s mapping. */
+    private int lastValueLength;
     private final List<RemappedKeyStroke> unconsumedKeyStrokes;
     private final LinkedList<RemappedKeyStroke> resultingKeyStrokes;
     private boolean mappingSucceeded = false;
@@ -96,6 +98,7 @@ public class KeyStrokeTranslator {
                 //mapping completed successfully
                 lastValue = trans.getValue();
                 unconsumedKeyStrokes.add(new RemappedKeyStroke(key, false));
+                lastValueLength = unconsumedKeyStrokes.size();
                 mappingSucceeded = true;
             } else { //mapping pending
                 // as long as no preliminary result is found, keystrokes
@@ -122,6 +125,41 @@ public class KeyStrokeTranslator {
         return true;
     }
 
+    /**
+     * @return whether keys of a mapping were typed but the mapping isn't complete yet.
+     */
+    public boolean isPending() {
+        return currentState != null;
+    }
+
+    /**
+     * Gives up waiting for the next key of a pending mapping, like Vim does after
+     * <tt>timeoutlen</tt>. If the keys so far complete a shorter mapping, that mapping succeeds
+     * and the keys typed after it follow. Otherwise the keys are passed on as they were typed.
+     * @return whether a mapping was pending.
+     */
+    public boolean processTimeout() {
+        if (currentState == null) {
+            return false;
+        }
+        currentState = null;
+        if (lastValue != null) {
+            List<RemappedKeyStroke> rest = unconsumedKeyStrokes.subList(lastValueLength,
+                    unconsumedKeyStrokes.size());
+            for (RemappedKeyStroke key : rest) {
+                resultingKeyStrokes.add(new RemappedKeyStroke(key, true));
+            }
+            // The keys of the mapping stay as the originalKeyStrokes().
+            rest.clear();
+            prependLastValue();
+            mappingSucceeded = true;
+        } else {
+            prependUnconsumed();
+            mappingSucceeded = false;
+        }
+        return true;
+    }
+
     public Queue<RemappedKeyStroke> originalKeyStrokes() {
         // This is unlikely to happen
         if (unconsumedKeyStrokes.isEmpty()) {
@@ -5,6 +5,7 @@ import java.util.LinkedList;
 import java.util.Queue;
 
 import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.platform.CommandQueueService;
 import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.vim.commands.PlaybackMacroCommand;
 import net.sourceforge.vrapper.vim.modes.EditorMode;
@@ -16,6 +17,9 @@ import net.sourceforge.vrapper.vim.modes.EditorMode;
  * This is necessary because executing macros from a command would mean that
  * an {@link EditorMode}'s {@link EditorMode#handleKey(KeyStroke)} method
  * would be called recursivly, which results in undefined behaviour.
+ * <p>
+ * Platform commands queued by a key (see {@link CommandQueueService}) are run
+ * before the next key is played.
  *
  * @author Matthias Radig
  */
@@ -55,20 +59,25 @@ public class MacroPlayer {
      */
     void play(Deque<String> macroStack) {
         ViewportService view = editorAdaptor.getViewportService();
+        CommandQueueService queue = editorAdaptor.getService(CommandQueueService.class);
         String historyLock = "macroplayback " + macroStack;
         try {
-            view.setRepaint(false);
-            view.lockRepaint(this);
+            view.beginBatchEdit();
             editorAdaptor.getHistory().beginCompoundChange();
             editorAdaptor.getHistory().lock();
             while (! editorAdaptor.abortRecursion && ! playlist.isEmpty()) {
+                if (queue != null) {
+                    queue.flush();
+                }
                 editorAdaptor.handleKeyOffRecord(playlist.poll());
             }
+            if (queue != null) {
+                queue.flush();
+            }
         } finally {
             editorAdaptor.getHistory().unlock(historyLock);
             editorAdaptor.getHistory().endCompoundChange();
-            view.unlockRepaint(this);
-            view.setRepaint(true);
+            view.endBatchEdit();
         }
     }
 
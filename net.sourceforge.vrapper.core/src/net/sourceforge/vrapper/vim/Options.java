@@ -2,6 +2,7 @@ package net.sourceforge.vrapper.vim;
 
 import static net.sourceforge.vrapper.platform.Configuration.Option.bool;
 import static net.sourceforge.vrapper.platform.Configuration.Option.globalBool;
+import static net.sourceforge.vrapper.platform.Configuration.Option.globalInteger;
 import static net.sourceforge.vrapper.platform.Configuration.Option.globalString;
 import static net.sourceforge.vrapper.platform.Configuration.Option.globalStringSet;
 import static net.sourceforge.vrapper.platform.Configuration.Option.integer;
@@ -40,10 +41,13 @@ public interface Options {
     public static final Option<Boolean> START_NORMAL_MODE     = bool("startnormalmode",   false, "snm");
     public static final Option<Boolean> UNDO_MOVES_CURSOR     = bool("undomovescursor",  true,  "umvc");
     public static final Option<Boolean> WRAP_SCAN             = bool("wrapscan",     true,  "ws");
+    public static final Option<Boolean> OPTIMAL_FORMAT        = bool("optimalformat", false, "ofm");
     public static final Option<Boolean> DEBUGLOG        = globalBool("debuglog",     false);
     public static final Option<Boolean> LINE_NUMBERS    = globalBool("number",       false, "nu");
     public static final Option<Boolean> SHOW_WHITESPACE = globalBool("list",         false, "l");
     public static final Option<Boolean> HIGHLIGHT_CURSOR_LINE = globalBool("cursorline",   false, "cul");
+    /** Whether a key sequence which starts a mapping is given up after {@link #TIMEOUT_LEN}. */
+    public static final Option<Boolean> TIMEOUT         = globalBool("timeout",      true,  "to");
 
     public static final Option<Boolean> MODIFIABLE       = localBool("modifiable", true, "ma");
     public static final Option<Boolean> GLOBAL_REGISTERS = localBool("globalregisters", true);
@@ -55,7 +59,7 @@ public interface Options {
             INCREMENTAL_SEARCH, LINE_NUMBERS, SHOW_WHITESPACE, IM_DISABLE,
             VISUAL_MOUSE, EXIT_LINK_MODE, CLEAN_INDENT, AUTO_CHDIR, HIGHLIGHT_CURSOR_LINE,
             CONTENT_ASSIST_MODE, START_NORMAL_MODE, UNDO_MOVES_CURSOR, DEBUGLOG, MODIFIABLE,
-            GLOBAL_REGISTERS, WRAP_SCAN);
+            GLOBAL_REGISTERS, WRAP_SCAN, OPTIMAL_FORMAT, TIMEOUT);
 
     // String options:
     public static final Option<String> SYNC_MODIFIABLE = globalString("syncmodifiable", "nosync", "nosync, matchreadonly", "syncma");
@@ -90,7 +94,20 @@ public interface Options {
     //       Changing this value should change the Eclipse configuration too. -- BRD
     public static final Option<Integer> TAB_STOP      = integer("tabstop",     8, "ts");
     public static final Option<Integer> SHIFT_WIDTH   = integer("shiftwidth",  8, "sw");
+    public static final Option<Integer> UNDO_LEVELS   = integer("undolevels", 1000, "ul");
+    /** Amount of undo information kept per editor, in KB. */
+    public static final Option<Integer> UNDO_MEMORY   = integer("undomemory", 32768);
+    /** Milliseconds to wait for the next key of a mapping. */
+    public static final Option<Integer> TIMEOUT_LEN   = globalInteger("timeoutlen", 1000, "tm");
+    /**
+     * Milliseconds to wait for the rest of a terminal key code. Eclipse delivers special keys in
+     * one piece, so this is only accepted for compatibility with vimrc files.
+     */
+    public static final Option<Integer> TTIMEOUT_LEN  = globalInteger("ttimeoutlen", -1, "ttm");
+    /** Number of entries kept in each command line history. */
+    public static final Option<Integer> HISTORY       = globalInteger("history", 1000, "hi");
 
     @SuppressWarnings("unchecked")
-    public static final Set<Option<Integer>> INT_OPTIONS = set(SCROLL_JUMP, SCROLL, SCROLL_OFFSET, TEXT_WIDTH, SOFT_TAB, TAB_STOP, SHIFT_WIDTH);
+    public static final Set<Option<Integer>> INT_OPTIONS = set(SCROLL_JUMP, SCROLL, SCROLL_OFFSET, TEXT_WIDTH, SOFT_TAB, TAB_STOP, SHIFT_WIDTH,
+            UNDO_LEVELS, UNDO_MEMORY, TIMEOUT_LEN, TTIMEOUT_LEN, HISTORY);
 }
@@ -2,6 +2,7 @@ package net.sourceforge.vrapper.vim.commands;
 
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.keymap.vim.ConstructorWrappers;
+import net.sourceforge.vrapper.platform.CommandQueueService;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.platform.ViewportService;
@@ -10,16 +11,26 @@ import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.RemappedKeyStroke;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
 
 /**
  * Immediately execute a set of commands without storing them
  * in a named register. Backs the <code>normal</code> command.
+ * <p>
+ * The keys are compiled to commands once (see {@link CompiledKeySequence}) and only passed
+ * through the modes like typed keys if they can't be compiled. Text typed in insert mode is
+ * inserted directly, except on the first line this runs on (<tt>:g</tt> runs it once per line)
+ * and on the last line of the range, so that the registers and marks set by insert mode are
+ * the same as when typing the keys.
  */
 public class AnonymousMacroOperation extends AbstractLinewiseOperation {
 	
 	private String macro;
+	private CompiledKeySequence compiled;
+	private EditorAdaptor compiledFor;
+	private boolean executedBefore;
 	
 	public AnonymousMacroOperation(String macro) {
 		this.macro = macro;
@@ -42,6 +53,10 @@ public class AnonymousMacroOperation extends AbstractLinewiseOperation {
 		TextContent model = editorAdaptor.getModelContent();
 		
 		Iterable<KeyStroke> parsed = ConstructorWrappers.parseKeyStrokes(macro);
+		if (compiledFor != editorAdaptor) {
+			compiled = CompiledKeySequence.compile(editorAdaptor, parsed);
+			compiledFor = editorAdaptor;
+		}
 		
 		boolean resetPos = true;
 		if (lineRange.getStartLine() == lineRange.getEndLine()) {
@@ -53,33 +68,45 @@ public class AnonymousMacroOperation extends AbstractLinewiseOperation {
 		// [NOTE] This is not safe when doing :<range>normal dd. ExCommandOperation (class behind
 		// the :g/<pattern>/ command) has code which guards against this, so users should prefer
 		// that one for destructive operations.
-		for (int i = lineRange.getStartLine(); i <= lineRange.getEndLine(); i++) {
+		ViewportService view = editorAdaptor.getViewportService();
+		CommandQueueService queue = editorAdaptor.getService(CommandQueueService.class);
+		view.beginBatchEdit();
+		editorAdaptor.getHistory().beginCompoundChange();
+		editorAdaptor.getHistory().lock("normal-command");
+		try {
+			for (int i = lineRange.getStartLine(); i <= lineRange.getEndLine(); i++) {
 
-			if (resetPos) {
-				LineInformation lineInfo = model.getLineInformation(i);
-				Position lineStart = cursor.newPositionForModelOffset(lineInfo.getBeginOffset());
-				editorAdaptor.setPosition(lineStart, StickyColumnPolicy.NEVER);
-			}
+				if (resetPos) {
+					LineInformation lineInfo = model.getLineInformation(i);
+					Position lineStart = cursor.newPositionForModelOffset(lineInfo.getBeginOffset());
+					editorAdaptor.setPosition(lineStart, StickyColumnPolicy.NEVER);
+				}
 
-			ViewportService view = editorAdaptor.getViewportService();
-			try {
-				view.setRepaint(false);
-				view.lockRepaint(this);
-				editorAdaptor.getHistory().beginCompoundChange();
-				editorAdaptor.getHistory().lock("normal-command");
-				for (KeyStroke key : parsed) {
-					editorAdaptor.handleKeyOffRecord(key);
+				if (compiled != null) {
+					boolean lastOfRange = i == lineRange.getEndLine()
+							&& lineRange.getStartLine() < lineRange.getEndLine();
+					compiled.execute(editorAdaptor, executedBefore && ! lastOfRange);
+					executedBefore = true;
+				} else {
+					for (KeyStroke key : parsed) {
+						if (queue != null) {
+							queue.flush();
+						}
+						editorAdaptor.handleKeyOffRecord(new RemappedKeyStroke(key, true));
+					}
+				}
+				if (queue != null) {
+					queue.flush();
 				}
-			} finally {
-				editorAdaptor.getHistory().unlock("normal-command");
-				editorAdaptor.getHistory().endCompoundChange();
-				view.unlockRepaint(this);
-				view.setRepaint(true);
-			}
 
-			if ( ! NormalMode.NAME.equals(editorAdaptor.getCurrentModeName())) {
-				editorAdaptor.changeModeSafely(NormalMode.NAME);
+				if ( ! NormalMode.NAME.equals(editorAdaptor.getCurrentModeName())) {
+					editorAdaptor.changeModeSafely(NormalMode.NAME);
+				}
 			}
+		} finally {
+			editorAdaptor.getHistory().unlock("normal-command");
+			editorAdaptor.getHistory().endCompoundChange();
+			view.endBatchEdit();
 		}
 	}
 
@@ -0,0 +1,33 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+
+/**
+ * Moves through the text states in the order they were created, also jumping to other undo
+ * branches. This is Vim's <tt>g-</tt> and <tt>g+</tt>.
+ */
+public class ChronologicalUndoCommand extends CountAwareCommand {
+
+    public static final ChronologicalUndoCommand OLDER = new ChronologicalUndoCommand(-1);
+    public static final ChronologicalUndoCommand NEWER = new ChronologicalUndoCommand(1);
+
+    private final int direction;
+
+    private ChronologicalUndoCommand(int direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public void execute(EditorAdaptor editorAdaptor, int count) {
+        if (count == NO_COUNT_GIVEN) {
+            count = 1;
+        }
+        editorAdaptor.getHistory().travel(direction * count);
+    }
+
+    @Override
+    public CountAwareCommand repetition() {
+        return null;
+    }
+
+}
@@ -0,0 +1,187 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.vrapper.keymap.KeyMap;
+import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.keymap.SpecialKey;
+import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.keymap.Transition;
+import net.sourceforge.vrapper.platform.CommandQueueService;
+import net.sourceforge.vrapper.platform.KeyMapProvider;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.RemappedKeyStroke;
+import net.sourceforge.vrapper.vim.commands.motions.MoveLeft;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.modes.InsertMode;
+import net.sourceforge.vrapper.vim.modes.KeyMapResolver;
+import net.sourceforge.vrapper.vim.modes.NormalMode;
+
+/**
+ * Key strokes for normal mode which were resolved to commands once, so that they can be run on
+ * many lines without walking the keymaps of the modes again (<tt>:normal</tt>,
+ * <tt>:g/pattern/normal</tt>).
+ * <p>
+ * Only the part of the keys which stays in normal mode is compiled, plus plain text typed after
+ * <tt>i</tt>, <tt>a</tt>, <tt>I</tt> or <tt>A</tt> up to <tt>&lt;Esc&gt;</tt>. When a command
+ * switches to another mode the remaining keys are passed to the editor like typed keys. Key
+ * strokes which are remapped by the user can't be compiled at all.
+ */
+public class CompiledKeySequence {
+
+    private static class Step {
+        /** Index of the first key after the keys of the command. */
+        private final int commandEnd;
+        /** Index of the first key after the keys of this step, including inserted text. */
+        private final int nextKey;
+        private final Command command;
+        /** Text typed in insert mode after the command, <code>null</code> for other commands. */
+        private final String insertedText;
+
+        public Step(int commandEnd, int nextKey, Command command, String insertedText) {
+            this.commandEnd = commandEnd;
+            this.nextKey = nextKey;
+            this.command = command;
+            this.insertedText = insertedText;
+        }
+    }
+
+    private final List<KeyStroke> keys;
+    private final List<Step> steps;
+
+    private CompiledKeySequence(List<KeyStroke> keys, List<Step> steps) {
+        this.keys = keys;
+        this.steps = steps;
+    }
+
+    /**
+     * @return the compiled keys, <code>null</code> if they contain user mappings or keys which
+     *  don't form normal mode commands.
+     */
+    public static CompiledKeySequence compile(EditorAdaptor editorAdaptor, Iterable<KeyStroke> keyStrokes) {
+        List<KeyStroke> keys = new ArrayList<KeyStroke>();
+        for (KeyStroke key : keyStrokes) {
+            keys.add(KeyMap.GLOBAL_MAP.containsKey(key) ? KeyMap.GLOBAL_MAP.get(key) : key);
+        }
+        KeyMapProvider keyMaps = editorAdaptor.getKeyMapProvider();
+        NormalMode normalMode = (NormalMode) editorAdaptor.getMode(NormalMode.NAME);
+        State<Command> initialState = normalMode.getInitialState();
+        State<Command> state = initialState;
+        List<Step> steps = new ArrayList<Step>();
+        int i = 0;
+        while (i < keys.size()) {
+            KeyStroke key = keys.get(i++);
+            if (isMapped(keyMaps, NormalMode.KEYMAP_NAME, key)
+                    || isMapped(keyMaps, KeyMapResolver.OMAP_NAME, key)) {
+                return null;
+            }
+            Transition<Command> transition = state.press(key);
+            if (transition == null) {
+                return null;
+            }
+            Command command = transition.getValue();
+            state = transition.getNextState();
+            if (command == null) {
+                if (state == null) {
+                    return null;
+                }
+                continue;
+            }
+            if (state != null) {
+                // Commands which keep reading keys can't be told apart from the next command.
+                return null;
+            }
+            state = initialState;
+            int commandEnd = i;
+            String text = null;
+            if (command.getClass() == ChangeToInsertModeCommand.class) {
+                StringBuilder sb = new StringBuilder();
+                int end = i;
+                while (end < keys.size() && isPlainCharacter(keys.get(end))
+                        && ! isMapped(keyMaps, InsertMode.KEYMAP_NAME, keys.get(end))) {
+                    sb.append(keys.get(end++).getCharacter());
+                }
+                if (end == keys.size()) {
+                    text = sb.toString();
+                    i = end;
+                } else if (SpecialKey.ESC.equals(keys.get(end).getSpecialKey())) {
+                    text = sb.toString();
+                    i = end + 1;
+                }
+            }
+            steps.add(new Step(commandEnd, i, command, text));
+        }
+        return new CompiledKeySequence(keys, steps);
+    }
+
+    /**
+     * Runs the keys at the cursor.
+     * @param fast if set, text typed in insert mode is inserted directly without entering insert
+     *  mode. The registers and marks which insert mode sets (e.g. for <tt>.</tt>) are not
+     *  updated then, so the last run should not be fast.
+     */
+    public void execute(EditorAdaptor editorAdaptor, boolean fast) {
+        NormalMode normalMode = (NormalMode) editorAdaptor.getMode(NormalMode.NAME);
+        CommandQueueService queue = editorAdaptor.getService(CommandQueueService.class);
+        int nextKey = 0;
+        for (Step step : steps) {
+            if (queue != null) {
+                queue.flush();
+            }
+            if ( ! NormalMode.NAME.equals(editorAdaptor.getCurrentModeName())) {
+                break;
+            }
+            if (fast && step.insertedText != null) {
+                insert(editorAdaptor, (ChangeToInsertModeCommand) step.command, step.insertedText);
+                normalMode.placeCursor(StickyColumnPolicy.NEVER);
+                nextKey = step.nextKey;
+            } else {
+                normalMode.executeResolvedCommand(step.command);
+                nextKey = step.commandEnd;
+            }
+        }
+        if ( ! NormalMode.NAME.equals(editorAdaptor.getCurrentModeName())) {
+            // A command switched modes, the remaining keys belong to the new mode. They are
+            // marked like keys of a macro so that insert mode inserts them itself.
+            for (int i = nextKey; i < keys.size(); i++) {
+                if (queue != null) {
+                    queue.flush();
+                }
+                editorAdaptor.handleKeyOffRecord(new RemappedKeyStroke(keys.get(i), true));
+            }
+        }
+    }
+
+    private static void insert(EditorAdaptor editorAdaptor, ChangeToInsertModeCommand command,
+            String text) {
+        try {
+            if (command.command != null) {
+                command.command.execute(editorAdaptor);
+            }
+        } catch (CommandExecutionException e) {
+            editorAdaptor.getUserInterfaceService().setErrorMessage(e.getMessage());
+        }
+        TextContent content = editorAdaptor.getModelContent();
+        for (int i = 0; i < text.length(); i++) {
+            // Typed one by one like in insert mode, which matters for automatic indentation.
+            content.smartInsert(String.valueOf(text.charAt(i)));
+        }
+        try {
+            // Leaving insert mode moves the cursor back onto the last inserted character.
+            MotionCommand.doIt(editorAdaptor, MoveLeft.INSTANCE);
+        } catch (CommandExecutionException e) {
+            // At the start of the line.
+        }
+    }
+
+    private static boolean isPlainCharacter(KeyStroke key) {
+        return key.getSpecialKey() == null && ! key.withCtrlKey() && ! key.withAltKey();
+    }
+
+    private static boolean isMapped(KeyMapProvider keyMaps, String keyMapName, KeyStroke key) {
+        KeyMap keyMap = keyMaps.getKeyMap(keyMapName);
+        return keyMap != null && keyMap.press(key) != null;
+    }
+}
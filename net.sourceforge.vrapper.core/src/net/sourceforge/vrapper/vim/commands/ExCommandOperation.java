@@ -1,5 +1,7 @@
 package net.sourceforge.vrapper.vim.commands;
 
+import java.util.regex.PatternSyntaxException;
+
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.TextContent;
@@ -11,6 +13,7 @@ import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.SubstitutionDefinition;
 import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.VimRegex;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
 /**
@@ -109,6 +112,12 @@ public class ExCommandOperation extends AbstractLinewiseOperation {
 			}
 		}
 
+		try {
+			VimRegex.compile(pattern, 0);
+		} catch (PatternSyntaxException e) {
+			throw new CommandExecutionException("Invalid pattern: " + e.getDescription());
+		}
+
 		if (definition.length() <= patternEnd + 1) {
 			// pattern was defined, but no command
 			throw new CommandExecutionException("No ex command to execute on pattern match!");
@@ -231,19 +240,8 @@ public class ExCommandOperation extends AbstractLinewiseOperation {
 			LineInformation line, EditorAdaptor editorAdaptor) {
 		boolean operationPerformed = false;
 		String text = editorAdaptor.getModelContent().getText(line.getBeginOffset(), line.getLength());
-		//Java's matches() method expects to match the entire string.
-		//If the user isn't explicitly matching beginning or end of
-		//a String, fake it out so Java is happy.
-		if( ! pattern.startsWith("^")) {
-			//line can start with anything
-			pattern = ".*" + pattern;
-		}
-		if( ! pattern.endsWith("$")) {
-			//line can end with anything
-			pattern += ".*";
-		}
-
-		boolean matches = text.matches(pattern);
+		//The compiled pattern is cached, so this is cheap for all but the first line.
+		boolean matches = VimRegex.compile(pattern, 0).matcher(text).find();
 		if( (findMatch && matches) || (!findMatch && !matches) ) {
 			try {
 				LineRange singleLine = SimpleLineRange.singleLineInModel(editorAdaptor, line);
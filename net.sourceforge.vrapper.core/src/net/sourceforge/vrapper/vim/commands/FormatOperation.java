@@ -4,10 +4,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
-import net.sourceforge.vrapper.utils.StringUtils;
 import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.utils.VimUtils;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
@@ -27,6 +29,9 @@ import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
  * (or no leading comment characters at all) will not be merged.  Blank lines
  * are always preserved.
  * 
+ * Only paragraphs whose text changes are replaced. With 'optimalformat' set, lines are broken to
+ * be of even length instead of filling each line as much as possible.
+ * 
  * This is mapped to the 'gq<text object>' operation.
  */
 public class FormatOperation extends AbstractLinewiseOperation {
@@ -47,139 +52,282 @@ public class FormatOperation extends AbstractLinewiseOperation {
 	@Override
 	public void execute(EditorAdaptor editorAdaptor, LineRange lineRange) throws CommandExecutionException {
 		TextRange originalTextRange = lineRange.getRegion(editorAdaptor, 0);
-		String text = editorAdaptor.getModelContent().getText(originalTextRange);
-		String newlineChar = editorAdaptor.getConfiguration().getNewLine();
-		String[] lines = text.split(newlineChar);
-		int textWidth = editorAdaptor.getConfiguration().get(Options.TEXT_WIDTH);
-		int tabStop = editorAdaptor.getConfiguration().get(Options.TAB_STOP);
-		
-		CommentedLine current;
-		CommentedLine previous = null;
-		List<String> formattedLines = new ArrayList<String>();
-		List<String> processed;
-		for(int i=0; i < lines.length; i++) {
-			current = new CommentedLine(lines[i]);
-			if( ! current.allowFormat()) {
-				formattedLines.add(current.getFullLine());
-				previous = null;
-				continue;
-			}
-			
-			//if we can merge with line above
-			//(must have matching comment characters)
-			if(previous != null && previous.getContinueChar().equals(current.getCommentChar())) {
-				processed = formatLines(new ArrayList<String>(),
-						new CommentedLine(
-								previous.getPreIndent(),
-								previous.getCommentChar(),
-								previous.getPostIndent(),
-								previous.getText()+" "+current.getText(),
-								previous.getContinueChar()),
-						textWidth, tabStop
-				);
-				//remove old 'previous' text
-				formattedLines.remove(formattedLines.size() - 1);
-				//add all new lines (including new version of 'previous')
-				formattedLines.addAll(processed);
-				//prepare for next iteration
-				previous = new CommentedLine(processed.get(processed.size()-1));
+		TextContent model = editorAdaptor.getModelContent();
+		String text = model.getText(originalTextRange);
+		Configuration config = editorAdaptor.getConfiguration();
+		Reflow reflow = new Reflow(config.getNewLine(), config.get(Options.TEXT_WIDTH),
+				config.get(Options.TAB_STOP), config.get(Options.OPTIMAL_FORMAT));
+		List<Edit> edits = reflow.format(text);
+
+		//Only paragraphs which changed are replaced, back to front so offsets stay valid.
+		int start = originalTextRange.getLeftBound().getModelOffset();
+		ViewportService viewport = editorAdaptor.getViewportService();
+		editorAdaptor.getHistory().beginCompoundChange();
+		viewport.beginBatchEdit();
+		try {
+			for (int i = edits.size() - 1; i >= 0; i--) {
+				Edit edit = edits.get(i);
+				model.replace(start + edit.offset, edit.length, edit.text);
 			}
-			//we can't merge with line above, does this line need to be split?
-			else {
-				processed = formatLines(new ArrayList<String>(), current, textWidth, tabStop);
-				formattedLines.addAll(processed);
-				//prepare for next iteration
-				previous = new CommentedLine(processed.get(processed.size()-1));
+			//Every formatted line ends with a newline, even the last one of the file.
+			if (text.length() > 0 && ! text.endsWith("\n") && ! text.endsWith("\r")) {
+				int end = originalTextRange.getRightBound().getModelOffset();
+				for (Edit edit : edits) {
+					end += edit.text.length() - edit.length;
+				}
+				model.replace(end, 0, config.getNewLine());
 			}
-			
-		}
-		
-		String newLines = "";
-		for(String line : formattedLines) {
-			newLines += line + newlineChar;
+		} finally {
+			viewport.endBatchEdit();
+			editorAdaptor.getHistory().endCompoundChange();
 		}
-		
-		//swap out the old text with the formatted text
-		int start = originalTextRange.getLeftBound().getModelOffset();
-		int length = originalTextRange.getModelLength();
-		editorAdaptor.getModelContent().replace(start, length, newLines);
 		editorAdaptor.getCursorService().setPosition(originalTextRange.getStart(), StickyColumnPolicy.ON_CHANGE);
 	}
-	
-	/**
-	 * Take a long line and split it on word boundaries closest to textwidth.
-	 * Note that this may result in multiple lines.  Each new line will
-	 * share the same indentation and comment character as the first.
-	 */
-	private List<String> formatLines(List<String> formatted, CommentedLine textToFormat,
-			int textWidth, int tabStop) {
-		String fullLine = textToFormat.getFullLine();
-		int[] visualOffsets = StringUtils.calculateVisualOffsets(fullLine, fullLine.length(), tabStop);
-		if (visualOffsets[fullLine.length()] <= textWidth) {
-			formatted.add(textToFormat.getFullLine());
+
+	/** Replacement of one paragraph, offsets are relative to the formatted range. */
+	private static class Edit {
+		private final int offset;
+		private final int length;
+		private final String text;
+
+		public Edit(int offset, int length, String text) {
+			this.offset = offset;
+			this.length = length;
+			this.text = text;
 		}
-		else {
-			String text = textToFormat.getText();
-			int textStartIndex = textToFormat.getPrefix().length();
-			int lineBreakIndex = findLineBreakIndex(text, textWidth, textStartIndex, visualOffsets);
-			String line = text.substring(0, lineBreakIndex);
-			String remainder = text.substring(lineBreakIndex).trim();
-			formatted.add(textToFormat.getPrefix() + line);
-			
-			if (remainder.length() > 0) {
-				CommentedLine newLine = new CommentedLine(
-						textToFormat.getPreIndent(),
-						textToFormat.getContinueChar(),
-						textToFormat.getPostIndent(),
-						remainder,
-						textToFormat.getContinueChar()
-				);
-				// Recursion! Break the rest of this line until within textwidth.
-				// The original caller will then check if it can glue the last piece to a fresh line
-				return formatLines(formatted, newLine, textWidth, tabStop);
+	}
+
+	/** Lines which are merged and broken up again together. */
+	private static class Paragraph {
+		private final String prefix;
+		private final String continuePrefix;
+		private final String continueChar;
+		private final StringBuilder text;
+		private final int startOffset;
+		private int endOffset;
+
+		public Paragraph(CommentedLine first, int startOffset, int endOffset) {
+			this.prefix = first.getPrefix();
+			this.continuePrefix = first.getPreIndent() + first.getContinueChar() + first.getPostIndent();
+			this.continueChar = first.getContinueChar();
+			this.text = new StringBuilder(first.getText());
+			this.startOffset = startOffset;
+			this.endOffset = endOffset;
+		}
+
+		/** Merges the line if it has matching comment characters. */
+		public boolean add(CommentedLine line, int lineEndOffset) {
+			if ( ! continueChar.equals(line.getCommentChar())) {
+				return false;
 			}
+			text.append(' ').append(line.getText());
+			endOffset = lineEndOffset;
+			return true;
 		}
-		return formatted;
 	}
 
-	/** Finds the most appropriate whitespace character on which we can break the text line.
-	 * @param text The text in which we need to find whitespace, stripped of indent and commentchar. 
-	 * @param textwidth Requested text width (i.e. screen column).
-	 * @param textStartIndex Index at which text starts in the full line
-	 *   (or put differently: how many indent and comment characters there are before text)
-	 * @param visualOffsets Screen column information for the full string.
-	 * @return Index at which to break the line for the string passed in <code>text</code>
+	/**
+	 * Formats text in a single pass: lines are collected into paragraphs, each paragraph is broken
+	 * up using display widths computed once per character, and only the paragraphs whose text
+	 * changed produce an edit.
 	 */
-	private int findLineBreakIndex(String text, int textwidth, int textStartIndex,
-			int[] visualOffsets) {
-		int lineBreakIndex = -1;
-		int i = 0;
-		// Find the whitespace char with the largest visual offset before we hit our intended
-		// textwidth. A whitespace char which has visual offset == 'textwidth' is acceptable,
-		// the line we're about to break will exactly break at the 'textwidth' column.
-		while (i < text.length() && visualOffsets[i + textStartIndex] <= textwidth) {
-			if (Character.isWhitespace(text.charAt(i))) {
-				lineBreakIndex = i;
+	private static class Reflow {
+		private final String newLine;
+		private final int textWidth;
+		private final int tabStop;
+		private final boolean optimal;
+
+		public Reflow(String newLine, int textWidth, int tabStop, boolean optimal) {
+			this.newLine = newLine;
+			this.textWidth = textWidth;
+			this.tabStop = Math.max(1, tabStop);
+			this.optimal = optimal;
+		}
+
+		public List<Edit> format(String text) {
+			List<Edit> edits = new ArrayList<Edit>();
+			Paragraph paragraph = null;
+			int lineStart = 0;
+			while (lineStart < text.length()) {
+				int lineEnd = lineStart;
+				while (lineEnd < text.length() && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+					lineEnd++;
+				}
+				int nextLine = lineEnd;
+				if (nextLine < text.length()) {
+					nextLine += text.startsWith("\r\n", nextLine) ? 2 : 1;
+				}
+				CommentedLine line = new CommentedLine(text.substring(lineStart, lineEnd));
+				if ( ! line.allowFormat()) {
+					flush(paragraph, text, edits);
+					paragraph = null;
+				} else if (paragraph == null || ! paragraph.add(line, lineEnd)) {
+					flush(paragraph, text, edits);
+					paragraph = new Paragraph(line, lineStart, lineEnd);
+				}
+				lineStart = nextLine;
+			}
+			flush(paragraph, text, edits);
+			return edits;
+		}
+
+		private void flush(Paragraph paragraph, String text, List<Edit> edits) {
+			if (paragraph == null) {
+				return;
+			}
+			List<String> lines = optimal ? breakOptimal(paragraph) : breakGreedy(paragraph);
+			StringBuilder formatted = new StringBuilder(paragraph.text.length() + 16 * lines.size());
+			for (int i = 0; i < lines.size(); i++) {
+				if (i > 0) {
+					formatted.append(newLine);
+				}
+				formatted.append(lines.get(i));
+			}
+			int length = paragraph.endOffset - paragraph.startOffset;
+			if (formatted.length() != length
+					|| ! text.regionMatches(paragraph.startOffset, formatted.toString(), 0, length)) {
+				edits.add(new Edit(paragraph.startOffset, length, formatted.toString()));
+			}
+		}
+
+		/**
+		 * Take a long line and split it on word boundaries closest to textwidth. Each new line
+		 * will share the same indentation and comment character as the first.
+		 */
+		private List<String> breakGreedy(Paragraph paragraph) {
+			List<String> lines = new ArrayList<String>();
+			String text = paragraph.text.toString();
+			String prefix = paragraph.prefix;
+			int prefixWidth = width(prefix, 0, prefix.length(), 0);
+			int end = text.length();
+			int pos = 0;
+			while (true) {
+				// Find the whitespace char with the largest visual offset before we hit our
+				// intended textwidth. A whitespace char which starts at column 'textwidth' is
+				// acceptable, the line will exactly break at the 'textwidth' column.
+				int column = prefixWidth;
+				int lineBreakIndex = -1;
+				int i = pos;
+				while (i < end && column <= textWidth) {
+					char c = text.charAt(i);
+					if (Character.isWhitespace(c)) {
+						lineBreakIndex = i;
+					}
+					column = advance(column, c);
+					i++;
+				}
+				if (i == end && column <= textWidth) {
+					lines.add(prefix + text.substring(pos, end));
+					return lines;
+				}
+				// No whitespace found whatsoever. Keep searching and use the first to be found.
+				if (lineBreakIndex == -1) {
+					while (i < end && ! Character.isWhitespace(text.charAt(i))) {
+						i++;
+					}
+					// No whitespace in text so don't break it at all.
+					lineBreakIndex = i;
+				}
+				lines.add(prefix + text.substring(pos, lineBreakIndex));
+				pos = lineBreakIndex;
+				while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+					pos++;
+				}
+				while (end > pos && Character.isWhitespace(text.charAt(end - 1))) {
+					end--;
+				}
+				if (pos >= end) {
+					return lines;
+				}
+				prefix = paragraph.continuePrefix;
+				prefixWidth = width(prefix, 0, prefix.length(), 0);
 			}
-			i++;
 		}
-		// No whitespace found whatsoever. Keep searching and use the first to be found.
-		if (lineBreakIndex == -1) {
-			while( i < text.length() && ! Character.isWhitespace(text.charAt(i))) {
-				i++;
+
+		/**
+		 * Breaks the paragraph so that the sum of the squared free space at the end of each line
+		 * (except the last) is minimal, which gives lines of more even length than filling each
+		 * line as much as possible. Words are separated by a single space.
+		 */
+		private List<String> breakOptimal(Paragraph paragraph) {
+			String text = paragraph.text.toString();
+			List<String> words = new ArrayList<String>();
+			int pos = 0;
+			while (pos < text.length()) {
+				while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+					pos++;
+				}
+				int wordEnd = pos;
+				while (wordEnd < text.length() && ! Character.isWhitespace(text.charAt(wordEnd))) {
+					wordEnd++;
+				}
+				if (wordEnd > pos) {
+					words.add(text.substring(pos, wordEnd));
+				}
+				pos = wordEnd;
+			}
+			int n = words.size();
+			int[] widths = new int[n];
+			for (int i = 0; i < n; i++) {
+				widths[i] = width(words.get(i), 0, words.get(i).length(), 0);
+			}
+			int firstPrefixWidth = width(paragraph.prefix, 0, paragraph.prefix.length(), 0);
+			int continuePrefixWidth = width(paragraph.continuePrefix, 0, paragraph.continuePrefix.length(), 0);
+
+			// cost[i]: minimal cost of laying out words i..n-1, next[i]: first word of the line after.
+			long[] cost = new long[n + 1];
+			int[] next = new int[n + 1];
+			for (int i = n - 1; i >= 0; i--) {
+				int lineWidth = (i == 0 ? firstPrefixWidth : continuePrefixWidth) - 1;
+				cost[i] = Long.MAX_VALUE;
+				for (int j = i + 1; j <= n; j++) {
+					lineWidth += 1 + widths[j - 1];
+					if (lineWidth > textWidth && j > i + 1) {
+						break;
+					}
+					long slack = Math.max(0, textWidth - lineWidth);
+					long lineCost = j == n ? 0 : slack * slack;
+					if (lineCost + cost[j] < cost[i]) {
+						cost[i] = lineCost + cost[j];
+						next[i] = j;
+					}
+				}
+			}
+
+			List<String> lines = new ArrayList<String>();
+			int i = 0;
+			while (i < n) {
+				StringBuilder line = new StringBuilder(i == 0 ? paragraph.prefix : paragraph.continuePrefix);
+				for (int j = i; j < next[i]; j++) {
+					if (j > i) {
+						line.append(' ');
+					}
+					line.append(words.get(j));
+				}
+				lines.add(line.toString());
+				i = next[i];
 			}
-			if (i < text.length()) {
-				lineBreakIndex = i;
+			return lines;
+		}
+
+		/** @return the column after the given characters when starting at <code>column</code>. */
+		private int width(String s, int from, int to, int column) {
+			for (int i = from; i < to; i++) {
+				column = advance(column, s.charAt(i));
 			}
+			return column;
 		}
-		// No whitespace in text so don't break it at all.
-		if (lineBreakIndex == -1) {
-			lineBreakIndex = text.length();
+
+		private int advance(int column, char c) {
+			if (c == '\t') {
+				return column + tabStop - column % tabStop;
+			} else if (Character.isHighSurrogate(c)) {
+				return column;
+			}
+			return column + 1;
 		}
-		return lineBreakIndex;
 	}
-	
-	
+
 	/**
 	 * Takes a line of text and stores it in several pieces. Here is an overview:
 	 * <pre>
@@ -193,9 +341,9 @@ public class FormatOperation extends AbstractLinewiseOperation {
 	 * |------------------- fullLine ------------------|
 	 * </pre>
 	 */
-	private class CommentedLine {
+	private static class CommentedLine {
 	
-		public final Set<String> SINGLE_LINE_COMMENTS = VimUtils.set("//", "#", "*");
+		public static final Set<String> SINGLE_LINE_COMMENTS = VimUtils.set("//", "#", "*");
 		public static final String MULTI_LINE_START = "/*";
 		public static final String MULTI_LINE_END = "*/";
 	
@@ -216,21 +364,6 @@ public class FormatOperation extends AbstractLinewiseOperation {
 		public String  getPrefix()       { return preIndent + commentChar + postIndent; }
 		public String  getText()         { return text;          }
 		
-		/**
-		 * This constructor is used when we're modifying the text
-		 * of an existing CommentedLine.  No need to re-parse
-		 * all the pieces.
-		 */
-		public CommentedLine(String preIndent, String commentChar, String postIndent,
-				String text, String continueChar) {
-			this.preIndent = preIndent;
-			this.commentChar = commentChar;
-			this.postIndent = postIndent;
-			this.text = text;
-			this.continueChar = continueChar;
-			this.fullLine = preIndent + commentChar + postIndent + text;
-		}
-		
 		public CommentedLine(String line) {
 			fullLine = line;
 			
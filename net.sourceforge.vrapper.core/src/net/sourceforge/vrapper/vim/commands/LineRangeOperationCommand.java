@@ -4,6 +4,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.utils.LineAddressParser;
 import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
@@ -91,12 +92,24 @@ public class LineRangeOperationCommand extends CountIgnoringNonRepeatableCommand
 	                        new ConfirmSubstitutionMode.SubstitutionConfirm(definition,
 	                                range.getStartLine(), range.getEndLine()));
 	            } else {
-	                substitute.execute(editorAdaptor, range);
+	                ViewportService view = editorAdaptor.getViewportService();
+	                view.beginBatchEdit();
+	                try {
+	                    substitute.execute(editorAdaptor, range);
+	                } finally {
+	                    view.endBatchEdit();
+	                }
 	            }
 	        }
 	        else if (operation != null)
 	        {
-	            operation.execute(editorAdaptor, range);
+	            ViewportService view = editorAdaptor.getViewportService();
+	            view.beginBatchEdit();
+	            try {
+	                operation.execute(editorAdaptor, range);
+	            } finally {
+	                view.endBatchEdit();
+	            }
 	            // Reset sticky column for those few operations where it isn't done.
 	            CursorService cursorService = editorAdaptor.getCursorService();
 	            cursorService.setPosition(cursorService.getPosition(), StickyColumnPolicy.ON_CHANGE);
@@ -0,0 +1,52 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import java.util.List;
+
+import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAttachment;
+
+/**
+ * Lists the editor adaptors which are still in memory and the plugin state attached to them
+ * (<tt>:debugeditors</tt>). A closed editor which stays in the list after a garbage collection
+ * is leaked by whatever still refers to it.
+ */
+public class ListEditorAdaptorsCommand extends AbstractMessagesCommand {
+
+    public static final Command INSTANCE = new ListEditorAdaptorsCommand();
+
+    @Override
+    protected String getMessages(EditorAdaptor editorAdaptor)
+            throws CommandExecutionException {
+        StringBuilder sb = new StringBuilder();
+        List<DefaultEditorAdaptor> adaptors = DefaultEditorAdaptor.getLiveAdaptors();
+        int closed = 0;
+        for (DefaultEditorAdaptor adaptor : adaptors) {
+            String name;
+            try {
+                name = adaptor.getFileService().getCurrentFileName();
+            } catch (RuntimeException e) {
+                // The editor may be disposed already.
+                name = null;
+            }
+            sb.append(adaptor == editorAdaptor ? '%' : ' ');
+            sb.append(adaptor.isClosed() ? 'c' : ' ');
+            sb.append(" \"").append(name == null ? "[No Name]" : name).append('"');
+            if (adaptor.isClosed()) {
+                closed++;
+            }
+            for (EditorAttachment attachment : adaptor.getAttachments()) {
+                sb.append(' ').append(attachment.getClass().getSimpleName());
+            }
+            sb.append('\n');
+        }
+        sb.append(adaptors.size()).append(" editors in memory, ")
+                .append(closed).append(" of them closed");
+        return sb.toString();
+    }
+
+    @Override
+    public boolean isClipped() {
+        return true;
+    }
+}
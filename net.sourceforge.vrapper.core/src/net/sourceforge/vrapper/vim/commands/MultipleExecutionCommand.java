@@ -1,6 +1,7 @@
 package net.sourceforge.vrapper.vim.commands;
 
 import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
 public class MultipleExecutionCommand implements Command {
@@ -17,13 +18,20 @@ public class MultipleExecutionCommand implements Command {
 
     public void execute(EditorAdaptor editorAdaptor) throws CommandExecutionException {
         HistoryService history = editorAdaptor.getHistory();
+        ViewportService view = editorAdaptor.getViewportService();
         try {
             history.beginCompoundChange();
             history.lock("multipleexecution");
+            if (count > 1) {
+                view.beginBatchEdit();
+            }
             for (int i = 0; i < count; i++) {
                 command.execute(editorAdaptor);
             }
         } finally {
+            if (count > 1) {
+                view.endBatchEdit();
+            }
             history.unlock("multipleexecution");
             history.endCompoundChange();
         }
@@ -17,8 +17,7 @@ public class QuoteDelimitedText implements DelimitedText {
 
 	public TextRange leftDelimiter(int offset, EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
 		FindQuoteMotion leftMotion = new FindQuoteMotion(delimiter, true);
-		int leftOffset = leftMotion.destination(offset, editorAdaptor.getModelContent(), count);
-		Position left = editorAdaptor.getCursorService().newPositionForModelOffset(leftOffset);
+		Position left = leftMotion.destination(offset, editorAdaptor, count);
 		return new StartEndTextRange(left, left.addModelOffset(1));
 	}
 
@@ -2,16 +2,22 @@ package net.sourceforge.vrapper.vim.commands;
 
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
-public class RedoCommand extends SimpleRepeatableCommand {
+public class RedoCommand extends CountAwareCommand {
 
     public static final RedoCommand INSTANCE = new RedoCommand();
 
     private RedoCommand() { /* NOP */ }
 
-    public void execute(EditorAdaptor editorAdaptor) {
-        editorAdaptor.getHistory().redo();
+    @Override
+    public void execute(EditorAdaptor editorAdaptor, int count) {
+        if (count == NO_COUNT_GIVEN) {
+            count = 1;
+        }
+        // All redone changes are applied at once.
+        editorAdaptor.getHistory().redo(count);
     }
 
+    @Override
     public CountAwareCommand repetition() {
         return null;
     }
@@ -6,6 +6,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineInformation;
@@ -14,6 +15,7 @@ import net.sourceforge.vrapper.utils.NumericStringComparator;
 import net.sourceforge.vrapper.utils.PatternSortComparator;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
+import net.sourceforge.vrapper.utils.VimRegex;
 import net.sourceforge.vrapper.utils.VimUtils;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
@@ -57,16 +59,8 @@ import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
  * lines to be different.
  * </pre>
  * 
- * TODO: Pattern has not yet fully been implemented.
- * 		 This has been giving me problems, mostly because
- * 		 of the differences between Java regular expressions
- * and, well, every other regular expression implementation.
- * 
- * 		 Many of the simple examples in the Vim docs won't work
- * 		 in a Java regex. The decision has to be made, do we make
- * 		 the user use Java regex's or do we translate? Translation
- * 		 would be a huge pain, but it would give the user a 
- * familiarity benefit.
+ * {pattern} is a Vim regular expression, translated and compiled by
+ * {@link VimRegex}.
  * 
  * <pre>
  * When /{pattern}/ is specified and there is no [r] flag
@@ -323,13 +317,17 @@ public class SortOperation extends AbstractLinewiseOperation {
         List<String> candidateList = editorContentList;
         List<Integer> candidateOffsetList = new ArrayList<Integer>();
         List<String> nonCandidateList = new ArrayList<String>();
+        Pattern compiledPattern = null;
         if(usePattern) {
+            compiledPattern = VimRegex.compile(pattern, 0);
             String candidate;
+            int offset;
             for (int i = 0; i < candidateList.size(); i++) {
             	candidate = candidateList.get(i);
+            	offset = PatternSortComparator.keyOffset(compiledPattern, candidate, usePatternR);
 
-            	if(candidate.contains(pattern)) {
-            		candidateOffsetList.add( usePatternR ? candidate.indexOf(pattern) : candidate.indexOf(pattern) + pattern.length() );
+            	if(offset >= 0) {
+            		candidateOffsetList.add(offset);
             	}
             	else {
                 	candidateList.remove(i);
@@ -338,7 +336,7 @@ public class SortOperation extends AbstractLinewiseOperation {
             	}
             }
             
-            comp = new PatternSortComparator(pattern, usePatternR);
+            comp = new PatternSortComparator(compiledPattern, usePatternR);
         }
 
         /*
@@ -347,7 +345,7 @@ public class SortOperation extends AbstractLinewiseOperation {
          */
         if (numeric || binary || octal || hex) {
         	String newLine = editorAdaptor.getConfiguration().getNewLine();
-        	comp = new NumericStringComparator(newLine, binary, octal, hex, pattern, usePatternR);
+        	comp = new NumericStringComparator(newLine, binary, octal, hex, compiledPattern, usePatternR);
 
         	String candidate;
         	int candidateOffset;
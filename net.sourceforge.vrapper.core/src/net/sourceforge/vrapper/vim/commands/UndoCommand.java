@@ -2,16 +2,22 @@ package net.sourceforge.vrapper.vim.commands;
 
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
-public class UndoCommand extends SimpleRepeatableCommand {
+public class UndoCommand extends CountAwareCommand {
 
     public static final UndoCommand INSTANCE = new UndoCommand();
 
     private UndoCommand() { /* NOP */ }
 
-    public void execute(EditorAdaptor editorAdaptor) {
-        editorAdaptor.getHistory().undo();
+    @Override
+    public void execute(EditorAdaptor editorAdaptor, int count) {
+        if (count == NO_COUNT_GIVEN) {
+            count = 1;
+        }
+        // All undone changes are applied at once.
+        editorAdaptor.getHistory().undo(count);
     }
 
+    @Override
     public CountAwareCommand repetition() {
         return null;
     }
@@ -1,6 +1,7 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -14,6 +15,11 @@ public class BailOffMotion extends AbstractModelSideMotion {
         this.wrapped = wrapped;
     }
 
+    @Override
+    protected void setCurrentState(EditorAdaptor editorAdaptor) {
+        wrapped.setCurrentState(editorAdaptor);
+    }
+
     @Override
     protected int destination(int offset, TextContent content, int count) throws CommandExecutionException {
         if (content.getText(offset, 1).charAt(0) == delim)
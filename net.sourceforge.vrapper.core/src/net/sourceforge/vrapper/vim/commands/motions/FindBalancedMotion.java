@@ -1,11 +1,15 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
+import net.sourceforge.vrapper.platform.PartitionService;
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.PartitionSkipper;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
 /** Points to next occurrence of target character skipping
- * all the balanced pairs.
+ * all the balanced pairs. Comments and literals are skipped, too,
+ * if the editor provides a {@link PartitionService}.
  *
  * @author Krzysiek Goj
  */
@@ -16,6 +20,7 @@ public class FindBalancedMotion extends AbstractModelSideMotion {
     protected boolean upToTarget;
     protected boolean backwards;
     protected boolean ignoreEscape;
+    private PartitionService partitions;
 
     public FindBalancedMotion(char target, char pair, boolean upToTarget, boolean backwards, boolean ignoreEscape) {
         this.target = target;
@@ -25,6 +30,11 @@ public class FindBalancedMotion extends AbstractModelSideMotion {
         this.ignoreEscape = ignoreEscape;
     }
 
+    @Override
+    protected void setCurrentState(EditorAdaptor editorAdaptor) {
+        partitions = editorAdaptor.getService(PartitionService.class);
+    }
+
     @Override
     protected int destination(int offset, TextContent content, int count)
             throws CommandExecutionException {
@@ -32,8 +42,13 @@ public class FindBalancedMotion extends AbstractModelSideMotion {
         int step = backwards ? -1 : 1;
         int depth = count;
         char current;
+        PartitionSkipper skipper = new PartitionSkipper(partitions, offset);
         while (backwards ? offset > end : offset < end) {
             offset += step;
+            if (skipper.isSkipped(offset)) {
+                offset = backwards ? skipper.skipBackward(offset) : skipper.skipForward(offset);
+                continue;
+            }
             current = content.getText(offset, 1).charAt(0);
             if(current == target && !isEscaped(content, offset))
                 --depth;
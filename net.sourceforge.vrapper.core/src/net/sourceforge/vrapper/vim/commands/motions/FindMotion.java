@@ -29,6 +29,11 @@ public class FindMotion extends FindBalancedMotion {
         super(target, '\0', upToTarget, reversed, true);
     }
 
+    @Override
+    protected void setCurrentState(EditorAdaptor editorAdaptor) {
+        // f and t find the character in comments and literals, too.
+    }
+
     @Override
     protected int getEndSearchOffset(TextContent content, int offset) {
         LineInformation line = content.getLineInformationOfOffset(offset);
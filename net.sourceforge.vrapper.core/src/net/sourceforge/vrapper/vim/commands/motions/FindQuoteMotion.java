@@ -3,9 +3,11 @@ package net.sourceforge.vrapper.vim.commands.motions;
 import net.sourceforge.vrapper.keymap.vim.OuterTextObject;
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.PartitionService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.PartitionSkipper;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
@@ -28,12 +30,18 @@ import net.sourceforge.vrapper.vim.commands.TextObject;
  * on the cursor represents the left bound.  If there
  * are an odd number of quotes before the cursor, the quote
  * on the cursor represents the right bound.
+ *
+ * If the editor provides a {@link PartitionService}, a literal
+ * enclosed in the quotes which contains the cursor is used as
+ * it is, and quotes inside other comments and literals don't
+ * count.
  */
 public class FindQuoteMotion extends AbstractModelSideMotion {
 	
 	private char quote;
 	private boolean findLeft;
 	private int startIndex = -1;
+	private PartitionService partitions;
 	
     public FindQuoteMotion(char quote, boolean findLeft) {
     	this.quote = quote;
@@ -45,6 +53,11 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
     	this.startIndex = startIndex;
     }
 
+	@Override
+	protected void setCurrentState(EditorAdaptor editorAdaptor) {
+	    partitions = editorAdaptor.getService(PartitionService.class);
+	}
+
 	@Override
 	public int destination(int offset, TextContent content, int count) throws CommandExecutionException {
 		if(startIndex > -1) {
@@ -58,11 +71,23 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		int eol = line.getEndOffset();
 		int limit = findLeft ? bol : eol;
 		
-		int index = getQuote(content, offset, limit, findLeft);
+		if (partitions != null && ! partitions.isCode(offset)) {
+		    int start = partitions.getPartitionStart(offset);
+		    int end = partitions.getPartitionEnd(offset) - 1;
+		    if (start >= bol && end < eol && end > start
+		            && content.getText(start, 1).charAt(0) == quote
+		            && content.getText(end, 1).charAt(0) == quote) {
+		        //the cursor is in a literal delimited by the quotes
+		        return findLeft ? start : end;
+		    }
+		}
+		PartitionSkipper skipper = new PartitionSkipper(partitions, offset);
+		
+		int index = getQuote(content, skipper, offset, limit, findLeft);
 		if(findLeft && index == -1) {
 			//there was no quote before the cursor,
 			//maybe there's one after the cursor
-			index = getQuote(content, offset, eol, false);
+			index = getQuote(content, skipper, offset, eol, false);
 		}
 		
 		if(index == -1) {
@@ -72,14 +97,14 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return index;
 	}
 
-	private int getQuote(TextContent content, int offset, int limit, boolean findLeft) {
+	private int getQuote(TextContent content, PartitionSkipper skipper, int offset, int limit, boolean findLeft) {
 		int index = offset;
         int step = findLeft ? -1 : 1;
 		
 		//if the cursor is *on* a quote, the number of quotes before the cursor
         //determines the behavior
-		if(findLeft && isQuote(content, index)) {
-			if(getNumQuotesBeforeOffset(limit, offset, content) % 2 == 0) {
+		if(findLeft && isQuote(content, skipper, index)) {
+			if(getNumQuotesBeforeOffset(limit, offset, content, skipper) % 2 == 0) {
 				//there are an even number of quotes before the cursor
 				//that means this quote starts a new balanced set
 				return index;
@@ -92,7 +117,7 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		}
 		
 		while( findLeft ? index >= limit : index < limit) {
-			if(isQuote(content, index)) {
+			if(isQuote(content, skipper, index)) {
 				return index;
 			}
 			index += step;
@@ -100,11 +125,11 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return -1;
 	}
 	
-	private int getNumQuotesBeforeOffset(int bol, int limit, TextContent content) {
+	private int getNumQuotesBeforeOffset(int bol, int limit, TextContent content, PartitionSkipper skipper) {
 		int index = bol;
 		int numQuotes = 0;
 		while(index < limit) {
-			if(isQuote(content, index)) {
+			if(isQuote(content, skipper, index)) {
 				numQuotes++;
 			}
 			index++;
@@ -112,8 +137,14 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return numQuotes;
 	}
 	
-	private boolean isQuote(TextContent content, int offset) {
+	private boolean isQuote(TextContent content, PartitionSkipper skipper, int offset) {
 	    if(content.getText(offset, 1).charAt(0) == quote) {
+	        if(skipper.isSkipped(offset)) {
+	            //only the quotes around a literal count, not those inside
+	            //of it or of a comment
+	            return skipper.skipBackward(offset) == offset
+	                    || skipper.skipForward(offset) == offset;
+	        }
 	        if(offset == 0) {
 	            return true;
 	        }
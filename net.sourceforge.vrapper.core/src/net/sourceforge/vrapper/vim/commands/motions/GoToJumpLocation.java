@@ -0,0 +1,52 @@
+package net.sourceforge.vrapper.vim.commands.motions;
+
+import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.BorderPolicy;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+
+/**
+ * Moves through the jump list, '&lt;C-i&gt;' and '&lt;C-o&gt;'. This is not a jump itself, so
+ * it doesn't change the list.
+ */
+public class GoToJumpLocation extends CountAwareMotion {
+
+	public static final Motion FORWARD = new GoToJumpLocation(true);
+	public static final Motion BACKWARDS = new GoToJumpLocation(false);
+
+	private boolean forward;
+
+	private GoToJumpLocation(boolean forward) {
+		this.forward = forward;
+	}
+
+	@Override
+	public Position destination(EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
+		if(count == NO_COUNT_GIVEN) {
+			count = 1;
+		}
+
+		Position jumpPos;
+		if(forward) {
+			jumpPos = editorAdaptor.getCursorService().getNextJumpLocation(count);
+		}
+		else {
+			jumpPos = editorAdaptor.getCursorService().getPrevJumpLocation(count);
+		}
+
+        if (jumpPos == null) {
+            throw new CommandExecutionException( forward ? "At end of jumplist" : "At start of jumplist" );
+        }
+
+        return jumpPos;
+	}
+
+	public BorderPolicy borderPolicy() {
+		return BorderPolicy.EXCLUSIVE;
+	}
+
+	public StickyColumnPolicy stickyColumnPolicy() {
+		return StickyColumnPolicy.ON_CHANGE;
+	}
+
+}
@@ -1,6 +1,9 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
+import net.sourceforge.vrapper.platform.CodeStructureService;
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.CodeStructure;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -9,6 +12,10 @@ import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
  * structured file.  All it's *really* doing is moving to the next '{' at a
  * depth of 2. Basically, the class declaration '{' is at depth 1 so all '{' at
  * depth 2 are methods.  That's how Vim does it.
+ * <p>
+ * If the language plugin of the editor knows the methods from its parser (see
+ * {@link CodeStructureService}) those are used instead, which also finds methods of nested
+ * classes and ignores braces in strings and comments.
  */
 public class MethodDeclarationMotion extends AbstractModelSideMotion {
     
@@ -19,6 +26,7 @@ public class MethodDeclarationMotion extends AbstractModelSideMotion {
     
     public boolean backwards;
     public boolean methodBegin;
+    private CodeStructureService structureService;
     
     protected MethodDeclarationMotion(boolean backwards, boolean methodBegin) {
         this.backwards = backwards;
@@ -26,6 +34,11 @@ public class MethodDeclarationMotion extends AbstractModelSideMotion {
     }
     
 
+    @Override
+    protected void setCurrentState(EditorAdaptor editorAdaptor) {
+        structureService = editorAdaptor.getService(CodeStructureService.class);
+    }
+
     @Override
     protected int destination(int offset, TextContent content, int count) throws CommandExecutionException {
         int dest = offset;
@@ -37,48 +50,31 @@ public class MethodDeclarationMotion extends AbstractModelSideMotion {
     }
     
     protected int doIt(int offset, TextContent content) {
-        int depth = 0;
-        int lastOpen = -1;
-        int lastClose = -1;
-        int testOffset = 0;
-        char testChar;
-
-        while(testOffset < content.getTextLength()) {
-            testChar = content.getText(testOffset, 1).charAt(0);
-            if(testChar == '{') {
-                if(depth == 1) {
-                    lastOpen = testOffset;
-                }
-                depth++;
-            }
-            else if(testChar == '}') {
-                if(depth == 2) {
-                    lastClose = testOffset;
-                }
-                depth--;
-            }
-            testOffset++;
-            
-            if(backwards && testOffset == offset) {
-                if(lastOpen == -1)
-                    lastOpen = offset;
-                if(lastClose == -1)
-                    lastClose = offset;
-                return methodBegin ? lastOpen : lastClose;
-            }
-            
-            if(! backwards) {
-                if(methodBegin && lastOpen > offset) {
-                    return lastOpen;
-                }
-                if( (!methodBegin) && lastClose > offset) {
-                    return lastClose;
-                }
-            }
+        CodeStructure structure = getCodeStructure(structureService, content);
+        int dest;
+        if (backwards) {
+            dest = methodBegin ? structure.previousStart(offset) : structure.previousEnd(offset);
+        } else {
+            dest = methodBegin ? structure.nextStart(offset) : structure.nextEnd(offset);
         }
-        return offset;
+        return dest < 0 ? offset : dest;
     }
     
+    /**
+     * @return the methods of the editor as its language plugin sees them, or as found by
+     *  counting braces if it doesn't know them.
+     */
+    public static CodeStructure getCodeStructure(EditorAdaptor editorAdaptor) {
+        return getCodeStructure(editorAdaptor.getService(CodeStructureService.class),
+                editorAdaptor.getModelContent());
+    }
+
+    private static CodeStructure getCodeStructure(CodeStructureService service,
+            TextContent content) {
+        CodeStructure structure = service == null ? null : service.getCodeStructure();
+        return structure == null ? CodeStructure.scanBraces(content) : structure;
+    }
+
     @Override
     public BorderPolicy borderPolicy() {
         return BorderPolicy.INCLUSIVE;
@@ -4,8 +4,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.sourceforge.vrapper.platform.PartitionService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.PartitionSkipper;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -13,7 +16,8 @@ import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 // like matching XML tags, LaTeX \begin{paragraph}\end{paragraph},
 
 /**
- * Moves to matching paretheses.
+ * Moves to matching paretheses. Parentheses in comments and literals are ignored unless the
+ * cursor is in the same comment or literal, if the editor provides a {@link PartitionService}.
  *
  * @author Matthias Radig
  */
@@ -33,13 +37,25 @@ public class ParenthesesMove extends AbstractModelSideMotion {
     
     public static final ParenthesesMove INSTANCE = new ParenthesesMove();
 
+    private PartitionService partitions;
+
+    @Override
+    protected void setCurrentState(EditorAdaptor editorAdaptor) {
+        partitions = editorAdaptor.getService(PartitionService.class);
+    }
+
     //default match algorithm, find match for character under cursor
     @Override
     protected int destination(int offset, TextContent content, int count) throws CommandExecutionException {
         LineInformation info = content.getLineInformationOfOffset(offset);
+        PartitionSkipper skipper = new PartitionSkipper(partitions, offset);
         ParenthesesPair pair = null;
         int index;
         for(index=offset; index<info.getEndOffset(); index++) {
+            if (skipper.isSkipped(index)) {
+                index = skipper.skipForward(index);
+                continue;
+            }
             String c = content.getText(index, 1);
             if (PARENTHESES.containsKey(c)) {
                 pair = PARENTHESES.get(c);
@@ -98,7 +114,8 @@ public class ParenthesesMove extends AbstractModelSideMotion {
     	}
     };
     
-    private static int findMatch(int offset, ParenthesesPair pair, TextContent content, int count) {
+    protected int findMatch(int offset, ParenthesesPair pair, TextContent content, int count) {
+        PartitionSkipper skipper = new PartitionSkipper(partitions, offset);
     	int index = offset;
         int depth = count;
         int leftModifier, rightModifier, limit, indexModifier;
@@ -115,6 +132,10 @@ public class ParenthesesMove extends AbstractModelSideMotion {
         }
         while (index != limit && count > 0) {
             index += indexModifier;
+            if (skipper.isSkipped(index)) {
+                index = pair.backwards ? skipper.skipBackward(index) : skipper.skipForward(index);
+                continue;
+            }
             String c;
             try {
             	c = content.getText(index, 1);
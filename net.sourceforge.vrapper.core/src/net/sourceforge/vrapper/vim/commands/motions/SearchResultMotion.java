@@ -1,7 +1,6 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
 import java.util.LinkedList;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import net.sourceforge.vrapper.platform.Configuration;
@@ -17,6 +16,7 @@ import net.sourceforge.vrapper.utils.SearchOffset;
 import net.sourceforge.vrapper.utils.SearchResult;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.VimRegex;
 import net.sourceforge.vrapper.utils.VimUtils;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.Options;
@@ -73,7 +73,7 @@ public class SearchResultMotion extends CountAwareMotion {
         if(editorAdaptor.getConfiguration().get(Options.SEARCH_REGEX)) {
             //before attempting search, is this regex even valid?
             try {
-                Pattern.compile(search.getKeyword());
+                VimRegex.compile(search.getKeyword(), 0);
             }
             catch(PatternSyntaxException e) {
                 throw new CommandExecutionException("Invalid regex search string: " + search.getKeyword());
@@ -12,6 +12,7 @@ import net.sourceforge.vrapper.keymap.vim.CountingState;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.HistoryService;
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.utils.BlockWiseSelectionArea;
 import net.sourceforge.vrapper.utils.CaretType;
 import net.sourceforge.vrapper.utils.ContentType;
@@ -103,6 +104,20 @@ public class BlockwiseVisualMode extends AbstractVisualMode {
 	            return; // don't repeat if there's a linebreak
 	        }
 	        
+            // Repeating the insertion on every line shouldn't repaint every time.
+            final ViewportService viewport = editorAdaptor.getViewportService();
+            viewport.beginBatchEdit();
+            try {
+                repeatInsertion(editorAdaptor, sel, insertion);
+            } finally {
+                viewport.endBatchEdit();
+            }
+            editorAdaptor.getRegisterManager().setLastEdit(repetition());
+            finish(editorAdaptor);
+        }
+
+        private void repeatInsertion(final EditorAdaptor editorAdaptor, final SelectionArea sel,
+                final Command insertion) throws CommandExecutionException {
 	        // re-position to beginning of insert
             final CursorService cursorService = editorAdaptor.getCursorService();
             //final Position newStart = editorAdaptor.getPosition().addModelOffset(-string.length() + 1);
@@ -136,9 +151,6 @@ public class BlockwiseVisualMode extends AbstractVisualMode {
 	            }
 	        }
 	        editorAdaptor.setPosition(newStart, StickyColumnPolicy.NEVER);
-            
-            editorAdaptor.getRegisterManager().setLastEdit(repetition());
-            finish(editorAdaptor);
         }
 
         static void executeInsertAtVOffset(final EditorAdaptor editorAdaptor,
@@ -357,6 +357,26 @@ public abstract class CommandBasedMode extends AbstractMode {
         return true;
     }
 
+    /**
+     * Executes a command which was resolved from complete key strokes beforehand, with the same
+     * side effects as typing them. See
+     * {@link net.sourceforge.vrapper.vim.commands.CompiledKeySequence}.
+     */
+    public void executeResolvedCommand(Command command) {
+        try {
+            executeCommand(command);
+        } catch (CommandExecutionException e) {
+            setErrorMessage(e.getMessage());
+            isEnabled = true;
+        }
+        reset();
+        editorAdaptor.getListeners().fireStateReset(true);
+        if (isEnabled) {
+            commandDone();
+        }
+        placeCursor(StickyColumnPolicy.NEVER);
+    }
+
     private void setErrorMessage(String message) {
         editorAdaptor.getUserInterfaceService().setErrorMessage(message);
     }
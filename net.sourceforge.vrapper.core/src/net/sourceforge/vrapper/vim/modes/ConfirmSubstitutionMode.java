@@ -193,12 +193,30 @@ public class ConfirmSubstitutionMode extends AbstractMode {
     }
     
     private void replaceAll() {
+        if(lastMatch == null) {
+            return;
+        }
+        //the remaining matches are replaced one by one, but undone in one go
+        editorAdaptor.getViewportService().beginBatchEdit();
         editorAdaptor.getHistory().beginCompoundChange();
-        while(lastMatch != null) {
-            performSubstitution();
-            findNextMatch(false);
+        int lastOffset;
+        try {
+            lastOffset = editorAdaptor.getSearchAndReplaceService().substituteAll(
+                    lastMatch.getLeftBound().getModelOffset(), endOffset,
+                    subDef.find, subDef.flags, subDef.replace);
+        } finally {
+            editorAdaptor.getHistory().endCompoundChange();
+            editorAdaptor.getViewportService().endBatchEdit();
+        }
+        if(lastOffset < 0) {
+            return;
+        }
+        //the cursor ends up on the last substitution
+        Position last = editorAdaptor.getCursorService().newPositionForModelOffset(lastOffset);
+        if (last.getViewOffset() < 0) {
+            editorAdaptor.getViewportService().exposeModelPosition(last);
         }
-        editorAdaptor.getHistory().endCompoundChange();
+        editorAdaptor.setPosition(last, StickyColumnPolicy.NEVER);
     }
 
     private void performSubstitution() {
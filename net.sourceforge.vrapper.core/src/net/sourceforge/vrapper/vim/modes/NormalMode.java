@@ -33,6 +33,7 @@ import net.sourceforge.vrapper.vim.commands.ChangeToCommandLineCommand;
 import net.sourceforge.vrapper.vim.commands.ChangeToInsertModeCommand;
 import net.sourceforge.vrapper.vim.commands.ChangeToSearchModeCommand;
 import net.sourceforge.vrapper.vim.commands.ChangeToVisualModeCommand;
+import net.sourceforge.vrapper.vim.commands.ChronologicalUndoCommand;
 import net.sourceforge.vrapper.vim.commands.CloseCommand;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
@@ -67,6 +68,7 @@ import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
 import net.sourceforge.vrapper.vim.commands.UndoCommand;
 import net.sourceforge.vrapper.vim.commands.VimCommandSequence;
 import net.sourceforge.vrapper.vim.commands.YankOperation;
+import net.sourceforge.vrapper.vim.commands.motions.GoToJumpLocation;
 import net.sourceforge.vrapper.vim.commands.motions.GoToMarkMotion;
 import net.sourceforge.vrapper.vim.commands.motions.LineEndMotion;
 import net.sourceforge.vrapper.vim.commands.motions.LineStartMotion;
@@ -173,6 +175,8 @@ public class NormalMode extends CommandBasedMode {
         final Command repeatSubLine = RepeatLastSubstitutionCommand.CURRENT_LINE_ONLY;
         final Command repeatSubGlobal = RepeatLastSubstitutionCommand.GLOBALLY;
         final Command saveAndClose = new VimCommandSequence(SaveCommand.INSTANCE, CloseCommand.CLOSE);
+        final Command olderJump = new MotionCommand(GoToJumpLocation.BACKWARDS);
+        final Command newerJump = new MotionCommand(GoToJumpLocation.FORWARD);
 
         final State<Command> motionCommands = new GoThereState(motions);
         final Command nextResult = motionCommands.press(key('n')).getValue();
@@ -231,7 +235,9 @@ public class NormalMode extends CommandBasedMode {
                                 leafBind('N', prevSearchResultVisual),
                                 leafBind('p', pasteAfterWithG),
                                 leafBind('P', pasteBeforeWithG),
-                                leafBind('v', RestoreSelectionCommand.INSTANCE)),
+                                leafBind('v', RestoreSelectionCommand.INSTANCE),
+                                leafBind('-', (Command) ChronologicalUndoCommand.OLDER),
+                                leafBind('+', (Command) ChronologicalUndoCommand.NEWER)),
                         leafBind(RecordMacroMode.TOGGLE_KEY, RecordMacroMode.TOGGLE_MACRO_RECORDING),
                         transitionBind('@',
                                 convertKeyStroke(
@@ -249,6 +255,9 @@ public class NormalMode extends CommandBasedMode {
                         leafCtrlBind('r', redo),
                         leafCtrlBind('a', incrementNum),
                         leafCtrlBind('x', decrementNum),
+                        leafCtrlBind('o', olderJump),
+                        leafCtrlBind('i', newerJump),
+                        leafBind(SpecialKey.TAB, newerJump),
                         transitionBind('Z',
                             leafBind('Z', saveAndClose),
                             leafBind('Q', (Command)CloseCommand.FORCED_CLOSE)),
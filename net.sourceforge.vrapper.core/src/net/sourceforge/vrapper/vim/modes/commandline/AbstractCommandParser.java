@@ -128,6 +128,7 @@ public abstract class AbstractCommandParser {
     public AbstractCommandParser(EditorAdaptor vim) {
         this.editor = vim;
         modified = false;
+        history.setLimit(editor.getConfiguration().get(Options.HISTORY));
         history.setMode(editor.getCurrentModeName());
     }
 
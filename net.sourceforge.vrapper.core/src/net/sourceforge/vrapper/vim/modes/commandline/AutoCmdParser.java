@@ -1,26 +1,61 @@
 package net.sourceforge.vrapper.vim.modes.commandline;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.AbstractMessagesCommand;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.commands.CountIgnoringNonRepeatableCommand;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdTable.Event;
 
 /**
  * Allows editor type specific .vrapperrc command execution.
  * autocmd "C/C++ Editor" eclipseaction gv org.eclipse.cdt.ui.edit.text.c.select.last
  * autocmd "C/C++ Editor" nnoremap <SPACE>rh :cpphidemethod<CR>
  * au "CMake Editor" nnoremap <CR> gf
+ * <p>
+ * The Vim form with an event is supported too, for the events FileType (same as above),
+ * BufEnter and BufLeave. Their pattern is an editor type in double quotes or a file glob:
+ * au BufEnter *.py set textwidth=79
+ * au FileType "Java Editor" set tabstop=4
+ * <p>
+ * Autocommands are registered in the {@link AutoCmdTable} here and run when their event fires.
+ * FileType autocommands also run right where they are defined if the editor type matches, so a
+ * .vrapperrc which is sourced for a new editor applies them in place like Vim does.
+ * <tt>:autocmd!</tt> removes all autocommands, <tt>:autocmd</tt> lists them.
  */
 public class AutoCmdParser implements Command {
-    private static final Pattern AUTOCMD_PATTERN = Pattern.compile("^au(tocmd)?\\s+\"([^\"]+)\"\\s+(.*)");
+    private static final Pattern AUTOCMD_PATTERN = Pattern.compile("^au(?:tocmd)?(!)?(?:\\s+(.*))?$");
+    private static final Pattern LEGACY_PATTERN = Pattern.compile("^\"([^\"]+)\"\\s+(.*)");
+    private static final Pattern EVENT_PATTERN = Pattern.compile("^(\\S+)\\s+(\"[^\"]+\"|\\S+)\\s+(.*)");
     public static final AutoCmdParser INSTANCE = new AutoCmdParser();
-    private String newCommand;
+
+    /** Runs a FileType autocommand in the editor where it is defined, if the type matches. */
+    private static class InPlaceCommand extends CountIgnoringNonRepeatableCommand {
+        private final List<String> editorTypes;
+        private final String command;
+
+        public InPlaceCommand(List<String> editorTypes, String command) {
+            this.editorTypes = editorTypes;
+            this.command = command;
+        }
+
+        @Override
+        public void execute(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+            if (editorTypes.contains("*") || editorTypes.contains(editorAdaptor.getEditorType())) {
+                AutoCmdTable.execute(editorAdaptor, Collections.singletonList(command));
+            }
+        }
+    }
 
     public void execute(EditorAdaptor editorAdaptor)
             throws CommandExecutionException {
-        // Empty command - editor type didn't match.
+        // Empty command - the autocmd was registered while parsing.
     }
 
     public Command repetition() {
@@ -35,32 +70,112 @@ public class AutoCmdParser implements Command {
         return 0;
     }
 
-    public void parse(EditorAdaptor editoradaptor, String s) {
-        Matcher m = AUTOCMD_PATTERN.matcher(s);
-        if (m.matches() && m.group(2).equals(editoradaptor.getEditorType())) {
-            newCommand = m.group(3);
-            if(newCommand.startsWith("set ")) {
-                //*** workaround for defect #327 ***
-                //https://github.com/vrapper/vrapper/issues/327
-                //Vrapper only evaluates autocmd when a file is first opened but setting properties
-                //is global. This means the global settings for all files will have whatever values
-                //were set by the last opened file. By changing "set" to "setlocal" we're setting
-                //this property for this editor only. This command will be re-evaluated for each
-                //editor's initial open, giving the illusion that it is set for all files of this
-                //type when in reality we're setting it individually for every instance of this type.
-                newCommand = newCommand.replace("set ", "setlocal ");
-            }
-        } else {
-            newCommand = null;
+    /** Cheap check used to skip autocommands which are loaded already. */
+    public static boolean isAutoCmd(String s) {
+        int start = 0;
+        while (start < s.length() && s.charAt(start) == ':') {
+            start++;
         }
+        int end = start;
+        while (end < s.length() && Character.isLetter(s.charAt(end))) {
+            end++;
+        }
+        String name = s.substring(start, end);
+        return name.equals("au") || name.equals("autocmd");
     }
 
-    public boolean validate(EditorAdaptor editoradaptor, String s) {
-        Matcher m = AUTOCMD_PATTERN.matcher(s);
-        return m.matches();
+    /**
+     * Registers the autocommand.
+     * @return the command to run now, <code>null</code> if the line is not a valid autocommand.
+     */
+    public Command parse(EditorAdaptor editoradaptor, String s) {
+        return parse(editoradaptor, s, true);
     }
 
-    public String getCommand() {
-        return newCommand;
+    /**
+     * @param register <code>false</code> if the autocommand is registered already, e.g. when an
+     *  unchanged file is sourced again. Only the command to run it in place is returned then,
+     *  <tt>:autocmd!</tt> and <tt>:autocmd</tt> are ignored.
+     * @return the command to run now, <code>null</code> if the line is not a valid autocommand.
+     */
+    public Command parse(EditorAdaptor editoradaptor, String s, boolean register) {
+        Matcher m = AUTOCMD_PATTERN.matcher(s.trim().replaceFirst("^:+", ""));
+        if ( ! m.matches()) {
+            return null;
+        }
+        boolean clear = m.group(1) != null;
+        String args = m.group(2) == null ? "" : m.group(2).trim();
+        if ( ! register && (clear || args.length() == 0)) {
+            return null;
+        }
+        if (clear) {
+            AutoCmdTable.INSTANCE.clear();
+            if (args.length() == 0) {
+                return INSTANCE;
+            }
+        }
+        if (args.length() == 0) {
+            return new AbstractMessagesCommand() {
+                @Override
+                protected String getMessages(EditorAdaptor editorAdaptor) {
+                    return AutoCmdTable.INSTANCE.list();
+                }
+            };
+        }
+        List<Event> events = new ArrayList<Event>();
+        String pattern;
+        String command;
+        Matcher legacy = LEGACY_PATTERN.matcher(args);
+        Matcher withEvent = EVENT_PATTERN.matcher(args);
+        if (legacy.matches()) {
+            events.add(Event.FILE_TYPE);
+            pattern = '"' + legacy.group(1) + '"';
+            command = legacy.group(2);
+        } else if (withEvent.matches()) {
+            for (String name : withEvent.group(1).split(",")) {
+                Event event = Event.fromName(name);
+                if (event == null) {
+                    editoradaptor.getUserInterfaceService().setErrorMessage(
+                            "E216: No such event: " + name);
+                    return null;
+                }
+                events.add(event);
+            }
+            pattern = withEvent.group(2);
+            command = withEvent.group(3);
+        } else {
+            editoradaptor.getUserInterfaceService().setErrorMessage("Invalid autocmd: " + s);
+            return null;
+        }
+        if (command.startsWith("set ")) {
+            //*** workaround for defect #327 ***
+            //https://github.com/vrapper/vrapper/issues/327
+            //Vrapper only evaluates autocmd when a file is first opened but setting properties
+            //is global. This means the global settings for all files will have whatever values
+            //were set by the last opened file. By changing "set" to "setlocal" we're setting
+            //this property for this editor only. This command will be re-evaluated for each
+            //editor's initial open, giving the illusion that it is set for all files of this
+            //type when in reality we're setting it individually for every instance of this type.
+            command = command.replace("set ", "setlocal ");
+        }
+        String[] patterns = pattern.startsWith("\"") ? new String[] { pattern } : pattern.split(",");
+        if (register) {
+            for (Event event : events) {
+                for (String p : patterns) {
+                    AutoCmdTable.INSTANCE.add(event, p, command);
+                }
+            }
+        }
+        if ( ! events.contains(Event.FILE_TYPE)) {
+            return INSTANCE;
+        }
+        List<String> editorTypes = new ArrayList<String>();
+        for (String p : patterns) {
+            if (p.startsWith("\"") && p.endsWith("\"") && p.length() > 1) {
+                p = p.substring(1, p.length() - 1);
+            }
+            editorTypes.add(p);
+        }
+        return new InPlaceCommand(editorTypes, command);
     }
 }
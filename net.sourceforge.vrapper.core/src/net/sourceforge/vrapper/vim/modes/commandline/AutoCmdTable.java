@@ -0,0 +1,300 @@
+package net.sourceforge.vrapper.vim.modes.commandline;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.utils.FileGrep;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+
+/**
+ * Autocommands, parsed once and indexed by event and editor type so that firing an event only
+ * looks at the commands which can match.
+ * <p>
+ * .vrapperrc is sourced again for every editor which is opened. The autocommands of a file are
+ * only loaded the first time (and again once the file was modified), later sourcing only runs
+ * the FileType autocommands in place (see {@link AutoCmdParser}).
+ */
+public class AutoCmdTable {
+
+    public enum Event {
+        /** An editor was opened, the pattern is its editor type. */
+        FILE_TYPE("FileType"),
+        /** An editor became the current editor. */
+        BUF_ENTER("BufEnter"),
+        /** Another editor is about to become the current editor. */
+        BUF_LEAVE("BufLeave");
+
+        private final String vimName;
+
+        private Event(String vimName) {
+            this.vimName = vimName;
+        }
+
+        public String getVimName() {
+            return vimName;
+        }
+
+        /** @return the event with the given name (case insensitive), <code>null</code> if none. */
+        public static Event fromName(String name) {
+            for (Event event : values()) {
+                if (event.vimName.equalsIgnoreCase(name)) {
+                    return event;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class AutoCmd {
+        private final int id;
+        private final Event event;
+        private final String pattern;
+        /** Editor type to match, <code>null</code> if {@link #glob} is used. */
+        private final String editorType;
+        /** Glob for the file path, <code>null</code> to match any editor. */
+        private final Pattern glob;
+        private final String command;
+        private final String source;
+
+        public AutoCmd(int id, Event event, String pattern, String command, String source) {
+            this.id = id;
+            this.event = event;
+            this.pattern = pattern;
+            this.command = command;
+            this.source = source;
+            String glob = pattern.replace('\\', '/');
+            if (pattern.startsWith("\"") && pattern.endsWith("\"") && pattern.length() > 1) {
+                editorType = pattern.substring(1, pattern.length() - 1);
+                this.glob = null;
+            } else if (event == Event.FILE_TYPE && ! "*".equals(pattern)) {
+                editorType = pattern;
+                this.glob = null;
+            } else if ("*".equals(pattern)) {
+                editorType = null;
+                this.glob = null;
+            } else if (glob.indexOf('/') < 0) {
+                editorType = null;
+                this.glob = FileGrep.globToPattern("**/" + glob);
+            } else {
+                editorType = null;
+                // A relative glob with a directory matches at any depth.
+                this.glob = FileGrep.globToPattern(glob.startsWith("/") ? glob : "**/" + glob);
+            }
+        }
+
+        /** @param path workspace path of the file, <code>null</code> if unknown. */
+        public boolean matchesFile(String path) {
+            if (glob == null) {
+                // Pattern "*" matches any editor.
+                return true;
+            }
+            return path != null && glob.matcher(path.replace('\\', '/')).matches();
+        }
+
+        public boolean isSame(AutoCmd other) {
+            return event == other.event && pattern.equals(other.pattern)
+                    && command.equals(other.command);
+        }
+
+        @Override
+        public String toString() {
+            return event.getVimName() + "  " + pattern + "  " + command;
+        }
+    }
+
+    private static final Comparator<AutoCmd> DEFINITION_ORDER = new Comparator<AutoCmd>() {
+        @Override
+        public int compare(AutoCmd o1, AutoCmd o2) {
+            return o1.id < o2.id ? -1 : (o1.id == o2.id ? 0 : 1);
+        }
+    };
+
+    /** Autocommands are shared by all editors like in Vim. */
+    public static final AutoCmdTable INSTANCE = new AutoCmdTable();
+
+    private final List<AutoCmd> autoCmds = new ArrayList<AutoCmd>();
+    private final Map<Event, Map<String, List<AutoCmd>>> byEditorType =
+            new EnumMap<Event, Map<String, List<AutoCmd>>>(Event.class);
+    private final Map<Event, List<AutoCmd>> byGlob = new EnumMap<Event, List<AutoCmd>>(Event.class);
+    /** Last modification time of the sourced files whose autocommands are loaded. */
+    private final Map<String, Long> sourcedFiles = new HashMap<String, Long>();
+    private final LinkedList<String> sourceStack = new LinkedList<String>();
+    private int nextId;
+
+    /**
+     * Called before sourcing a file, must be followed by {@link #endSource()}.
+     * @return <code>false</code> if the autocommands of the file are loaded already and must be
+     *  skipped.
+     */
+    public synchronized boolean beginSource(File file) {
+        String key = file.getAbsolutePath();
+        sourceStack.push(key);
+        Long loaded = sourcedFiles.get(key);
+        if (loaded != null && loaded.longValue() == file.lastModified()) {
+            return false;
+        }
+        List<AutoCmd> remaining = new ArrayList<AutoCmd>();
+        for (AutoCmd autoCmd : autoCmds) {
+            if ( ! key.equals(autoCmd.source)) {
+                remaining.add(autoCmd);
+            }
+        }
+        rebuild(remaining);
+        sourcedFiles.put(key, file.lastModified());
+        return true;
+    }
+
+    public synchronized void endSource() {
+        sourceStack.pop();
+    }
+
+    /**
+     * Adds an autocommand for the given event.
+     * @param pattern an editor type in double quotes, or a file glob such as <tt>*.py</tt>. The
+     *  pattern of {@link Event#FILE_TYPE} is an editor type even without quotes.
+     */
+    public synchronized void add(Event event, String pattern, String command) {
+        AutoCmd autoCmd = new AutoCmd(nextId++, event, pattern, command, sourceStack.peek());
+        for (AutoCmd existing : autoCmds) {
+            if (existing.isSame(autoCmd)) {
+                return;
+            }
+        }
+        autoCmds.add(autoCmd);
+        index(autoCmd);
+    }
+
+    /** Removes all autocommands, like <tt>:autocmd!</tt>. */
+    public synchronized void clear() {
+        rebuild(new ArrayList<AutoCmd>());
+        // Files which are being sourced stay loaded, or they'd be loaded again for every editor.
+        sourcedFiles.keySet().retainAll(sourceStack);
+    }
+
+    /** @return the commands to run for the given event, in the order they were defined. */
+    public synchronized List<String> getCommands(Event event, String editorType, String filePath) {
+        return commands(matches(event, editorType, filePath), false);
+    }
+
+    private List<AutoCmd> matches(Event event, String editorType, String filePath) {
+        List<AutoCmd> matches = new ArrayList<AutoCmd>();
+        Map<String, List<AutoCmd>> types = byEditorType.get(event);
+        if (types != null && editorType != null && types.containsKey(editorType)) {
+            matches.addAll(types.get(editorType));
+        }
+        List<AutoCmd> globs = byGlob.get(event);
+        if (globs != null) {
+            for (AutoCmd autoCmd : globs) {
+                if (autoCmd.matchesFile(filePath)) {
+                    matches.add(autoCmd);
+                }
+            }
+        }
+        Collections.sort(matches, DEFINITION_ORDER);
+        return matches;
+    }
+
+    /** @param unsourcedOnly skip the autocommands which were defined in a file. */
+    private static List<String> commands(List<AutoCmd> autoCmds, boolean unsourcedOnly) {
+        List<String> result = new ArrayList<String>(autoCmds.size());
+        for (AutoCmd autoCmd : autoCmds) {
+            if ( ! unsourcedOnly || autoCmd.source == null) {
+                result.add(autoCmd.command);
+            }
+        }
+        return result;
+    }
+
+    /** @return a description of every autocommand, one per line. */
+    public synchronized String list() {
+        StringBuilder sb = new StringBuilder();
+        for (AutoCmd autoCmd : autoCmds) {
+            sb.append(autoCmd).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs the commands registered for the given event in the given editor.
+     * @param filePath path of the edited file, <code>null</code> if unknown. Globs without a
+     *  slash match the file name, others the end of the path.
+     */
+    public void fire(Event event, EditorAdaptor vim, String filePath) {
+        execute(vim, getCommands(event, vim.getEditorType(), filePath));
+    }
+
+    /**
+     * Runs the FileType autocommands for a new editor after its configuration was read. Those
+     * defined in a file ran in place while it was sourced, so only the ones entered on the
+     * command line are left.
+     */
+    public void fireFileType(EditorAdaptor vim) {
+        List<String> commands;
+        synchronized (this) {
+            commands = commands(matches(Event.FILE_TYPE, vim.getEditorType(), null), true);
+        }
+        execute(vim, commands);
+    }
+
+    static void execute(EditorAdaptor vim, List<String> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        CommandLineParser parser =
+                ((CommandLineMode) vim.getMode(CommandLineMode.NAME)).createParser();
+        for (String command : commands) {
+            try {
+                Command c = parser.parseAndExecute(null, command);
+                if (c != null) {
+                    c.execute(vim);
+                }
+            } catch (CommandExecutionException e) {
+                VrapperLog.error("Failed to execute autocmd " + command, e);
+            }
+        }
+    }
+
+    private void rebuild(List<AutoCmd> remaining) {
+        autoCmds.clear();
+        byEditorType.clear();
+        byGlob.clear();
+        for (AutoCmd autoCmd : remaining) {
+            autoCmds.add(autoCmd);
+            index(autoCmd);
+        }
+    }
+
+    private void index(AutoCmd autoCmd) {
+        if (autoCmd.editorType != null) {
+            Map<String, List<AutoCmd>> types = byEditorType.get(autoCmd.event);
+            if (types == null) {
+                types = new HashMap<String, List<AutoCmd>>();
+                byEditorType.put(autoCmd.event, types);
+            }
+            List<AutoCmd> list = types.get(autoCmd.editorType);
+            if (list == null) {
+                list = new ArrayList<AutoCmd>();
+                types.put(autoCmd.editorType, list);
+            }
+            list.add(autoCmd);
+        } else {
+            List<AutoCmd> list = byGlob.get(autoCmd.event);
+            if (list == null) {
+                list = new ArrayList<AutoCmd>();
+                byGlob.put(autoCmd.event, list);
+            }
+            list.add(autoCmd);
+        }
+    }
+}
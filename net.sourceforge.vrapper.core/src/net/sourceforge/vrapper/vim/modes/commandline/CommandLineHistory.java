@@ -1,52 +1,166 @@
 package net.sourceforge.vrapper.vim.modes.commandline;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.sourceforge.vrapper.log.VrapperLog;
 
 /**
- * Stores the command line history for each mode.
+ * Stores the command line history for each mode: commands, searches and the input of other
+ * command line modes. <tt>/</tt> and <tt>?</tt> share the search history like in Vim.
+ * <p>
+ * Each history keeps its entries in insertion order in a linked hash set, so a repeated command
+ * is moved to the end in constant time and the oldest entries are dropped once the limit is
+ * reached. When a storage location is set the histories are read from there the first time they
+ * are used and written back by {@link #save()}. Besides at shutdown, this also happens on a
+ * background thread a few seconds after new entries, so that little is lost if Eclipse doesn't
+ * shut down cleanly.
  */
 public class CommandLineHistory {
+
+	private static final String FILE_PREFIX = "history-";
+	private static final String FILE_SUFFIX = ".txt";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String BACKUP_SUFFIX = ".bak";
+	private static final String ENCODING = "UTF-8";
+	/** Seconds between a new entry and the save, later entries are saved along with it. */
+	private static final int SAVE_DELAY = 5;
+
+	private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Vrapper history");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** <tt>java.nio.file.Files.move</tt>, <code>null</code> before Java 7. */
+	private static final Method MOVE;
+	private static final Method TO_PATH;
+	/** <tt>ATOMIC_MOVE</tt> and <tt>REPLACE_EXISTING</tt>. */
+	private static final Object MOVE_OPTIONS;
+
+	static {
+		Method move = null;
+		Method toPath = null;
+		Object options = null;
+		try {
+			Class<?> path = Class.forName("java.nio.file.Path");
+			Class<?> copyOption = Class.forName("java.nio.file.CopyOption");
+			Class<?> standardCopyOption = Class.forName("java.nio.file.StandardCopyOption");
+			options = Array.newInstance(copyOption, 2);
+			Array.set(options, 0, standardCopyOption.getField("ATOMIC_MOVE").get(null));
+			Array.set(options, 1, standardCopyOption.getField("REPLACE_EXISTING").get(null));
+			move = Class.forName("java.nio.file.Files").getMethod("move", path, path, options.getClass());
+			toPath = File.class.getMethod("toPath");
+		} catch (Exception e) {
+			// Java 6, rename the files instead.
+			move = null;
+		}
+		MOVE = move;
+		TO_PATH = toPath;
+		MOVE_OPTIONS = options;
+	}
+
+	/** Entries of one mode, oldest first. */
+	private static class History {
+		private final LinkedHashSet<String> entries = new LinkedHashSet<String>();
+		/** Entries newest first, rebuilt when browsing after a change. */
+		private String[] newestFirst;
+		private boolean modified;
+	}
+
 	//history of commands for each command-line mode
-	private Map<String, ArrayList<String>> modeHistory = new HashMap<String, ArrayList<String>>();
+	private final Map<String, History> modeHistory = new HashMap<String, History>();
 	//current index into history
 	private int index = -1;
 	//original text entered by user before scrolling through history
-	private String original;
-	//ordered list of previously-entered commands for the current Mode
-	private List<String> history;
-	
+	private String original = "";
+	//previously-entered commands for the current Mode
+	private History history;
+	private int limit = 1000;
+	private File storageLocation;
+	private boolean savePending;
+	/** Held while writing, so that saving at shutdown waits for a save in the background. */
+	private final Object saveLock = new Object();
+
 	public static final CommandLineHistory INSTANCE = new CommandLineHistory();
-	
-	//singleton
-	private CommandLineHistory() { }
-	
+
+	/** Use {@link #INSTANCE}, other instances are only for tests. */
+	public CommandLineHistory() { }
+
+	/**
+	 * Sets the directory where the histories are kept between sessions. Histories which were
+	 * used already are not read again.
+	 */
+	public void setStorageLocation(File directory) {
+		storageLocation = directory;
+	}
+
+	/**
+	 * Sets the maximum number of entries kept for each mode ('history' option).
+	 */
+	public synchronized void setLimit(int limit) {
+		this.limit = Math.max(0, limit);
+		for (History h : modeHistory.values()) {
+			trim(h);
+		}
+	}
+
 	/**
 	 * We've changed modes.  Fetch the history for this mode.
 	 * @param modeName name of now-current mode
 	 */
-	public void setMode(String modeName) {
+	public synchronized void setMode(String modeName) {
 		index = -1;
-		if( ! modeHistory.containsKey(modeName)) {
-			modeHistory.put(modeName, new ArrayList<String>());
-		}
 		history = modeHistory.get(modeName);
+		if (history == null) {
+			history = load(modeName);
+			modeHistory.put(modeName, history);
+		}
 	}
 
 	/**
 	 * User has committed a command (hit 'enter').  Add it to the history.
 	 * @param command - command to add to history
 	 */
-	public void append(String command) {
+	public synchronized void append(String command) {
 		//remove duplicates (if any)
-		if(history.contains(command)) {
-			history.remove(command);
-		}
-		
-		history.add(0, command);
+		history.entries.remove(command);
+		history.entries.add(command);
+		history.newestFirst = null;
+		history.modified = true;
+		trim(history);
 		index = -1;
+		if (storageLocation != null && ! savePending) {
+			savePending = true;
+			SAVER.schedule(new Runnable() {
+				public void run() {
+					save();
+				}
+			}, SAVE_DELAY, TimeUnit.SECONDS);
+		}
 	}
 
 	/**
@@ -67,12 +181,11 @@ public class CommandLineHistory {
 	 * @return the command in the history or null if none found to match.
 	 */
 	public String getPrevious() {
-		String command;
-		for(int i=index+1; i < history.size(); i++) {
-			command = history.get(i);
-			if(command.startsWith(original)) {
+		String[] commands = newestFirst();
+		for(int i=index+1; i < commands.length; i++) {
+			if(commands[i].startsWith(original)) {
 				index = i;
-				return command;
+				return commands[i];
 			}
 		}
 		return null;
@@ -85,15 +198,178 @@ public class CommandLineHistory {
 	 * found to match.
 	 */
 	public String getNext() {
-		String command;
-		for(int i=index-1; i > -1; i--) {
-			command = history.get(i);
-			if(command.startsWith(original)) {
+		String[] commands = newestFirst();
+		for(int i=Math.min(index, commands.length)-1; i > -1; i--) {
+			if(commands[i].startsWith(original)) {
 				index = i;
-				return command;
+				return commands[i];
 			}
 		}
 		index = -1;
 		return original;
 	}
+
+	/**
+	 * Writes the modified histories to the storage location, if there is one. Each history is
+	 * written to a temporary file first which then replaces the old one, so a failed write
+	 * doesn't leave a truncated history behind. May be called from any thread.
+	 */
+	public void save() {
+		synchronized (saveLock) {
+			Map<File, List<String>> modified = new HashMap<File, List<String>>();
+			synchronized (this) {
+				savePending = false;
+				if (storageLocation == null) {
+					return;
+				}
+				for (Map.Entry<String, History> entry : modeHistory.entrySet()) {
+					History h = entry.getValue();
+					if (h.modified) {
+						modified.put(getFile(entry.getKey()), new ArrayList<String>(h.entries));
+						h.modified = false;
+					}
+				}
+			}
+			for (Map.Entry<File, List<String>> entry : modified.entrySet()) {
+				write(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void write(File file, List<String> commands) {
+		File temp = null;
+		BufferedWriter writer = null;
+		try {
+			file.getParentFile().mkdirs();
+			temp = File.createTempFile(FILE_PREFIX, TEMP_SUFFIX, file.getParentFile());
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), ENCODING));
+			for (String command : commands) {
+				writer.write(escape(command));
+				writer.newLine();
+			}
+			writer.close();
+			writer = null;
+			replace(temp, file);
+			temp = null;
+		} catch (IOException e) {
+			VrapperLog.error("Failed to save history to " + file, e);
+		} finally {
+			close(writer);
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Renames <code>from</code> to <code>to</code>, replacing it if it exists. The old file is
+	 * kept until the new one is in place.
+	 */
+	private static void replace(File from, File to) throws IOException {
+		if (MOVE != null) {
+			try {
+				MOVE.invoke(null, TO_PATH.invoke(from), TO_PATH.invoke(to), MOVE_OPTIONS);
+				return;
+			} catch (InvocationTargetException e) {
+				// E.g. the file system can't move atomically, try renaming.
+			} catch (IllegalAccessException e) {
+				// Try renaming.
+			}
+		}
+		if (from.renameTo(to)) {
+			return;
+		}
+		// Renaming onto an existing file fails on some platforms (e.g. Windows).
+		File backup = new File(to.getPath() + BACKUP_SUFFIX);
+		backup.delete();
+		if (to.exists() && ! to.renameTo(backup)) {
+			throw new IOException("Cannot rename " + to + " to " + backup);
+		}
+		if ( ! from.renameTo(to)) {
+			backup.renameTo(to);
+			throw new IOException("Cannot rename " + from + " to " + to);
+		}
+		backup.delete();
+	}
+
+	private History load(String modeName) {
+		History h = new History();
+		if (storageLocation == null) {
+			return h;
+		}
+		File file = getFile(modeName);
+		if ( ! file.isFile()) {
+			return h;
+		}
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String command = unescape(line);
+				h.entries.remove(command);
+				h.entries.add(command);
+			}
+			trim(h);
+		} catch (IOException e) {
+			VrapperLog.error("Failed to load history from " + file, e);
+		} finally {
+			close(reader);
+		}
+		return h;
+	}
+
+	private String[] newestFirst() {
+		if (history.newestFirst == null) {
+			String[] commands = new String[history.entries.size()];
+			int i = commands.length;
+			for (String command : history.entries) {
+				commands[--i] = command;
+			}
+			history.newestFirst = commands;
+		}
+		return history.newestFirst;
+	}
+
+	private void trim(History h) {
+		Iterator<String> oldest = h.entries.iterator();
+		while (h.entries.size() > limit) {
+			oldest.next();
+			oldest.remove();
+			h.newestFirst = null;
+			h.modified = true;
+		}
+	}
+
+	private File getFile(String modeName) {
+		return new File(storageLocation, FILE_PREFIX + modeName.replaceAll("\\W", "_") + FILE_SUFFIX);
+	}
+
+	/** Commands are stored one per line, line breaks and backslashes are escaped. */
+	private static String escape(String command) {
+		return command.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	private static String unescape(String line) {
+		StringBuilder sb = new StringBuilder(line.length());
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\\' && i + 1 < line.length()) {
+				c = line.charAt(++i);
+				c = c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// Nothing left to do.
+			}
+		}
+	}
 }
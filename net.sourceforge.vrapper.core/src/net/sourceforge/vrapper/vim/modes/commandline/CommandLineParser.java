@@ -35,6 +35,7 @@ import net.sourceforge.vrapper.vim.commands.ExCommandOperation;
 import net.sourceforge.vrapper.vim.commands.FindFileCommand;
 import net.sourceforge.vrapper.vim.commands.LineRangeOperationCommand;
 import net.sourceforge.vrapper.vim.commands.ListBuffersCommand;
+import net.sourceforge.vrapper.vim.commands.ListEditorAdaptorsCommand;
 import net.sourceforge.vrapper.vim.commands.ListMarksCommand;
 import net.sourceforge.vrapper.vim.commands.ListRegistersCommand;
 import net.sourceforge.vrapper.vim.commands.ListUserCommandsCommand;
@@ -53,7 +54,6 @@ import net.sourceforge.vrapper.vim.commands.SubstitutionOperation;
 import net.sourceforge.vrapper.vim.commands.SwitchBufferCommand;
 import net.sourceforge.vrapper.vim.commands.TextObject;
 import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
-import net.sourceforge.vrapper.vim.commands.UndoCommand;
 import net.sourceforge.vrapper.vim.commands.VimCommandSequence;
 import net.sourceforge.vrapper.vim.commands.motions.GoToLineMotion;
 import net.sourceforge.vrapper.vim.commands.motions.MoveRight;
@@ -488,12 +488,16 @@ public class CommandLineParser extends AbstractCommandParser {
         mapping.add("vmapc", vclear);
         mapping.add("imapclear", iclear);
         mapping.add("imapc", iclear);
-        UndoCommand undo = UndoCommand.INSTANCE;
+        Evaluator undo = UndoTravelEvaluator.UNDO;
         RedoCommand redo = RedoCommand.INSTANCE;
         mapping.add("red", redo);
         mapping.add("redo", redo);
         mapping.add("undo", undo);
         mapping.add("u", undo);
+        mapping.add("earlier", UndoTravelEvaluator.EARLIER);
+        mapping.add("ea", UndoTravelEvaluator.EARLIER);
+        mapping.add("later", UndoTravelEvaluator.LATER);
+        mapping.add("lat", UndoTravelEvaluator.LATER);
         mapping.add("$", new CommandWrapper(gotoEOF));
         mapping.add("nohlsearch", nohlsearch);
         mapping.add("nohls", nohlsearch);
@@ -515,6 +519,7 @@ public class CommandLineParser extends AbstractCommandParser {
         mapping.add("marks", marks);
         mapping.add("ls", new CommandWrapper(ListBuffersCommand.INSTANCE));
         mapping.add("buffers", new CommandWrapper(ListBuffersCommand.INSTANCE));
+        mapping.add("debugeditors", new CommandWrapper(ListEditorAdaptorsCommand.INSTANCE));
         return mapping;
     }
 
@@ -661,6 +666,7 @@ public class CommandLineParser extends AbstractCommandParser {
             String[] commands = command.split(" | ");
             editor.getHistory().beginCompoundChange();
             editor.getHistory().lock("chained-commands");
+            editor.getViewportService().beginBatchEdit();
             boolean performedChain = false;
             try {
                 Command c;
@@ -692,6 +698,7 @@ public class CommandLineParser extends AbstractCommandParser {
                 //must not have been a chain
             }
             finally {
+                editor.getViewportService().endBatchEdit();
                 editor.getHistory().unlock("chained-commands");
                 editor.getHistory().endCompoundChange();
             }
@@ -715,14 +722,9 @@ public class CommandLineParser extends AbstractCommandParser {
         } catch (NumberFormatException e) {
             // do nothing
         }
-        // See if command is for a particular editor type only (when parsing .vrapperrc).
-        if (AutoCmdParser.INSTANCE.validate(editor, command)) {
-            AutoCmdParser.INSTANCE.parse(editor, command);
-            if (AutoCmdParser.INSTANCE.getCommand() != null) {
-                command = AutoCmdParser.INSTANCE.getCommand();
-            } else {
-                return AutoCmdParser.INSTANCE;
-            }
+        // Autocommands are only registered here, they run when their event fires.
+        if (AutoCmdParser.isAutoCmd(command)) {
+            return AutoCmdParser.INSTANCE.parse(editor, command);
         }
         // Certain ex commands can be entered without a line range, in that case "." is implied.
         if (LineRangeOperationCommand.isCurrentLineOperation(command)) {
@@ -1,6 +1,9 @@
 package net.sourceforge.vrapper.vim.modes.commandline;
 
+import java.util.Collections;
 import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.BufferDoException;
@@ -29,6 +32,41 @@ public class HighlightSearch {
     public static final Evaluator CLEAR_LOCAL_HIGHLIGHT = new ClearLocalHighlightingEvaluator();
     public static final Evaluator HIGHLIGHT = new HighlightingEvaluator();
 
+    /**
+     * Editors which missed a highlighting update while hidden (hlscope = "window"). They are
+     * highlighted by {@link #refreshStaleHighlighting(EditorAdaptor)} when shown again.
+     */
+    private static final Set<EditorAdaptor> STALE_EDITORS =
+            Collections.newSetFromMap(new WeakHashMap<EditorAdaptor, Boolean>());
+
+    /**
+     * Highlights the last search in the given editor if it was hidden during the last
+     * highlighting update. Should be called when an editor becomes visible.
+     */
+    public static void refreshStaleHighlighting(EditorAdaptor vim) {
+        if ( ! STALE_EDITORS.contains(vim) || ! vim.getViewportService().isVisible()) {
+            return;
+        }
+        STALE_EDITORS.remove(vim);
+        if (vim.getConfiguration().get(Options.SEARCH_HIGHLIGHT)) {
+            highlightNow(vim);
+        }
+    }
+
+    /** @return whether the editor still needs to catch up with the last highlighting update. */
+    public static boolean isHighlightingStale(EditorAdaptor vim) {
+        return STALE_EDITORS.contains(vim);
+    }
+
+    private static void highlightNow(EditorAdaptor vim) {
+        STALE_EDITORS.remove(vim);
+        // Grab search for each editor - some might use local registers.
+        Search lastSearch = vim.getRegisterManager().getSearch();
+        if (lastSearch != null) {
+            vim.getSearchAndReplaceService().highlight(lastSearch);
+        }
+    }
+
     public static class HighlightingEvaluator implements Evaluator {
         @Override
         public Object evaluate(EditorAdaptor vim, Queue<String> command)
@@ -41,14 +79,22 @@ public class HighlightSearch {
             }
             // When using local registers, the search register is local. Act as if hlscope = "local"
             if (hlScope.equals(SEARCH_HL_SCOPE_WINDOW)) {
+                final EditorAdaptor currentEditor = vim;
+                highlightNow(currentEditor);
                 try {
                     vim.getBufferAndTabService().doInBuffers(false, command, new Evaluator() {
                         @Override
                         public Object evaluate(EditorAdaptor vim, Queue<String> command)
                                 throws CommandExecutionException {
-                            // Grab search for each editor - some might use local registers.
-                            Search lastSearch = vim.getRegisterManager().getSearch();
-                            vim.getSearchAndReplaceService().highlight(lastSearch);
+                            if (vim.equals(currentEditor)) {
+                                return null;
+                            }
+                            // Hidden editors are only highlighted once they are shown again.
+                            if (vim.getViewportService().isVisible()) {
+                                highlightNow(vim);
+                            } else {
+                                STALE_EDITORS.add(vim);
+                            }
                             return null;
                         }
                     });
@@ -58,8 +104,7 @@ public class HighlightSearch {
                             + e.toString());
                 }
             } else {
-                Search lastSearch = vim.getRegisterManager().getSearch();
-                vim.getSearchAndReplaceService().highlight(lastSearch);
+                highlightNow(vim);
             }
             return null;
         }
@@ -115,6 +160,7 @@ public class HighlightSearch {
         @Override
         public Object evaluate(EditorAdaptor vim, Queue<String> command)
                 throws CommandExecutionException {
+            STALE_EDITORS.remove(vim);
             vim.getSearchAndReplaceService().removeHighlighting();
             return null;
         }
@@ -0,0 +1,74 @@
+package net.sourceforge.vrapper.vim.modes.commandline;
+
+import java.util.Queue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+
+/**
+ * Evaluates <tt>:undo N</tt>, <tt>:earlier</tt> and <tt>:later</tt>, which move through the undo
+ * tree by change number, count or time.
+ */
+public class UndoTravelEvaluator implements Evaluator {
+
+    /** <tt>:undo</tt> without argument undoes one change, with an argument it jumps to it. */
+    public static final Evaluator UNDO = new UndoTravelEvaluator(0);
+    public static final Evaluator EARLIER = new UndoTravelEvaluator(-1);
+    public static final Evaluator LATER = new UndoTravelEvaluator(1);
+
+    private static final Pattern ARGUMENT = Pattern.compile("(\\d+)([smhd]?)");
+
+    private final int direction;
+
+    private UndoTravelEvaluator(int direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public Object evaluate(EditorAdaptor vim, Queue<String> command) {
+        HistoryService history = vim.getHistory();
+        String argument = command.isEmpty() ? "" : command.poll();
+        if (argument.length() == 0) {
+            if (direction == 0) {
+                history.undo(1);
+            } else {
+                history.travel(direction);
+            }
+            return null;
+        }
+        Matcher matcher = ARGUMENT.matcher(argument);
+        if ( ! matcher.matches() || (direction == 0 && matcher.group(2).length() > 0)) {
+            vim.getUserInterfaceService().setErrorMessage("Invalid argument: " + argument);
+            return null;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            vim.getUserInterfaceService().setErrorMessage("Invalid argument: " + argument);
+            return null;
+        }
+        if (direction == 0) {
+            if ( ! history.goToChange(count)) {
+                vim.getUserInterfaceService().setErrorMessage("Undo number " + count + " not found");
+            }
+        } else if (matcher.group(2).length() == 0) {
+            history.travel(direction * count);
+        } else {
+            history.travelInTime(direction * count * unitMillis(matcher.group(2).charAt(0)));
+        }
+        return null;
+    }
+
+    private static long unitMillis(char unit) {
+        switch (unit) {
+        case 's': return 1000L;
+        case 'm': return 60 * 1000L;
+        case 'h': return 60 * 60 * 1000L;
+        default:  return 24 * 60 * 60 * 1000L;
+        }
+    }
+
+}
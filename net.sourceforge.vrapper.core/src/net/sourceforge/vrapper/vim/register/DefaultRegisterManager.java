@@ -194,7 +194,7 @@ public class DefaultRegisterManager implements RegisterManager {
     }
     
     public void setLastDelete(RegisterContent register) {
-    	if( ! VimUtils.containsNewLine(register.getText())) {
+    	if( ! containsNewLine(register)) {
     		getRegister(REGISTER_SMALL_DELETE).setContent(register);
     	}
     	else {
@@ -210,6 +210,18 @@ public class DefaultRegisterManager implements RegisterManager {
     	}
     }
     
+    /** Checks for line breaks without scanning the text again if we already know the answer. */
+    private static boolean containsNewLine(RegisterContent content) {
+        ContentType type = content.getPayloadType();
+        if (type == ContentType.LINES) {
+            return true;
+        }
+        if (content instanceof StringRegisterContent) {
+            return ((StringRegisterContent) content).getLineBreakCount() > 0;
+        }
+        return VimUtils.containsNewLine(content.getText());
+    }
+
     public void setCurrentWorkingDirectory(String newDir) {
     	//if absolute path
     	if(newDir.startsWith("/")) {
@@ -1,27 +1,182 @@
 package net.sourceforge.vrapper.vim.register;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
 import net.sourceforge.vrapper.utils.ContentType;
 
 /**
  * Holds information for delete, yank, put operations.
+ * <p>
+ * The same instance is shared by all registers it is stored in (unnamed, numbered, "0), so it
+ * must not be modified. Payloads larger than the compression threshold are deflated in the
+ * background, after that the text itself only stays in memory as long as the heap allows it.
  *
  * @author Matthias Radig
  */
 public class StringRegisterContent implements RegisterContent {
 
-    private final String payload;
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+
+    /** Characters encoded at a time while compressing, so the text is never copied as a whole. */
+    private static final int CHUNK = 64 * 1024;
+
+    /** Payloads with more characters than this are compressed. */
+    private static volatile int compressionThreshold = 8 * 1024 * 1024;
+
+    private static volatile Executor compressor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Vrapper register compression");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
     private final ContentType contentType;
+    private final int length;
+    /** Payload, <code>null</code> once it was compressed into {@link #compressedPayload}. */
+    private String payload;
+    private byte[] compressedPayload;
+    private SoftReference<String> inflatedPayload;
+    private int lineBreaks = -1;
+
     public StringRegisterContent(ContentType contentType, String payload) {
         this.contentType = contentType;
+        this.length = payload == null ? 0 : payload.length();
         this.payload = payload;
+        if (length > compressionThreshold) {
+            compressor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compressPayload();
+                }
+            });
+        }
+    }
+
+    /**
+     * Sets the size (in characters) above which register contents are kept compressed.
+     * Use {@link Integer#MAX_VALUE} to keep everything as plain text.
+     */
+    public static void setCompressionThreshold(int threshold) {
+        compressionThreshold = threshold;
+    }
+
+    /** Sets where large payloads are compressed, a single background thread by default. */
+    public static void setCompressionExecutor(Executor executor) {
+        compressor = executor;
     }
 
     public ContentType getPayloadType() {
         return contentType;
     }
 
-    public String getText() {
-        return payload;
+    public synchronized String getText() {
+        if (payload != null || compressedPayload == null) {
+            return payload;
+        }
+        String text = inflatedPayload.get();
+        if (text == null) {
+            text = decompress(compressedPayload, length);
+            inflatedPayload = new SoftReference<String>(text);
+        }
+        return text;
+    }
+    /** @return number of characters in the payload, without inflating compressed text. */
+    public int getLength() {
+        return length;
+    }
+
+    /** @return number of line breaks in the payload. Computed only once. */
+    public synchronized int getLineBreakCount() {
+        if (lineBreaks < 0) {
+            String text = getText();
+            int count = 0;
+            if (text != null) {
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '\n' || (c == '\r'
+                            && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))) {
+                        count++;
+                    }
+                }
+            }
+            lineBreaks = count;
+        }
+        return lineBreaks;
+    }
+
+    /** @return whether the payload is kept compressed. */
+    public synchronized boolean isCompressed() {
+        return compressedPayload != null;
+    }
+
+    private void compressPayload() {
+        String text;
+        synchronized (this) {
+            text = payload;
+        }
+        // Without holding the lock, the text stays readable meanwhile.
+        byte[] compressed = compress(text);
+        synchronized (this) {
+            compressedPayload = compressed;
+            inflatedPayload = new SoftReference<String>(text);
+            payload = null;
+        }
+    }
+
+    private static byte[] compress(String payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(
+                    new DeflaterOutputStream(out, deflater, CHUNK), ENCODING);
+            for (int i = 0; i < payload.length(); i += CHUNK) {
+                writer.write(payload, i, Math.min(CHUNK, payload.length() - i));
+            }
+            writer.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compress register content", e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String decompress(byte[] compressed, int length) {
+        try {
+            Reader reader = new InputStreamReader(
+                    new InflaterInputStream(new ByteArrayInputStream(compressed)), ENCODING);
+            try {
+                StringBuilder text = new StringBuilder(length);
+                char[] buffer = new char[CHUNK];
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    text.append(buffer, 0, read);
+                }
+                return text.toString();
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Compressed register content is corrupt", e);
+        }
     }
 
 }
@@ -7,6 +7,7 @@ import net.sourceforge.vrapper.log.Log;
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.modes.commandline.CommandLineHistory;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
@@ -89,6 +90,7 @@ public class VrapperPlugin extends AbstractUIPlugin implements IStartup, Log {
         super.start(context);
         plugin = this;
         VrapperLog.setImplementation(this);
+        CommandLineHistory.INSTANCE.setStorageLocation(getStateLocation().toFile());
     }
 
     public void earlyStartup() {
@@ -104,6 +106,7 @@ public class VrapperPlugin extends AbstractUIPlugin implements IStartup, Log {
 
     private void preShutdown() throws BackingStoreException {
     	storeVimEmulationOfActiveEditors();
+    	CommandLineHistory.INSTANCE.save();
     }
 
     void restoreVimEmulationInActiveEditors() {
@@ -152,6 +155,7 @@ public class VrapperPlugin extends AbstractUIPlugin implements IStartup, Log {
             public boolean preShutdown(IWorkbench arg0, boolean arg1) {
                 try {
                 	storeVimEmulationOfActiveEditors();
+                	CommandLineHistory.INSTANCE.save();
                 } catch (BackingStoreException e) {
                 	VrapperLog.error("Error storing vrapper toggle state", e);
                 }
@@ -0,0 +1,73 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.AbstractMessagesCommand;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * :args [{file} ...]
+ * <p>
+ * Sets the argument list used by <tt>:argdo</tt> to the workspace files matching the given globs
+ * (same rules as <tt>:vimgrep</tt>). Without arguments, lists the argument list. The files are
+ * not opened.
+ */
+public class ArgsEvaluator implements Evaluator {
+
+    public static final Evaluator INSTANCE = new ArgsEvaluator();
+
+    /** The argument list, shared by all editors like in Vim. */
+    private static final List<IFile> ARGUMENTS = new ArrayList<IFile>();
+
+    public static synchronized List<IFile> getArguments() {
+        return new ArrayList<IFile>(ARGUMENTS);
+    }
+
+    private static synchronized void setArguments(List<IFile> files) {
+        ARGUMENTS.clear();
+        ARGUMENTS.addAll(files);
+    }
+
+    @Override
+    public Object evaluate(EditorAdaptor vim, Queue<String> command)
+            throws CommandExecutionException {
+        if (command.isEmpty()) {
+            new AbstractMessagesCommand() {
+                @Override
+                protected String getMessages(EditorAdaptor editorAdaptor)
+                        throws CommandExecutionException {
+                    List<IFile> arguments = getArguments();
+                    if (arguments.isEmpty()) {
+                        throw new CommandExecutionException("Argument list is empty");
+                    }
+                    StringBuilder sb = new StringBuilder();
+                    for (IFile file : arguments) {
+                        sb.append(file.getFullPath().makeRelative()).append('\n');
+                    }
+                    return sb.toString();
+                }
+
+                @Override
+                public boolean isClipped() {
+                    return true;
+                }
+            }.execute(vim);
+            return null;
+        }
+        List<String> globs = new ArrayList<String>(command);
+        command.clear();
+        List<IFile> files = VimGrepEvaluator.findFiles(globs.toArray(new String[globs.size()]));
+        if (files.isEmpty()) {
+            throw new CommandExecutionException("E479: No match: " + globs);
+        }
+        setArguments(files);
+        vim.getUserInterfaceService().setInfoMessage(files.size() + " files in argument list");
+        return null;
+    }
+}
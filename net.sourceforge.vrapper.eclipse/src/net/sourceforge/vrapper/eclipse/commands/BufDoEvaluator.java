@@ -0,0 +1,233 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sourceforge.vrapper.eclipse.platform.MultiFileEditOperation;
+import net.sourceforge.vrapper.eclipse.platform.MultiFileEditOperation.FileEdit;
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.BufferDoException;
+import net.sourceforge.vrapper.utils.ExTextTransform;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.modes.commandline.CommandLineMode;
+import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
+
+import org.eclipse.core.commands.operations.OperationHistoryFactory;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * :argdo {cmd} and :bufdo {cmd}
+ * <p>
+ * Runs an ex command on every file of the argument list (see <tt>:args</tt>) or on every open
+ * buffer. The file-local commands <tt>:%s</tt>, <tt>:g</tt> and <tt>:v</tt> (see
+ * {@link ExTextTransform}) are applied to the file contents on worker threads without opening an
+ * editor; all changes end up in one operation which can be undone at once. Other commands are
+ * only supported by <tt>:bufdo</tt>, which then runs them in each open editor.
+ */
+public class BufDoEvaluator implements Evaluator {
+
+    public static final Evaluator ARGDO = new BufDoEvaluator(true);
+    public static final Evaluator BUFDO = new BufDoEvaluator(false);
+
+    private final boolean argumentList;
+
+    private BufDoEvaluator(boolean argumentList) {
+        this.argumentList = argumentList;
+    }
+
+    @Override
+    public Object evaluate(EditorAdaptor vim, Queue<String> command)
+            throws CommandExecutionException {
+        StringBuilder sb = new StringBuilder();
+        while ( ! command.isEmpty()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(command.poll());
+        }
+        final String exCommand = sb.toString();
+        if (exCommand.length() == 0) {
+            throw new CommandExecutionException("E471: Argument required");
+        }
+        ExTextTransform transform;
+        try {
+            transform = ExTextTransform.parse(exCommand, vim);
+        } catch (IllegalArgumentException e) {
+            throw new CommandExecutionException(e.getMessage());
+        }
+        if (transform == null) {
+            if (argumentList) {
+                throw new CommandExecutionException(
+                        ":argdo only supports :%s, :g and :v");
+            }
+            runInEditors(vim, exCommand);
+            return null;
+        }
+
+        List<IFile> files = argumentList ? ArgsEvaluator.getArguments() : getOpenFiles();
+        if (files.isEmpty()) {
+            throw new CommandExecutionException(argumentList ? "Argument list is empty"
+                    : "No files open");
+        }
+        List<FileEdit> edits = transform(transform, files);
+        if (edits.isEmpty()) {
+            vim.getUserInterfaceService().setInfoMessage("No files changed");
+            return null;
+        }
+        MultiFileEditOperation operation = new MultiFileEditOperation(
+                (argumentList ? ":argdo " : ":bufdo ") + exCommand, edits);
+        IStatus status;
+        try {
+            status = OperationHistoryFactory.getOperationHistory().execute(operation, null, null);
+        } catch (org.eclipse.core.commands.ExecutionException e) {
+            VrapperLog.error("Failed to run " + exCommand, e);
+            throw new CommandExecutionException("Failed to change files: " + e.getMessage());
+        }
+        if (status.getSeverity() != IStatus.OK) {
+            vim.getUserInterfaceService().setErrorMessage(status.getMessage());
+        } else {
+            vim.getUserInterfaceService().setInfoMessage(edits.size() + " files changed");
+        }
+        return null;
+    }
+
+    /**
+     * Reads the text of each file and applies the transform on a pool of worker threads. Files
+     * which are open use the text of their (possibly modified) buffer, others are read from
+     * disk.
+     */
+    private static List<FileEdit> transform(final ExTextTransform transform, List<IFile> files)
+            throws CommandExecutionException {
+        // Buffers of open editors may only be touched from the UI thread.
+        Map<IFile, String> bufferTexts = new LinkedHashMap<IFile, String>();
+        for (IFile file : files) {
+            ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager()
+                    .getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+            bufferTexts.put(file, buffer == null ? null : buffer.getDocument().get());
+        }
+        int threads = Math.max(1, Math.min(files.size(),
+                Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<FileEdit>> results = new ArrayList<Future<FileEdit>>();
+            for (final Map.Entry<IFile, String> entry : bufferTexts.entrySet()) {
+                results.add(pool.submit(new Callable<FileEdit>() {
+                    @Override
+                    public FileEdit call() throws Exception {
+                        IFile file = entry.getKey();
+                        String text = entry.getValue() == null ? read(file) : entry.getValue();
+                        String newText = text == null ? null : transform.apply(text);
+                        return newText == null ? null : new FileEdit(file, text, newText);
+                    }
+                }));
+            }
+            List<FileEdit> edits = new ArrayList<FileEdit>();
+            for (Future<FileEdit> result : results) {
+                FileEdit edit = result.get();
+                if (edit != null) {
+                    edits.add(edit);
+                }
+            }
+            return edits;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandExecutionException("Interrupted");
+        } catch (ExecutionException e) {
+            VrapperLog.error("Failed to change files", e.getCause());
+            throw new CommandExecutionException("Failed to change files: " + e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** @return the contents of the file, <code>null</code> if it can't be read. */
+    private static String read(IFile file) {
+        try {
+            InputStream input = file.getContents(true);
+            try {
+                Reader reader = new InputStreamReader(input, file.getCharset());
+                StringBuilder sb = new StringBuilder();
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    sb.append(buffer, 0, read);
+                }
+                if (sb.indexOf("\0") >= 0) {
+                    // Binary file.
+                    return null;
+                }
+                return sb.toString();
+            } finally {
+                input.close();
+            }
+        } catch (CoreException e) {
+            VrapperLog.info("Cannot read " + file.getFullPath() + ": " + e.getMessage());
+        } catch (IOException e) {
+            VrapperLog.info("Cannot read " + file.getFullPath() + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** Files of all editors in the current window, without restoring lazily loaded editors. */
+    private static List<IFile> getOpenFiles() {
+        List<IFile> files = new ArrayList<IFile>();
+        IEditorReference[] references = PlatformUI.getWorkbench().getActiveWorkbenchWindow()
+                .getActivePage().getEditorReferences();
+        for (IEditorReference reference : references) {
+            try {
+                IEditorInput input = reference.getEditorInput();
+                IFile file = input == null ? null : input.getAdapter(IFile.class);
+                if (file != null && ! files.contains(file)) {
+                    files.add(file);
+                }
+            } catch (PartInitException e) {
+                VrapperLog.error("Failed to get input of " + reference.getName(), e);
+            }
+        }
+        return files;
+    }
+
+    private static void runInEditors(EditorAdaptor vim, final String exCommand)
+            throws CommandExecutionException {
+        try {
+            vim.getBufferAndTabService().doInBuffers(false, null, new Evaluator() {
+                @Override
+                public Object evaluate(EditorAdaptor vim, Queue<String> command)
+                        throws CommandExecutionException {
+                    CommandLineMode mode = (CommandLineMode) vim.getMode(CommandLineMode.NAME);
+                    Command parsed = mode.createParser().parseAndExecute(null, exCommand);
+                    if (parsed != null) {
+                        parsed.execute(vim);
+                    }
+                    return null;
+                }
+            });
+        } catch (BufferDoException e) {
+            throw new CommandExecutionException(e.getCause() == null ? e.toString()
+                    : e.getCause().getMessage());
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package net.sourceforge.vrapper.eclipse.commands;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.vrapper.eclipse.platform.EclipseCommandQueue;
 import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.ViewportService;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.AbstractCommand;
 import net.sourceforge.vrapper.vim.commands.Command;
-import net.sourceforge.vrapper.vim.commands.MultipleExecutionCommand;
 
 import org.eclipse.core.commands.ParameterizedCommand;
 import org.eclipse.core.commands.common.CommandException;
@@ -12,24 +16,39 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.commands.ICommandService;
 import org.eclipse.ui.handlers.IHandlerService;
 
-
+/**
+ * Executes an Eclipse command given by its serialized id. The parsed commands are cached, and
+ * a count runs the command that many times in one undoable change.
+ * <p>
+ * Asynchronous commands go to the {@link EclipseCommandQueue} of the editor, which runs them in
+ * order and before macros and <tt>:normal</tt> play their next key. An editor without a queue
+ * runs them with {@link Display#asyncExec(Runnable)} instead.
+ */
 public class EclipseCommand extends AbstractCommand {
 
+    private static final Map<String, ParameterizedCommand> commandCache =
+            new ConcurrentHashMap<String, ParameterizedCommand>();
+
     private final String action;
     private final boolean async;
+    private final int count;
 
     public EclipseCommand(String action) {
-        this.action = action;
-        this.async = false;
+        this(action, false);
     }
 
     public EclipseCommand(String action, boolean async) {
+        this(action, async, 1);
+    }
+
+    private EclipseCommand(String action, boolean async, int count) {
         this.action = action;
         this.async = async;
+        this.count = count;
     }
 
     public void execute(EditorAdaptor editorAdaptor) {
-        doIt(1, action, editorAdaptor, async);
+        doIt(count, action, editorAdaptor, async);
     }
 
     public String getCommandName() {
@@ -49,7 +68,8 @@ public class EclipseCommand extends AbstractCommand {
         return display;
     }
 
-    public static void doIt(int count, final String action, EditorAdaptor editorAdaptor, boolean async) {
+    public static void doIt(final int count, final String action,
+            final EditorAdaptor editorAdaptor, boolean async) {
         final IHandlerService handlerService = editorAdaptor.getService(IHandlerService.class);
         final ICommandService commandService = editorAdaptor.getService(ICommandService.class);
         if (handlerService != null && commandService != null) {
@@ -57,33 +77,67 @@ public class EclipseCommand extends AbstractCommand {
                 //
                 // Some commands misbehave if not run asynchronously.
                 //
-                getDisplay().asyncExec(new Runnable() {
-                    @Override
+                Runnable runnable = new Runnable() {
                     public void run() {
-                        executeAction(action, handlerService, commandService);
+                        executeAction(count, action, editorAdaptor, handlerService, commandService);
                     }
-                });
+                };
+                EclipseCommandQueue queue = editorAdaptor.getService(EclipseCommandQueue.class);
+                if (queue != null) {
+                    queue.add(runnable);
+                } else {
+                    // Still asynchronous, but macros and :normal won't wait for it.
+                    VrapperLog.info("No command queue, running " + action + " unordered");
+                    getDisplay().asyncExec(runnable);
+                }
             } else {
-                executeAction(action, handlerService, commandService);
+                executeAction(count, action, editorAdaptor, handlerService, commandService);
             }
         } else {
             VrapperLog.error("No handler service, cannot execute: " + action);
         }
     }
 
-    private static void executeAction(final String action,
+    private static void executeAction(int count, final String action,
+            final EditorAdaptor editorAdaptor,
             final IHandlerService handlerService,
             final ICommandService commandService) {
+        if (count == NO_COUNT_GIVEN) {
+            count = 1;
+        }
+        final ViewportService view = editorAdaptor.getViewportService();
+        if (count > 1) {
+            view.beginBatchEdit();
+            editorAdaptor.getHistory().beginCompoundChange();
+        }
         try {
-            final ParameterizedCommand command = commandService.deserialize(action);
-            handlerService.executeCommand(command, null);
+            final ParameterizedCommand command = getCommand(action, commandService);
+            for (int i = 0; i < count; i++) {
+                handlerService.executeCommand(command, null);
+            }
         } catch (CommandException e) {
             VrapperLog.error("Command not handled: " + action, e);
+        } finally {
+            if (count > 1) {
+                editorAdaptor.getHistory().endCompoundChange();
+                view.endBatchEdit();
+            }
+        }
+    }
+
+    private static ParameterizedCommand getCommand(String action, ICommandService commandService)
+            throws CommandException {
+        ParameterizedCommand command = commandCache.get(action);
+        if (command == null) {
+            // Not cached if it fails, the command may be contributed by a plugin loaded later.
+            command = commandService.deserialize(action);
+            commandCache.put(action, command);
         }
+        return command;
     }
 
     public Command withCount(int count) {
-        return new MultipleExecutionCommand(count, this);
+        return new EclipseCommand(action, async, count);
     }
 
     public String toString() {
@@ -0,0 +1,45 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.commands.CountAwareCommand;
+import net.sourceforge.vrapper.vim.commands.MotionCommand;
+import net.sourceforge.vrapper.vim.commands.motions.GoToJumpLocation;
+import net.sourceforge.vrapper.vim.commands.motions.Motion;
+
+/**
+ * '&lt;C-o&gt;' and '&lt;C-i&gt;' for Eclipse. The jump list of the editor is used first, and once
+ * it is exhausted Eclipse's navigation history takes over, so the keys still lead to other
+ * editors like Vim's jump list does.
+ */
+public class JumpListCommand extends CountAwareCommand {
+
+    public static final Command BACKWARDS = new JumpListCommand(GoToJumpLocation.BACKWARDS,
+            "org.eclipse.ui.navigate.backwardHistory");
+    public static final Command FORWARD = new JumpListCommand(GoToJumpLocation.FORWARD,
+            "org.eclipse.ui.navigate.forwardHistory");
+
+    private final Motion motion;
+    private final String historyCommand;
+
+    private JumpListCommand(Motion motion, String historyCommand) {
+        this.motion = motion;
+        this.historyCommand = historyCommand;
+    }
+
+    @Override
+    public void execute(EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
+        try {
+            MotionCommand.doIt(editorAdaptor, motion.withCount(count));
+        } catch (CommandExecutionException e) {
+            EclipseCommand.doIt(count, historyCommand, editorAdaptor, false);
+        }
+    }
+
+    @Override
+    public CountAwareCommand repetition() {
+        return null;
+    }
+
+}
@@ -0,0 +1,45 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import java.util.List;
+
+import net.sourceforge.vrapper.utils.QuickfixList;
+import net.sourceforge.vrapper.utils.QuickfixList.Entry;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.AbstractMessagesCommand;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+
+/**
+ * :clist
+ * Lists the entries of the quickfix list.
+ */
+public class ListQuickfixCommand extends AbstractMessagesCommand {
+
+    public static final Command INSTANCE = new ListQuickfixCommand();
+
+    @Override
+    protected String getMessages(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+        QuickfixList list = QuickfixCommand.QUICKFIX_LIST;
+        List<Entry> entries = list.getEntries();
+        if (entries.isEmpty()) {
+            throw new CommandExecutionException("E42: No Errors");
+        }
+        int current = list.getCurrentIndex();
+        StringBuilder sb = new StringBuilder();
+        sb.append(list.getTitle());
+        if (list.isSearching()) {
+            sb.append(" (searching...)");
+        }
+        sb.append('\n');
+        for (int i = 0; i < entries.size(); i++) {
+            sb.append(i == current ? '>' : ' ');
+            sb.append(String.format("%3d %s\n", i + 1, entries.get(i)));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean isClipped() {
+        return true;
+    }
+}
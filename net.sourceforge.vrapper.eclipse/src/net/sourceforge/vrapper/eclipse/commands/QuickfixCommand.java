@@ -0,0 +1,155 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.key;
+
+import net.sourceforge.vrapper.eclipse.activator.VrapperPlugin;
+import net.sourceforge.vrapper.eclipse.interceptor.InputInterceptor;
+import net.sourceforge.vrapper.eclipse.interceptor.UnknownEditorException;
+import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.keymap.SimpleTransition;
+import net.sourceforge.vrapper.keymap.SpecialKey;
+import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.keymap.Transition;
+import net.sourceforge.vrapper.keymap.UnionState;
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.platform.VrapperPlatformException;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.QuickfixList;
+import net.sourceforge.vrapper.utils.QuickfixList.Entry;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.commands.CountIgnoringNonRepeatableCommand;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.ide.IDE;
+
+/**
+ * Navigates the quickfix list filled by <tt>:vimgrep</tt>. Opens the file of the selected entry
+ * if needed, hence it lives next to the other cross-editor commands.
+ */
+public class QuickfixCommand extends CountIgnoringNonRepeatableCommand {
+
+    /** The quickfix list, shared by all editors like in Vim. */
+    public static final QuickfixList QUICKFIX_LIST = new QuickfixList();
+
+    private enum Direction {
+        NEXT, PREVIOUS, FIRST, LAST, CURRENT, CANCEL
+    }
+
+    public static final Command NEXT = new QuickfixCommand(Direction.NEXT);
+    public static final Command PREVIOUS = new QuickfixCommand(Direction.PREVIOUS);
+    public static final Command FIRST = new QuickfixCommand(Direction.FIRST);
+    public static final Command LAST = new QuickfixCommand(Direction.LAST);
+    public static final Command CURRENT = new QuickfixCommand(Direction.CURRENT);
+    /** Stops a running <tt>:vimgrep</tt>, bound to Esc in normal mode by {@link #CANCEL_ON_ESC}. */
+    public static final Command CANCEL = new QuickfixCommand(Direction.CANCEL);
+
+    /**
+     * Binds Esc to {@link #CANCEL} while a <tt>:vimgrep</tt> runs. Otherwise Esc is not bound
+     * here and does what it did before.
+     */
+    public static final State<Command> CANCEL_ON_ESC = new State<Command>() {
+        private final KeyStroke escape = key(SpecialKey.ESC);
+        private final Transition<Command> cancel = new SimpleTransition<Command>(CANCEL);
+
+        public Transition<Command> press(KeyStroke key) {
+            return escape.equals(key) && QUICKFIX_LIST.isSearching() ? cancel : null;
+        }
+
+        public State<Command> union(State<Command> other) {
+            return new UnionState<Command>(this, other);
+        }
+    };
+
+    private final Direction direction;
+
+    private QuickfixCommand(Direction direction) {
+        this.direction = direction;
+    }
+
+    @Override
+    public void execute(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+        Entry entry;
+        switch (direction) {
+        case NEXT:
+            entry = QUICKFIX_LIST.move(1);
+            break;
+        case PREVIOUS:
+            entry = QUICKFIX_LIST.move(-1);
+            break;
+        case FIRST:
+            entry = QUICKFIX_LIST.select(0);
+            break;
+        case LAST:
+            entry = QUICKFIX_LIST.select(QUICKFIX_LIST.size() - 1);
+            break;
+        case CURRENT:
+            entry = QUICKFIX_LIST.getCurrent();
+            if (entry == null) {
+                entry = QUICKFIX_LIST.select(0);
+            }
+            break;
+        case CANCEL:
+            if (QUICKFIX_LIST.cancelSearch()) {
+                editorAdaptor.getUserInterfaceService().setInfoMessage("vimgrep cancelled");
+            }
+            return;
+        default:
+            throw new IllegalStateException("Unknown direction " + direction);
+        }
+        if (entry == null) {
+            if (QUICKFIX_LIST.size() == 0) {
+                throw new CommandExecutionException("E42: No Errors");
+            }
+            throw new CommandExecutionException("E553: No more items");
+        }
+        jumpTo(editorAdaptor, entry);
+    }
+
+    /** Opens the file of the given entry and moves the cursor to it. */
+    static void jumpTo(EditorAdaptor editorAdaptor, Entry entry) throws CommandExecutionException {
+        IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(entry.getPath()));
+        if ( ! file.exists()) {
+            throw new CommandExecutionException("Can't open file " + entry.getPath());
+        }
+        IWorkbenchPage page = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
+        IEditorPart editor;
+        try {
+            editor = IDE.openEditor(page, file, true);
+        } catch (PartInitException e) {
+            VrapperLog.error("Failed to open " + entry.getPath(), e);
+            throw new CommandExecutionException("Can't open file " + entry.getPath());
+        }
+        InputInterceptor interceptor = null;
+        try {
+            interceptor = VrapperPlugin.getDefault().findActiveInterceptor(editor);
+        } catch (VrapperPlatformException e) {
+            VrapperLog.error("Failed to find Vrapper for " + entry.getPath(), e);
+        } catch (UnknownEditorException e) {
+            VrapperLog.info("Failed to find Vrapper for " + entry.getPath() + ". Error: " + e);
+        }
+        if (interceptor == null) {
+            return;
+        }
+        EditorAdaptor target = interceptor.getEditorAdaptor();
+        TextContent model = target.getModelContent();
+        int lineNo = Math.max(0, Math.min(entry.getLine() - 1, model.getNumberOfLines() - 1));
+        LineInformation line = model.getLineInformation(lineNo);
+        int offset = line.getBeginOffset() + Math.min(entry.getColumn(), line.getLength());
+        CursorService cursor = target.getCursorService();
+        cursor.setMark(CursorService.LAST_JUMP_MARK, target.getPosition());
+        target.setPosition(cursor.newPositionForModelOffset(offset), StickyColumnPolicy.ON_CHANGE);
+        target.getUserInterfaceService().setInfoMessage("(" + (QUICKFIX_LIST.getCurrentIndex() + 1)
+                + " of " + QUICKFIX_LIST.size() + "): " + entry.getText().trim());
+    }
+}
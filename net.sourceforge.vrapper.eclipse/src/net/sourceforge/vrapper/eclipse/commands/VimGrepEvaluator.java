@@ -0,0 +1,335 @@
+package net.sourceforge.vrapper.eclipse.commands;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.utils.FileGrep;
+import net.sourceforge.vrapper.utils.QuickfixList;
+import net.sourceforge.vrapper.utils.VimRegex;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * :vimgrep /{pattern}/[g][j] {file} ...
+ * <p>
+ * Searches workspace files matching the given globs without opening them; files which are open
+ * are searched as shown in their editor. Globs match the path
+ * of a file relative to the current project or to the workspace, so <tt>src/**&#47;*.java</tt>
+ * searches the current project and <tt>**&#47;*.java</tt> the whole workspace. <tt>%</tt> is the
+ * current file. The workspace is walked in a job and the files are searched in the background,
+ * filling the quickfix list as it goes; Esc in normal mode cancels it. Derived and team-private
+ * resources are skipped.
+ */
+public class VimGrepEvaluator implements Evaluator {
+
+    public static final Evaluator INSTANCE = new VimGrepEvaluator();
+
+    @Override
+    public Object evaluate(final EditorAdaptor vim, Queue<String> command)
+            throws CommandExecutionException {
+        StringBuilder args = new StringBuilder();
+        while ( ! command.isEmpty()) {
+            if (args.length() > 0) {
+                args.append(' ');
+            }
+            args.append(command.poll());
+        }
+        String arguments = args.toString();
+
+        String keyword;
+        String flags = "";
+        String files;
+        char delimiter = arguments.length() > 0 ? arguments.charAt(0) : ' ';
+        if (arguments.length() > 0 && ! Character.isLetterOrDigit(delimiter)
+                && delimiter != '"' && delimiter != '|' && delimiter != '\\') {
+            int end = findDelimiter(arguments, delimiter, 1);
+            if (end < 0) {
+                throw new CommandExecutionException("E683: File name missing or invalid pattern");
+            }
+            keyword = arguments.substring(1, end);
+            int flagsEnd = end + 1;
+            while (flagsEnd < arguments.length() && arguments.charAt(flagsEnd) != ' ') {
+                flagsEnd++;
+            }
+            flags = arguments.substring(end + 1, flagsEnd);
+            files = arguments.substring(flagsEnd).trim();
+        } else {
+            int space = arguments.indexOf(' ');
+            keyword = space < 0 ? arguments : arguments.substring(0, space);
+            files = space < 0 ? "" : arguments.substring(space + 1).trim();
+        }
+        if (keyword.length() == 0) {
+            keyword = vim.getRegisterManager().getSearch() == null ? ""
+                    : vim.getRegisterManager().getSearch().getKeyword();
+        }
+        if (keyword.length() == 0 || files.length() == 0) {
+            throw new CommandExecutionException("E683: File name missing or invalid pattern");
+        }
+
+        int patternFlags = 0;
+        if ( ! vim.getSearchAndReplaceService().isCaseSensitive(keyword, "")) {
+            patternFlags = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        Pattern pattern;
+        try {
+            pattern = VimRegex.compile(keyword, patternFlags);
+        } catch (PatternSyntaxException e) {
+            throw new CommandExecutionException("Invalid pattern: " + e.getDescription());
+        }
+
+        final String[] globs = files.split(" +");
+        final String shownFiles = files;
+        final IFile currentFile = getCurrentFile();
+        final String shownKeyword = keyword;
+        final boolean jump = flags.indexOf('j') < 0;
+        final QuickfixList list = QuickfixCommand.QUICKFIX_LIST;
+        final Display display = Display.getCurrent();
+        list.reset(":vimgrep " + arguments);
+        final FileGrep search = new FileGrep(pattern, flags.indexOf('g') >= 0, list,
+                new FileGrep.Listener() {
+            private final AtomicBoolean jumped = new AtomicBoolean( ! jump);
+
+            @Override
+            public void matchesAdded(FileGrep grep) {
+                if ( ! jumped.compareAndSet(false, true)) {
+                    return;
+                }
+                asyncExec(display, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (list.getCurrent() == null && list.select(0) != null) {
+                            try {
+                                QuickfixCommand.jumpTo(vim, list.getCurrent());
+                            } catch (CommandExecutionException e) {
+                                vim.getUserInterfaceService().setErrorMessage(e.getMessage());
+                            }
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void finished(final FileGrep grep) {
+                asyncExec(display, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (grep.isCancelled()) {
+                            return;
+                        }
+                        if (grep.getMatchCount() == 0) {
+                            vim.getUserInterfaceService().setErrorMessage(
+                                    "E480: No match: " + shownKeyword);
+                        } else {
+                            vim.getUserInterfaceService().setInfoMessage("vimgrep: "
+                                    + grep.getMatchCount() + " matches in "
+                                    + grep.getMatchingFileCount() + " files");
+                        }
+                    }
+                });
+            }
+        });
+        list.setSearch(search);
+
+        // Walking the workspace may take a while, the buffers of open files are read on the
+        // UI thread afterwards.
+        Job job = new Job("vimgrep " + keyword) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final List<IFile> found;
+                try {
+                    found = findFiles(globs, currentFile, new ProgressMonitorWrapper(monitor) {
+                        @Override
+                        public boolean isCanceled() {
+                            return super.isCanceled() || search.isCancelled();
+                        }
+                    });
+                } catch (OperationCanceledException e) {
+                    stop(search);
+                    return Status.CANCEL_STATUS;
+                }
+                asyncExec(display, new Runnable() {
+                    @Override
+                    public void run() {
+                        List<FileGrep.Target> targets = collectFiles(found);
+                        if (targets.isEmpty()) {
+                            if ( ! search.isCancelled()) {
+                                vim.getUserInterfaceService().setErrorMessage(
+                                        "E479: No match: " + shownFiles);
+                            }
+                            stop(search);
+                        } else {
+                            search.start(targets);
+                        }
+                    }
+                });
+                return Status.OK_STATUS;
+            }
+        };
+        job.schedule();
+        return null;
+    }
+
+    /** Ends a search which was never started, without a message. */
+    private static void stop(FileGrep search) {
+        search.cancel();
+        search.start(Collections.<FileGrep.Target>emptyList());
+    }
+
+    private static void asyncExec(Display display, Runnable runnable) {
+        if (display != null && ! display.isDisposed()) {
+            display.asyncExec(runnable);
+        }
+    }
+
+    private static int findDelimiter(String text, char delimiter, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Files which are open are searched in the (possibly modified) text of their buffer, others
+     * are read from disk.
+     */
+    private static List<FileGrep.Target> collectFiles(List<IFile> files) {
+        List<FileGrep.Target> targets = new ArrayList<FileGrep.Target>();
+        for (IFile file : files) {
+            // Buffers of open editors may only be touched from the UI thread.
+            ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager()
+                    .getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+            if (buffer != null) {
+                targets.add(new FileGrep.Target(file.getFullPath().toString(),
+                        buffer.getDocument().get()));
+            } else if (file.getLocation() != null) {
+                targets.add(new FileGrep.Target(file.getFullPath().toString(),
+                        file.getLocation().toFile(), getCharset(file)));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Walks the workspace resource tree (no file contents are loaded) and collects the files
+     * matching any of the given globs.
+     */
+    static List<IFile> findFiles(String[] globs) {
+        return findFiles(globs, getCurrentFile(), new NullProgressMonitor());
+    }
+
+    /**
+     * Like {@link #findFiles(String[])} for the given current file, this one may be called from
+     * any thread.
+     * @throws OperationCanceledException if the monitor is cancelled.
+     */
+    private static List<IFile> findFiles(String[] globs, IFile currentFile,
+            final IProgressMonitor monitor) {
+        final IProject currentProject = currentFile == null ? null : currentFile.getProject();
+        final Map<IFile, Boolean> matched = new LinkedHashMap<IFile, Boolean>();
+        final List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String glob : globs) {
+            if ("%".equals(glob)) {
+                if (currentFile != null) {
+                    matched.put(currentFile, Boolean.TRUE);
+                }
+            } else {
+                while (glob.startsWith("/")) {
+                    glob = glob.substring(1);
+                }
+                patterns.add(FileGrep.globToPattern(glob));
+            }
+        }
+        if ( ! patterns.isEmpty()) {
+            try {
+                ResourcesPlugin.getWorkspace().getRoot().accept(new IResourceProxyVisitor() {
+                    @Override
+                    public boolean visit(IResourceProxy proxy) throws CoreException {
+                        if (monitor.isCanceled()) {
+                            throw new OperationCanceledException();
+                        }
+                        if (proxy.isDerived() || proxy.isTeamPrivateMember()) {
+                            return false;
+                        }
+                        if (proxy.getType() != IResource.FILE) {
+                            return true;
+                        }
+                        IPath fullPath = proxy.requestFullPath();
+                        String workspacePath = fullPath.makeRelative().toString();
+                        String projectPath = null;
+                        if (currentProject != null
+                                && currentProject.getFullPath().isPrefixOf(fullPath)) {
+                            projectPath = fullPath.removeFirstSegments(1).toString();
+                        }
+                        for (Pattern pattern : patterns) {
+                            if (pattern.matcher(workspacePath).matches() || (projectPath != null
+                                    && pattern.matcher(projectPath).matches())) {
+                                matched.put((IFile) proxy.requestResource(), Boolean.TRUE);
+                                break;
+                            }
+                        }
+                        return true;
+                    }
+                }, IResource.NONE);
+            } catch (CoreException e) {
+                VrapperLog.error("Failed to list workspace files", e);
+            }
+        }
+        return new ArrayList<IFile>(matched.keySet());
+    }
+
+    private static Charset getCharset(IFile file) {
+        try {
+            return Charset.forName(file.getCharset());
+        } catch (CoreException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static IFile getCurrentFile() {
+        IEditorPart editor = PlatformUI.getWorkbench().getActiveWorkbenchWindow()
+                .getActivePage().getActiveEditor();
+        if (editor == null || editor.getEditorInput() == null) {
+            return null;
+        }
+        return editor.getEditorInput().getAdapter(IFile.class);
+    }
+}
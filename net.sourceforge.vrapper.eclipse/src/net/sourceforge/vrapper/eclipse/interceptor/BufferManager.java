@@ -63,6 +63,12 @@ public interface BufferManager {
      * interact with them.
      */
     public Map<IWorkbenchPart, InputInterceptor> getInterceptors();
+
+    /**
+     * Initializes Vrapper for editors where this was postponed, so that they show up in
+     * {@link #getInterceptors()}.
+     */
+    public void attachPendingEditors();
     
     /** Activate the editor for which this {@link InputInterceptor} was created. */
     public void activate(InputInterceptor inputInterceptor);
@@ -108,7 +108,8 @@ public class CaretPositionHandler implements CaretListener, MouseListener {
         // We only care for the caret if moved by a mouse click.
         // The global mouse trigger is called before caret move, the one above
         // is called afterwards.
-        caretMoved = VrapperPlugin.isMouseDown();
+        caretMoved = VrapperPlugin.isMouseDown()
+                && ! editorAdaptor.getViewportService().isBatchEditing();
     }
 
     protected static EditorMode getCurrentMode(EditorAdaptor editorAdaptor) {
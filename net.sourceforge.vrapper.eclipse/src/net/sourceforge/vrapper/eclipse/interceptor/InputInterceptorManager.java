@@ -4,6 +4,7 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -17,10 +18,12 @@ import net.sourceforge.vrapper.eclipse.platform.EclipseBufferAndTabService;
 import net.sourceforge.vrapper.eclipse.platform.EclipseCursorAndSelection;
 import net.sourceforge.vrapper.eclipse.utils.Utils;
 import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.SimpleConfiguration;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
+import net.sourceforge.vrapper.vim.modes.commandline.HighlightSearch;
 
 import org.eclipse.core.commands.operations.IOperationHistory;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -31,6 +34,11 @@ import org.eclipse.jface.dialogs.PageChangedEvent;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension;
 import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.custom.VerifyKeyListener;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.FocusListener;
+import org.eclipse.swt.events.VerifyEvent;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IEditorReference;
@@ -60,6 +68,11 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
     private static final Method METHOD_GET_EDITOR = getMultiPartEditorMethod(
             "getEditor", Integer.TYPE);
 
+    /** Delay before editors which were never used get initialized in the background. */
+    private static final int IDLE_ATTACH_DELAY = 2000;
+    /** Pause between two background initializations, keeps the UI responsive. */
+    private static final int IDLE_ATTACH_INTERVAL = 100;
+
     /** Helper class which initializes the Vrapper machinery for each given editor. */
     private final InputInterceptorFactory factory;
 
@@ -72,6 +85,20 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
     /** Map holding all currently active editors and their associated Vrapper machinery. */
     private final Map<IWorkbenchPart, InputInterceptor> interceptors;
 
+    /**
+     * Editors which only have a {@link PendingAttach} stub so far. Building the Vrapper machinery
+     * is postponed until the editor is activated, focused or typed in, or the UI is idle.
+     */
+    private final Map<IWorkbenchPart, PendingAttach> pendingAttachments;
+
+    private boolean idleAttachScheduled;
+
+    /** Number of stubs and full initializations and the time they took since the last report. */
+    private int stubCount;
+    private long stubNanos;
+    private int attachCount;
+    private long attachNanos;
+
     /**
      * Map holding nested editor info for all activated top-level editors. Stored here so that we
      * don't need to build this every time we come across an editor.
@@ -109,6 +136,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
         this.factory = factory;
         this.bufferAndTabServices = new WeakHashMap<IWorkbenchWindow, EclipseBufferAndTabService>();
         this.interceptors = new WeakHashMap<IWorkbenchPart, InputInterceptor>();
+        this.pendingAttachments = new WeakHashMap<IWorkbenchPart, PendingAttach>();
         this.toplevelEditorInfo = new WeakHashMap<IWorkbenchPart, EditorInfo>();
     }
 
@@ -175,10 +203,105 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
         }
     }
 
+    /**
+     * Attaches Vrapper to the editor if it is the active one. Other editors (e.g. the ones
+     * restored at startup) only get a cheap stub, see {@link PendingAttach}.
+     */
     private void interceptAbstractTextEditor(AbstractTextEditor editor, EditorInfo partInfo) {
-        if (interceptors.containsKey(editor)) {
+        if (interceptors.containsKey(editor) || pendingAttachments.containsKey(editor)) {
+            return;
+        }
+        IWorkbenchPage page = editor.getSite().getPage();
+        if (page != null && partInfo.getTopLevelEditor().equals(page.getActiveEditor())) {
+            attach(editor, partInfo);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Method me = AbstractTextEditor.class.getDeclaredMethod("getSourceViewer");
+            me.setAccessible(true);
+            Object viewer = me.invoke(editor);
+            if (viewer != null) {
+                PendingAttach stub = new PendingAttach(editor, partInfo, (ITextViewer) viewer);
+                stub.install();
+                pendingAttachments.put(editor, stub);
+                stubCount++;
+                stubNanos += System.nanoTime() - start;
+                scheduleIdleAttach(IDLE_ATTACH_DELAY);
+            }
+        } catch (Exception exception) {
+            VrapperLog.error("Exception when intercepting AbstractTextEditor",
+                    exception);
+        }
+    }
+
+    /**
+     * Returns the interceptor of the given editor, initializing it first if it only has a stub.
+     * @return <code>null</code> if Vrapper is not attached to the editor.
+     */
+    protected InputInterceptor getInterceptor(IWorkbenchPart part) {
+        InputInterceptor interceptor = interceptors.get(part);
+        if (interceptor == null && part != null) {
+            PendingAttach stub = pendingAttachments.remove(part);
+            if (stub != null) {
+                stub.uninstall();
+                if ( ! stub.isDisposed()) {
+                    interceptor = attach(stub.editor, stub.partInfo);
+                }
+                reportIfDone();
+            }
+        }
+        return interceptor;
+    }
+
+    /**
+     * Initializes all editors which still have a stub, e.g. before a command which runs in
+     * every buffer.
+     */
+    @Override
+    public void attachPendingEditors() {
+        for (IWorkbenchPart part : new ArrayList<IWorkbenchPart>(pendingAttachments.keySet())) {
+            getInterceptor(part);
+        }
+    }
+
+    private void scheduleIdleAttach(int delay) {
+        if (idleAttachScheduled) {
+            return;
+        }
+        idleAttachScheduled = true;
+        PlatformUI.getWorkbench().getDisplay().timerExec(delay, new Runnable() {
+            public void run() {
+                idleAttachScheduled = false;
+                Iterator<IWorkbenchPart> pending = pendingAttachments.keySet().iterator();
+                if (pending.hasNext()) {
+                    // One at a time so that user input gets in between.
+                    getInterceptor(pending.next());
+                }
+                if ( ! pendingAttachments.isEmpty()) {
+                    scheduleIdleAttach(IDLE_ATTACH_INTERVAL);
+                }
+            }
+        });
+    }
+
+    /** Logs how long the stubs and the full initializations took once no stubs are left. */
+    private void reportIfDone() {
+        if ( ! pendingAttachments.isEmpty() || stubCount == 0) {
             return;
         }
+        VrapperLog.info(String.format("Vrapper attached to %d editors: stubs %.1f ms,"
+                + " deferred initialization %d editors in %.1f ms", stubCount, stubNanos / 1e6,
+                attachCount, attachNanos / 1e6));
+        stubCount = 0;
+        stubNanos = 0;
+        attachCount = 0;
+        attachNanos = 0;
+    }
+
+    /** Builds the Vrapper machinery for the editor and hooks it up. */
+    private InputInterceptor attach(AbstractTextEditor editor, EditorInfo partInfo) {
+        long start = System.nanoTime();
         try {
             Method me = AbstractTextEditor.class.getDeclaredMethod("getSourceViewer");
             me.setAccessible(true);
@@ -203,19 +326,34 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 operationHistory.addOperationHistoryListener(caretPositionUndoHandler);
                 selectionSvc.installHooks();
                 interceptors.put(editor, interceptor);
+                long elapsed = System.nanoTime() - start;
+                if (stubCount > 0) {
+                    attachCount++;
+                    attachNanos += elapsed;
+                }
+                VrapperLog.debug(String.format("Initialized Vrapper for %s in %.1f ms",
+                        editor.getTitle(), elapsed / 1e6));
+                return interceptor;
             }
         } catch (Exception exception) {
             VrapperLog.error("Exception when intercepting AbstractTextEditor",
                     exception);
         }
+        return null;
     }
 
     public void partClosed(EditorInfo nestingInfo, ProcessedInfo processedInfo) {
 
         IEditorPart part = nestingInfo.getCurrent();
+        PendingAttach stub = pendingAttachments.remove(part);
+        if (stub != null) {
+            stub.uninstall();
+            reportIfDone();
+        }
         InputInterceptor interceptor = interceptors.remove(part);
         // remove the listener in case the editor gets cached
         if (interceptor != null) {
+            interceptor.getEditorAdaptor().editorClosed();
             try {
                 Method me = AbstractTextEditor.class.getDeclaredMethod("getSourceViewer");
                 me.setAccessible(true);
@@ -235,6 +373,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 IOperationHistory operationHistory = PlatformUI.getWorkbench().getOperationSupport().getOperationHistory();
                 operationHistory.removeOperationHistoryListener(caretPositionUndoHandler);
                 selectionSvc.uninstallHooks();
+                interceptor.getPlatform().dispose();
             } catch (Exception exception) {
                 VrapperLog.error("Exception during closing IWorkbenchPart",
                         exception);
@@ -268,7 +407,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
     public void partActivated(EditorInfo editorInfo, ProcessedInfo processedInfo) {
 
         IEditorPart part = editorInfo.getCurrent();
-        InputInterceptor input = interceptors.get(part);
+        InputInterceptor input = getInterceptor(part);
 
         if (input == null) {
             try {
@@ -322,6 +461,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 IEditorPart editor = (IEditorPart) part;
                 ensureBufferService(editor).setCurrentEditor(editorInfo);
             }
+            HighlightSearch.refreshStaleHighlighting(vim);
         }
     }
 
@@ -345,6 +485,8 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
         }
         IWorkbenchPart part = partRef.getPart(false);
         if (part instanceof IEditorPart) {
+            // Editor-specific preferences (e.g. tab width) might have changed while we were away.
+            SimpleConfiguration.defaultsChanged();
             IEditorPart editor = (IEditorPart) part;
             EditorInfo editorInfo = toplevelEditorInfo.get(editor);
             // While *very rare*, some editors manage to sneak up on Vrapper by skipping partOpened.
@@ -397,6 +539,23 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
 
     @Override
     public void partVisible(IWorkbenchPartReference partRef) {
+        IWorkbenchPart part = partRef.getPart(false);
+        if (part instanceof IEditorPart) {
+            refreshStaleHighlighting(part);
+        }
+    }
+
+    /**
+     * Catches up on search highlighting which was skipped while (some pages of) the given
+     * top-level editor were hidden.
+     */
+    protected void refreshStaleHighlighting(IWorkbenchPart toplevelEditor) {
+        for (InputInterceptor interceptor : interceptors.values()) {
+            EditorInfo info = interceptor.getEditorInfo();
+            if (info != null && toplevelEditor.equals(info.getTopLevelEditor())) {
+                HighlightSearch.refreshStaleHighlighting(interceptor.getEditorAdaptor());
+            }
+        }
     }
 
     @Override
@@ -427,7 +586,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 && event.getSelectedPage() instanceof IEditorPart) {
             IEditorPart toplevelEditor = (IEditorPart) event.getPageChangeProvider();
             IEditorPart editor = (IEditorPart) event.getSelectedPage();
-            InputInterceptor interceptor = interceptors.get(editor);
+            InputInterceptor interceptor = getInterceptor(editor);
 
             // This can happen for some rare, dynamic editors which replace editor pages later on.
             // They tend to do this upon changing pages in which case they're called before.
@@ -440,7 +599,7 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                     // Calling partActivated below will update the 'lastSeen' info, pass false.
                     registerEditorPart(childInfo, false);
                     interceptAbstractTextEditor(abstractTextEditor, childInfo);
-                    interceptor = interceptors.get(editor);
+                    interceptor = getInterceptor(editor);
                 }
             }
 
@@ -656,16 +815,16 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
             int activePage = mPart.getActivePage();
             try {
                 IEditorPart subPart = (IEditorPart) METHOD_GET_EDITOR.invoke(mPart, activePage);
-                result = interceptors.get(subPart);
+                result = getInterceptor(subPart);
             } catch (Exception e) {
                 throw new VrapperPlatformException("Failed to get active input interceptor for "
                         + editorInfo.getTopLevelEditor(), e);
             }
         } else if (part instanceof MultiEditor) {
             MultiEditor multiEditor = (MultiEditor) part;
-            result = interceptors.get(multiEditor.getActiveEditor());
+            result = getInterceptor(multiEditor.getActiveEditor());
         } else if (part instanceof AbstractTextEditor) {
-            result = interceptors.get(part);
+            result = getInterceptor(part);
         } else {
             throw new UnknownEditorException("Cannot find active input interceptor for editor "
                     + editorInfo.getTopLevelEditor() + ". Unknown sub-editor type " + part);
@@ -693,4 +852,54 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 editorInfo.getCurrent().getEditorInput());
         activate(dummyBuffer);
     }
+
+    /**
+     * Placeholder for an editor which Vrapper is not initialized for yet. The first key stroke or
+     * focus change triggers the initialization; the key stroke is then passed on.
+     */
+    private class PendingAttach implements VerifyKeyListener, FocusListener {
+        private final AbstractTextEditor editor;
+        private final EditorInfo partInfo;
+        private final ITextViewer textViewer;
+
+        public PendingAttach(AbstractTextEditor editor, EditorInfo partInfo,
+                ITextViewer textViewer) {
+            this.editor = editor;
+            this.partInfo = partInfo;
+            this.textViewer = textViewer;
+        }
+
+        public void install() {
+            ((ITextViewerExtension) textViewer).prependVerifyKeyListener(this);
+            textViewer.getTextWidget().addFocusListener(this);
+        }
+
+        public void uninstall() {
+            StyledText widget = textViewer.getTextWidget();
+            if (widget != null && ! widget.isDisposed()) {
+                ((ITextViewerExtension) textViewer).removeVerifyKeyListener(this);
+                widget.removeFocusListener(this);
+            }
+        }
+
+        public boolean isDisposed() {
+            StyledText widget = textViewer.getTextWidget();
+            return widget == null || widget.isDisposed();
+        }
+
+        public void verifyKey(VerifyEvent event) {
+            // The viewer doesn't notify listeners added while it is dispatching, do it here.
+            InputInterceptor interceptor = getInterceptor(editor);
+            if (interceptor != null) {
+                interceptor.verifyKey(event);
+            }
+        }
+
+        public void focusGained(FocusEvent e) {
+            getInterceptor(editor);
+        }
+
+        public void focusLost(FocusEvent e) {
+        }
+    }
 }
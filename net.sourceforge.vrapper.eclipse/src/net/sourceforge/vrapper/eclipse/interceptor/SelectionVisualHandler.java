@@ -39,7 +39,8 @@ public class SelectionVisualHandler implements ISelectionChangedListener {
 
     public void selectionChanged(SelectionChangedEvent event) {
         if (!VrapperPlugin.isVrapperEnabled() || !(event.getSelection() instanceof TextSelection)
-                || selectionService.isSelectionInProgress()) {
+                || selectionService.isSelectionInProgress()
+                || editorAdaptor.getViewportService().isBatchEditing()) {
             return;
         }
 
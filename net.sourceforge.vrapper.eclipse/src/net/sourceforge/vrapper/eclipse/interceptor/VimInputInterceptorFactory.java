@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 
 import net.sourceforge.vrapper.eclipse.activator.VrapperPlugin;
+import net.sourceforge.vrapper.eclipse.platform.EclipseHistoryService;
 import net.sourceforge.vrapper.eclipse.platform.EclipsePlatform;
 import net.sourceforge.vrapper.eclipse.platform.SWTRegisterManager;
 import net.sourceforge.vrapper.keymap.KeyStroke;
@@ -16,6 +17,7 @@ import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.Configuration.Option;
 import net.sourceforge.vrapper.platform.GlobalConfiguration;
+import net.sourceforge.vrapper.platform.SimpleConfiguration;
 import net.sourceforge.vrapper.vim.ConfigurationListener;
 import net.sourceforge.vrapper.vim.DefaultConfigProvider;
 import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
@@ -25,6 +27,8 @@ import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
 import net.sourceforge.vrapper.vim.register.RegisterManager;
 
 import org.eclipse.jface.text.source.ContentAssistantFacade;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.source.SourceViewer;
 import org.eclipse.swt.SWT;
@@ -111,6 +115,14 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
                 }
             }
         };
+        // Configurations cache the values returned by the providers above and by the editor
+        // settings; drop those cached values whenever the text editor preferences change.
+        EditorsUI.getPreferenceStore().addPropertyChangeListener(new IPropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                SimpleConfiguration.defaultsChanged();
+            }
+        });
         List<DefaultConfigProvider> configProviders = Collections.singletonList(globalDefaults);
         GlobalConfiguration sharedConfiguration = new SimpleGlobalConfiguration(configProviders);
         // Sync debuglog option's value with actual Log setting (read from system properties).
@@ -208,6 +220,10 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
                 platform,
                 globalRegisterManager, VrapperPlugin.isVrapperEnabled());
         editorAdaptor.addVrapperEventListener(platform.getModeRecorder());
+        if (platform.getHistoryService() instanceof EclipseHistoryService) {
+            editorAdaptor.addVrapperEventListener(
+                    (EclipseHistoryService) platform.getHistoryService());
+        }
         InputInterceptor interceptor = createInterceptor(editorAdaptor);
         interceptor.setPlatform(platform);
         interceptor.setEditorInfo(partInfo);
@@ -9,11 +9,17 @@ import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.state;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.transitionBind;
 import static net.sourceforge.vrapper.vim.commands.CommandWrappers.dontRepeat;
 import static net.sourceforge.vrapper.vim.commands.CommandWrappers.seq;
+import net.sourceforge.vrapper.eclipse.commands.ArgsEvaluator;
+import net.sourceforge.vrapper.eclipse.commands.BufDoEvaluator;
 import net.sourceforge.vrapper.eclipse.commands.ChangeTabCommand;
 import net.sourceforge.vrapper.eclipse.commands.GoToMarkCommand;
+import net.sourceforge.vrapper.eclipse.commands.JumpListCommand;
+import net.sourceforge.vrapper.eclipse.commands.ListQuickfixCommand;
 import net.sourceforge.vrapper.eclipse.commands.ListTabsCommand;
+import net.sourceforge.vrapper.eclipse.commands.QuickfixCommand;
 import net.sourceforge.vrapper.eclipse.commands.TabNewCommand;
 import net.sourceforge.vrapper.eclipse.commands.ToggleFoldingCommand;
+import net.sourceforge.vrapper.eclipse.commands.VimGrepEvaluator;
 import net.sourceforge.vrapper.keymap.EmptyState;
 import net.sourceforge.vrapper.keymap.KeyMapInfo;
 import net.sourceforge.vrapper.keymap.SpecialKey;
@@ -56,6 +62,23 @@ public class EclipseSpecificStateProvider extends AbstractEclipseSpecificStatePr
         commands.add("tabedit",     (Command)TabNewCommand.NEW_EDITOR);
         commands.add("tabnew",      (Command)TabNewCommand.NEW_EDITOR);
         commands.add("tabs",        (Command)ListTabsCommand.INSTANCE);
+
+        commands.add("vimgrep",     VimGrepEvaluator.INSTANCE);
+        commands.add("vim",         VimGrepEvaluator.INSTANCE);
+        commands.add("cnext",       QuickfixCommand.NEXT);
+        commands.add("cn",          QuickfixCommand.NEXT);
+        commands.add("cprevious",   QuickfixCommand.PREVIOUS);
+        commands.add("cNext",       QuickfixCommand.PREVIOUS);
+        commands.add("cp",          QuickfixCommand.PREVIOUS);
+        commands.add("cfirst",      QuickfixCommand.FIRST);
+        commands.add("crewind",     QuickfixCommand.FIRST);
+        commands.add("clast",       QuickfixCommand.LAST);
+        commands.add("cc",          QuickfixCommand.CURRENT);
+        commands.add("clist",       ListQuickfixCommand.INSTANCE);
+
+        commands.add("args",        ArgsEvaluator.INSTANCE);
+        commands.add("argdo",       BufDoEvaluator.ARGDO);
+        commands.add("bufdo",       BufDoEvaluator.BUFDO);
     }
 
     @Override
@@ -91,9 +114,9 @@ public class EclipseSpecificStateProvider extends AbstractEclipseSpecificStatePr
                         leafBind('T', (Command)ChangeTabCommand.PREVIOUS_EDITOR)),
                 leafCtrlBind('y', dontRepeat(editText("scroll.lineUp"))),
                 leafCtrlBind('e', dontRepeat(editText("scroll.lineDown"))),
-                leafCtrlBind('o', dontRepeat(cmd("org.eclipse.ui.navigate.backwardHistory"))),
-                leafCtrlBind('i', dontRepeat(cmd("org.eclipse.ui.navigate.forwardHistory"))),
-                leafBind(SpecialKey.TAB, dontRepeat(cmd("org.eclipse.ui.navigate.forwardHistory"))),
+                leafCtrlBind('o', JumpListCommand.BACKWARDS),
+                leafCtrlBind('i', JumpListCommand.FORWARD),
+                leafBind(SpecialKey.TAB, JumpListCommand.FORWARD),
                 transitionBind('\\', convertKeyStroke(
                         GoToMarkCommand.EDITOR_CONVERTER,
                         VimConstants.PRINTABLE_KEYSTROKES)),
@@ -103,6 +126,7 @@ public class EclipseSpecificStateProvider extends AbstractEclipseSpecificStatePr
                 transitionBind('`', convertKeyStroke(
                         GoToMarkCommand.CHARWISE_CONVERTER,
                         VimConstants.PRINTABLE_KEYSTROKES))),
+            QuickfixCommand.CANCEL_ON_ESC,
             prefixedOperatorCmds('g', 'u', seq(editText("lowerCase"), DeselectAllCommand.INSTANCE), textObjects),
             prefixedOperatorCmds('g', 'U', seq(editText("upperCase"), DeselectAllCommand.INSTANCE), textObjects)
          );
@@ -0,0 +1,21 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import net.sourceforge.vrapper.utils.CodeStructure;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+/**
+ * Reads the methods of an editor from the model which the language plugin keeps for it.
+ * Contributed through the <tt>net.sourceforge.vrapper.eclipse.pscs</tt> extension point.
+ */
+public interface CodeStructureProvider {
+
+    /**
+     * Called on the UI thread, so this must not wait for the language plugin to parse the text.
+     * @return the method bodies of the document, <code>null</code> if the model of the editor
+     *  is not available or is older than the text.
+     */
+    CodeStructure getCodeStructure(AbstractTextEditor editor, IDocument document);
+
+}
@@ -0,0 +1,43 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Reads the characters of a document without copying them, so a search doesn't copy the whole
+ * document after every change. Valid until the document changes.
+ */
+class DocumentCharSequence implements CharSequence {
+
+    private final IDocument document;
+
+    public DocumentCharSequence(IDocument document) {
+        this.document = document;
+    }
+
+    public int length() {
+        return document.getLength();
+    }
+
+    public char charAt(int index) {
+        try {
+            return document.getChar(index);
+        } catch (BadLocationException e) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        try {
+            return document.get(start, end - start);
+        } catch (BadLocationException e) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return document.get();
+    }
+
+}
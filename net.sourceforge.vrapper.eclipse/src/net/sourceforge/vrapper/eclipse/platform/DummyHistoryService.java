@@ -57,6 +57,31 @@ public class DummyHistoryService implements IUndoManager, HistoryService {
 
     }
 
+    public void undo(int count) {
+        // TODO Auto-generated method stub
+
+    }
+
+    public void redo(int count) {
+        // TODO Auto-generated method stub
+
+    }
+
+    public void travel(int count) {
+        // TODO Auto-generated method stub
+
+    }
+
+    public void travelInTime(long millis) {
+        // TODO Auto-generated method stub
+
+    }
+
+    public boolean goToChange(int changeNumber) {
+        // TODO Auto-generated method stub
+        return false;
+    }
+
     public boolean undoable() {
         // TODO Auto-generated method stub
         return false;
@@ -19,8 +19,10 @@ import net.sourceforge.vrapper.platform.Tab;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.modes.commandline.AutoCmdTable;
 import net.sourceforge.vrapper.vim.modes.commandline.Evaluator;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IEditorReference;
@@ -106,6 +108,25 @@ public class EclipseBufferAndTabService implements BufferAndTabService {
         currentEditorReference = new WeakReference<IEditorPart>(activeEditor);
         // Update IEditorPart info.
         bufferIdManager.registerEditorPart(editorInfo, true);
+        if ( ! activeEditor.equals(currentEditor)) {
+            fireAutoCmd(AutoCmdTable.Event.BUF_LEAVE, currentEditor);
+            fireAutoCmd(AutoCmdTable.Event.BUF_ENTER, activeEditor);
+        }
+    }
+
+    private void fireAutoCmd(AutoCmdTable.Event event, IEditorPart editor) {
+        InputInterceptor interceptor = editor == null ? null
+                : bufferIdManager.getInterceptors().get(editor);
+        if (interceptor == null) {
+            return;
+        }
+        IEditorInput input = editor.getEditorInput();
+        String path = null;
+        if (input != null) {
+            IFile file = input.getAdapter(IFile.class);
+            path = file == null ? input.getName() : file.getFullPath().toString();
+        }
+        AutoCmdTable.INSTANCE.fire(event, interceptor.getEditorAdaptor(), path);
     }
 
     /* (non-Javadoc)
@@ -208,7 +229,9 @@ public class EclipseBufferAndTabService implements BufferAndTabService {
             for (IEditorReference ref : references) {
                 ref.getEditor(true);
             }
+            bufferIdManager.attachPendingEditors();
         }
+        // Otherwise editors whose attach is still pending are skipped, they have no state yet.
         List<Object> result = new ArrayList<Object>();
         Map<IWorkbenchPart, InputInterceptor> editors = bufferIdManager.getInterceptors();
         for (Map.Entry<IWorkbenchPart, InputInterceptor> editorInfo : editors.entrySet()) {
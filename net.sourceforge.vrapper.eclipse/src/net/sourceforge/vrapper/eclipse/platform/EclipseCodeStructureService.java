@@ -0,0 +1,108 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sourceforge.vrapper.eclipse.utils.Utils;
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.CodeStructureService;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.CodeStructure;
+
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+/**
+ * Asks the {@link CodeStructureProvider}s contributed for the editor and falls back to counting
+ * braces. The result is kept until the document changes.
+ * <p>
+ * Counted braces are only a stand-in: while the language plugin hasn't reconciled its model
+ * with the text it is asked again every time.
+ */
+public class EclipseCodeStructureService implements CodeStructureService {
+
+    private static final Map<String, List<CodeStructureProvider>> providerCache =
+            new ConcurrentHashMap<String, List<CodeStructureProvider>>();
+
+    private final AbstractTextEditor editor;
+    private final ITextViewer textViewer;
+    private final TextContent modelContent;
+
+    private IDocument cachedDocument;
+    private long cachedStamp;
+    private CodeStructure cached;
+    private boolean cachedFromProvider;
+
+    public EclipseCodeStructureService(AbstractTextEditor editor, ITextViewer textViewer,
+            TextContent modelContent) {
+        this.editor = editor;
+        this.textViewer = textViewer;
+        this.modelContent = modelContent;
+    }
+
+    @Override
+    public CodeStructure getCodeStructure() {
+        IDocument document = textViewer.getDocument();
+        if (document == null) {
+            return null;
+        }
+        long stamp = document instanceof IDocumentExtension4
+                ? ((IDocumentExtension4) document).getModificationStamp()
+                : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        boolean upToDate = cached != null && cachedDocument == document && cachedStamp == stamp
+                && stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        if (upToDate && cachedFromProvider) {
+            return cached;
+        }
+        for (CodeStructureProvider provider : getProviders()) {
+            try {
+                CodeStructure structure = provider.getCodeStructure(editor, document);
+                if (structure != null) {
+                    return remember(document, stamp, structure, true);
+                }
+            } catch (RuntimeException e) {
+                VrapperLog.error("Code structure provider " + provider + " failed", e);
+            }
+        }
+        if (upToDate) {
+            return cached;
+        }
+        return remember(document, stamp, CodeStructure.scanBraces(modelContent), false);
+    }
+
+    private CodeStructure remember(IDocument document, long stamp, CodeStructure structure,
+            boolean fromProvider) {
+        cachedDocument = document;
+        cachedStamp = stamp;
+        cached = structure;
+        cachedFromProvider = fromProvider;
+        return structure;
+    }
+
+    private List<CodeStructureProvider> getProviders() {
+        final String className = editor.getClass().getName();
+        List<CodeStructureProvider> providers = providerCache.get(className);
+        if (providers == null) {
+            providers = new ArrayList<CodeStructureProvider>();
+            final IConfigurationElement[] elements = org.eclipse.core.runtime.Platform
+                    .getExtensionRegistry()
+                    .getConfigurationElementsFor("net.sourceforge.vrapper.eclipse.pscs");
+            for (final IConfigurationElement element : elements) {
+                final CodeStructureProvider provider =
+                        (CodeStructureProvider) Utils.createGizmoForElementConditionally(
+                                editor, "editor-must-subclass", element, "provider-class");
+                if (provider != null) {
+                    providers.add(provider);
+                }
+            }
+            providerCache.put(className, providers);
+        }
+        return providers;
+    }
+
+}
@@ -0,0 +1,54 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.CommandQueueService;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Runs Eclipse commands which misbehave when executed while Vrapper handles a key. They are
+ * run by one {@link Display#asyncExec(Runnable)} in the order they were added, or earlier when
+ * a macro or <tt>:normal</tt> is about to play the next key.
+ */
+public class EclipseCommandQueue implements CommandQueueService {
+
+    private final Queue<Runnable> pending = new LinkedList<Runnable>();
+    private boolean scheduled;
+
+    public void add(Runnable command) {
+        pending.add(command);
+        if ( ! scheduled) {
+            scheduled = true;
+            getDisplay().asyncExec(new Runnable() {
+                public void run() {
+                    scheduled = false;
+                    flush();
+                }
+            });
+        }
+    }
+
+    public void flush() {
+        Runnable command;
+        while ((command = pending.poll()) != null) {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                VrapperLog.error("Queued command failed", e);
+            }
+        }
+    }
+
+    private static Display getDisplay() {
+        Display display = Display.getCurrent();
+        // may be null if outside the UI thread
+        if (display == null) {
+            display = Display.getDefault();
+        }
+        return display;
+    }
+
+}
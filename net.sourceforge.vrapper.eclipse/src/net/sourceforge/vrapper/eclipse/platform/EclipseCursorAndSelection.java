@@ -1,9 +1,7 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,6 +13,8 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IPositionUpdater;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
@@ -57,6 +57,8 @@ import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.utils.CaretType;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.OffsetHistory;
+import net.sourceforge.vrapper.utils.OffsetTracker;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.Space;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
@@ -84,9 +86,11 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     private boolean selectionInProgress;
     private final SelectionChangeListener selectionChangeListener;
     private final StickyColumnUpdater caretListener;
-    private final Map<String, org.eclipse.jface.text.Position> marks;
-    private final List<org.eclipse.jface.text.Position> changeList;
-    private int changeListIndex;
+    private final OffsetTracker markOffsets;
+    private final IPositionUpdater markUpdater;
+    private final Map<String, OffsetTracker.Entry> marks;
+    private final OffsetHistory changeList;
+    private final OffsetHistory jumpList;
     private final Configuration configuration;
     private final EclipseTextContent textContent;
     private int averageCharWidth;
@@ -115,8 +119,11 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         converter = OffsetConverter.create(textViewer);
         selectionChangeListener = new SelectionChangeListener();
         caretListener = new StickyColumnUpdater();
-        marks = new HashMap<String, org.eclipse.jface.text.Position>();
-        changeList = new ArrayList<org.eclipse.jface.text.Position>();
+        markOffsets = new OffsetTracker();
+        markUpdater = new MarkUpdater();
+        marks = new HashMap<String, OffsetTracker.Entry>();
+        changeList = new OffsetHistory(markOffsets, 100);
+        jumpList = new OffsetHistory(markOffsets, 100);
         visualCaretPainter = new VisualCaretPainter();
     }
 
@@ -126,6 +133,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         textViewer.getTextWidget().addPaintListener(visualCaretPainter);
         textViewer.getSelectionProvider().addSelectionChangedListener(selectionChangeListener);
         textViewer.getDocument().addPositionCategory(POSITION_CATEGORY_NAME);
+        textViewer.getDocument().addPositionUpdater(markUpdater);
     }
 
     public void uninstallHooks() {
@@ -134,6 +142,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             textViewer.getTextWidget().removeCaretListener(caretListener);
             textViewer.getTextWidget().removePaintListener(visualCaretPainter);
             textViewer.getSelectionProvider().removeSelectionChangedListener(selectionChangeListener);
+            textViewer.getDocument().removePositionUpdater(markUpdater);
             textViewer.getDocument().removePositionCategory(POSITION_CATEGORY_NAME);
         } catch (RuntimeException e) {
             throw new VrapperPlatformException("Failed to unhook selection listeners", e);
@@ -562,6 +571,20 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
 
     }
 
+    /**
+     * Moves the marks, the change list and the jump list along with document changes. They are
+     * not added to the document as positions, so the document doesn't need to walk them.
+     */
+    private final class MarkUpdater implements IPositionUpdater {
+
+        @Override
+        public void update(final DocumentEvent event) {
+            final String text = event.getText();
+            markOffsets.update(event.getOffset(), event.getLength(), text == null ? 0 : text.length());
+        }
+
+    }
+
     private final class VisualCaretPainter implements PaintListener {
 
         @Override
@@ -602,6 +625,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
 
     @Override
     public void updateLastPosition() {
+        jumpList.addJump(textContent.getModelContent(), getPosition().getModelOffset());
         INavigationHistory history = editorInfo.getCurrent().getSite().getPage().getNavigationHistory();
         INavigationLocation currentLocation = history.getCurrentLocation();
         if (currentLocation != null) {
@@ -620,6 +644,9 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     public Set<String> getAllMarks() {
     	//the easy part, get all local marks
     	Set<String> allMarks = new HashSet<String>(marks.keySet());
+    	if (changeList.size() > 0) {
+    	    allMarks.add(LAST_EDIT_MARK);
+    	}
 
     	//now iterate every open editor and look for global marks
         final WorkbenchPage page = (WorkbenchPage) PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
@@ -650,31 +677,26 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             setGlobalMark(id, position);
             return;
         }
-        final org.eclipse.jface.text.Position p = new org.eclipse.jface.text.Position(position.getModelOffset());
-        try {
-            //add listener so Position automatically updates as the document changes
-            textViewer.getDocument().addPosition(p);
-        } catch (final BadLocationException e) {
-            throw new VrapperPlatformException("Failed to set mark for " + position, e);
+        final int offset = position.getModelOffset();
+        if (offset < 0 || offset > textViewer.getDocument().getLength()) {
+            throw new VrapperPlatformException("Failed to set mark for " + position);
         }
 
         if (id == LAST_EDIT_MARK) {
-        	changeList.add(p);
-        	if(changeList.size() > 100) {
-        		//remove (and stop tracking changes for) old positions
-        		textViewer.getDocument().removePosition( changeList.remove(0) );
-        	}
-        	//new edit, restart index position
-        	changeListIndex = changeList.size();
+        	//the newest entry of the change list is the '.' mark,
+        	//adding a new edit restarts the index position
+        	changeList.add(offset);
+        	return;
         }
-        else if (marks.containsKey(id)) {
+        final OffsetTracker.Entry old = marks.get(id);
+        if (old != null) {
         	//we're about to overwrite an old position
         	//no need to track its changes anymore
-        	textViewer.getDocument().removePosition( marks.get(id) );
+        	markOffsets.remove(old);
         }
 
         //update mark position
-        marks.put(id, p);
+        marks.put(id, markOffsets.add(offset));
     }
 
     public void deleteMark(String id) {
@@ -682,9 +704,10 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             deleteGlobalMark(id);
             return;
         }
-        if (marks.containsKey(id)) {
-            textViewer.getDocument().removePosition(marks.get(id));
-            marks.remove(id);
+        if (id.equals(LAST_EDIT_MARK)) {
+            changeList.clear();
+        } else if (marks.containsKey(id)) {
+            markOffsets.remove(marks.remove(id));
         }
     }
 
@@ -714,18 +737,21 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     		id = LAST_JUMP_MARK;
     	}
 
-        final org.eclipse.jface.text.Position p = marks.get(id);
-        if (p == null || p.isDeleted) {
+        final int offset;
+        if (id.equals(LAST_EDIT_MARK)) {
+            offset = changeList.getLast();
+        } else {
+            final OffsetTracker.Entry entry = marks.get(id);
+            offset = entry == null ? -1 : markOffsets.getOffset(entry);
+        }
+        if (offset < 0) {
         	if(id.equals(LAST_CHANGE_END)) {
         		//if a change was deleted, '[ and '] are the same position
-        		//(for whatever reason, '[ has p.isDeleted = false)
+        		//('[ is at the start of the deleted text, which survives)
         		return getMark(LAST_CHANGE_START);
         	}
-        	//leave deleted entries in marks Map
-        	//in case an 'undo' brings it back
             return null;
         }
-        final int offset = p.getOffset();
         return newPositionForModelOffset(offset);
     }
 
@@ -861,13 +887,13 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
 
     @Override
     public Position getNextChangeLocation(final int count) {
-    	final int index = changeListIndex + count;
+    	final int index = changeList.getIndex() + count;
     	return getChangeLocation(index);
     }
 
     @Override
     public Position getPrevChangeLocation(final int count) {
-    	final int index = changeListIndex - count;
+    	final int index = changeList.getIndex() - count;
     	return getChangeLocation(index);
     }
 
@@ -883,21 +909,30 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     		index = changeList.size() -1;
     	}
 
-    	final org.eclipse.jface.text.Position p = changeList.get(index);
-    	if(p == null || p.isDeleted) {
+    	final int offset = changeList.get(index);
+    	if(offset < 0) { //deleted
     		changeList.remove(index);
-    		changeListIndex = changeList.size();
-    		if(p != null) { //deleted
-    			textViewer.getDocument().removePosition(p);
-    		}
+    		changeList.setIndex(changeList.size());
     		return null;
     	}
     	else {
-    		changeListIndex = index; //prepare for next invocation
-    		return newPositionForModelOffset(p.getOffset());
+    		changeList.setIndex(index); //prepare for next invocation
+    		return newPositionForModelOffset(offset);
     	}
     }
 
+    @Override
+    public Position getNextJumpLocation(final int count) {
+        final int offset = jumpList.jumpForward(count);
+        return offset < 0 ? null : newPositionForModelOffset(offset);
+    }
+
+    @Override
+    public Position getPrevJumpLocation(final int count) {
+        final int offset = jumpList.jumpBack(textContent.getModelContent(), count, getPosition().getModelOffset());
+        return offset < 0 ? null : newPositionForModelOffset(offset);
+    }
+
     @Override
     public int getVisualOffset(Position position) {
         final int offset = position.getViewOffset();
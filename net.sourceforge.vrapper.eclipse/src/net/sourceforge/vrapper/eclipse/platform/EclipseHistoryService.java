@@ -1,25 +1,104 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.UndoTree;
+import net.sourceforge.vrapper.utils.UndoTree.Delta;
+import net.sourceforge.vrapper.utils.UndoTree.Move;
+import net.sourceforge.vrapper.utils.UndoTree.State;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.VrapperEventAdapter;
+import net.sourceforge.vrapper.vim.modes.EditorMode;
 
+import org.eclipse.core.commands.operations.IOperationHistory;
+import org.eclipse.core.commands.operations.IOperationHistoryListener;
 import org.eclipse.core.commands.operations.IUndoContext;
+import org.eclipse.core.commands.operations.IUndoableOperation;
+import org.eclipse.core.commands.operations.OperationHistoryEvent;
+import org.eclipse.core.commands.operations.OperationHistoryFactory;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.IUndoManager;
 import org.eclipse.jface.text.IUndoManagerExtension;
 import org.eclipse.swt.custom.StyledText;
+import org.eclipse.text.undo.DocumentUndoManagerRegistry;
+import org.eclipse.text.undo.IDocumentUndoManager;
+
+/**
+ * History service keeping Vim's undo tree on top of the editor's own undo manager.
+ * <p>
+ * Every document change is recorded in an {@link UndoTree}, grouped the same way as the compound
+ * changes of the delegate. For each state we remember the operation on top of the editor's undo
+ * stack, so undo, redo and time travel to a state on that stack are done by the delegate: Eclipse's
+ * undo history and dirty state stay right. Only states on branches the editor forgot about are
+ * reached by applying the edits from the tree, as a single new change. Should the document not
+ * match the tree, we fall back to the delegate.
+ */
+public class EclipseHistoryService extends VrapperEventAdapter implements IUndoManager,
+        IUndoManagerExtension, HistoryService {
 
-public class EclipseHistoryService implements IUndoManager, IUndoManagerExtension, HistoryService {
+    /** Number of characters of undo information kept per KB of 'undomemory'. */
+    private static final int CHARS_PER_KB = 512;
 
     private final IUndoManager delegate;
     private boolean locked;
     private String lockName = "";
+    private final ITextViewer textViewer;
     private final StyledText textWidget;
+    private final TextContent modelContent;
+    private final Configuration configuration;
+    private final UndoTree undoTree = new UndoTree();
+    private final IOperationHistory operationHistory = OperationHistoryFactory.getOperationHistory();
+    private final Listener listener = new Listener();
+    private IDocument document;
+    private boolean listening;
 
-    public EclipseHistoryService(final StyledText textWidget, final IUndoManager delegate) {
-        this.textWidget = textWidget;
+    /** Operation on top of the editor's undo stack in a state. */
+    private final Map<State, IUndoableOperation> topOperations =
+            new WeakHashMap<State, IUndoableOperation>();
+    /**
+     * States in which the editor's undo stack was empty, with the first operation done after
+     * them. They are reached by undoing everything while that operation is still the oldest one.
+     */
+    private final Map<State, IUndoableOperation> bottomOperations =
+            new WeakHashMap<State, IUndoableOperation>();
+
+    /** Set while we change the document ourselves or the delegate undoes or redoes. */
+    private boolean applying;
+    /** Set while the delegate undoes or redoes on behalf of someone else, e.g. Ctrl+Z. */
+    private boolean delegateMoving;
+    /** Whether the open change was started by a command rather than by a compound change. */
+    private boolean commandChange;
+    private boolean inCommand;
+    private int caretBeforeChange;
+    private String removedText;
+
+    public EclipseHistoryService(final ITextViewer textViewer, final IUndoManager delegate,
+            final TextContent modelContent, final Configuration configuration) {
+        this.textViewer = textViewer;
+        this.textWidget = textViewer.getTextWidget();
         this.delegate = delegate;
+        this.modelContent = modelContent;
+        this.configuration = configuration;
+        addListeners();
+        resetTree();
     }
-    
+
     /**
      * Accept any arbitrary string as a lock name.  This is to ensure
      * that a parent class can lock and unlock without a child class
@@ -32,7 +111,7 @@ public class EclipseHistoryService implements IUndoManager, IUndoManagerExtensio
     		lockName = name;
     	}
     }
-    
+
     @Override
     public void unlock(final String name) {
     	if(locked && lockName.equals(name)) {
@@ -55,6 +134,8 @@ public class EclipseHistoryService implements IUndoManager, IUndoManagerExtensio
     public void beginCompoundChange() {
         if (!locked) {
             delegate.beginCompoundChange();
+            undoTree.beginChange(getCaretOffset());
+            commandChange = false;
         }
     }
 
@@ -62,44 +143,117 @@ public class EclipseHistoryService implements IUndoManager, IUndoManagerExtensio
     public void endCompoundChange() {
         if (!locked) {
             delegate.endCompoundChange();
+            endChange();
+        }
+    }
+
+    @Override
+    public void commandAboutToExecute(EditorMode mode) {
+        inCommand = true;
+    }
+
+    @Override
+    public void commandExecuted(EditorMode mode) {
+        inCommand = false;
+        if (commandChange) {
+            endChange();
         }
     }
 
     @Override
     public void connect(final ITextViewer arg0) {
         delegate.connect(arg0);
+        addListeners();
     }
 
     @Override
     public void disconnect() {
         delegate.disconnect();
+        removeListeners();
     }
 
     @Override
     public void undo() {
-        delegate.undo();
-        deselectAll();
+        undo(1);
     }
 
     @Override
     public void redo() {
-        delegate.redo();
+        redo(1);
+    }
+
+    @Override
+    public void undo(int count) {
+        if ( ! moveTo(undoTree.undoTarget(count))) {
+            applying = true;
+            try {
+                for (int i = 0; i < count; i++) {
+                    delegate.undo();
+                }
+            } finally {
+                applying = false;
+            }
+            resetTree();
+        }
+        deselectAll();
+    }
+
+    @Override
+    public void redo(int count) {
+        if ( ! moveTo(undoTree.redoTarget(count))) {
+            applying = true;
+            try {
+                for (int i = 0; i < count; i++) {
+                    delegate.redo();
+                }
+            } finally {
+                applying = false;
+            }
+            resetTree();
+        }
         deselectAll();
     }
 
+    @Override
+    public void travel(int count) {
+        if ( ! moveTo(undoTree.chronologicalTarget(count))) {
+            resetTree();
+        }
+    }
+
+    @Override
+    public void travelInTime(long millis) {
+        if ( ! moveTo(undoTree.timeTarget(millis))) {
+            resetTree();
+        }
+    }
+
+    @Override
+    public boolean goToChange(int changeNumber) {
+        State target = undoTree.sequenceTarget(changeNumber);
+        if (target == null) {
+            return false;
+        }
+        if ( ! moveTo(target)) {
+            resetTree();
+        }
+        return true;
+    }
+
     @Override
     public boolean undoable() {
-        return delegate.undoable();
+        return undoTree.getCurrent() != undoTree.getRoot();
     }
 
     @Override
     public boolean redoable() {
-        return delegate.redoable();
+        return undoTree.redoTarget(1) != undoTree.getCurrent();
     }
 
     @Override
     public void reset() {
         delegate.reset();
+        resetTree();
     }
 
     @Override
@@ -122,4 +276,340 @@ public class EclipseHistoryService implements IUndoManager, IUndoManagerExtensio
 		return null;
 	}
 
+    private void addListeners() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+        document = textViewer.getDocument();
+        if (document != null) {
+            document.addDocumentListener(listener);
+        }
+        textViewer.addTextInputListener(listener);
+        operationHistory.addOperationHistoryListener(listener);
+    }
+
+    private void removeListeners() {
+        if ( ! listening) {
+            return;
+        }
+        listening = false;
+        if (document != null) {
+            document.removeDocumentListener(listener);
+            document = null;
+        }
+        textViewer.removeTextInputListener(listener);
+        operationHistory.removeOperationHistoryListener(listener);
+    }
+
+    /** Forgets all changes, the current text becomes the original one. */
+    private void resetTree() {
+        undoTree.reset();
+        topOperations.clear();
+        bottomOperations.clear();
+        commandChange = false;
+        remember(undoTree.getCurrent());
+    }
+
+    /**
+     * Moves to the given state, through the delegate if possible.
+     * @return <code>false</code> if the document doesn't match the undo tree.
+     */
+    private boolean moveTo(State target) {
+        endChange();
+        if (target == undoTree.getCurrent()) {
+            return true;
+        }
+        Move move;
+        try {
+            move = undoTree.moveTo(target, modelContent);
+        } catch (RuntimeException e) {
+            VrapperLog.error("Undo tree out of sync with document", e);
+            return false;
+        }
+        if (move == null) {
+            VrapperLog.info("Undo tree out of sync with document");
+            return false;
+        }
+        if ( ! moveWithDelegate(target) && ! applyEdits(move)) {
+            return false;
+        }
+        int caretOffset = configuration.get(Options.UNDO_MOVES_CURSOR)
+                ? move.getCaretOffset() : move.getChangeOffset();
+        caretOffset = Math.min(caretOffset, textViewer.getDocument().getLength());
+        textViewer.setSelectedRange(caretOffset, 0);
+        textViewer.revealRange(caretOffset, 0);
+        return true;
+    }
+
+    /**
+     * Reaches the given state by undoing or redoing operations of the delegate.
+     * @return <code>false</code> if the state isn't on the delegate's undo or redo stack.
+     */
+    private boolean moveWithDelegate(State target) {
+        IUndoContext context = getUndoContext();
+        if (context == null) {
+            return false;
+        }
+        IUndoableOperation top = topOperations.get(target);
+        boolean undo;
+        if (top != null) {
+            if (contains(operationHistory.getUndoHistory(context), top)) {
+                undo = true;
+            } else if (contains(operationHistory.getRedoHistory(context), top)) {
+                undo = false;
+            } else {
+                return false;
+            }
+        } else {
+            IUndoableOperation bottom = bottomOperations.get(target);
+            IUndoableOperation[] undoHistory = operationHistory.getUndoHistory(context);
+            if (bottom == null || undoHistory.length == 0 || undoHistory[0] != bottom) {
+                return false;
+            }
+            undo = true;
+        }
+        applying = true;
+        textWidget.setRedraw(false);
+        try {
+            IUndoableOperation previous = null;
+            IUndoableOperation current = operationHistory.getUndoOperation(context);
+            while (current != top && current != previous) {
+                if (undo) {
+                    delegate.undo();
+                } else {
+                    delegate.redo();
+                }
+                previous = current;
+                current = operationHistory.getUndoOperation(context);
+            }
+        } finally {
+            textWidget.setRedraw(true);
+            applying = false;
+        }
+        if (operationHistory.getUndoOperation(context) == top) {
+            undoTree.jumpTo(target);
+        } else {
+            // The delegate gave up half way.
+            syncWithDelegate(context);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the edits of the tree as one compound change.
+     * @return <code>false</code> if the document doesn't match the undo tree.
+     */
+    private boolean applyEdits(Move move) {
+        IDocument document = textViewer.getDocument();
+        IUndoContext context = getUndoContext();
+        IUndoableOperation before = context == null ? null
+                : operationHistory.getUndoOperation(context);
+        DocumentRewriteSession session = null;
+        if (move.getEdits().size() > 1 && document instanceof IDocumentExtension4) {
+            session = ((IDocumentExtension4) document).startRewriteSession(
+                    DocumentRewriteSessionType.SEQUENTIAL);
+        }
+        boolean applied = false;
+        applying = true;
+        delegate.beginCompoundChange();
+        try {
+            move.apply(modelContent);
+            applied = true;
+        } catch (RuntimeException e) {
+            VrapperLog.error("Undo tree out of sync with document", e);
+        } finally {
+            delegate.endCompoundChange();
+            if ( ! applied && context != null
+                    && operationHistory.getUndoOperation(context) != before) {
+                // Revert the edits which were applied before the mismatch.
+                delegate.undo();
+            }
+            applying = false;
+            if (session != null) {
+                ((IDocumentExtension4) document).stopRewriteSession(session);
+            }
+        }
+        if (applied) {
+            remember(move.getTarget());
+        }
+        return applied;
+    }
+
+    /** Makes the state which matches the delegate's undo stack the current one. */
+    private void syncWithDelegate(IUndoContext context) {
+        IUndoableOperation top = operationHistory.getUndoOperation(context);
+        Map<State, IUndoableOperation> operations = topOperations;
+        if (top == null) {
+            top = operationHistory.getRedoOperation(context);
+            operations = bottomOperations;
+        }
+        for (Entry<State, IUndoableOperation> entry : operations.entrySet()) {
+            if (top != null && entry.getValue() == top && undoTree.contains(entry.getKey())) {
+                undoTree.jumpTo(entry.getKey());
+                return;
+            }
+        }
+        resetTree();
+    }
+
+    private void endChange() {
+        if (undoTree.isChangeOpen()) {
+            long memory = (long) configuration.get(Options.UNDO_MEMORY) * CHARS_PER_KB;
+            undoTree.setLimits(configuration.get(Options.UNDO_LEVELS), memory);
+        }
+        State previous = undoTree.getCurrent();
+        undoTree.endChange();
+        commandChange = false;
+        if (undoTree.getCurrent() != previous) {
+            // Make the delegate finish its operation too, so that it covers the whole change.
+            IDocumentUndoManager documentUndoManager = document == null ? null
+                    : DocumentUndoManagerRegistry.getDocumentUndoManager(document);
+            if (documentUndoManager != null) {
+                documentUndoManager.commit();
+            }
+            remember(undoTree.getCurrent());
+        }
+    }
+
+    /** Remembers the delegate's undo stack for the current state, which was just reached. */
+    private void remember(State state) {
+        IUndoContext context = getUndoContext();
+        if (context == null) {
+            return;
+        }
+        IUndoableOperation top = operationHistory.getUndoOperation(context);
+        State parent = state.getParent();
+        if (top == null) {
+            bottomOperations.put(state, null);
+            return;
+        }
+        if (parent != null && top == topOperations.get(parent)) {
+            // The delegate merged this change into the previous operation.
+            topOperations.remove(parent);
+        }
+        topOperations.put(state, top);
+        if (parent != null && bottomOperations.containsKey(parent)
+                && bottomOperations.get(parent) == null) {
+            bottomOperations.put(parent, operationHistory.getUndoHistory(context)[0]);
+        }
+    }
+
+    /** Forgets about an operation which the delegate dropped. */
+    private void forget(IUndoableOperation operation) {
+        for (Map<State, IUndoableOperation> operations : Arrays.asList(topOperations, bottomOperations)) {
+            Iterator<IUndoableOperation> it = operations.values().iterator();
+            while (it.hasNext()) {
+                if (it.next() == operation) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static boolean contains(IUndoableOperation[] operations, IUndoableOperation operation) {
+        for (IUndoableOperation candidate : operations) {
+            if (candidate == operation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getCaretOffset() {
+        return textViewer.getSelectedRange().x;
+    }
+
+    private void record(Delta delta) {
+        if ( ! undoTree.isChangeOpen()) {
+            // Not inside a compound change: group per command, or merge adjacent typing.
+            undoTree.beginChange(caretBeforeChange);
+            commandChange = inCommand;
+        } else if ( ! commandChange && ! inCommand && ! locked
+                && ! undoTree.touchesLastDelta(delta)) {
+            // Typing outside of Vrapper's control jumped elsewhere, start a new change.
+            endChange();
+            undoTree.beginChange(caretBeforeChange);
+        }
+        undoTree.record(delta);
+    }
+
+    private class Listener implements IDocumentListener, ITextInputListener,
+            IOperationHistoryListener {
+
+        @Override
+        public void documentAboutToBeChanged(DocumentEvent event) {
+            if (applying || delegateMoving) {
+                return;
+            }
+            // Only the replaced range, the event doesn't carry the removed text.
+            try {
+                removedText = event.getDocument().get(event.getOffset(), event.getLength());
+            } catch (BadLocationException e) {
+                removedText = null;
+            }
+            caretBeforeChange = getCaretOffset();
+        }
+
+        @Override
+        public void documentChanged(DocumentEvent event) {
+            if (applying || delegateMoving) {
+                return;
+            }
+            if (removedText == null) {
+                resetTree();
+                return;
+            }
+            String inserted = event.getText() == null ? "" : event.getText();
+            record(new Delta(event.getOffset(), removedText, inserted));
+            removedText = null;
+        }
+
+        @Override
+        public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+            if (oldInput != null) {
+                oldInput.removeDocumentListener(this);
+            }
+            document = null;
+        }
+
+        @Override
+        public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+            document = newInput;
+            if (newInput != null) {
+                newInput.addDocumentListener(this);
+            }
+            resetTree();
+        }
+
+        @Override
+        public void historyNotification(OperationHistoryEvent event) {
+            IUndoContext context = getUndoContext();
+            if (applying || context == null || ! event.getOperation().hasContext(context)) {
+                return;
+            }
+            switch (event.getEventType()) {
+            case OperationHistoryEvent.ABOUT_TO_UNDO:
+            case OperationHistoryEvent.ABOUT_TO_REDO:
+                // Undo or redo outside of Vrapper, e.g. from the Edit menu.
+                endChange();
+                delegateMoving = true;
+                break;
+            case OperationHistoryEvent.UNDONE:
+            case OperationHistoryEvent.REDONE:
+            case OperationHistoryEvent.OPERATION_NOT_OK:
+                if (delegateMoving) {
+                    delegateMoving = false;
+                    syncWithDelegate(context);
+                }
+                break;
+            case OperationHistoryEvent.OPERATION_REMOVED:
+                forget(event.getOperation());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
 }
@@ -0,0 +1,142 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.Locale;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.PartitionService;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPartitioningException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension3;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.ITypedRegion;
+
+/**
+ * Reads the partitions of the document through {@link IDocumentExtension3}. The language's own
+ * partitioning is used if the document has one besides the default partitioning.
+ * <p>
+ * Partitions whose content type names a comment, string, character or documentation count as
+ * comments and literals, everything else is code. All partitions are read at once and kept until
+ * the document changes, so that scans over many characters only do a binary search each.
+ */
+public class EclipsePartitionService implements PartitionService {
+
+    private static final String[] NON_CODE_TYPES = { "comment", "string", "char", "doc", "literal" };
+
+    private final ITextViewer textViewer;
+
+    private IDocument cachedDocument;
+    private long cachedStamp;
+    /** Offsets of the partitions, ascending, and whether they are code. */
+    private int[] starts;
+    private int[] ends;
+    private boolean[] code;
+
+    public EclipsePartitionService(ITextViewer textViewer) {
+        this.textViewer = textViewer;
+    }
+
+    @Override
+    public boolean isCode(int offset) {
+        int index = findPartition(offset);
+        return index < 0 || code[index];
+    }
+
+    @Override
+    public int getPartitionStart(int offset) {
+        int index = findPartition(offset);
+        return index < 0 ? offset : starts[index];
+    }
+
+    @Override
+    public int getPartitionEnd(int offset) {
+        int index = findPartition(offset);
+        return index < 0 ? offset + 1 : ends[index];
+    }
+
+    /** @return index of the partition containing the offset, <code>-1</code> if not known. */
+    private int findPartition(int offset) {
+        if ( ! update()) {
+            return -1;
+        }
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) {
+                low = mid + 1;
+            } else if (starts[mid] > offset) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private boolean update() {
+        IDocument document = textViewer.getDocument();
+        if ( ! (document instanceof IDocumentExtension3)) {
+            return false;
+        }
+        long stamp = document instanceof IDocumentExtension4
+                ? ((IDocumentExtension4) document).getModificationStamp()
+                : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        if (starts != null && cachedDocument == document && cachedStamp == stamp
+                && stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+            return true;
+        }
+        IDocumentExtension3 partitionedDocument = (IDocumentExtension3) document;
+        try {
+            ITypedRegion[] regions = partitionedDocument.computePartitioning(
+                    getPartitioning(partitionedDocument), 0, document.getLength(), false);
+            starts = new int[regions.length];
+            ends = new int[regions.length];
+            code = new boolean[regions.length];
+            for (int i = 0; i < regions.length; i++) {
+                starts[i] = regions[i].getOffset();
+                ends[i] = regions[i].getOffset() + regions[i].getLength();
+                code[i] = isCodeType(regions[i].getType());
+            }
+        } catch (BadLocationException e) {
+            VrapperLog.error("Failed to read document partitions", e);
+            starts = null;
+            return false;
+        } catch (BadPartitioningException e) {
+            VrapperLog.error("Failed to read document partitions", e);
+            starts = null;
+            return false;
+        }
+        cachedDocument = document;
+        cachedStamp = stamp;
+        return true;
+    }
+
+    private static String getPartitioning(IDocumentExtension3 document) {
+        String[] partitionings = document.getPartitionings();
+        if (partitionings != null) {
+            for (String partitioning : partitionings) {
+                if ( ! IDocumentExtension3.DEFAULT_PARTITIONING.equals(partitioning)) {
+                    return partitioning;
+                }
+            }
+        }
+        return IDocumentExtension3.DEFAULT_PARTITIONING;
+    }
+
+    private static boolean isCodeType(String contentType) {
+        if (IDocument.DEFAULT_CONTENT_TYPE.equals(contentType)) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        for (String nonCode : NON_CODE_TYPES) {
+            if (type.contains(nonCode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -80,17 +80,21 @@ public class EclipsePlatform implements Platform {
         cursorAndSelection = new EclipseCursorAndSelection(vrapperModeRecorder, localConfiguration, partInfo, sourceViewer, textContent);
         fileService = new EclipseFileService(abstractTextEditor);
         viewportService = new EclipseViewportService(sourceViewer);
-        serviceProvider = new EclipseServiceProvider(abstractTextEditor);
+        serviceProvider = new EclipseServiceProvider(abstractTextEditor,
+                new EclipseCodeStructureService(abstractTextEditor, sourceViewer,
+                        textContent.getModelContent()),
+                new EclipsePartitionService(sourceViewer));
         userInterfaceService = new EclipseUserInterfaceService(
                 abstractTextEditor, sourceViewer);
         keyMapProvider = new DefaultKeyMapProvider();
         highlightingService = new EclipseHighlightingService(abstractTextEditor, cursorAndSelection);
-        searchAndReplaceService = new EclipseSearchAndReplaceService(sourceViewer, localConfiguration, highlightingService);
+        searchAndReplaceService = new EclipseSearchAndReplaceService(sourceViewer,
+                textContent.getModelContent(), localConfiguration, highlightingService);
         if (sourceViewer instanceof ITextViewerExtension6) {
             final IUndoManager delegate = ((ITextViewerExtension6) sourceViewer)
                     .getUndoManager();
-            final EclipseHistoryService manager = new EclipseHistoryService(
-                    sourceViewer.getTextWidget(), delegate);
+            final EclipseHistoryService manager = new EclipseHistoryService(sourceViewer,
+                    delegate, textContent.getModelContent(), localConfiguration);
             sourceViewer.setUndoManager(manager);
             this.historyService = manager;
         } else {
@@ -98,6 +102,11 @@ public class EclipsePlatform implements Platform {
         }
     }
 
+    /** Removes the listeners this platform added to the editor, which is being closed. */
+    public void dispose() {
+        textContent.dispose();
+    }
+
     public VrapperModeRecorder getModeRecorder() {
         return vrapperModeRecorder;
     }
@@ -3,28 +3,25 @@ package net.sourceforge.vrapper.eclipse.platform;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.MatchResult;
 import java.util.regex.PatternSyntaxException;
 
-import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.FindReplaceDocumentAdapter;
-import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
-import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextUtilities;
 
-import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.HighlightingService;
 import net.sourceforge.vrapper.platform.SearchAndReplaceService;
+import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.RegexSearch;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SearchResult;
 import net.sourceforge.vrapper.utils.Space;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
-import net.sourceforge.vrapper.utils.StringUtils;
 import net.sourceforge.vrapper.utils.TextRange;
-import net.sourceforge.vrapper.vim.Options;
 
 public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
 
@@ -36,10 +33,12 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
     private List<Object> annotations;
     private Object incSearchAnnotation;
     private ITextViewer textViewer;
+    private final TextContent content;
 
-    public EclipseSearchAndReplaceService(ITextViewer textViewer, final Configuration configuration,
-            HighlightingService highlightingService) {
+    public EclipseSearchAndReplaceService(ITextViewer textViewer, TextContent content,
+            final Configuration configuration, HighlightingService highlightingService) {
         this.textViewer = textViewer;
+        this.content = content;
         this.highlightingService = highlightingService;
         this.configuration = configuration;
         this.annotations = Collections.emptyList();
@@ -47,123 +46,47 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
 
     public SearchResult find(Search search, Position start) {
         try {
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-            IRegion result = find(search, start.getModelOffset(), adapter);
-            Position resultPosition = result != null ? start.setModelOffset(result.getOffset()) : null;
-            Position endPosition = result != null ? start.setModelOffset(result.getOffset()+result.getLength()) : null;
+            MatchResult result = RegexSearch.find(search, getText(), start.getModelOffset());
+            Position resultPosition = result != null ? start.setModelOffset(result.start()) : null;
+            Position endPosition = result != null ? start.setModelOffset(result.end()) : null;
             return new SearchResult(resultPosition, endPosition);
-        } catch (BadLocationException e) {
-            return new SearchResult(null, null);
         } catch (PatternSyntaxException e) {
             throw new VrapperPlatformException("Regex uses bad format: " + e.getMessage(), e);
         }
     }
-    
+
     public int replace(LineInformation line, String toFind, String replace, String flags) {
-        int start = line.getBeginOffset();
-        int end = line.getEndOffset();
-        final boolean replaceAll = flags.contains("g");
-        final boolean reportMatches = flags.contains("n");
-        final boolean caseSensitive = isCaseSensitive(toFind, flags);
-
-        int numReplaces = 0;
-        toFind = convertRegexSearch(toFind);
-        IRegion result;
-        FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-        try {
-            result = adapter.find(start, toFind, true, caseSensitive, false, true);
-            if (result != null && result.getOffset() < end) {
-                numReplaces++;
-                if ( ! reportMatches) {
-                    IRegion replacedresult = adapter.replace(replace, true);
-                    // Fix end position when line gets longer or shorter
-                    end = end + (replacedresult.getLength() - result.getLength());
-                    result = replacedresult;
-                }
-                result = adapter.find(result.getOffset() + result.getLength(),
-                        toFind, true, caseSensitive, false, true);
-            }
-            while (replaceAll && result != null && result.getOffset() < end) {
-                numReplaces++;
-                if ( ! reportMatches) {
-                    IRegion replacedresult = adapter.replace(replace, true);
-                    end = end + (replacedresult.getLength() - result.getLength());
-                    result = replacedresult;
-                }
-                result = adapter.find(result.getOffset() + result.getLength(),
-                        toFind, true, caseSensitive, false, true);
-            }
-        } catch (BadLocationException e) {
-            VrapperLog.error("Failed to replace for " + line, e);
-        }
-        
-        return numReplaces;
+        return RegexSearch.replaceInLine(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), line,
+                replace, flags.contains("g"), flags.contains("n"), getNewLine());
     }
 
     public boolean isCaseSensitive(String toFind, String flags) {
-        boolean caseSensitive = !configuration.get(Options.IGNORE_CASE)
-            || (configuration.get(Options.SMART_CASE)
-                && StringUtils.containsUppercase(toFind));
-        if (flags.contains("i"))
-            caseSensitive = false;
-        if (flags.contains("I"))
-            caseSensitive = true;
-        return caseSensitive;
+        return RegexSearch.isCaseSensitive(configuration, toFind, flags);
     }
-    
+
     public boolean substitute(int start, String toFind, String flags, String toReplace) {
-        boolean success = false;
-        try {
-            toFind = convertRegexSearch(toFind);
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-            IRegion result = adapter.find(start, toFind, true, isCaseSensitive(toFind, flags), false, true);
-            if(result != null) {
-                adapter.replace(toReplace, true);
-                success = true;
-            }
-        } catch (BadLocationException e) {
-            VrapperLog.error("Failed to substitute starting from M" + start, e);
-        }
-        return success;
+        return RegexSearch.substitute(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), start,
+                toReplace, getNewLine());
     }
 
-    private IRegion find(Search search, int begin, FindReplaceDocumentAdapter adapter) throws BadLocationException {
-        if(search.isRegExSearch()) {
-            search = convertRegexSearch(search);
-        }
-        IRegion result;
-        try {
-            result = adapter.find(
-                        begin, search.getKeyword(),
-                        !search.isBackward(), search.isCaseSensitive(),
-                        search.isWholeWord(), search.isRegExSearch());
-        } catch (BadLocationException e) {
-            throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
-                    + "offset" + begin + ", offset is invalid.", e);
-        } catch (PatternSyntaxException e) {
-            throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
-                    + "offset" + begin + ", search pattern is invalid.", e);
-        }
-        return result;
+    public int substituteAll(int start, int end, String toFind, String flags, String toReplace) {
+        return RegexSearch.substituteAll(content,
+                RegexSearch.compile(toFind, isCaseSensitive(toFind, flags)), getText(), start, end,
+                toReplace, flags.contains("g"), getNewLine());
+    }
+
+    private String getNewLine() {
+        return TextUtilities.getDefaultLineDelimiter(textViewer.getDocument());
     }
-    
+
     /**
-     * We're using Eclipse's (Java's) Regex engine for search/replace. However,
-     * a lot of people are used to Vim's syntax for regex. So, check for Vim
-     * regex syntax and map to Eclipse's (Java's) syntax where possible.
-     * \< and \> =  \b   = word boundary
-     * (Feature pending... add support for 'magic' and 'very magic')
+     * @return the text of the document. It is read in place, so replacing line by line (e.g.
+     *  <tt>:%s</tt>) doesn't copy the whole document for each line.
      */
-    private Search convertRegexSearch(Search search) {
-        String keyword = search.getKeyword();
-        keyword = convertRegexSearch(keyword);
-        return new Search(keyword, search.isBackward(), search.isWholeWord(),
-            search.isCaseSensitive(), search.getSearchOffset(), search.isRegExSearch());
-    }
-    private String convertRegexSearch(String keyword) {
-        //in Vim, '\<' and '\>' are word boundaries
-        //in Eclipse, '\b' is word boundaries
-        return keyword.replaceAll("\\\\<|\\\\>", "\\\\b");
+    private CharSequence getText() {
+        return new DocumentCharSequence(textViewer.getDocument());
     }
 
     public void removeHighlighting() {
@@ -183,23 +106,25 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
         if (search.isBackward()) {
             search = search.reverse();
         }
-        IRegion result = new Region(0, 0);
         annotations = new ArrayList<Object>();
         lastHighlightedSearch = search;
+        List<TextRange> rangesToHL = new ArrayList<TextRange>();
+        TextViewerPosition temp = new TextViewerPosition(textViewer, Space.MODEL, 0);
         try {
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-            List<TextRange> rangesToHL = new ArrayList<TextRange>();
-            TextViewerPosition temp = new TextViewerPosition(textViewer, Space.MODEL, 0);
-            while ((result = find(search, result.getOffset()+result.getLength(), adapter)) != null) {
-                Position start = temp.setModelOffset(result.getOffset());
-                Position end = temp.setModelOffset(result.getOffset() + result.getLength());
-                rangesToHL.add(StartEndTextRange.exclusive(start, end));
+            CharSequence text = getText();
+            for (MatchResult result : RegexSearch.matches(RegexSearch.compile(search), text, 0,
+                    text.length())) {
+                if (result.end() > result.start()) {
+                    Position start = temp.setModelOffset(result.start());
+                    Position end = temp.setModelOffset(result.end());
+                    rangesToHL.add(StartEndTextRange.exclusive(start, end));
+                }
             }
-            annotations = highlightingService.highlightRegions(ANNOTATION_TYPE,
-                    "Vrapper Search", rangesToHL);
-        } catch (BadLocationException e) {
-            VrapperLog.error("while highlighting search", e);
+        } catch (PatternSyntaxException e) {
+            throw new VrapperPlatformException("Regex uses bad format: " + e.getMessage(), e);
         }
+        annotations = highlightingService.highlightRegions(ANNOTATION_TYPE,
+                "Vrapper Search", rangesToHL);
     }
 
     public void incSearchhighlight(Position start, int length) {
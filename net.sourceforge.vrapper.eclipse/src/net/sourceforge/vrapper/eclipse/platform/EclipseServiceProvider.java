@@ -1,5 +1,9 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
+import net.sourceforge.vrapper.platform.CodeStructureService;
+import net.sourceforge.vrapper.platform.CommandQueueService;
+import net.sourceforge.vrapper.platform.PartitionService;
+import net.sourceforge.vrapper.platform.TimerService;
 import net.sourceforge.vrapper.platform.ServiceProvider;
 
 import org.eclipse.ui.commands.ICommandService;
@@ -10,8 +14,15 @@ public class EclipseServiceProvider implements ServiceProvider {
 
     private final IHandlerService handlerService;
     private final ICommandService commandService;
+    private final CodeStructureService codeStructureService;
+    private final PartitionService partitionService;
+    private final EclipseCommandQueue commandQueue = new EclipseCommandQueue();
+    private final EclipseTimerService timerService = new EclipseTimerService();
 
-    public EclipseServiceProvider(AbstractTextEditor abstractTextEditor) {
+    public EclipseServiceProvider(AbstractTextEditor abstractTextEditor,
+            CodeStructureService codeStructureService, PartitionService partitionService) {
+        this.codeStructureService = codeStructureService;
+        this.partitionService = partitionService;
         handlerService = (IHandlerService) abstractTextEditor.getSite().getService(IHandlerService.class);
         commandService = (ICommandService) abstractTextEditor.getSite().getService(ICommandService.class);
     }
@@ -24,6 +35,19 @@ public class EclipseServiceProvider implements ServiceProvider {
         if (ICommandService.class.equals(serviceClass)) {
             return (T) commandService;
         }
+        if (CodeStructureService.class.equals(serviceClass)) {
+            return (T) codeStructureService;
+        }
+        if (PartitionService.class.equals(serviceClass)) {
+            return (T) partitionService;
+        }
+        if (CommandQueueService.class.equals(serviceClass)
+                || EclipseCommandQueue.class.equals(serviceClass)) {
+            return (T) commandQueue;
+        }
+        if (TimerService.class.equals(serviceClass)) {
+            return (T) timerService;
+        }
         return null;
     }
 
@@ -1,5 +1,7 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
+import java.util.Arrays;
+
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.utils.LineInformation;
@@ -7,12 +9,17 @@ import net.sourceforge.vrapper.utils.Space;
 import net.sourceforge.vrapper.utils.TextRange;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextInputListener;
+import org.eclipse.jface.text.ITextListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextEvent;
 import org.eclipse.swt.custom.StyledText;
 
 @SuppressWarnings("nls")
@@ -24,12 +31,24 @@ public class EclipseTextContent {
     protected TextContent viewSide;
     protected int horizontalPosition;
     protected boolean lineWiseMouseSelection;
+    private final LineCache lineCache = new LineCache();
 
     public EclipseTextContent(ITextViewer textViewer) {
         this.textViewer = textViewer;
         this.converter = OffsetConverter.create(textViewer);
         modelSide = new ModelSideTextContent();
         viewSide = new ViewSideTextContent();
+        lineCache.connect(textViewer.getDocument());
+        textViewer.addTextInputListener(lineCache);
+        textViewer.addTextListener(lineCache);
+    }
+
+    /** Stops listening to the viewer, to be called when the editor is closed. */
+    public void dispose() {
+        lineCache.connect(null);
+        textViewer.removeTextInputListener(lineCache);
+        textViewer.removeTextListener(lineCache);
+        OffsetConverter.dispose(textViewer);
     }
 
     public TextContent getModelContent() {
@@ -43,11 +62,15 @@ public class EclipseTextContent {
     protected class ModelSideTextContent implements TextContent {
 
         public LineInformation getLineInformation(int line) {
+            LineInformation cached = lineCache.getModelLine(line);
+            if (cached != null) {
+                return cached;
+            }
             try {
                 IRegion region = textViewer.getDocument().getLineInformation(
                         line);
-                return new LineInformation(line, region.getOffset(), region
-                        .getLength());
+                return lineCache.putModelLine(new LineInformation(line, region.getOffset(), region
+                        .getLength()));
             } catch (BadLocationException e) {
                 throw new VrapperPlatformException("Failed to get line info for ML" + line, e);
             }
@@ -125,6 +148,10 @@ public class EclipseTextContent {
     protected class ViewSideTextContent implements TextContent  {
 
         public LineInformation getLineInformation(int line) {
+            LineInformation cached = lineCache.getViewLine(line);
+            if (cached != null) {
+                return cached;
+            }
             line = converter.widgetLine2ModelLine(line);
             IRegion region;
             try {
@@ -132,8 +159,8 @@ public class EclipseTextContent {
             } catch (BadLocationException e) {
                 throw new VrapperPlatformException("Failed to get line info for VL" + line, e);
             }
-            return new LineInformation(converter.modelLine2WidgetLine(line),
-                    converter.modelOffset2WidgetOffset(region.getOffset()), region.getLength());
+            return lineCache.putViewLine(new LineInformation(converter.modelLine2WidgetLine(line),
+                    converter.modelOffset2WidgetOffset(region.getOffset()), region.getLength()));
         }
 
         public LineInformation getLineInformationOfOffset(int offset) {
@@ -229,4 +256,116 @@ public class EclipseTextContent {
             return Space.VIEW;
         }
     }
+
+    /**
+     * Line information of the current document, filled lazily. Motions ask for the same lines
+     * over and over, so each line is only looked up (and converted to view coordinates) once.
+     * <p>
+     * A document change only invalidates the changed line and the ones after it; the view lines
+     * are dropped on every change of the visible text, which includes folding. Other document
+     * listeners may be notified before the cache, so it is bypassed while a change is pending.
+     */
+    private class LineCache implements IDocumentListener, ITextInputListener, ITextListener {
+
+        private LineInformation[] modelLines = new LineInformation[0];
+        private LineInformation[] viewLines = new LineInformation[0];
+        private IDocument document;
+        /** Set between documentAboutToBeChanged and documentChanged. */
+        private boolean changePending;
+
+        public LineInformation getModelLine(int line) {
+            if (changePending) {
+                return null;
+            }
+            return line >= 0 && line < modelLines.length ? modelLines[line] : null;
+        }
+
+        public LineInformation putModelLine(LineInformation info) {
+            if ( ! changePending) {
+                modelLines = store(modelLines, info, textViewer.getDocument().getNumberOfLines());
+            }
+            return info;
+        }
+
+        public LineInformation getViewLine(int line) {
+            if (changePending) {
+                return null;
+            }
+            return line >= 0 && line < viewLines.length ? viewLines[line] : null;
+        }
+
+        public LineInformation putViewLine(LineInformation info) {
+            if ( ! changePending) {
+                viewLines = store(viewLines, info, textViewer.getTextWidget().getLineCount());
+            }
+            return info;
+        }
+
+        private LineInformation[] store(LineInformation[] lines, LineInformation info,
+                int lineCount) {
+            int line = info.getNumber();
+            if (line < 0 || line >= lineCount) {
+                return lines;
+            }
+            if (lines.length != lineCount) {
+                lines = Arrays.copyOf(lines, lineCount);
+            }
+            lines[line] = info;
+            return lines;
+        }
+
+        @Override
+        public void documentAboutToBeChanged(DocumentEvent event) {
+            int changedLine;
+            try {
+                // A change right after a delimiter may alter the delimiter of the previous line.
+                changedLine = Math.max(0, event.getDocument().getLineOfOffset(event.getOffset()) - 1);
+            } catch (BadLocationException e) {
+                changedLine = 0;
+            }
+            if (changedLine < modelLines.length) {
+                Arrays.fill(modelLines, changedLine, modelLines.length, null);
+            }
+            clearViewLines();
+            changePending = true;
+        }
+
+        @Override
+        public void documentChanged(DocumentEvent event) {
+            changePending = false;
+        }
+
+        @Override
+        public void textChanged(TextEvent event) {
+            clearViewLines();
+        }
+
+        @Override
+        public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+            connect(null);
+        }
+
+        @Override
+        public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+            changePending = false;
+            modelLines = new LineInformation[0];
+            clearViewLines();
+            connect(newInput);
+        }
+
+        /** Moves the document listener to the given document, <code>null</code> to remove it. */
+        public void connect(IDocument newDocument) {
+            if (document != null) {
+                document.removeDocumentListener(this);
+            }
+            document = newDocument;
+            if (document != null) {
+                document.addDocumentListener(this);
+            }
+        }
+
+        private void clearViewLines() {
+            Arrays.fill(viewLines, null);
+        }
+    }
 }
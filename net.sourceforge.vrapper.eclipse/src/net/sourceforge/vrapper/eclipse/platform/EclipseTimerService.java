@@ -0,0 +1,30 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import net.sourceforge.vrapper.platform.TimerService;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Runs the tasks with {@link Display#timerExec(int, Runnable)} on the UI thread.
+ */
+public class EclipseTimerService implements TimerService {
+
+    public void schedule(Runnable task, int delayMillis) {
+        // timerExec restarts the delay of a task which is already waiting.
+        getDisplay().timerExec(Math.max(0, delayMillis), task);
+    }
+
+    public void cancel(Runnable task) {
+        getDisplay().timerExec(-1, task);
+    }
+
+    private static Display getDisplay() {
+        Display display = Display.getCurrent();
+        // may be null if outside the UI thread
+        if (display == null) {
+            display = Display.getDefault();
+        }
+        return display;
+    }
+
+}
@@ -7,12 +7,14 @@ import net.sourceforge.vrapper.utils.ViewPortInformation;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
 import org.eclipse.jface.text.Region;
+import org.eclipse.swt.custom.StyledText;
 
 public class EclipseViewportService implements ViewportService {
 
     private final ITextViewer textViewer;
     private final ITextViewerExtension5 textViewer5;
     private Object lock;
+    private int batchDepth;
 
     public EclipseViewportService(ITextViewer textViewer) {
         this.textViewer = textViewer;
@@ -20,7 +22,7 @@ public class EclipseViewportService implements ViewportService {
     }
 
     public void setRepaint(boolean redraw) {
-        if (lock == null) {
+        if (lock == null && batchDepth == 0) {
             textViewer.getTextWidget().setRedraw(redraw);
         }
     }
@@ -37,6 +39,33 @@ public class EclipseViewportService implements ViewportService {
         }
     }
 
+    public void beginBatchEdit() {
+        if (batchDepth++ == 0) {
+            textViewer.getTextWidget().setRedraw(false);
+        }
+    }
+
+    public void endBatchEdit() {
+        if (batchDepth == 0) {
+            return;
+        }
+        if (--batchDepth == 0) {
+            textViewer.getTextWidget().setRedraw(true);
+            // Only scrolls if the cursor isn't visible already.
+            textViewer.revealRange(textViewer.getSelectedRange().x, 0);
+        }
+    }
+
+    public boolean isBatchEditing() {
+        return batchDepth > 0;
+    }
+
+    public boolean isVisible() {
+        StyledText widget = textViewer.getTextWidget();
+        // Editors in background tabs have their controls hidden.
+        return widget != null && ! widget.isDisposed() && widget.isVisible();
+    }
+
     public void exposeModelPosition(Position position) {
         textViewer5.exposeModelRange(new Region(position.getModelOffset(), 1));
     }
@@ -0,0 +1,141 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sourceforge.vrapper.eclipse.activator.VrapperPlugin;
+import net.sourceforge.vrapper.log.VrapperLog;
+
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.commands.operations.AbstractOperation;
+import org.eclipse.core.commands.operations.IUndoContext;
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Replaces the text of several files as one operation in the workspace undo context, so the
+ * whole batch can be undone at once (Edit &gt; Undo in the navigator, like a refactoring).
+ * <p>
+ * Files are edited through their file buffers: files open in an editor are changed in the
+ * editor's document and left modified, other files are saved right away. Only the part of a file
+ * which differs is kept and replaced, which also keeps markers and editor state intact. A file
+ * whose length or changed part differs from what is expected was changed meanwhile and is left
+ * alone.
+ */
+public class MultiFileEditOperation extends AbstractOperation {
+
+    /** The part of one file which differs between its old and new text. */
+    public static class FileEdit {
+        private final IFile file;
+        private final int offset;
+        private final String oldSegment;
+        private final String newSegment;
+        private final int oldLength;
+        private final int newLength;
+
+        public FileEdit(IFile file, String oldText, String newText) {
+            this.file = file;
+            int prefix = 0;
+            int maxPrefix = Math.min(oldText.length(), newText.length());
+            while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            int maxSuffix = maxPrefix - prefix;
+            while (suffix < maxSuffix && oldText.charAt(oldText.length() - 1 - suffix)
+                    == newText.charAt(newText.length() - 1 - suffix)) {
+                suffix++;
+            }
+            offset = prefix;
+            oldSegment = oldText.substring(prefix, oldText.length() - suffix);
+            newSegment = newText.substring(prefix, newText.length() - suffix);
+            oldLength = oldText.length();
+            newLength = newText.length();
+        }
+
+        public IFile getFile() {
+            return file;
+        }
+    }
+
+    private final List<FileEdit> edits;
+
+    public MultiFileEditOperation(String label, List<FileEdit> edits) {
+        super(label);
+        this.edits = new ArrayList<FileEdit>(edits);
+        IUndoContext workspaceContext =
+                ResourcesPlugin.getWorkspace().getAdapter(IUndoContext.class);
+        if (workspaceContext != null) {
+            addContext(workspaceContext);
+        }
+    }
+
+    @Override
+    public IStatus execute(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+        return apply(true);
+    }
+
+    @Override
+    public IStatus redo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+        return apply(true);
+    }
+
+    @Override
+    public IStatus undo(IProgressMonitor monitor, IAdaptable info) throws ExecutionException {
+        return apply(false);
+    }
+
+    private IStatus apply(boolean forward) {
+        ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+        List<String> skipped = new ArrayList<String>();
+        for (FileEdit edit : edits) {
+            String expected = forward ? edit.oldSegment : edit.newSegment;
+            String replacement = forward ? edit.newSegment : edit.oldSegment;
+            int expectedLength = forward ? edit.oldLength : edit.newLength;
+            IPath path = edit.file.getFullPath();
+            try {
+                manager.connect(path, LocationKind.IFILE, null);
+                try {
+                    ITextFileBuffer buffer = manager.getTextFileBuffer(path, LocationKind.IFILE);
+                    IDocument document = buffer.getDocument();
+                    if (document.getLength() != expectedLength
+                            || ! document.get(edit.offset, expected.length()).equals(expected)) {
+                        skipped.add(path.toString());
+                        continue;
+                    }
+                    boolean wasDirty = buffer.isDirty();
+                    document.replace(edit.offset, expected.length(), replacement);
+                    // Nobody else holds the buffer: save it or the change is lost on disconnect.
+                    if ( ! wasDirty && ! buffer.isShared()) {
+                        buffer.commit(null, false);
+                    }
+                } finally {
+                    manager.disconnect(path, LocationKind.IFILE, null);
+                }
+            } catch (CoreException e) {
+                VrapperLog.error("Failed to edit " + path, e);
+                skipped.add(path.toString());
+            } catch (BadLocationException e) {
+                VrapperLog.error("Failed to edit " + path, e);
+                skipped.add(path.toString());
+            }
+        }
+        if (skipped.isEmpty()) {
+            return Status.OK_STATUS;
+        }
+        return new Status(IStatus.WARNING, VrapperPlugin.PLUGIN_ID,
+                "Files changed meanwhile and were skipped: " + skipped);
+    }
+}
@@ -5,16 +5,46 @@ import net.sourceforge.vrapper.log.VrapperLog;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension3;
 import org.eclipse.jface.text.ITextViewerExtension5;
+import org.eclipse.swt.custom.StyledText;
 
 @SuppressWarnings("deprecation") // ITextViewerExtension3 is used for legacy code, anyway
 public class OffsetConverter {
 
+	private static final String CACHE_KEY = ProjectionOffsetCache.class.getName();
+
+	/**
+	 * Returns the converter for the viewer. All callers share the same {@link ProjectionOffsetCache},
+	 * it is kept on the text widget so that it goes away together with the editor.
+	 */
 	public static ITextViewerExtension5 create(ITextViewer textViewer) {
-		if (textViewer instanceof ITextViewerExtension5)
-			return (ITextViewerExtension5) textViewer;
+		if (textViewer instanceof ITextViewerExtension5) {
+			StyledText widget = textViewer.getTextWidget();
+			if (widget == null || widget.isDisposed()) {
+				return (ITextViewerExtension5) textViewer;
+			}
+			Object cache = widget.getData(CACHE_KEY);
+			if ( ! (cache instanceof ProjectionOffsetCache)) {
+				cache = new ProjectionOffsetCache(textViewer, (ITextViewerExtension5) textViewer);
+				widget.setData(CACHE_KEY, cache);
+			}
+			return (ProjectionOffsetCache) cache;
+		}
 		else if (textViewer instanceof ITextViewerExtension3)
 			VrapperLog.error("TODO: we can implement ITextViewerExtension3 -> ITextViewerExtension5 wrapper!!!");
 		return new DummyTextViewerExtension5();
 	}
 
+	/** Drops the cache of the viewer, to be called when its editor is closed. */
+	public static void dispose(ITextViewer textViewer) {
+		StyledText widget = textViewer.getTextWidget();
+		if (widget == null || widget.isDisposed()) {
+			return;
+		}
+		Object cache = widget.getData(CACHE_KEY);
+		if (cache instanceof ProjectionOffsetCache) {
+			((ProjectionOffsetCache) cache).dispose();
+			widget.setData(CACHE_KEY, null);
+		}
+	}
+
 }
@@ -0,0 +1,207 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextInputListener;
+import org.eclipse.jface.text.ITextListener;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.ITextViewerExtension5;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextEvent;
+import org.eclipse.jface.text.source.projection.IProjectionListener;
+import org.eclipse.jface.text.source.projection.ProjectionViewer;
+
+/**
+ * Converts between model and widget offsets using a copy of the visible segments of the
+ * document (the parts which are not folded away). The viewer resolves every conversion through
+ * the projection document; here a conversion is a binary search over plain int arrays.
+ * <p>
+ * The segments are collected again after the document or the folding changed, which the viewer
+ * reports as a text event. Line conversions and anything else which can't be answered from the
+ * segments are passed on to the viewer.
+ */
+public class ProjectionOffsetCache implements ITextViewerExtension5 {
+
+    private final ITextViewer textViewer;
+    private final ITextViewerExtension5 delegate;
+    private final Invalidator invalidator = new Invalidator();
+
+    /** Model offset, widget offset and length of each visible segment, in document order. */
+    private int[] modelStarts;
+    private int[] widgetStarts;
+    private int[] lengths;
+    private boolean valid;
+    private boolean disposed;
+
+    public ProjectionOffsetCache(ITextViewer textViewer, ITextViewerExtension5 delegate) {
+        this.textViewer = textViewer;
+        this.delegate = delegate;
+        if (textViewer.getDocument() != null) {
+            textViewer.getDocument().addDocumentListener(invalidator);
+        }
+        textViewer.addTextInputListener(invalidator);
+        textViewer.addTextListener(invalidator);
+        if (textViewer instanceof ProjectionViewer) {
+            ((ProjectionViewer) textViewer).addProjectionListener(invalidator);
+        }
+    }
+
+    /** Removes the listeners from the viewer, conversions are passed on to it from now on. */
+    public void dispose() {
+        disposed = true;
+        valid = false;
+        if (textViewer.getDocument() != null) {
+            textViewer.getDocument().removeDocumentListener(invalidator);
+        }
+        textViewer.removeTextInputListener(invalidator);
+        textViewer.removeTextListener(invalidator);
+        if (textViewer instanceof ProjectionViewer) {
+            ((ProjectionViewer) textViewer).removeProjectionListener(invalidator);
+        }
+    }
+
+    public int modelOffset2WidgetOffset(int modelOffset) {
+        if (update()) {
+            int segment = findSegment(modelStarts, modelOffset);
+            if (segment >= 0 && modelOffset < modelStarts[segment] + lengths[segment]) {
+                return widgetStarts[segment] + modelOffset - modelStarts[segment];
+            }
+        }
+        return delegate.modelOffset2WidgetOffset(modelOffset);
+    }
+
+    public int widgetOffset2ModelOffset(int widgetOffset) {
+        if (update()) {
+            int segment = findSegment(widgetStarts, widgetOffset);
+            if (segment >= 0 && widgetOffset < widgetStarts[segment] + lengths[segment]) {
+                return modelStarts[segment] + widgetOffset - widgetStarts[segment];
+            }
+        }
+        return delegate.widgetOffset2ModelOffset(widgetOffset);
+    }
+
+    public boolean exposeModelRange(IRegion modelRange) {
+        return delegate.exposeModelRange(modelRange);
+    }
+
+    public IRegion[] getCoveredModelRanges(IRegion modelRange) {
+        return delegate.getCoveredModelRanges(modelRange);
+    }
+
+    public IRegion getModelCoverage() {
+        return delegate.getModelCoverage();
+    }
+
+    public int modelLine2WidgetLine(int modelLine) {
+        return delegate.modelLine2WidgetLine(modelLine);
+    }
+
+    public IRegion modelRange2WidgetRange(IRegion modelRange) {
+        return delegate.modelRange2WidgetRange(modelRange);
+    }
+
+    public int widgetLine2ModelLine(int widgetLine) {
+        return delegate.widgetLine2ModelLine(widgetLine);
+    }
+
+    public int widgetLineOfWidgetOffset(int widgetOffset) {
+        return delegate.widgetLineOfWidgetOffset(widgetOffset);
+    }
+
+    public IRegion widgetRange2ModelRange(IRegion widgetRange) {
+        return delegate.widgetRange2ModelRange(widgetRange);
+    }
+
+    @Deprecated
+    public int widgetlLine2ModelLine(int widgetLine) {
+        return delegate.widgetLine2ModelLine(widgetLine);
+    }
+
+    /** @return <code>false</code> if the segments are not available. */
+    private boolean update() {
+        if (valid) {
+            return true;
+        }
+        if (disposed) {
+            return false;
+        }
+        IDocument document = textViewer.getDocument();
+        if (document == null) {
+            return false;
+        }
+        IRegion[] segments = delegate.getCoveredModelRanges(new Region(0, document.getLength()));
+        if (segments == null) {
+            return false;
+        }
+        modelStarts = new int[segments.length];
+        widgetStarts = new int[segments.length];
+        lengths = new int[segments.length];
+        int widgetOffset = 0;
+        for (int i = 0; i < segments.length; i++) {
+            modelStarts[i] = segments[i].getOffset();
+            widgetStarts[i] = widgetOffset;
+            lengths[i] = segments[i].getLength();
+            widgetOffset += lengths[i];
+        }
+        valid = true;
+        return true;
+    }
+
+    /** @return the last segment starting at or before the offset, -1 if there is none. */
+    private static int findSegment(int[] starts, int offset) {
+        int low = 0;
+        int high = starts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private class Invalidator implements IDocumentListener, ITextInputListener, ITextListener,
+            IProjectionListener {
+
+        public void documentAboutToBeChanged(DocumentEvent event) {
+            valid = false;
+        }
+
+        public void documentChanged(DocumentEvent event) {
+            // The projection may be updated after this listener, the text event follows it.
+            valid = false;
+        }
+
+        public void textChanged(TextEvent event) {
+            valid = false;
+        }
+
+        public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+            valid = false;
+            if (oldInput != null) {
+                oldInput.removeDocumentListener(this);
+            }
+        }
+
+        public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+            valid = false;
+            if (newInput != null) {
+                newInput.addDocumentListener(this);
+            }
+        }
+
+        public void projectionEnabled() {
+            valid = false;
+        }
+
+        public void projectionDisabled() {
+            valid = false;
+        }
+    }
+}
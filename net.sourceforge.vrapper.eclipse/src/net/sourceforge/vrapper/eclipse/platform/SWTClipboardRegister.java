@@ -1,10 +1,6 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.VimUtils;
@@ -16,6 +12,7 @@ import net.sourceforge.vrapper.vim.register.TextBlockRegisterContent;
 
 import org.eclipse.swt.dnd.ByteArrayTransfer;
 import org.eclipse.swt.dnd.Clipboard;
+import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.TextTransfer;
 import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.dnd.TransferData;
@@ -38,54 +35,52 @@ class RegisterSelection extends ByteArrayTransfer {
             return;
         if (isSupportedType(transferData)) {
             TextBlockRegisterContent registerContent = (TextBlockRegisterContent) object;
-            try {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                DataOutputStream writeOut = new DataOutputStream(out);
-                writeOut.writeInt(registerContent.getPayloadType().ordinal());
-                writeOut.writeInt(registerContent.getVisualWidth());
-                writeOut.writeInt(registerContent.getNumLines());
-                for (int j = 0; j < registerContent.getNumLines(); j++) {
-                    byte[] buffer = registerContent.getLine(j).getBytes();
-                    writeOut.writeInt(buffer.length);
-                    writeOut.write(buffer);
-                }
-                byte[] buffer = out.toByteArray();
-                writeOut.close();
-                super.javaToNative(buffer, transferData);
-
-            } catch (IOException e) {
+            // Encode all lines first so that the buffer can be allocated at its final size.
+            int numLines = registerContent.getNumLines();
+            byte[][] lines = new byte[numLines][];
+            int size = 3 * 4;
+            for (int j = 0; j < numLines; j++) {
+                lines[j] = registerContent.getLine(j).getBytes();
+                size += 4 + lines[j].length;
             }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(registerContent.getPayloadType().ordinal());
+            buffer.putInt(registerContent.getVisualWidth());
+            buffer.putInt(numLines);
+            for (byte[] line : lines) {
+                buffer.putInt(line.length);
+                buffer.put(line);
+            }
+            super.javaToNative(buffer.array(), transferData);
         }
     }
 
     public Object nativeToJava(TransferData transferData) {
         TextBlockRegisterContent registerContent = null;
         if (isSupportedType(transferData)) {
-            byte[] buffer = (byte[]) super.nativeToJava(transferData);
-            if (buffer == null)
+            byte[] bytes = (byte[]) super.nativeToJava(transferData);
+            if (bytes == null)
                 return null;
             try {
-                ByteArrayInputStream in = new ByteArrayInputStream(buffer);
-                DataInputStream readIn = new DataInputStream(in);
-                ContentType ct = ContentType.values()[readIn.readInt()];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                ContentType ct = ContentType.values()[buffer.getInt()];
                 // Not a block register?
                 if ( ! ContentType.TEXT_RECTANGLE.equals(ct)) {
                     return null;
                 }
-                int vOffset = readIn.readInt();
-                int lines = readIn.readInt();
+                int vOffset = buffer.getInt();
+                int lines = buffer.getInt();
                 registerContent = new TextBlockRegisterContent(vOffset, VimConstants.REGISTER_NEWLINE);
                 for (int i = 0; i < lines; ++i) {
-                    int len = readIn.readInt();
-                    byte[] line = new byte[len];
-                    readIn.read(line);
-                    registerContent.appendLine(new String(line));
+                    int len = buffer.getInt();
+                    registerContent.appendLine(new String(bytes, buffer.position(), len));
+                    buffer.position(buffer.position() + len);
                 }
-                readIn.close();
             } catch (ArrayIndexOutOfBoundsException e) {
                 // Incompatible content type ordinal passed in
                 return null;
-            } catch (IOException ex) {
+            } catch (RuntimeException ex) {
+                // Truncated content (buffer underflow or bad length)
                 return null;
             }
         }
@@ -103,17 +98,79 @@ class RegisterSelection extends ByteArrayTransfer {
     }
 }
 
+/**
+ * Register backed by the system clipboard (or the X11 selection).
+ * <p>
+ * Writes are deferred until the current UI event has been handled, so that a burst of yanks (in a
+ * macro, for example) only publishes the last one. Until then, and afterwards as long as nobody
+ * else could have changed the clipboard, reads are served from the content Vrapper wrote.
+ */
 public class SWTClipboardRegister implements Register {
 
     private Clipboard clipboard;
     private int clipboardId;
+    private final Display display;
+    /** Whether the clipboard can be trusted to keep our content after it was published. */
+    private final boolean keepOwnership;
+    /** Content last written by Vrapper, or <code>null</code> if we don't own the clipboard. */
+    private RegisterContent ownContent;
+    private boolean publishPending;
+
+    private final Runnable publisher = new Runnable() {
+        public void run() {
+            publish();
+        }
+    };
 
     public SWTClipboardRegister(Display d, int clipboardId) {
         this.clipboardId = clipboardId;
+        this.display = d;
+        // The X11 selection changes whenever text gets selected, don't trust it.
+        this.keepOwnership = clipboardId == DND.CLIPBOARD;
         clipboard = new Clipboard(d);
     }
 
     public RegisterContent getContent() {
+        if (ownContent != null) {
+            return ownContent;
+        }
+        return readClipboard();
+    }
+
+    public void setContent(RegisterContent content) {
+        ownContent = content;
+        if ( ! publishPending && ! display.isDisposed()) {
+            publishPending = true;
+            display.asyncExec(publisher);
+        }
+    }
+
+    /**
+     * Publishes pending content now and stops serving reads from the local copy. Should be called
+     * whenever something else might write to the clipboard.
+     */
+    public void releaseOwnership() {
+        publish();
+        ownContent = null;
+    }
+
+    /** Writes the pending content to the clipboard, if any. */
+    public void publish() {
+        if ( ! publishPending) {
+            return;
+        }
+        publishPending = false;
+        RegisterContent content = ownContent;
+        if ( ! keepOwnership) {
+            ownContent = null;
+        }
+        if (content == null || clipboard.isDisposed()) {
+            return;
+        }
+        writeClipboard(content);
+    }
+
+    private RegisterContent readClipboard() {
         TextBlockRegisterContent registerContent = (TextBlockRegisterContent) clipboard
                 .getContents(RegisterSelection.getInstance());
         if (registerContent != null) {
@@ -133,7 +190,7 @@ public class SWTClipboardRegister implements Register {
         return new StringRegisterContent(ContentType.TEXT, s);
     }
 
-    public void setContent(RegisterContent content) {
+    private void writeClipboard(RegisterContent content) {
         ContentType contentType = content.getPayloadType();
         if (contentType == ContentType.TEXT_RECTANGLE) {
             clipboard.setContents(new Object[] {content, content.getText()},
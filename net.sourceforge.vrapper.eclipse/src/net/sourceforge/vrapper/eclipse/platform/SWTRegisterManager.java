@@ -10,9 +10,18 @@ import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
 import net.sourceforge.vrapper.vim.register.Register;
 import net.sourceforge.vrapper.vim.register.RegisterManager;
 
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.commands.IExecutionListener;
+import org.eclipse.core.commands.NotHandledException;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.commands.ICommandService;
 
 public class SWTRegisterManager extends DefaultRegisterManager {
 
@@ -33,6 +42,36 @@ public class SWTRegisterManager extends DefaultRegisterManager {
         }
         registers.put(RegisterManager.REGISTER_NAME_SELECTION, selectionClipboardRegister);
 
+        // Other applications and Eclipse commands (Copy, Cut, ...) may change the clipboard, our
+        // cached copy can't be trusted anymore after that.
+        d.addFilter(SWT.Deactivate, new Listener() {
+            @Override
+            public void handleEvent(Event event) {
+                releaseClipboards();
+            }
+        });
+        if (PlatformUI.isWorkbenchRunning()) {
+            ICommandService commandService = PlatformUI.getWorkbench()
+                    .getService(ICommandService.class);
+            if (commandService != null) {
+                commandService.addExecutionListener(new IExecutionListener() {
+                    @Override
+                    public void preExecute(String commandId, ExecutionEvent event) {
+                        releaseClipboards();
+                    }
+                    @Override
+                    public void postExecuteSuccess(String commandId, Object returnValue) {
+                    }
+                    @Override
+                    public void postExecuteFailure(String commandId, ExecutionException exception) {
+                    }
+                    @Override
+                    public void notHandled(String commandId, NotHandledException exception) {
+                    }
+                });
+            }
+        }
+
         final ConfigurationListener listener = new ConfigurationListener() {
             @Override
             public <T> void optionChanged(final Option<T> option, final T oldValue, final T newValue) {
@@ -59,4 +98,9 @@ public class SWTRegisterManager extends DefaultRegisterManager {
         };
         globalConfig.addListener(listener);
     }
+
+    private void releaseClipboards() {
+        clipboardRegister.releaseOwnership();
+        selectionClipboardRegister.releaseOwnership();
+    }
 }
@@ -0,0 +1,88 @@
+package net.sourceforge.vrapper.eclipse.cdt.structure;
+
+import net.sourceforge.vrapper.eclipse.platform.CodeStructureProvider;
+import net.sourceforge.vrapper.utils.CodeStructure;
+
+import org.eclipse.cdt.core.model.CModelException;
+import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.cdt.core.model.IParent;
+import org.eclipse.cdt.core.model.ISourceRange;
+import org.eclipse.cdt.core.model.ISourceReference;
+import org.eclipse.cdt.core.model.IWorkingCopy;
+import org.eclipse.cdt.ui.CUIPlugin;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+/**
+ * Takes the function definitions from the C model of the editor's working copy, which CDT
+ * updates when it reconciles. Methods defined in class bodies and namespaces are included.
+ */
+public class CdtCodeStructureProvider implements CodeStructureProvider {
+
+    @Override
+    public CodeStructure getCodeStructure(AbstractTextEditor editor, IDocument document) {
+        IWorkingCopy workingCopy = CUIPlugin.getDefault().getWorkingCopyManager()
+                .getWorkingCopy(editor.getEditorInput());
+        if (workingCopy == null) {
+            return null;
+        }
+        CodeStructure.Builder builder = new CodeStructure.Builder();
+        try {
+            if ( ! workingCopy.isConsistent()) {
+                // Typed since the last reconcile, the offsets of the model are out of date.
+                return null;
+            }
+            addFunctions(builder, workingCopy, document);
+        } catch (CModelException e) {
+            return null;
+        } catch (BadLocationException e) {
+            return null;
+        }
+        return builder.build();
+    }
+
+    private static void addFunctions(CodeStructure.Builder builder, IParent parent,
+            IDocument document) throws CModelException, BadLocationException {
+        for (ICElement element : parent.getChildren()) {
+            switch (element.getElementType()) {
+            case ICElement.C_FUNCTION:
+            case ICElement.C_METHOD:
+            case ICElement.C_TEMPLATE_FUNCTION:
+            case ICElement.C_TEMPLATE_METHOD:
+                addBody(builder, ((ISourceReference) element).getSourceRange(), document);
+                break;
+            default:
+                if (element instanceof IParent) {
+                    addFunctions(builder, (IParent) element, document);
+                }
+            }
+        }
+    }
+
+    /**
+     * The model only knows where the whole definition is, the body starts at the first
+     * <tt>{</tt> after the parameter list.
+     */
+    private static void addBody(CodeStructure.Builder builder, ISourceRange range,
+            IDocument document) throws BadLocationException {
+        int end = range.getStartPos() + range.getLength() - 1;
+        int offset = range.getIdStartPos() + range.getIdLength();
+        int parens = 0;
+        while (offset < end) {
+            char c = document.getChar(offset);
+            if (c == '(') {
+                parens++;
+            } else if (c == ')') {
+                parens--;
+            } else if (c == '{' && parens == 0) {
+                break;
+            }
+            offset++;
+        }
+        if (offset < end && document.getChar(end) == '}') {
+            builder.addMethod(offset, end);
+        }
+    }
+
+}
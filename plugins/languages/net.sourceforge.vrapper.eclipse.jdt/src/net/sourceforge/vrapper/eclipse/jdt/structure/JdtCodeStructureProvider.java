@@ -0,0 +1,67 @@
+package net.sourceforge.vrapper.eclipse.jdt.structure;
+
+import net.sourceforge.vrapper.eclipse.platform.CodeStructureProvider;
+import net.sourceforge.vrapper.utils.CodeStructure;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jdt.ui.SharedASTProvider;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+/**
+ * Takes the method bodies from the AST which the Java editor shares after reconciling. Methods
+ * of nested and anonymous classes are included, braces in strings and comments are not.
+ */
+public class JdtCodeStructureProvider implements CodeStructureProvider {
+
+    @Override
+    public CodeStructure getCodeStructure(AbstractTextEditor editor, IDocument document) {
+        ITypeRoot root = JavaUI.getEditorInputTypeRoot(editor.getEditorInput());
+        if (root == null) {
+            return null;
+        }
+        try {
+            if (root instanceof ICompilationUnit && ! ((ICompilationUnit) root).isConsistent()) {
+                // Typed since the last reconcile, the shared AST is out of date.
+                return null;
+            }
+        } catch (JavaModelException e) {
+            return null;
+        }
+        CompilationUnit ast = SharedASTProvider.getAST(root, SharedASTProvider.WAIT_NO, null);
+        if (ast == null || ast.getStartPosition() + ast.getLength() != document.getLength()) {
+            return null;
+        }
+        final CodeStructure.Builder builder = new CodeStructure.Builder();
+        ast.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodDeclaration node) {
+                addBody(node.getBody());
+                return true;
+            }
+
+            @Override
+            public boolean visit(Initializer node) {
+                addBody(node.getBody());
+                return true;
+            }
+
+            private void addBody(Block body) {
+                if (body != null) {
+                    builder.addMethod(body.getStartPosition(),
+                            body.getStartPosition() + body.getLength() - 1);
+                }
+            }
+        });
+        return builder.build();
+    }
+
+}
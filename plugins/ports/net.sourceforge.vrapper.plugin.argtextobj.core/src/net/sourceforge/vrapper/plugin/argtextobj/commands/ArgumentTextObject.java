@@ -4,9 +4,11 @@ import java.util.Stack;
 
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.PartitionService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.PartitionSkipper;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.utils.VimUtils;
@@ -28,10 +30,13 @@ public class ArgumentTextObject extends AbstractTextObject {
 
     /**
      * Helper class to find argument boundaries starting at the specified
-     * position
+     * position. Comments and literals other than the one at the starting
+     * position read as blanks if the editor knows where they are.
      */
     private static class ArgBoundsFinder {
         final private TextContent text;
+        final private PartitionService partitions;
+        private PartitionSkipper skipper;
         private int leftBound;
         private int rightBound;
         private int leftBracket;
@@ -41,8 +46,9 @@ public class ArgumentTextObject extends AbstractTextObject {
         final private static String OPEN_BRACKETS  = "[{(<";
         final private static String CLOSE_BRACKETS = "]})>";
 
-        public ArgBoundsFinder(TextContent text) {
+        public ArgBoundsFinder(TextContent text, PartitionService partitions) {
             this.text = text;
+            this.partitions = partitions;
         }
 
         /**
@@ -55,6 +61,7 @@ public class ArgumentTextObject extends AbstractTextObject {
          */
         public void findBoundsAt(int position) throws CommandExecutionException
         {
+            skipper = new PartitionSkipper(partitions, position);
             leftBound = position;
             rightBound = position;
             getOutOfQuotedText();
@@ -235,6 +242,9 @@ public class ArgumentTextObject extends AbstractTextObject {
 
         private char getCharAt(int modelOffset) {
             assert modelOffset < text.getTextLength();
+            if (skipper.isSkipped(modelOffset)) {
+                return ' ';
+            }
             return text.getText(modelOffset, 1).charAt(0);
         }
 
@@ -449,7 +459,8 @@ public class ArgumentTextObject extends AbstractTextObject {
 
     public TextRange getRegion(EditorAdaptor editorAdaptor, int count)
             throws CommandExecutionException {
-        final ArgBoundsFinder finder = new ArgBoundsFinder(editorAdaptor.getModelContent());
+        final ArgBoundsFinder finder = new ArgBoundsFinder(editorAdaptor.getModelContent(),
+                editorAdaptor.getService(PartitionService.class));
         final CursorService cursorService = editorAdaptor.getCursorService();
         if (count == CountAwareMotion.NO_COUNT_GIVEN) {
             count = 1;
@@ -1,13 +1,11 @@
 package net.sourceforge.vrapper.plugin.exchange.commands;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import net.sourceforge.vrapper.platform.HighlightingService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAttachment;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 import net.sourceforge.vrapper.vim.commands.SimpleTextOperation;
 import net.sourceforge.vrapper.vim.commands.TextOperation;
@@ -23,15 +21,24 @@ public class ExchangeOperation extends SimpleTextOperation {
 
     public static final ExchangeOperation INSTANCE = new ExchangeOperation();
 
-    // Highlighted exchange region for each editor.
-    private final Map<EditorAdaptor, Object> annotations = new HashMap<EditorAdaptor, Object>();
+    // Highlighted exchange region of an editor.
+    private static class ExchangeRegion implements EditorAttachment {
+        private final Object annotation;
+
+        public ExchangeRegion(Object annotation) {
+            this.annotation = annotation;
+        }
+
+        public void editorClosed(EditorAdaptor editorAdaptor) {
+            // The annotation is part of the editor's annotation model and goes away with it.
+        }
+    }
 
     public void clear(EditorAdaptor editorAdaptor) {
-        if (annotations.containsKey(editorAdaptor))  {
-            final Object annotation = annotations.get(editorAdaptor);
-            assert annotation != null;
-            editorAdaptor.getHighlightingService().removeHighlighting(annotation);
-            annotations.remove(editorAdaptor);
+        final ExchangeRegion region = editorAdaptor.getAttachment(ExchangeRegion.class);
+        if (region != null)  {
+            editorAdaptor.getHighlightingService().removeHighlighting(region.annotation);
+            editorAdaptor.setAttachment(ExchangeRegion.class, null);
         }
     }
 
@@ -44,9 +51,10 @@ public class ExchangeOperation extends SimpleTextOperation {
             final ContentType contentType) throws CommandExecutionException {
         final HighlightingService highlightingService = editorAdaptor.getHighlightingService();
         // Check if the editor has an exchange region highlighted.
-        if (annotations.containsKey(editorAdaptor))  {
+        final ExchangeRegion exchangeRegion = editorAdaptor.getAttachment(ExchangeRegion.class);
+        if (exchangeRegion != null)  {
             final TextRange highlightedRegion = highlightingService
-                    .getHighlightedRegion(annotations.get(editorAdaptor));
+                    .getHighlightedRegion(exchangeRegion.annotation);
             clear(editorAdaptor);
             if (highlightedRegion == null || highlightedRegion.getModelLength() == 0) {
                 // Exchange region was deleted before the exchange completed,
@@ -87,7 +95,7 @@ public class ExchangeOperation extends SimpleTextOperation {
         final Object annotation = highlightingService.highlightRegion(ANNOTATION_TYPE,
                 "Vrapper Exchange Region", region);
         if (annotation != null) {
-            annotations.put(editorAdaptor, annotation);
+            editorAdaptor.setAttachment(ExchangeRegion.class, new ExchangeRegion(annotation));
         }
     }
 }
\ No newline at end of file
@@ -27,8 +27,20 @@ public class MethodTextObject extends AbstractTextObject {
 
     @Override
     public TextRange getRegion(EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
-    	Position start = MethodDeclarationMotion.PREV_START.destination(editorAdaptor);
-    	Position end = MethodDeclarationMotion.NEXT_END.destination(editorAdaptor);
+    	Position start;
+    	Position end;
+    	CursorService cursorService = editorAdaptor.getCursorService();
+    	TextRange method = MethodDeclarationMotion.getCodeStructure(editorAdaptor).enclosingMethod(
+    			cursorService, cursorService.getPosition().getModelOffset());
+    	if (method != null) {
+    		//the innermost method around the cursor, even if it contains other methods
+    		start = method.getStart();
+    		end = method.getEnd();
+    	}
+    	else {
+    		start = MethodDeclarationMotion.PREV_START.destination(editorAdaptor);
+    		end = MethodDeclarationMotion.NEXT_END.destination(editorAdaptor);
+    	}
     	//if start == end, no method was found
     	if(start.getModelOffset() < end.getModelOffset()) {
     		TextContent model = editorAdaptor.getModelContent();